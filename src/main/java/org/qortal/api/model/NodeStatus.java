@@ -3,9 +3,11 @@ package org.qortal.api.model;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 
+import org.qortal.controller.BlockDownloadPipeline;
 import org.qortal.controller.Controller;
 import org.qortal.controller.Synchronizer;
 import org.qortal.network.Network;
+import org.qortal.network.NetworkStats;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 public class NodeStatus {
@@ -15,8 +17,12 @@ public class NodeStatus {
 
 	// Not always present
 	public final Integer syncPercent;
+	/** Block download window and per-peer throughput, only present while downloading blocks */
+	public final BlockDownloadPipeline.StatsSnapshot syncDownload;
 
 	public final int numberOfConnections;
+	/** Network traffic totals and how long received messages are waiting to be processed */
+	public final NetworkStats.Summary network;
 
 	public final int height;
 
@@ -25,8 +31,10 @@ public class NodeStatus {
 
 		this.syncPercent = Synchronizer.getInstance().getSyncPercent();
 		this.isSynchronizing = Synchronizer.getInstance().isSynchronizing();
+		this.syncDownload = Synchronizer.getInstance().getBlockDownloadStats();
 
 		this.numberOfConnections = Network.getInstance().getImmutableHandshakedPeers().size();
+		this.network = Network.getInstance().getNetworkStats().getSummary(Network.getInstance().getImmutableConnectedPeers());
 
 		this.height = Controller.getInstance().getChainHeight();
 	}
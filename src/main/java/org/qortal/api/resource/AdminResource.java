@@ -45,15 +45,20 @@ import org.qortal.block.BlockChain;
 import org.qortal.controller.Controller;
 import org.qortal.controller.Synchronizer;
 import org.qortal.controller.Synchronizer.SynchronizationResult;
+import org.qortal.controller.TransactionImporter;
 import org.qortal.data.account.MintingAccountData;
 import org.qortal.data.account.RewardShareData;
+import org.qortal.event.AsyncListener;
+import org.qortal.event.EventBus;
 import org.qortal.network.Network;
+import org.qortal.network.NetworkStats;
 import org.qortal.network.Peer;
 import org.qortal.network.PeerAddress;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
+import org.qortal.transaction.Mempool;
 import org.qortal.utils.Base58;
 import org.qortal.utils.NTP;
 
@@ -246,6 +251,96 @@ public class AdminResource {
 		return Controller.getInstance().getStatsSnapshot();
 	}
 
+	@GET
+	@Path("/eventstats")
+	@Operation(
+		summary = "Fetch queue and timing statistics for asynchronous event listeners",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = AsyncListener.StatsSnapshot.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public List<AsyncListener.StatsSnapshot> getEventStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return EventBus.INSTANCE.getStatsSnapshot();
+	}
+
+	@GET
+	@Path("/networkstats")
+	@Operation(
+		summary = "Fetch network traffic per message type and peer, with latency histograms",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = NetworkStats.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public NetworkStats.StatsSnapshot getNetworkStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return Network.getInstance().getNetworkStatsSnapshot();
+	}
+
+	@GET
+	@Path("/importstats")
+	@Operation(
+		summary = "Fetch incoming transaction import stats, including blockchain lock hold time",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = TransactionImporter.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public TransactionImporter.StatsSnapshot getImportStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return TransactionImporter.getInstance().getStatsSnapshot();
+	}
+
+	@GET
+	@Path("/mempoolstats")
+	@Operation(
+		summary = "Fetch unconfirmed transaction pool size, composition and churn",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = Mempool.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public Mempool.StatsSnapshot getMempoolStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return Mempool.getInstance().getStatsSnapshot();
+	}
+
 	@GET
 	@Path("/mintingaccounts")
 	@Operation(
@@ -439,13 +439,15 @@ public class ArbitraryResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<ArbitraryTransactionData> getHostedTransactions(@HeaderParam(Security.API_KEY_HEADER) String apiKey,
+																@QueryParam("service") Service service,
+																@QueryParam("name") String name,
 																@Parameter(ref = "limit") @QueryParam("limit") Integer limit,
 																@Parameter(ref = "offset") @QueryParam("offset") Integer offset) {
 		Security.checkApiCallAllowed(request);
 
 		try (final Repository repository = RepositoryManager.getRepository()) {
 
-			List<ArbitraryTransactionData> hostedTransactions = ArbitraryDataStorageManager.getInstance().listAllHostedTransactions(repository, limit, offset);
+			List<ArbitraryTransactionData> hostedTransactions = ArbitraryDataStorageManager.getInstance().listAllHostedTransactions(repository, name, service, limit, offset);
 
 			return hostedTransactions;
 
@@ -469,6 +471,8 @@ public class ArbitraryResource {
 			@HeaderParam(Security.API_KEY_HEADER) String apiKey,
 			@Parameter(description = "Include status") @QueryParam("includestatus") Boolean includeStatus,
 			@Parameter(description = "Include metadata") @QueryParam("includemetadata") Boolean includeMetadata,
+			@QueryParam("service") Service service,
+			@QueryParam("name") String name,
 			@Parameter(ref = "limit") @QueryParam("limit") Integer limit,
 			@Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@QueryParam("query") String query) {
@@ -481,9 +485,9 @@ public class ArbitraryResource {
 			List<ArbitraryTransactionData> transactionDataList;
 
 			if (query == null || query.equals("")) {
-				transactionDataList = ArbitraryDataStorageManager.getInstance().listAllHostedTransactions(repository, limit, offset);
+				transactionDataList = ArbitraryDataStorageManager.getInstance().listAllHostedTransactions(repository, name, service, limit, offset);
 			} else {
-				transactionDataList = ArbitraryDataStorageManager.getInstance().searchHostedTransactions(repository,query, limit, offset);
+				transactionDataList = ArbitraryDataStorageManager.getInstance().searchHostedTransactions(repository, query, name, service, limit, offset);
 			}
 
 			for (ArbitraryTransactionData transactionData : transactionDataList) {
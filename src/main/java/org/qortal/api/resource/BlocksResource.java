@@ -17,6 +17,7 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -821,6 +822,9 @@ public class BlocksResource {
 				}
 			}
 
+			// Archived blocks are streamed sequentially, once we reach them
+			Iterator<BlockArchiveReader.ArchivedBlock> archivedBlocks = null;
+
 			for (/* count already set */; count > 0; --count, ++startHeight) {
 				if (endHeight != null && startHeight >= endHeight) {
 					break;
@@ -828,7 +832,23 @@ public class BlocksResource {
 				BlockData blockData = repository.getBlockRepository().fromHeight(startHeight);
 				if (blockData == null) {
 					// Not found - try the archive
-					blockData = repository.getBlockArchiveRepository().fromHeight(startHeight);
+					if (archivedBlocks == null) {
+						int lastHeight = endHeight != null ? endHeight - 1 : (int) Math.min(Integer.MAX_VALUE, (long) startHeight + count - 1);
+						archivedBlocks = BlockArchiveReader.getInstance().iterateBlocksInRange(startHeight, lastHeight);
+					}
+
+					BlockArchiveReader.ArchivedBlock archivedBlock = archivedBlocks.hasNext() ? archivedBlocks.next() : null;
+					if (archivedBlock != null && archivedBlock.getHeight() == startHeight) {
+						try {
+							blockData = archivedBlock.getBlockInfo().getA();
+						} catch (TransformationException e) {
+							// Treat as missing
+						}
+					} else {
+						// Out of step with archive iterator
+						blockData = repository.getBlockArchiveRepository().fromHeight(startHeight);
+					}
+
 					if (blockData == null) {
 						// Run out of blocks!
 						break;
@@ -36,6 +36,7 @@ import org.qortal.data.network.PeerData;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.PeerAddress;
+import org.qortal.network.PeerBufferPool;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
@@ -158,6 +159,28 @@ public class PeersResource {
 		return Network.getInstance().getStatsSnapshot();
 	}
 
+	@GET
+	@Path("/enginestats/buffers")
+	@Operation(
+		summary = "Fetch statistics snapshot for networking read-buffer pool",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = PeerBufferPool.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public PeerBufferPool.StatsSnapshot getBufferPoolStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return Network.getInstance().getBufferPoolStatsSnapshot();
+	}
+
 	@POST
 	@Operation(
 		summary = "Add new peer address",
@@ -0,0 +1,273 @@
+package org.qortal.api.websocket;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketException;
+import org.qortal.controller.ChatNotifier;
+import org.qortal.data.chat.ActiveChats;
+import org.qortal.data.chat.ActiveChats.DirectChat;
+import org.qortal.data.chat.ActiveChats.GroupChat;
+import org.qortal.data.naming.NameData;
+import org.qortal.data.transaction.ChatTransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+
+/**
+ * Active chats for each address subscribed via {@link ActiveChatsWebSocket}, shared by all sessions for that address.
+ * <p>
+ * Each address's active chats are loaded from the repository once, then updated from new CHAT transactions
+ * as they're delivered by {@link ChatNotifier}, so most CHAT transactions need no repository access at all.
+ * Sessions are only sent output when their address's active chats actually change.
+ * <p>
+ * Group membership and name changes cause all addresses' active chats to be reloaded.
+ * Active chats for an address are discarded once its last session closes.
+ */
+public class ActiveChatsTracker {
+
+	private static final Logger LOGGER = LogManager.getLogger(ActiveChatsTracker.class);
+
+	private static ActiveChatsTracker instance;
+
+	@FunctionalInterface
+	public interface NameLookup {
+		/** Returns name registered to <tt>address</tt>, or null if none. */
+		String getName(String address) throws DataException;
+	}
+
+	/** Active chats for one address, maintained incrementally. */
+	public static class AddressState {
+		private final String address;
+
+		/** Keyed by group ID, in repository order, so group 0 is last */
+		private final Map<Integer, GroupChat> groupChats = new LinkedHashMap<>();
+		/** Keyed by other party's address */
+		private final Map<String, DirectChat> directChats = new LinkedHashMap<>();
+		/** Names of addresses already seen, with null values for addresses without names */
+		private final Map<String, String> namesByAddress = new HashMap<>();
+
+		private final Set<Session> sessions = new CopyOnWriteArraySet<>();
+
+		private boolean isLoaded = false;
+		private String output;
+
+		public AddressState(String address) {
+			this.address = address;
+		}
+
+		public boolean isLoaded() {
+			return this.isLoaded;
+		}
+
+		/** Replaces state with <tt>activeChats</tt>, as loaded from repository. */
+		public void load(ActiveChats activeChats) {
+			this.groupChats.clear();
+			this.directChats.clear();
+			this.namesByAddress.clear();
+
+			for (GroupChat groupChat : activeChats.getGroups()) {
+				this.groupChats.put(groupChat.getGroupId(), groupChat);
+
+				if (groupChat.getSender() != null)
+					this.namesByAddress.put(groupChat.getSender(), groupChat.getSenderName());
+			}
+
+			for (DirectChat directChat : activeChats.getDirect()) {
+				this.directChats.put(directChat.getAddress(), directChat);
+
+				this.namesByAddress.put(directChat.getAddress(), directChat.getName());
+				this.namesByAddress.put(directChat.getSender(), directChat.getSenderName());
+			}
+
+			this.isLoaded = true;
+		}
+
+		/**
+		 * Updates state with new CHAT transaction, following same rules as <tt>ChatRepository.getActiveChats()</tt>.
+		 *
+		 * @return true if active chats changed
+		 */
+		public boolean apply(ChatTransactionData chatTransactionData, NameLookup nameLookup) throws DataException {
+			if (!this.isLoaded)
+				return false;
+
+			final String sender = chatTransactionData.getSender();
+			final String recipient = chatTransactionData.getRecipient();
+			final long timestamp = chatTransactionData.getTimestamp();
+			final int txGroupId = chatTransactionData.getTxGroupId();
+
+			boolean hasChanged = false;
+
+			// Group chats include any CHAT with matching txGroupId, but group 0 only counts recipient-less CHATs
+			GroupChat groupChat = this.groupChats.get(txGroupId);
+			if (groupChat != null && (txGroupId != 0 || recipient == null)
+					&& (groupChat.getTimestamp() == null || timestamp >= groupChat.getTimestamp())) {
+				String senderName = this.getName(sender, nameLookup);
+
+				this.groupChats.put(txGroupId, new GroupChat(txGroupId, groupChat.getGroupName(), timestamp, sender, senderName));
+				hasChanged = true;
+			}
+
+			if (recipient != null && (sender.equals(this.address) || recipient.equals(this.address))) {
+				String otherAddress = sender.equals(this.address) ? recipient : sender;
+
+				DirectChat directChat = this.directChats.get(otherAddress);
+				if (directChat == null || timestamp >= directChat.getTimestamp()) {
+					String otherName = directChat != null ? directChat.getName() : this.getName(otherAddress, nameLookup);
+					String senderName = this.getName(sender, nameLookup);
+
+					this.directChats.put(otherAddress, new DirectChat(otherAddress, otherName, timestamp, sender, senderName));
+					hasChanged = true;
+				}
+			}
+
+			return hasChanged;
+		}
+
+		public ActiveChats getActiveChats() {
+			return new ActiveChats(new ArrayList<>(this.groupChats.values()), new ArrayList<>(this.directChats.values()));
+		}
+
+		private String getName(String address, NameLookup nameLookup) throws DataException {
+			if (this.namesByAddress.containsKey(address))
+				return this.namesByAddress.get(address);
+
+			String name = nameLookup.getName(address);
+			this.namesByAddress.put(address, name);
+			return name;
+		}
+	}
+
+	private final Map<String, AddressState> statesByAddress = new HashMap<>();
+	private final Map<Session, String> addressesBySession = new HashMap<>();
+
+	private ActiveChatsTracker() {
+		ChatNotifier.getInstance().register(this, this::onNotify);
+	}
+
+	public static synchronized ActiveChatsTracker getInstance() {
+		if (instance == null)
+			instance = new ActiveChatsTracker();
+
+		return instance;
+	}
+
+	/** Subscribes <tt>session</tt> to active chats for <tt>address</tt>, sending current active chats. */
+	public void subscribe(Session session, String address) {
+		AddressState state;
+		synchronized (this.statesByAddress) {
+			state = this.statesByAddress.computeIfAbsent(address, AddressState::new);
+			this.addressesBySession.put(session, address);
+
+			// Add session while still holding lock, otherwise concurrent unsubscribe could discard state
+			state.sessions.add(session);
+		}
+
+		synchronized (state) {
+			if (!state.isLoaded())
+				this.reload(state);
+			else if (state.output != null)
+				send(session, state.output);
+		}
+	}
+
+	public void unsubscribe(Session session) {
+		synchronized (this.statesByAddress) {
+			String address = this.addressesBySession.remove(session);
+			if (address == null)
+				return;
+
+			AddressState state = this.statesByAddress.get(address);
+			if (state == null)
+				return;
+
+			state.sessions.remove(session);
+
+			if (state.sessions.isEmpty())
+				this.statesByAddress.remove(address);
+		}
+	}
+
+	private void onNotify(ChatTransactionData chatTransactionData) {
+		List<AddressState> states;
+		synchronized (this.statesByAddress) {
+			states = new ArrayList<>(this.statesByAddress.values());
+		}
+
+		for (AddressState state : states) {
+			synchronized (state) {
+				// Group membership or name change, or earlier load failed, so reload from repository
+				if (chatTransactionData == null || !state.isLoaded()) {
+					this.reload(state);
+					continue;
+				}
+
+				try {
+					if (state.apply(chatTransactionData, ActiveChatsTracker::lookupName))
+						this.publish(state);
+				} catch (DataException e) {
+					LOGGER.debug(() -> String.format("Unable to update active chats for %s", state.address), e);
+				}
+			}
+		}
+	}
+
+	private void reload(AddressState state) {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			state.load(repository.getChatRepository().getActiveChats(state.address));
+		} catch (DataException e) {
+			// No output this time?
+			return;
+		}
+
+		this.publish(state);
+	}
+
+	/** Sends state's active chats to its sessions, if output has changed. */
+	private void publish(AddressState state) {
+		StringWriter stringWriter = new StringWriter();
+
+		try {
+			ApiWebSocket.marshall(stringWriter, state.getActiveChats());
+		} catch (IOException e) {
+			return;
+		}
+
+		String output = stringWriter.toString();
+		if (Objects.equals(output, state.output))
+			return;
+
+		state.output = output;
+
+		for (Session session : state.sessions)
+			send(session, output);
+	}
+
+	private static void send(Session session, String output) {
+		try {
+			session.getRemote().sendStringByFuture(output);
+		} catch (WebSocketException e) {
+			// Remote end probably closed
+		}
+	}
+
+	private static String lookupName(String address) throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<NameData> names = repository.getNameRepository().getNamesByOwner(address);
+			return names.isEmpty() ? null : names.get(0).getName();
+		}
+	}
+
+}
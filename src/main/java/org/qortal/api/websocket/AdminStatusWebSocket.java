@@ -14,6 +14,7 @@ import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.qortal.api.model.NodeStatus;
 import org.qortal.controller.Controller;
+import org.qortal.event.AsyncListener.OverflowPolicy;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.event.Listener;
@@ -35,7 +36,7 @@ public class AdminStatusWebSocket extends ApiWebSocket implements Listener {
 			return;
 		}
 
-		EventBus.INSTANCE.addListener(this::listen);
+		EventBus.INSTANCE.addAsyncListener("AdminStatusWebSocket", this::listen, OverflowPolicy.COALESCE);
 	}
 
 	@Override
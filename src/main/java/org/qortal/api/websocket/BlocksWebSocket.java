@@ -16,6 +16,7 @@ import org.qortal.api.ApiError;
 import org.qortal.controller.Controller;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.block.BlockSummaryData;
+import org.qortal.event.AsyncListener.OverflowPolicy;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.event.Listener;
@@ -32,7 +33,7 @@ public class BlocksWebSocket extends ApiWebSocket implements Listener {
 	public void configure(WebSocketServletFactory factory) {
 		factory.register(BlocksWebSocket.class);
 
-		EventBus.INSTANCE.addListener(this::listen);
+		EventBus.INSTANCE.addAsyncListener("BlocksWebSocket", this::listen, OverflowPolicy.DROP_OLDEST);
 	}
 
 	@Override
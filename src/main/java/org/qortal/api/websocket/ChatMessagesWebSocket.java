@@ -104,7 +104,7 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 
 	private void onNotify(Session session, ChatTransactionData chatTransactionData, int txGroupId) {
 		if (chatTransactionData == null)
-			// There has been a group-membership change, but we're not interested
+			// There has been a group-membership or name change, but we're not interested
 			return;
 
 		// We only want group-based messages with our txGroupId
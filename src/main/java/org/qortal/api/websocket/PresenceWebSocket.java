@@ -24,6 +24,7 @@ import org.qortal.controller.Synchronizer;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.transaction.PresenceTransactionData;
 import org.qortal.data.transaction.TransactionData;
+import org.qortal.event.AsyncListener.OverflowPolicy;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.event.Listener;
@@ -95,7 +96,7 @@ public class PresenceWebSocket extends ApiWebSocket implements Listener {
 			return;
 		}
 
-		EventBus.INSTANCE.addListener(this::listen);
+		EventBus.INSTANCE.addAsyncListener("PresenceWebSocket", this::listen, OverflowPolicy.DROP_OLDEST);
 	}
 
 	@Override
@@ -30,6 +30,7 @@ import org.qortal.crosschain.AcctMode;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.crosschain.CrossChainTradeData;
+import org.qortal.event.AsyncListener.OverflowPolicy;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.event.Listener;
@@ -76,7 +77,7 @@ public class TradeOffersWebSocket extends ApiWebSocket implements Listener {
 			return;
 		}
 
-		EventBus.INSTANCE.addListener(this::listen);
+		EventBus.INSTANCE.addAsyncListener("TradeOffersWebSocket", this::listen, OverflowPolicy.DROP_OLDEST);
 	}
 
 	@Override
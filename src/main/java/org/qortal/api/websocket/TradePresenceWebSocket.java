@@ -6,6 +6,7 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.qortal.controller.Controller;
 import org.qortal.controller.tradebot.TradeBot;
 import org.qortal.data.network.TradePresenceData;
+import org.qortal.event.AsyncListener.OverflowPolicy;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.event.Listener;
@@ -29,7 +30,7 @@ public class TradePresenceWebSocket extends ApiWebSocket implements Listener {
 
 		populateCurrentInfo();
 
-		EventBus.INSTANCE.addListener(this::listen);
+		EventBus.INSTANCE.addAsyncListener("TradePresenceWebSocket", this::listen, OverflowPolicy.DROP_OLDEST);
 	}
 
 	@Override
@@ -3,6 +3,8 @@ package org.qortal.arbitrary;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.arbitrary.metadata.ArbitraryDataTransactionMetadata;
+import org.qortal.controller.arbitrary.ArbitraryDataStorageLedger;
+import org.qortal.controller.arbitrary.ArbitraryDataStorageManager;
 import org.qortal.crypto.Crypto;
 import org.qortal.repository.DataException;
 import org.qortal.settings.Settings;
@@ -91,10 +93,12 @@ public class ArbitraryDataFile {
 
         Path outputFilePath = getOutputFilePath(this.hash58, signature, true);
         File outputFile = outputFilePath.toFile();
+        long previousSize = outputFile.length();
         try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
             outputStream.write(fileContent);
             outputStream.close();
             this.filePath = outputFilePath;
+            getStorageLedger().onFileWritten(outputFilePath, previousSize, fileContent.length);
             // Verify hash
             String digest58 = this.digest58();
             if (!this.hash58.equals(digest58)) {
@@ -136,7 +140,9 @@ public class ArbitraryDataFile {
                 else if (!path.equals(arbitraryDataFile.getFilePath())) {
                     // Wrong path, so relocate (but don't cleanup, as the source folder may still be needed by the caller)
                     Path dest = arbitraryDataFile.getFilePath();
+                    long size = Files.size(path);
                     FilesystemUtils.moveFile(path, dest, false);
+                    getStorageLedger().onFileMoved(path, dest, size);
                 }
                 return arbitraryDataFile;
 
@@ -159,7 +165,10 @@ public class ArbitraryDataFile {
         sourcePath = sourcePath.toAbsolutePath();
         Path destPath = outputFilePath.toAbsolutePath();
         try {
-            return Files.copy(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
+            long previousSize = destPath.toFile().length();
+            Path copiedPath = Files.copy(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
+            getStorageLedger().onFileWritten(destPath, previousSize, Files.size(destPath));
+            return copiedPath;
         } catch (IOException e) {
             throw new DataException(String.format("Unable to copy file %s to data directory %s", sourcePath, destPath));
         }
@@ -346,7 +355,9 @@ public class ArbitraryDataFile {
         if (FilesystemUtils.pathInsideDataOrTempPath(this.filePath)) {
             if (Files.exists(this.filePath)) {
                 try {
+                    long size = Files.size(this.filePath);
                     Files.delete(this.filePath);
+                    getStorageLedger().onFileDeleted(this.filePath, size);
                     this.cleanupFilesystem();
                     LOGGER.debug("Deleted file {}", this.filePath);
                     return true;
@@ -408,6 +419,10 @@ public class ArbitraryDataFile {
         return fileDeleted || metadataDeleted || chunksDeleted;
     }
 
+    private static ArbitraryDataStorageLedger getStorageLedger() {
+        return ArbitraryDataStorageManager.getInstance().getStorageLedger();
+    }
+
     protected void cleanupFilesystem() throws IOException {
         // It is essential that use a separate path reference in this method
         // as we don't want to modify this.filePath
@@ -7,7 +7,6 @@ import org.qortal.arbitrary.metadata.ArbitraryDataTransactionMetadata;
 import org.qortal.arbitrary.misc.Service;
 import org.qortal.controller.arbitrary.ArbitraryDataBuildManager;
 import org.qortal.controller.arbitrary.ArbitraryDataManager;
-import org.qortal.controller.arbitrary.ArbitraryDataStorageManager;
 import org.qortal.data.arbitrary.ArbitraryResourceStatus;
 import org.qortal.data.transaction.ArbitraryTransactionData;
 import org.qortal.list.ResourceListManager;
@@ -154,9 +153,6 @@ public class ArbitraryDataResource {
             // Also delete cached data for the entire resource
             this.deleteCache();
 
-            // Invalidate the hosted transactions cache as we have removed an item
-            ArbitraryDataStorageManager.getInstance().invalidateHostedTransactionsCache();
-
             return true;
 
         } catch (DataException | IOException e) {
@@ -79,11 +79,15 @@ public class AT {
 		atRepository.save(this.atData);
 
 		atRepository.save(this.atStateData);
+
+		ExecutableATRegistry.getInstance().onATDeployedOrUndeployed(this.atData.getATAddress());
 	}
 
 	public void undeploy() throws DataException {
 		// AT states deleted implicitly by repository
 		this.repository.getATRepository().delete(this.atData.getATAddress());
+
+		ExecutableATRegistry.getInstance().onATDeployedOrUndeployed(this.atData.getATAddress());
 	}
 
 	/**
@@ -117,7 +121,7 @@ public class AT {
 			throw new IllegalStateException("No previous AT state data found");
 
 		// [Re]create AT machine state using AT state data or from scratch as applicable
-		byte[] codeBytes = this.atData.getCodeBytes();
+		byte[] codeBytes = ATCodeCache.getInstance().getCodeBytes(this.repository, this.atData);
 		MachineState state = MachineState.fromBytes(api, loggerFactory, latestAtStateData.getStateData(), codeBytes);
 		try {
 			api.preExecute(state);
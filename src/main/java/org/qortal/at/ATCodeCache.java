@@ -0,0 +1,109 @@
+package org.qortal.at;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.qortal.controller.Controller;
+import org.qortal.crypto.Crypto;
+import org.qortal.data.at.ATData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.utils.ByteArray;
+
+/**
+ * Bounded cache of AT code, keyed by code hash.
+ * <p>
+ * Most ATs are instances of a handful of ACCTs, e.g. LitecoinACCTv3, so share code.
+ * Only code that matches its hash is cached, so executing ATs can be loaded without their <tt>code_bytes</tt>.
+ */
+public class ATCodeCache {
+
+	/** Maximum number of distinct AT codes to keep */
+	private static final int MAX_ENTRIES = 256;
+
+	private static ATCodeCache instance;
+
+	@SuppressWarnings("serial")
+	private final Map<ByteArray, byte[]> codeByHash = new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteArray, byte[]> eldest) {
+			return this.size() > MAX_ENTRIES;
+		}
+	};
+
+	private ATCodeCache() {
+	}
+
+	public static synchronized ATCodeCache getInstance() {
+		if (instance == null)
+			instance = new ATCodeCache();
+
+		return instance;
+	}
+
+	/**
+	 * Returns AT's code bytes.
+	 * <p>
+	 * If <tt>atData</tt> already has code bytes then those are used,
+	 * otherwise they're taken from cache, or repository if not cached.
+	 *
+	 * @return code bytes, which must not be modified
+	 * @throws DataException if AT's code cannot be found
+	 */
+	public byte[] getCodeBytes(Repository repository, ATData atData) throws DataException {
+		byte[] codeBytes = atData.getCodeBytes();
+		byte[] codeHash = atData.getCodeHash();
+
+		if (codeBytes != null) {
+			if (codeHash != null)
+				this.cacheIfValid(codeHash, codeBytes);
+
+			return codeBytes;
+		}
+
+		Controller.StatsSnapshot.AtExecutionStats stats = Controller.getInstance().getStatsSnapshot().atExecutionStats;
+
+		if (codeHash != null) {
+			synchronized (this.codeByHash) {
+				codeBytes = this.codeByHash.get(ByteArray.wrap(codeHash));
+			}
+
+			if (codeBytes != null) {
+				stats.codeCacheHits.incrementAndGet();
+				return codeBytes;
+			}
+		}
+
+		stats.codeCacheMisses.incrementAndGet();
+
+		ATData fullAtData = repository.getATRepository().fromATAddress(atData.getATAddress());
+		if (fullAtData == null || fullAtData.getCodeBytes() == null)
+			throw new DataException(String.format("Unable to find code for AT %s", atData.getATAddress()));
+
+		codeBytes = fullAtData.getCodeBytes();
+
+		if (codeHash != null)
+			this.cacheIfValid(codeHash, codeBytes);
+
+		return codeBytes;
+	}
+
+	private void cacheIfValid(byte[] codeHash, byte[] codeBytes) {
+		ByteArray key = ByteArray.wrap(codeHash);
+
+		synchronized (this.codeByHash) {
+			if (this.codeByHash.containsKey(key))
+				return;
+		}
+
+		// Hash checked outside lock
+		if (!Arrays.equals(Crypto.digest(codeBytes), codeHash))
+			return;
+
+		synchronized (this.codeByHash) {
+			this.codeByHash.put(key, codeBytes);
+		}
+	}
+
+}
@@ -0,0 +1,343 @@
+package org.qortal.at;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ciyam.at.Timestamp;
+import org.qortal.data.at.ATData;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.block.BlockData;
+import org.qortal.data.transaction.ATTransactionData;
+import org.qortal.data.transaction.MessageTransactionData;
+import org.qortal.data.transaction.PaymentTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.ATRepository;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryFactory;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.transaction.Transaction;
+
+/**
+ * In-memory registry of unfinished ATs, tracking when each can next execute.
+ * <p>
+ * Most ATs spend most of their time asleep, either until a certain height or until a transaction is sent to them.
+ * Rather than loading every unfinished AT, including code, for every block and then asking the repository
+ * whether each AT sleeping until message has received one, the registry keeps:
+ * <ul>
+ * <li>ATs that are awake, or frozen, which run every block</li>
+ * <li>ATs sleeping until a height, ordered by that height</li>
+ * <li>ATs sleeping until a message, by address, which are woken as transactions to them are confirmed</li>
+ * </ul>
+ * so only ATs that can actually wake need loading and running.
+ * <p>
+ * Registry describes repository state as of a particular block and is updated as blocks are processed or orphaned.
+ * If a block doesn't build on the registry's block, e.g. because repository changes were discarded,
+ * then the registry is rebuilt from the repository.
+ * <p>
+ * Registry can return ATs that then don't execute, as {@link AT#run(int, long)} still makes the final decision,
+ * but must never omit an AT that would execute.
+ */
+public class ExecutableATRegistry {
+
+	private static final Logger LOGGER = LogManager.getLogger(ExecutableATRegistry.class);
+
+	private static ExecutableATRegistry instance;
+
+	private static class Entry {
+		private final String atAddress;
+		private final boolean isSleeping;
+		private final Integer sleepUntilHeight;
+		private final boolean isFrozen;
+		private final Long sleepUntilMessageTimestamp;
+		/** Whether a transaction to this AT, newer than sleepUntilMessageTimestamp, has been confirmed */
+		private boolean hasMessage;
+
+		public Entry(ATData atData) {
+			this.atAddress = atData.getATAddress();
+			this.isSleeping = atData.getIsSleeping();
+			this.sleepUntilHeight = atData.getSleepUntilHeight();
+			this.isFrozen = atData.getIsFrozen();
+			this.sleepUntilMessageTimestamp = atData.getSleepUntilMessageTimestamp();
+		}
+
+		public boolean isWaitingForMessage() {
+			return this.sleepUntilMessageTimestamp != null && !this.hasMessage;
+		}
+
+		/** Returns height from which AT might wake, or null if AT is awake or can only be woken by message. */
+		public Integer getWakeHeight() {
+			// See QortalATAPI.willExecute()
+			if (this.sleepUntilMessageTimestamp != null)
+				return !this.hasMessage && this.sleepUntilHeight != null && this.sleepUntilHeight != 0 ? this.sleepUntilHeight : null;
+
+			// Frozen ATs are run regardless, see AT.run()
+			if (this.isSleeping && !this.isFrozen)
+				return this.sleepUntilHeight;
+
+			return null;
+		}
+
+		public boolean isAwake() {
+			if (this.sleepUntilMessageTimestamp != null)
+				return this.hasMessage;
+
+			return this.getWakeHeight() == null;
+		}
+	}
+
+	/** Repository that entries were loaded from */
+	private RepositoryFactory repositoryFactory;
+	/** Signature of block that entries are valid for, or null if registry needs rebuilding */
+	private byte[] blockSignature;
+
+	private final Map<String, Entry> entries = new HashMap<>();
+	/** ATs that run every block */
+	private final Set<String> awakeATs = new HashSet<>();
+	/** Sleeping ATs, keyed by height from which they might wake */
+	private final NavigableMap<Integer, Set<String>> sleepingATsByHeight = new TreeMap<>();
+	/** ATs sleeping until message, keyed by AT address */
+	private final Map<String, Entry> messageWaitingATs = new HashMap<>();
+
+	/** ATs deployed/undeployed since last block processed/orphaned */
+	private final Set<String> touchedATs = new HashSet<>();
+
+	private ExecutableATRegistry() {
+	}
+
+	public static synchronized ExecutableATRegistry getInstance() {
+		if (instance == null)
+			instance = new ExecutableATRegistry();
+
+		return instance;
+	}
+
+	/**
+	 * Returns ATs that might execute in block at <tt>height</tt>, ordered by earliest creation date first.
+	 * <p>
+	 * If block doesn't build on repository's latest block, then all executable ATs are returned.
+	 *
+	 * @param repository
+	 * @param parentSignature signature of block's parent
+	 * @param height height of block
+	 * @return list of ATs, possibly empty
+	 * @throws DataException
+	 */
+	public synchronized List<ATData> getExecutableATs(Repository repository, byte[] parentSignature, int height) throws DataException {
+		if (!this.isValidFor(parentSignature) && !this.rebuild(repository, parentSignature))
+			return repository.getATRepository().getAllExecutableATs();
+
+		Set<String> atAddresses = new HashSet<>(this.awakeATs);
+
+		// Sleeping ATs might wake once height is reached
+		for (Set<String> sleepingATs : this.sleepingATsByHeight.headMap(height, true).values())
+			atAddresses.addAll(sleepingATs);
+
+		if (atAddresses.isEmpty())
+			return new ArrayList<>();
+
+		return repository.getATRepository().getExecutableATs(atAddresses);
+	}
+
+	/** Notes that AT has been deployed or undeployed, so it can be refreshed at end of block. */
+	public synchronized void onATDeployedOrUndeployed(String atAddress) {
+		this.touchedATs.add(atAddress);
+	}
+
+	/**
+	 * Updates registry after block has been processed.
+	 * <p>
+	 * Must be called after block's transactions have been linked to block.
+	 */
+	public synchronized void onBlockProcessed(Repository repository, BlockData blockData, List<Transaction> transactions, List<ATStateData> atStates) throws DataException {
+		Set<String> changedATs = new HashSet<>(this.touchedATs);
+		this.touchedATs.clear();
+
+		if (!this.isValidFor(blockData.getReference())) {
+			this.invalidate();
+			return;
+		}
+
+		atStates.forEach(atStateData -> changedATs.add(atStateData.getATAddress()));
+
+		ATRepository atRepository = repository.getATRepository();
+		for (String atAddress : changedATs)
+			this.refresh(atRepository, atAddress);
+
+		// Wake ATs sleeping until message if this block contains a transaction to them
+		final int height = blockData.getHeight();
+
+		for (int sequence = 0; sequence < transactions.size(); ++sequence) {
+			String recipient = getRecipient(transactions.get(sequence).getTransactionData());
+			if (recipient == null)
+				continue;
+
+			Entry entry = this.messageWaitingATs.get(recipient);
+			if (entry == null)
+				continue;
+
+			// Same test as ATRepository.findNextTransaction()
+			Timestamp previousTxTimestamp = new Timestamp(entry.sleepUntilMessageTimestamp);
+			if (height > previousTxTimestamp.blockHeight
+					|| (height == previousTxTimestamp.blockHeight && sequence > previousTxTimestamp.transactionSequence)) {
+				this.remove(entry.atAddress);
+				entry.hasMessage = true;
+				this.add(entry);
+			}
+		}
+
+		this.blockSignature = blockData.getSignature();
+	}
+
+	/**
+	 * Updates registry after block has been orphaned.
+	 * <p>
+	 * Must be called after block's transactions have been unlinked from block.
+	 */
+	public synchronized void onBlockOrphaned(Repository repository, BlockData blockData, List<ATStateData> atStates) throws DataException {
+		Set<String> changedATs = new HashSet<>(this.touchedATs);
+		this.touchedATs.clear();
+
+		if (!this.isValidFor(blockData.getSignature())) {
+			this.invalidate();
+			return;
+		}
+
+		atStates.forEach(atStateData -> changedATs.add(atStateData.getATAddress()));
+
+		// Messages that woke ATs might have been in this block
+		this.entries.values().stream()
+				.filter(entry -> entry.hasMessage)
+				.forEach(entry -> changedATs.add(entry.atAddress));
+
+		ATRepository atRepository = repository.getATRepository();
+		for (String atAddress : changedATs)
+			this.refresh(atRepository, atAddress);
+
+		this.blockSignature = blockData.getReference();
+	}
+
+	/** Discards all entries, forcing rebuild from repository when next needed. */
+	public synchronized void invalidate() {
+		this.repositoryFactory = null;
+		this.blockSignature = null;
+
+		this.entries.clear();
+		this.awakeATs.clear();
+		this.sleepingATsByHeight.clear();
+		this.messageWaitingATs.clear();
+		this.touchedATs.clear();
+	}
+
+	private boolean isValidFor(byte[] signature) {
+		return this.blockSignature != null
+				&& this.repositoryFactory == RepositoryManager.getRepositoryFactory()
+				&& Arrays.equals(this.blockSignature, signature);
+	}
+
+	/** Rebuilds registry from repository, returning false if repository's latest block isn't <tt>parentSignature</tt>. */
+	private boolean rebuild(Repository repository, byte[] parentSignature) throws DataException {
+		this.invalidate();
+
+		BlockData latestBlockData = repository.getBlockRepository().getLastBlock();
+		if (latestBlockData == null || !Arrays.equals(latestBlockData.getSignature(), parentSignature))
+			return false;
+
+		ATRepository atRepository = repository.getATRepository();
+		for (ATData atData : atRepository.getAllExecutableATs())
+			this.add(this.buildEntry(atRepository, atData));
+
+		this.repositoryFactory = RepositoryManager.getRepositoryFactory();
+		this.blockSignature = parentSignature;
+
+		LOGGER.debug(() -> String.format("Rebuilt executable AT registry at height %d: %d awake, %d sleeping until height, %d waiting for message",
+				latestBlockData.getHeight(), this.awakeATs.size(), this.sleepingATsByHeight.values().stream().mapToInt(Set::size).sum(),
+				this.messageWaitingATs.size()));
+
+		return true;
+	}
+
+	private void refresh(ATRepository atRepository, String atAddress) throws DataException {
+		this.remove(atAddress);
+
+		ATData atData = atRepository.fromATAddress(atAddress);
+		if (atData == null || atData.getIsFinished())
+			return;
+
+		this.add(this.buildEntry(atRepository, atData));
+	}
+
+	private Entry buildEntry(ATRepository atRepository, ATData atData) throws DataException {
+		Entry entry = new Entry(atData);
+
+		if (entry.sleepUntilMessageTimestamp != null) {
+			// Message might already have been confirmed
+			Timestamp previousTxTimestamp = new Timestamp(entry.sleepUntilMessageTimestamp);
+			entry.hasMessage = atRepository.findNextTransaction(entry.atAddress,
+					previousTxTimestamp.blockHeight,
+					previousTxTimestamp.transactionSequence) != null;
+		}
+
+		return entry;
+	}
+
+	private void add(Entry entry) {
+		this.entries.put(entry.atAddress, entry);
+
+		if (entry.isAwake())
+			this.awakeATs.add(entry.atAddress);
+
+		Integer wakeHeight = entry.getWakeHeight();
+		if (wakeHeight != null)
+			this.sleepingATsByHeight.computeIfAbsent(wakeHeight, height -> new HashSet<>()).add(entry.atAddress);
+
+		if (entry.isWaitingForMessage())
+			this.messageWaitingATs.put(entry.atAddress, entry);
+	}
+
+	private void remove(String atAddress) {
+		Entry entry = this.entries.remove(atAddress);
+		if (entry == null)
+			return;
+
+		this.awakeATs.remove(atAddress);
+
+		Integer wakeHeight = entry.getWakeHeight();
+		if (wakeHeight != null) {
+			Set<String> sleepingATs = this.sleepingATsByHeight.get(wakeHeight);
+			sleepingATs.remove(atAddress);
+
+			if (sleepingATs.isEmpty())
+				this.sleepingATsByHeight.remove(wakeHeight);
+		}
+
+		this.messageWaitingATs.remove(atAddress);
+	}
+
+	/** Returns recipient of transaction types that can wake an AT, see ATRepository.findNextTransaction(). */
+	private static String getRecipient(TransactionData transactionData) {
+		switch (transactionData.getType()) {
+			case PAYMENT:
+				return ((PaymentTransactionData) transactionData).getRecipient();
+
+			case MESSAGE:
+				return ((MessageTransactionData) transactionData).getRecipient();
+
+			case AT:
+				return ((ATTransactionData) transactionData).getRecipient();
+
+			default:
+				return null;
+		}
+	}
+
+}
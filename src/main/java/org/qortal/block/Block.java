@@ -20,8 +20,10 @@ import org.qortal.account.PrivateKeyAccount;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.asset.Asset;
 import org.qortal.at.AT;
+import org.qortal.at.ExecutableATRegistry;
 import org.qortal.block.BlockChain.BlockTimingByHeight;
 import org.qortal.block.BlockChain.AccountLevelShareBin;
+import org.qortal.controller.Controller;
 import org.qortal.controller.OnlineAccountsManager;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.account.AccountBalanceData;
@@ -40,6 +42,7 @@ import org.qortal.repository.ATRepository;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.TransactionRepository;
+import org.qortal.settings.Settings;
 import org.qortal.transaction.AtTransaction;
 import org.qortal.transaction.Transaction;
 import org.qortal.transaction.Transaction.ApprovalStatus;
@@ -50,6 +53,7 @@ import org.qortal.transform.block.BlockTransformer;
 import org.qortal.transform.transaction.TransactionTransformer;
 import org.qortal.utils.Amounts;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
 import org.qortal.utils.NTP;
 
 import com.google.common.primitives.Bytes;
@@ -112,6 +116,8 @@ public class Block {
 	private static final int ACCOUNTS_COUNT_SHIFT = Transformer.PUBLIC_KEY_LENGTH * 8;
 	/** Number of left-shifts to apply to previous block's weight when calculating a chain's weight. */
 	private static final int CHAIN_WEIGHT_SHIFT = 8;
+	/** Minimum number of online accounts signatures needing verification before it's worth doing so in parallel. */
+	private static final int MIN_PARALLEL_ONLINE_ACCOUNTS_VERIFICATIONS = 32;
 
 	/** Sorted list of transactions attached to this block */
 	protected List<Transaction> transactions;
@@ -224,6 +230,11 @@ public class Block {
 	/** Opportunistic cache of this block's valid online reward-shares. Only created by call to isValid(). */
 	private List<RewardShareData> cachedOnlineRewardShares = null;
 
+	/** Whether preValidate() found minter, transactions and plain transaction signatures valid. None depend on repository state. */
+	private boolean areSignaturesPreVerified = false;
+	/** Online accounts whose signatures were verified by preValidate(), keyed by signature. */
+	private Map<ByteArray, OnlineAccountData> preVerifiedOnlineAccounts = null;
+
 	// Other useful constants
 
 	public static final BigInteger MAX_DISTANCE;
@@ -894,29 +905,63 @@ public class Block {
 		this.calcTransactionsSignature();
 
 		this.blockData.setSignature(this.getSignature());
+
+		this.areSignaturesPreVerified = false;
 	}
 
 	/**
 	 * Returns whether this block's signatures are valid.
+	 * <p>
+	 * Checks minter's signature, each transaction's own signature (except AT transactions)
+	 * and the transactions signature. Signatures already verified by {@link #preValidate(Repository)} are skipped,
+	 * but transactions with further signature checks, e.g. proof-of-work nonce, are always checked here
+	 * as those checks might depend on current repository state.
 	 * 
-	 * @return true if both minter and transaction signatures are valid, false otherwise
+	 * @return true if minter, transaction and transactions signatures are valid, false otherwise
 	 */
 	public boolean isSignatureValid() {
 		try {
-			// Check minter's signature first
-			if (!this.minter.verify(this.blockData.getMinterSignature(), BlockTransformer.getBytesForMinterSignature(this.blockData)))
+			if (!this.areSignaturesPreVerified && !this.arePlainSignaturesValid(this.getTransactions()))
 				return false;
 
-			// Check transactions signature
-			if (!this.minter.verify(this.blockData.getTransactionsSignature(), BlockTransformer.getBytesForTransactionsSignature(this)))
-				return false;
-		} catch (TransformationException e) {
+			for (Transaction transaction : this.getTransactions()) {
+				// AT transactions aren't signed, and plain signatures were checked above
+				if (transaction.getTransactionData().getType() == TransactionType.AT || transaction.hasPlainSignature())
+					continue;
+
+				if (!transaction.isSignatureValid())
+					return false;
+			}
+		} catch (TransformationException | DataException e) {
 			return false;
 		}
 
 		return true;
 	}
 
+	/**
+	 * Returns whether minter's signature, transactions signature and each transaction's plain signature
+	 * (see {@link Transaction#hasPlainSignature()}) are valid. Doesn't access repository.
+	 */
+	private boolean arePlainSignaturesValid(List<Transaction> transactions) throws TransformationException, DataException {
+		// Check minter's signature first
+		if (!this.minter.verify(this.blockData.getMinterSignature(), BlockTransformer.getBytesForMinterSignature(this.blockData)))
+			return false;
+
+		// Check each transaction's signature, leaving others for isSignatureValid()
+		for (Transaction transaction : transactions) {
+			// AT transactions aren't signed
+			if (transaction.getTransactionData().getType() == TransactionType.AT || !transaction.hasPlainSignature())
+				continue;
+
+			if (!transaction.isSignatureValid())
+				return false;
+		}
+
+		// Check transactions signature, without verifying each transaction's signature again
+		return this.minter.verify(this.blockData.getTransactionsSignature(), BlockTransformer.getBytesForTransactionsSignature(this, false));
+	}
+
 	/**
 	 * Returns whether Block's timestamp is valid.
 	 * <p>
@@ -956,6 +1001,78 @@ public class Block {
 		return ValidationResult.OK;
 	}
 
+	/**
+	 * Performs stateless checks that don't need the blockchain lock, e.g. while block is still being synchronized.
+	 * <p>
+	 * Checks block's minter signature, transactions signature and each transaction's plain signature,
+	 * remembering if they're valid so {@link #isSignatureValid()} doesn't repeat the work under the blockchain lock.
+	 * Transactions with further signature checks that might depend on repository state, e.g. CHAT proof-of-work difficulty,
+	 * are left for {@link #isSignatureValid()}. Block's transactions must already be loaded, e.g. block received from peer,
+	 * otherwise signatures are left for {@link #isSignatureValid()} too.
+	 * Also verifies online accounts' signatures, using reward-shares from <tt>repository</tt>'s current state.
+	 * Those that verify are skipped by {@link #areOnlineAccountsValid()} later, but only if the block's online accounts
+	 * still resolve to the same public keys by then, so this never affects the outcome of validation.
+	 * <p>
+	 * Can be called from a thread other than the one that will validate and process this block,
+	 * but the two must not run concurrently.
+	 *
+	 * @param repository repository session, separate from this block's, for looking up reward-shares
+	 * @return false if block's signatures are invalid, true if valid or left for later checks
+	 * @throws DataException
+	 */
+	public boolean preValidate(Repository repository) throws DataException {
+		// Loading transactions would use this block's repository session, which belongs to another thread
+		if (this.transactions == null)
+			return true;
+
+		try {
+			if (!this.arePlainSignaturesValid(this.transactions))
+				return false;
+		} catch (TransformationException e) {
+			return false;
+		}
+
+		this.areSignaturesPreVerified = true;
+
+		// Doesn't apply for Genesis block!
+		if (this.blockData.getHeight() != null && this.blockData.getHeight() == 1)
+			return true;
+
+		// If block is past a certain age then online accounts signatures won't be checked anyway
+		long signatureRequirementThreshold = NTP.getTime() - BlockChain.getInstance().getOnlineAccountSignaturesMinLifetime();
+		if (this.blockData.getTimestamp() < signatureRequirementThreshold)
+			return true;
+
+		// Anything malformed is left for areOnlineAccountsValid() to report
+		ConciseSet accountIndexes = BlockTransformer.decodeOnlineAccounts(this.blockData.getEncodedOnlineAccounts());
+		if (accountIndexes.size() != this.blockData.getOnlineAccountsCount())
+			return true;
+
+		List<RewardShareData> onlineRewardShares = repository.getAccountRepository().getRewardSharesByIndexes(accountIndexes.toArray());
+		if (onlineRewardShares == null)
+			return true;
+
+		if (this.blockData.getOnlineAccountsSignatures() == null
+				|| this.blockData.getOnlineAccountsSignatures().length != onlineRewardShares.size() * Transformer.SIGNATURE_LENGTH)
+			return true;
+
+		long onlineTimestamp = this.blockData.getOnlineAccountsTimestamp();
+		List<byte[]> onlineAccountsSignatures = BlockTransformer.decodeTimestampSignatures(this.blockData.getOnlineAccountsSignatures());
+
+		Map<ByteArray, OnlineAccountData> verifiedOnlineAccounts = new HashMap<>();
+		for (int i = 0; i < onlineAccountsSignatures.size(); ++i) {
+			OnlineAccountData onlineAccountData = new OnlineAccountData(onlineTimestamp, onlineAccountsSignatures.get(i),
+					onlineRewardShares.get(i).getRewardSharePublicKey());
+
+			// Invalid signatures are left for areOnlineAccountsValid() to report
+			if (isOnlineAccountSignatureValid(onlineAccountData))
+				verifiedOnlineAccounts.put(ByteArray.wrap(onlineAccountData.getSignature()), onlineAccountData);
+		}
+
+		this.preVerifiedOnlineAccounts = verifiedOnlineAccounts;
+		return true;
+	}
+
 	public ValidationResult areOnlineAccountsValid() throws DataException {
 		// Doesn't apply for Genesis block!
 		if (this.blockData.getHeight() != null && this.blockData.getHeight() == 1)
@@ -984,20 +1101,17 @@ public class Block {
 
 		// Check signatures
 		long onlineTimestamp = this.blockData.getOnlineAccountsTimestamp();
-		byte[] onlineTimestampBytes = Longs.toByteArray(onlineTimestamp);
 
-		// If this block is much older than current online timestamp, then there's no point checking current online accounts
-		List<OnlineAccountData> currentOnlineAccounts = onlineTimestamp < NTP.getTime() - OnlineAccountsManager.ONLINE_TIMESTAMP_MODULUS
-				? null
-				: OnlineAccountsManager.getInstance().getOnlineAccounts();
-		List<OnlineAccountData> latestBlocksOnlineAccounts = OnlineAccountsManager.getInstance().getLatestBlocksOnlineAccounts();
+		OnlineAccountsManager onlineAccountsManager = OnlineAccountsManager.getInstance();
 
 		// Extract online accounts' timestamp signatures from block data
 		List<byte[]> onlineAccountsSignatures = BlockTransformer.decodeTimestampSignatures(this.blockData.getOnlineAccountsSignatures());
 
 		// We'll build up a list of online accounts to hand over to Controller if block is added to chain
-		// and this will become latestBlocksOnlineAccounts (above) to reduce CPU load when we process next block...
+		// and this will become OnlineAccountsManager's latest blocks online accounts, to reduce CPU load when we process next block...
 		List<OnlineAccountData> ourOnlineAccounts = new ArrayList<>();
+		// Online accounts not found in caches, so needing Ed25519 verify
+		List<OnlineAccountData> unverifiedOnlineAccounts = new ArrayList<>();
 
 		for (int i = 0; i < onlineAccountsSignatures.size(); ++i) {
 			byte[] signature = onlineAccountsSignatures.get(i);
@@ -1007,19 +1121,23 @@ public class Block {
 			ourOnlineAccounts.add(onlineAccountData);
 
 			// If signature is still current then no need to perform Ed25519 verify
-			if (currentOnlineAccounts != null && currentOnlineAccounts.remove(onlineAccountData))
-				// remove() returned true, so online account still current
-				// and one less entry in currentOnlineAccounts to check next time
+			if (onlineAccountsManager.isKnownOnlineAccount(onlineAccountData))
 				continue;
 
 			// If signature was okay in latest block then no need to perform Ed25519 verify
-			if (latestBlocksOnlineAccounts != null && latestBlocksOnlineAccounts.contains(onlineAccountData))
+			if (onlineAccountsManager.isLatestBlocksOnlineAccount(onlineAccountData))
+				continue;
+
+			// If signature, with same public key, was verified by preValidate() then no need to perform Ed25519 verify
+			if (this.preVerifiedOnlineAccounts != null && onlineAccountData.equals(this.preVerifiedOnlineAccounts.get(ByteArray.wrap(signature))))
 				continue;
 
-			if (!Crypto.verify(publicKey, signature, onlineTimestampBytes))
-				return ValidationResult.ONLINE_ACCOUNT_SIGNATURE_INCORRECT;
+			unverifiedOnlineAccounts.add(onlineAccountData);
 		}
 
+		if (!areOnlineAccountsSignaturesValid(unverifiedOnlineAccounts, Settings.getInstance().isParallelOnlineAccountsVerificationEnabled()))
+			return ValidationResult.ONLINE_ACCOUNT_SIGNATURE_INCORRECT;
+
 		// All online accounts valid, so save our list of online accounts for potential later use
 		this.cachedValidOnlineAccounts = ourOnlineAccounts;
 		this.cachedOnlineRewardShares = onlineRewardShares;
@@ -1028,6 +1146,31 @@ public class Block {
 	}
 
 
+	/**
+	 * Returns whether all online accounts' timestamp signatures are valid.
+	 * <p>
+	 * If <tt>inParallel</tt> is true, and there are enough signatures to make it worthwhile,
+	 * then signatures are verified using the fork-join pool, stopping early on first invalid signature.
+	 * Either way the result is the same.
+	 */
+	public static boolean areOnlineAccountsSignaturesValid(List<OnlineAccountData> onlineAccounts, boolean inParallel) {
+		if (!inParallel || onlineAccounts.size() < MIN_PARALLEL_ONLINE_ACCOUNTS_VERIFICATIONS) {
+			for (OnlineAccountData onlineAccountData : onlineAccounts)
+				if (!isOnlineAccountSignatureValid(onlineAccountData))
+					return false;
+
+			return true;
+		}
+
+		// allMatch() short-circuits, so remaining verifications are skipped after first failure
+		return onlineAccounts.parallelStream().allMatch(Block::isOnlineAccountSignatureValid);
+	}
+
+	private static boolean isOnlineAccountSignatureValid(OnlineAccountData onlineAccountData) {
+		byte[] onlineTimestampBytes = Longs.toByteArray(onlineAccountData.getTimestamp());
+		return Crypto.verify(onlineAccountData.getPublicKey(), onlineAccountData.getSignature(), onlineTimestampBytes);
+	}
+
 	/**
 	 * Returns whether Block is valid.
 	 * <p>
@@ -1103,69 +1246,13 @@ public class Block {
 			// Create repository savepoint here so we can rollback to it after testing transactions
 			repository.setSavepoint();
 
-			if (this.blockData.getHeight() == 212937) {
-				// Apply fix for block 212937 but fix will be rolled back before we exit method
-				Block212937.processFix(this);
-			}
-			else if (InvalidNameRegistrationBlocks.isAffectedBlock(this.blockData.getHeight())) {
-				// Apply fix for affected name registration blocks, but fix will be rolled back before we exit method
-				InvalidNameRegistrationBlocks.processFix(this);
-			}
+			// Fixes will be rolled back before we exit method
+			this.processValidationFixes();
 
 			for (Transaction transaction : this.getTransactions()) {
-				TransactionData transactionData = transaction.getTransactionData();
-
-				// Skip AT transactions as they are covered by prior call to Block.areAtsValid()
-				if (transactionData.getType() == TransactionType.AT)
-					continue;
-
-				// GenesisTransactions are not allowed (GenesisBlock overrides isValid() to allow them)
-				if (transactionData.getType() == TransactionType.GENESIS || transactionData.getType() == TransactionType.ACCOUNT_FLAGS)
-					return ValidationResult.GENESIS_TRANSACTIONS_INVALID;
-
-				// Check timestamp and deadline
-				if (transactionData.getTimestamp() > this.blockData.getTimestamp()
-						|| transaction.getDeadline() <= this.blockData.getTimestamp())
-					return ValidationResult.TRANSACTION_TIMESTAMP_INVALID;
-
-				// Check transaction isn't already included in a block
-				if (this.repository.getTransactionRepository().isConfirmed(transactionData.getSignature()))
-					return ValidationResult.TRANSACTION_ALREADY_PROCESSED;
-
-				// Check transaction has correct reference, etc.
-				if (!transaction.hasValidReference()) {
-					LOGGER.debug(String.format("Error during transaction validation, tx %s: INVALID_REFERENCE", Base58.encode(transactionData.getSignature())));
-					return ValidationResult.TRANSACTION_INVALID;
-				}
-
-				// Check transaction is even valid
-				// NOTE: in Gen1 there was an extra block height passed to DeployATTransaction.isValid
-				Transaction.ValidationResult validationResult = transaction.isValid();
-				if (validationResult != Transaction.ValidationResult.OK) {
-					LOGGER.debug(String.format("Error during transaction validation, tx %s: %s", Base58.encode(transactionData.getSignature()), validationResult.name()));
-					return ValidationResult.TRANSACTION_INVALID;
-				}
-
-				// Check transaction can even be processed
-				validationResult = transaction.isProcessable();
-				if (validationResult != Transaction.ValidationResult.OK) {
-					LOGGER.info(String.format("Error during transaction validation, tx %s: %s", Base58.encode(transactionData.getSignature()), validationResult.name()));
-					return ValidationResult.TRANSACTION_INVALID;
-				}
-
-				// Process transaction to make sure other transactions validate properly
-				try {
-					// Only process transactions that don't require group-approval.
-					// Group-approval transactions are dealt with later.
-					if (transactionData.getApprovalStatus() == ApprovalStatus.NOT_REQUIRED)
-						transaction.process();
-
-					// Regardless of group-approval, update relevant info for creator (e.g. lastReference)
-					transaction.processReferencesAndFees();
-				} catch (Exception e) {
-					LOGGER.error(String.format("Exception during transaction validation, tx %s", Base58.encode(transactionData.getSignature())), e);
-					return ValidationResult.TRANSACTION_PROCESSING_FAILED;
-				}
+				ValidationResult validationResult = this.testProcessTransaction(transaction);
+				if (validationResult != ValidationResult.OK)
+					return validationResult;
 			}
 		} catch (DataException e) {
 			return ValidationResult.TRANSACTION_INVALID;
@@ -1183,6 +1270,158 @@ public class Block {
 		return ValidationResult.OK;
 	}
 
+	/**
+	 * Adds those <tt>candidates</tt> that are valid, trying them in passed order, until we run out.
+	 * <p>
+	 * Equivalent to calling {@link #addTransaction(TransactionData)} then {@link #isValid()} for each candidate,
+	 * deleting it again if block became invalid, but each candidate is only validated and test-processed once,
+	 * on top of block's existing transactions and previously accepted candidates.
+	 * Each candidate has its own savepoint, so rejecting a candidate only rolls back that candidate.
+	 * All test-processing is rolled back before returning.
+	 * <p>
+	 * Candidates that don't fit are skipped, as a smaller candidate might still fit.
+	 * <p>
+	 * Only transactions are checked, so caller should still call {@link #isValid()} once block is assembled.
+	 * As candidates might be processed in a different order to block's final transaction order,
+	 * that check could, rarely, fail where the caller would need to fall back to the slower approach.
+	 * <p>
+	 * Used when constructing a new block during minting.
+	 * 
+	 * @param candidates transactions to try, in order of preference
+	 * @return number of candidates skipped as invalid, excluding those that didn't fit
+	 * @throws DataException
+	 * @throws IllegalStateException
+	 *             if block's existing transactions are invalid, or block's {@code minter} is not a {@code PrivateKeyAccount}.
+	 */
+	public int addValidTransactions(List<TransactionData> candidates) throws DataException {
+		int skippedCount = 0;
+
+		try (AccountRefCache accountRefCache = new AccountRefCache(repository)) {
+			// Savepoint so we can rollback all test-processing before we return
+			repository.setSavepoint();
+
+			try {
+				this.processValidationFixes();
+
+				// Start from block's existing transactions
+				for (Transaction transaction : this.getTransactions())
+					if (this.testProcessTransaction(transaction) != ValidationResult.OK)
+						throw new IllegalStateException("Block's existing transactions are invalid");
+
+				for (TransactionData transactionData : candidates) {
+					if (!this.addTransaction(transactionData))
+						// No room for this candidate
+						continue;
+
+					Transaction transaction = Transaction.fromData(this.repository, transactionData);
+
+					repository.setSavepoint();
+
+					ValidationResult validationResult;
+					try {
+						validationResult = this.testProcessTransaction(transaction);
+					} catch (DataException e) {
+						validationResult = ValidationResult.TRANSACTION_INVALID;
+					}
+
+					if (validationResult == ValidationResult.OK) {
+						// Keep candidate's changes for checking later candidates
+						repository.releaseSavepoint();
+						continue;
+					}
+
+					// Undo only this candidate
+					repository.rollbackToSavepoint();
+					this.deleteTransaction(transactionData);
+					++skippedCount;
+
+					LOGGER.debug(String.format("Skipping invalid transaction %s during block assembly: %s",
+							Base58.encode(transactionData.getSignature()), validationResult.name()));
+				}
+			} finally {
+				// Rollback repository changes made by test-processing transactions above
+				repository.rollbackToSavepoint();
+			}
+		}
+
+		return skippedCount;
+	}
+
+	/** Applies fixes needed before validating transactions of specific historic blocks. */
+	private void processValidationFixes() throws DataException {
+		if (this.blockData.getHeight() == 212937) {
+			// Apply fix for block 212937
+			Block212937.processFix(this);
+		}
+		else if (InvalidNameRegistrationBlocks.isAffectedBlock(this.blockData.getHeight())) {
+			// Apply fix for affected name registration blocks
+			InvalidNameRegistrationBlocks.processFix(this);
+		}
+	}
+
+	/**
+	 * Validates transaction, as part of this block, then processes it so following transactions validate properly.
+	 * <p>
+	 * Caller is expected to have set up an {@link AccountRefCache} and a savepoint to rollback to.
+	 */
+	private ValidationResult testProcessTransaction(Transaction transaction) throws DataException {
+		TransactionData transactionData = transaction.getTransactionData();
+
+		// Skip AT transactions as they are covered by prior call to Block.areAtsValid()
+		if (transactionData.getType() == TransactionType.AT)
+			return ValidationResult.OK;
+
+		// GenesisTransactions are not allowed (GenesisBlock overrides isValid() to allow them)
+		if (transactionData.getType() == TransactionType.GENESIS || transactionData.getType() == TransactionType.ACCOUNT_FLAGS)
+			return ValidationResult.GENESIS_TRANSACTIONS_INVALID;
+
+		// Check timestamp and deadline
+		if (transactionData.getTimestamp() > this.blockData.getTimestamp()
+				|| transaction.getDeadline() <= this.blockData.getTimestamp())
+			return ValidationResult.TRANSACTION_TIMESTAMP_INVALID;
+
+		// Check transaction isn't already included in a block
+		if (this.repository.getTransactionRepository().isConfirmed(transactionData.getSignature()))
+			return ValidationResult.TRANSACTION_ALREADY_PROCESSED;
+
+		// Check transaction has correct reference, etc.
+		if (!transaction.hasValidReference()) {
+			LOGGER.debug(String.format("Error during transaction validation, tx %s: INVALID_REFERENCE", Base58.encode(transactionData.getSignature())));
+			return ValidationResult.TRANSACTION_INVALID;
+		}
+
+		// Check transaction is even valid
+		// NOTE: in Gen1 there was an extra block height passed to DeployATTransaction.isValid
+		Transaction.ValidationResult validationResult = transaction.isValid();
+		if (validationResult != Transaction.ValidationResult.OK) {
+			LOGGER.debug(String.format("Error during transaction validation, tx %s: %s", Base58.encode(transactionData.getSignature()), validationResult.name()));
+			return ValidationResult.TRANSACTION_INVALID;
+		}
+
+		// Check transaction can even be processed
+		validationResult = transaction.isProcessable();
+		if (validationResult != Transaction.ValidationResult.OK) {
+			LOGGER.info(String.format("Error during transaction validation, tx %s: %s", Base58.encode(transactionData.getSignature()), validationResult.name()));
+			return ValidationResult.TRANSACTION_INVALID;
+		}
+
+		// Process transaction to make sure other transactions validate properly
+		try {
+			// Only process transactions that don't require group-approval.
+			// Group-approval transactions are dealt with later.
+			if (transactionData.getApprovalStatus() == ApprovalStatus.NOT_REQUIRED)
+				transaction.process();
+
+			// Regardless of group-approval, update relevant info for creator (e.g. lastReference)
+			transaction.processReferencesAndFees();
+		} catch (Exception e) {
+			LOGGER.error(String.format("Exception during transaction validation, tx %s", Base58.encode(transactionData.getSignature())), e);
+			return ValidationResult.TRANSACTION_PROCESSING_FAILED;
+		}
+
+		return ValidationResult.OK;
+	}
+
 	/**
 	 * Returns whether blocks' ATs are valid.
 	 * <p>
@@ -1256,8 +1495,11 @@ public class Block {
 		this.ourAtStates = new ArrayList<>();
 		this.ourAtFees = 0;
 
-		// Find all executable ATs, ordered by earliest creation date first
-		List<ATData> executableATs = this.repository.getATRepository().getAllExecutableATs();
+		final long startTime = System.nanoTime();
+
+		// Find executable ATs that can wake at this height, ordered by earliest creation date first
+		List<ATData> executableATs = ExecutableATRegistry.getInstance().getExecutableATs(this.repository,
+				this.blockData.getReference(), this.blockData.getHeight());
 
 		// Run each AT, appends AT-Transactions and corresponding AT states, to our lists
 		for (ATData atData : executableATs) {
@@ -1273,6 +1515,15 @@ public class Block {
 			this.ourAtFees += atStateData.getFees();
 		}
 
+		final long executionMicros = (System.nanoTime() - startTime) / 1000L;
+
+		Controller.StatsSnapshot.AtExecutionStats atExecutionStats = Controller.getInstance().getStatsSnapshot().atExecutionStats;
+		atExecutionStats.blocks.incrementAndGet();
+		atExecutionStats.atsLoaded.addAndGet(executableATs.size());
+		atExecutionStats.atsExecuted.addAndGet(this.ourAtStates.size());
+		atExecutionStats.totalExecutionMicros.addAndGet(executionMicros);
+		atExecutionStats.latestExecutionMicros.set(executionMicros);
+
 		// AT Transactions never need approval
 		allAtTransactions.forEach(transaction -> transaction.getTransactionData().setApprovalStatus(ApprovalStatus.NOT_REQUIRED));
 
@@ -1365,6 +1616,9 @@ public class Block {
 		// Also update "transaction participants" in repository for "transactions involving X" support in API
 		linkTransactionsToBlock();
 
+		// Keep track of which ATs can wake in next block
+		ExecutableATRegistry.getInstance().onBlockProcessed(this.repository, this.blockData, this.transactions, this.ourAtStates);
+
 		postBlockTidy();
 
 		// Give Controller our cached, valid online accounts data (if any) to help reduce CPU load for next block
@@ -1582,6 +1836,10 @@ public class Block {
 
 		// Delete block from blockchain
 		this.repository.getBlockRepository().delete(this.blockData);
+
+		// Keep track of which ATs can wake in next block
+		ExecutableATRegistry.getInstance().onBlockOrphaned(this.repository, this.blockData, this.getATStates());
+
 		this.blockData.setHeight(null);
 
 		postBlockTidy();
@@ -0,0 +1,450 @@
+package org.qortal.controller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.block.Block;
+import org.qortal.data.block.BlockSummaryData;
+import org.qortal.data.block.CommonBlockData;
+import org.qortal.data.network.PeerChainTipData;
+import org.qortal.network.Peer;
+import org.qortal.network.message.BlockMessage;
+import org.qortal.network.message.GetBlockMessage;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageType;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+import org.qortal.utils.Base58;
+import org.qortal.utils.DaemonThreadFactory;
+import org.qortal.utils.NTP;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window of GET_BLOCK requests, used by {@link Synchronizer}.
+ * <p>
+ * Keeps up to <tt>windowSize</tt> requests in flight, spread across peers on the same chain as the sync peer
+ * (see {@link #isOnTargetChain(Peer, Peer, byte[], List)}),
+ * so a long sync is limited by bandwidth rather than peer round-trip time.
+ * Blocks are still handed back strictly in the order their signatures were queued.
+ * <p>
+ * As each block arrives, its stateless checks (see {@link Block#preValidate(Repository)}) are started
+ * on a worker pool, so signature verification overlaps with network I/O and with the synchronizer
+ * validating and processing earlier blocks under the blockchain lock.
+ * <p>
+ * Not thread-safe, apart from {@link #getStatsSnapshot()}.
+ */
+public class BlockDownloadPipeline {
+
+    private static final Logger LOGGER = LogManager.getLogger(BlockDownloadPipeline.class);
+
+    private static final ExecutorService PRE_VALIDATION_EXECUTOR = Executors.newFixedThreadPool(
+            Settings.getInstance().getSyncPreValidationThreadCount(), new DaemonThreadFactory("Sync-PreValidate"));
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class PeerStats {
+        public String peer;
+        public int inFlight;
+        public int blocksReceived;
+        public int failures;
+        public double blocksPerSecond;
+
+        public PeerStats() {
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        public int windowSize;
+        public int inFlight;
+        public int queued;
+        public List<PeerStats> peers;
+
+        public StatsSnapshot() {
+        }
+    }
+
+    private static class DownloadPeer {
+        private final Peer peer;
+        private int inFlight = 0;
+        private int blocksReceived = 0;
+        private int failures = 0;
+        private boolean isAbandoned = false;
+
+        private DownloadPeer(Peer peer) {
+            this.peer = peer;
+        }
+    }
+
+    private static class BlockRequest {
+        private final int height;
+        private final byte[] signature;
+        private final Set<DownloadPeer> triedPeers = new HashSet<>();
+
+        private DownloadPeer downloadPeer;
+        private Message message;
+        private BlockingQueue<Message> replyQueue;
+
+        /** Received block, once arrived */
+        private Block block;
+        private Future<?> preValidation;
+
+        private BlockRequest(int height, byte[] signature) {
+            this.height = height;
+            this.signature = signature;
+        }
+    }
+
+    private final Repository repository;
+    private final int windowSize;
+    /** Peers to download from, sync peer first */
+    private final List<DownloadPeer> downloadPeers = new ArrayList<>();
+    private final Long startTimestamp;
+
+    /** Requests not yet sent, in height order */
+    private final Deque<BlockRequest> queuedRequests = new ArrayDeque<>();
+    /** Requests sent and awaiting response, in height order */
+    private final Deque<BlockRequest> inFlightRequests = new ArrayDeque<>();
+
+    private volatile StatsSnapshot statsSnapshot;
+
+    /**
+     * @param repository used to construct received blocks
+     * @param peers peers to download from, in order of preference
+     * @param windowSize maximum number of requests in flight
+     */
+    public BlockDownloadPipeline(Repository repository, List<Peer> peers, int windowSize) {
+        this.repository = repository;
+        this.windowSize = Math.max(1, windowSize);
+
+        for (Peer peer : peers)
+            this.downloadPeers.add(new DownloadPeer(peer));
+
+        this.startTimestamp = NTP.getTime();
+        this.updateStats();
+    }
+
+    /**
+     * Returns whether <tt>otherPeer</tt> can supply the same blocks as <tt>syncPeer</tt>.
+     * <p>
+     * Other peer must either have the same chain tip as sync peer, or share our common block
+     * and have cached block summaries after it that match <tt>targetSummaries</tt>, i.e. the sync peer's.
+     * Peers merely sharing our common block might be on a different fork.
+     *
+     * @param targetSummaries sync peer's block summaries after common block, in height order
+     */
+    public static boolean isOnTargetChain(Peer otherPeer, Peer syncPeer, byte[] commonBlockSignature, List<BlockSummaryData> targetSummaries) {
+        PeerChainTipData syncChainTipData = syncPeer.getChainTipData();
+        PeerChainTipData otherChainTipData = otherPeer.getChainTipData();
+
+        if (syncChainTipData != null && otherChainTipData != null
+                && Arrays.equals(syncChainTipData.getLastBlockSignature(), otherChainTipData.getLastBlockSignature()))
+            return true;
+
+        CommonBlockData otherCommonBlockData = otherPeer.getCommonBlockData();
+        if (otherCommonBlockData == null || otherCommonBlockData.getCommonBlockSummary() == null
+                || !Arrays.equals(commonBlockSignature, otherCommonBlockData.getCommonBlockSummary().getSignature()))
+            return false;
+
+        List<BlockSummaryData> otherSummaries = otherCommonBlockData.getBlockSummariesAfterCommonBlock();
+        if (otherSummaries == null || otherSummaries.isEmpty() || targetSummaries.isEmpty())
+            return false;
+
+        // Chains must agree for as far as we know both of them
+        int overlap = Math.min(otherSummaries.size(), targetSummaries.size());
+        for (int i = 0; i < overlap; ++i)
+            if (!Arrays.equals(otherSummaries.get(i).getSignature(), targetSummaries.get(i).getSignature()))
+                return false;
+
+        return true;
+    }
+
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    /** Returns number of blocks queued or in flight, i.e. not yet returned by {@link #takeNext()}. */
+    public int size() {
+        return this.queuedRequests.size() + this.inFlightRequests.size();
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /** Returns signature of block that will next be returned by {@link #takeNext()}, or null if nothing queued. */
+    public byte[] peekNextSignature() {
+        BlockRequest request = this.inFlightRequests.isEmpty() ? this.queuedRequests.peekFirst() : this.inFlightRequests.peekFirst();
+        return request != null ? request.signature : null;
+    }
+
+    /** Queues block for download. Must be called in height order. */
+    public void enqueue(int height, byte[] signature) throws InterruptedException {
+        this.queuedRequests.addLast(new BlockRequest(height, signature));
+        this.fill();
+    }
+
+    /**
+     * Returns next block, in queued order, waiting for it to arrive if necessary.
+     * <p>
+     * If a peer fails to respond, the request is re-sent to another peer, if there is one.
+     *
+     * @return block, or null if no peer could supply it, in which case the pipeline is emptied
+     */
+    public Block takeNext() throws InterruptedException {
+        this.fill();
+
+        try {
+            // Start pre-validating anything that has arrived since last time
+            this.harvestResponses();
+
+            while (true) {
+                BlockRequest request = this.inFlightRequests.peekFirst();
+                if (request == null) {
+                    // Nothing queued, or no peers left to send requests to
+                    this.cancel();
+                    return null;
+                }
+
+                if (request.block == null) {
+                    // Request might have lost its peer when that peer was abandoned
+                    DownloadPeer downloadPeer = request.downloadPeer;
+                    Message message = downloadPeer != null ? request.replyQueue.poll(Peer.getResponseTimeout(), TimeUnit.MILLISECONDS) : null;
+
+                    if (!this.receive(request, message)) {
+                        if (downloadPeer != null)
+                            this.onPeerFailure(request, downloadPeer);
+
+                        if (!this.sendRequest(request)) {
+                            // No other peer to try
+                            this.cancel();
+                            return null;
+                        }
+
+                        continue;
+                    }
+                }
+
+                this.inFlightRequests.removeFirst();
+                this.fill();
+
+                this.awaitPreValidation(request);
+                return request.block;
+            }
+        } finally {
+            this.updateStats();
+        }
+    }
+
+    /** Cancels all outstanding requests and empties pipeline. Abandoned peers are given another chance by later requests. */
+    public void cancel() {
+        for (BlockRequest request : this.inFlightRequests) {
+            this.finishRequest(request);
+
+            if (request.preValidation != null)
+                request.preValidation.cancel(false);
+        }
+
+        this.inFlightRequests.clear();
+        this.queuedRequests.clear();
+
+        for (DownloadPeer downloadPeer : this.downloadPeers)
+            downloadPeer.isAbandoned = false;
+
+        this.updateStats();
+    }
+
+    public StatsSnapshot getStatsSnapshot() {
+        return this.statsSnapshot;
+    }
+
+    /** Sends queued requests until window is full. */
+    private void fill() throws InterruptedException {
+        while (this.inFlightRequests.size() < this.windowSize && !this.queuedRequests.isEmpty()) {
+            BlockRequest request = this.queuedRequests.peekFirst();
+            if (!this.sendRequest(request))
+                // No usable peers
+                break;
+
+            this.queuedRequests.removeFirst();
+            this.inFlightRequests.addLast(request);
+        }
+    }
+
+    /** Sends request to least-busy usable peer that hasn't been tried for this block. Returns false if there is no such peer. */
+    private boolean sendRequest(BlockRequest request) throws InterruptedException {
+        while (true) {
+            DownloadPeer downloadPeer = null;
+            for (DownloadPeer candidate : this.downloadPeers) {
+                if (candidate.isAbandoned || request.triedPeers.contains(candidate))
+                    continue;
+
+                // Ties go to earlier peers, i.e. sync peer
+                if (downloadPeer == null || candidate.inFlight < downloadPeer.inFlight)
+                    downloadPeer = candidate;
+            }
+
+            if (downloadPeer == null)
+                return false;
+
+            request.triedPeers.add(downloadPeer);
+
+            Message message = new GetBlockMessage(request.signature);
+            BlockingQueue<Message> replyQueue = downloadPeer.peer.sendRequest(message);
+            if (replyQueue == null) {
+                downloadPeer.failures++;
+                this.abandonPeer(downloadPeer);
+                continue;
+            }
+
+            request.downloadPeer = downloadPeer;
+            request.message = message;
+            request.replyQueue = replyQueue;
+            downloadPeer.inFlight++;
+
+            LOGGER.trace(() -> String.format("Requested block %d, sig %.8s from %s", request.height, Base58.encode(request.signature), request.downloadPeer.peer));
+            return true;
+        }
+    }
+
+    /** Takes any responses that have already arrived, without waiting, so their pre-validation can start. */
+    private void harvestResponses() throws InterruptedException {
+        for (BlockRequest request : this.inFlightRequests) {
+            if (request.block != null || request.downloadPeer == null)
+                continue;
+
+            Message message = request.replyQueue.poll();
+            if (message == null)
+                continue;
+
+            DownloadPeer downloadPeer = request.downloadPeer;
+            if (!this.receive(request, message)) {
+                // Request will be re-sent to another peer when takeNext() reaches it
+                this.onPeerFailure(request, downloadPeer);
+            }
+        }
+    }
+
+    /** Accepts response for request, starting pre-validation of block. Returns false if response isn't the requested block. */
+    private boolean receive(BlockRequest request, Message message) {
+        DownloadPeer downloadPeer = request.downloadPeer;
+        this.finishRequest(request);
+
+        Block block = this.toBlock(message, request.signature);
+        if (block == null)
+            return false;
+
+        downloadPeer.blocksReceived++;
+
+        request.block = block;
+        request.preValidation = PRE_VALIDATION_EXECUTOR.submit(() -> preValidate(block));
+        return true;
+    }
+
+    private void onPeerFailure(BlockRequest request, DownloadPeer downloadPeer) throws InterruptedException {
+        LOGGER.debug(() -> String.format("Peer %s failed to respond with block for height %d, sig %.8s",
+                downloadPeer.peer, request.height, Base58.encode(request.signature)));
+
+        downloadPeer.failures++;
+        this.abandonPeer(downloadPeer);
+    }
+
+    private static void preValidate(Block block) {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            block.preValidate(repository);
+        } catch (DataException e) {
+            // Remaining checks will be performed under blockchain lock instead
+            LOGGER.debug(() -> String.format("Repository issue while pre-validating block %.8s: %s",
+                    Base58.encode(block.getSignature()), e.getMessage()));
+        }
+    }
+
+    private void awaitPreValidation(BlockRequest request) throws InterruptedException {
+        try {
+            request.preValidation.get();
+        } catch (ExecutionException e) {
+            // Checks will be performed under blockchain lock instead
+            LOGGER.debug(() -> String.format("Unable to pre-validate block %d: %s", request.height, e.getMessage()));
+        }
+    }
+
+    private void finishRequest(BlockRequest request) {
+        if (request.downloadPeer == null)
+            return;
+
+        request.downloadPeer.peer.cancelRequest(request.message);
+        request.downloadPeer.inFlight--;
+
+        request.downloadPeer = null;
+        request.message = null;
+        request.replyQueue = null;
+    }
+
+    /** Stops using peer, moving its other in-flight requests to other peers where possible. */
+    private void abandonPeer(DownloadPeer downloadPeer) throws InterruptedException {
+        if (downloadPeer.isAbandoned)
+            return;
+
+        downloadPeer.isAbandoned = true;
+
+        for (BlockRequest request : this.inFlightRequests) {
+            if (request.downloadPeer != downloadPeer)
+                continue;
+
+            // Response might have already arrived
+            if (!request.replyQueue.isEmpty())
+                continue;
+
+            this.finishRequest(request);
+            // If no other peer then request stays without a peer, and will be reported as failed when reached
+            this.sendRequest(request);
+        }
+    }
+
+    private Block toBlock(Message message, byte[] signature) {
+        if (message == null || message.getType() != MessageType.BLOCK)
+            return null;
+
+        BlockMessage blockMessage = (BlockMessage) message;
+
+        // Make sure we were sent the block we asked for, as other peers might be on a different fork
+        if (!Arrays.equals(blockMessage.getBlockData().getSignature(), signature))
+            return null;
+
+        return new Block(this.repository, blockMessage.getBlockData(), blockMessage.getTransactions(), blockMessage.getAtStates());
+    }
+
+    private void updateStats() {
+        StatsSnapshot snapshot = new StatsSnapshot();
+        snapshot.windowSize = this.windowSize;
+        snapshot.inFlight = this.inFlightRequests.size();
+        snapshot.queued = this.queuedRequests.size();
+        snapshot.peers = new ArrayList<>(this.downloadPeers.size());
+
+        Long now = NTP.getTime();
+        double elapsedSeconds = now != null && this.startTimestamp != null ? (now - this.startTimestamp) / 1000.0 : 0;
+
+        for (DownloadPeer downloadPeer : this.downloadPeers) {
+            PeerStats peerStats = new PeerStats();
+            peerStats.peer = downloadPeer.peer.toString();
+            peerStats.inFlight = downloadPeer.inFlight;
+            peerStats.blocksReceived = downloadPeer.blocksReceived;
+            peerStats.failures = downloadPeer.failures;
+            peerStats.blocksPerSecond = elapsedSeconds > 0 ? downloadPeer.blocksReceived / elapsedSeconds : 0;
+
+            snapshot.peers.add(peerStats);
+        }
+
+        this.statsSnapshot = snapshot;
+    }
+
+}
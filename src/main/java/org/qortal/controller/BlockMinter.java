@@ -3,10 +3,17 @@ package org.qortal.controller;
 import java.math.BigInteger;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -32,7 +39,10 @@ import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.transaction.Transaction;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.transaction.TransactionTransformer;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
 import org.qortal.utils.NTP;
 
 // Minting new blocks
@@ -419,7 +429,7 @@ public class BlockMinter extends Thread {
 					BlockData newBlockData = newBlock.getBlockData();
 
 					Network network = Network.getInstance();
-					network.broadcast(broadcastPeer -> network.buildHeightMessage(broadcastPeer, newBlockData));
+					network.broadcast(network.buildHeightMessage(null, newBlockData));
 				}
 			}
 		} catch (DataException e) {
@@ -441,6 +451,8 @@ public class BlockMinter extends Thread {
 	 * @throws DataException
 	 */
 	private static void addUnconfirmedTransactions(Repository repository, Block newBlock) throws DataException {
+		final long startTime = System.currentTimeMillis();
+
 		// Grab all valid unconfirmed transactions (already sorted)
 		List<TransactionData> unconfirmedTransactions = Transaction.getUnconfirmedTransactions(repository);
 
@@ -458,6 +470,40 @@ public class BlockMinter extends Thread {
 		// Sign to create block's signature, needed by Block.isValid()
 		newBlock.sign();
 
+		int skippedCount;
+		if (Settings.getInstance().isIncrementalBlockAssemblyEnabled()) {
+			skippedCount = newBlock.addValidTransactions(orderByFeePerByte(unconfirmedTransactions));
+
+			// Candidates were test-processed in fee order, not block's transaction order, so check that order too
+			ValidationResult validationResult = newBlock.isValid();
+			if (validationResult != ValidationResult.OK) {
+				LOGGER.debug(() -> String.format("Incrementally assembled block invalid '%s', so reassembling one transaction at a time", validationResult.name()));
+
+				for (TransactionData transactionData : unconfirmedTransactions)
+					newBlock.deleteTransaction(transactionData);
+
+				skippedCount = addTransactionsIndividually(newBlock, unconfirmedTransactions);
+			}
+		} else {
+			skippedCount = addTransactionsIndividually(newBlock, unconfirmedTransactions);
+		}
+
+		final int candidateCount = unconfirmedTransactions.size();
+		final int addedCount = newBlock.getBlockData().getTransactionCount();
+		final int finalSkippedCount = skippedCount;
+		final long assemblyTime = System.currentTimeMillis() - startTime;
+		LOGGER.debug(() -> String.format("Assembled block with %d of %d candidate transaction%s in %dms, skipping %d invalid",
+				addedCount, candidateCount, (candidateCount != 1 ? "s" : ""), assemblyTime, finalSkippedCount));
+	}
+
+	/**
+	 * Adds transactions one at a time, re-validating whole block after each addition.
+	 * 
+	 * @return number of transactions skipped as invalid
+	 */
+	private static int addTransactionsIndividually(Block newBlock, List<TransactionData> unconfirmedTransactions) throws DataException {
+		int skippedCount = 0;
+
 		// Attempt to add transactions until block is full, or we run out
 		// If a transaction makes the block invalid then skip it and it'll either expire or be in next block.
 		for (TransactionData transactionData : unconfirmedTransactions) {
@@ -469,8 +515,58 @@ public class BlockMinter extends Thread {
 			if (validationResult != ValidationResult.OK) {
 				LOGGER.debug(() -> String.format("Skipping invalid transaction %s during block minting", Base58.encode(transactionData.getSignature())));
 				newBlock.deleteTransaction(transactionData);
+				++skippedCount;
 			}
 		}
+
+		return skippedCount;
+	}
+
+	/**
+	 * Returns transactions in descending fee-per-byte order, except that each creator's transactions keep their
+	 * existing relative order, so that any transaction that builds on an earlier one from same creator comes after it.
+	 * <p>
+	 * Passed transactions are expected to be sorted, as by {@link Transaction#getDataComparator()}.
+	 */
+	public static List<TransactionData> orderByFeePerByte(List<TransactionData> transactions) {
+		// Each creator's transactions, in passed order
+		Map<ByteArray, Deque<TransactionData>> transactionsByCreator = new LinkedHashMap<>();
+		for (TransactionData transactionData : transactions)
+			transactionsByCreator.computeIfAbsent(ByteArray.wrap(transactionData.getCreatorPublicKey()), k -> new ArrayDeque<>()).add(transactionData);
+
+		Map<TransactionData, Long> feesPerByte = new IdentityHashMap<>(transactions.size());
+		for (TransactionData transactionData : transactions)
+			feesPerByte.put(transactionData, feePerByte(transactionData));
+
+		// Choose from head of each creator's queue, highest fee-per-byte first, ties in passed order
+		Map<TransactionData, Integer> originalIndexes = new IdentityHashMap<>(transactions.size());
+		for (int i = 0; i < transactions.size(); ++i)
+			originalIndexes.put(transactions.get(i), i);
+
+		PriorityQueue<Deque<TransactionData>> creatorQueues = new PriorityQueue<>(
+				Comparator.comparingLong((Deque<TransactionData> queue) -> feesPerByte.get(queue.peekFirst())).reversed()
+						.thenComparingInt(queue -> originalIndexes.get(queue.peekFirst())));
+		creatorQueues.addAll(transactionsByCreator.values());
+
+		List<TransactionData> orderedTransactions = new ArrayList<>(transactions.size());
+		while (!creatorQueues.isEmpty()) {
+			Deque<TransactionData> creatorQueue = creatorQueues.poll();
+			orderedTransactions.add(creatorQueue.pollFirst());
+
+			if (!creatorQueue.isEmpty())
+				creatorQueues.add(creatorQueue);
+		}
+
+		return orderedTransactions;
+	}
+
+	private static long feePerByte(TransactionData transactionData) {
+		try {
+			int dataLength = TransactionTransformer.getDataLength(transactionData);
+			return dataLength > 0 ? transactionData.getFee() / dataLength : transactionData.getFee();
+		} catch (TransformationException e) {
+			return transactionData.getFee();
+		}
 	}
 
 	public void shutdown() {
@@ -5,7 +5,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.eclipse.jetty.websocket.api.Session;
 import org.qortal.data.transaction.ChatTransactionData;
 
 public class ChatNotifier {
@@ -17,7 +16,8 @@ public class ChatNotifier {
 		void notify(ChatTransactionData chatTransactionData);
 	}
 
-	private Map<Session, Listener> listenersBySession = new HashMap<>();
+	/** Listeners, keyed by websocket session or other owner */
+	private Map<Object, Listener> listenersBySession = new HashMap<>();
 
 	private ChatNotifier() {
 	}
@@ -29,13 +29,13 @@ public class ChatNotifier {
 		return instance;
 	}
 
-	public void register(Session session, Listener listener) {
+	public void register(Object session, Listener listener) {
 		synchronized (this.listenersBySession) {
 			this.listenersBySession.put(session, listener);
 		}
 	}
 
-	public void deregister(Session session) {
+	public void deregister(Object session) {
 		synchronized (this.listenersBySession) {
 			this.listenersBySession.remove(session);
 		}
@@ -51,6 +51,12 @@ public class ChatNotifier {
 			listener.notify(null);
 	}
 
+	/** Names shown alongside chats may have changed, so listeners are notified as for group membership changes. */
+	public void onNameChange() {
+		for (Listener listener : getAllListeners())
+			listener.notify(null);
+	}
+
 	private Collection<Listener> getAllListeners() {
 		// Make a copy of listeners to both avoid concurrent modification
 		// and reduce synchronization time
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.Security;
@@ -60,7 +61,7 @@ import org.qortal.network.message.*;
 import org.qortal.repository.*;
 import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
 import org.qortal.settings.Settings;
-import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Mempool;
 import org.qortal.transaction.Transaction.TransactionType;
 import org.qortal.transform.TransformationException;
 import org.qortal.utils.*;
@@ -97,6 +98,7 @@ public class Controller extends Thread {
 
 	private ExecutorService callbackExecutor = Executors.newFixedThreadPool(3);
 	private volatile boolean notifyGroupMembershipChange = false;
+	private volatile boolean notifyNameChange = false;
 
 	/** Latest blocks on our chain. Note: tail/last is the latest block. */
 	private final Deque<BlockData> latestBlocks = new LinkedList<>();
@@ -229,6 +231,23 @@ public class Controller extends Thread {
 		}
 		public GetNameMessageStats getNameMessageStats = new GetNameMessageStats();
 
+		public static class AtExecutionStats {
+			/** Number of times a block's ATs were executed, e.g. when validating or minting */
+			public AtomicLong blocks = new AtomicLong();
+			/** Number of ATs loaded as they might execute */
+			public AtomicLong atsLoaded = new AtomicLong();
+			/** Number of ATs that actually executed */
+			public AtomicLong atsExecuted = new AtomicLong();
+			public AtomicLong totalExecutionMicros = new AtomicLong();
+			public AtomicLong latestExecutionMicros = new AtomicLong();
+			public AtomicLong codeCacheHits = new AtomicLong();
+			public AtomicLong codeCacheMisses = new AtomicLong();
+
+			public AtExecutionStats() {
+			}
+		}
+		public AtExecutionStats atExecutionStats = new AtExecutionStats();
+
 		public AtomicLong latestBlocksCacheRefills = new AtomicLong();
 
 		public StatsSnapshot() {
@@ -839,17 +858,19 @@ public class Controller extends Thread {
 			if (repository == null)
 				return;
 
-			List<TransactionData> transactions = repository.getTransactionRepository().getUnconfirmedTransactions();
-
 			int deletedCount = 0;
-			for (TransactionData transactionData : transactions) {
-				Transaction transaction = Transaction.fromData(repository, transactionData);
-
-				if (now >= transaction.getDeadline()) {
-					LOGGER.debug(() -> String.format("Deleting expired, unconfirmed transaction %s", Base58.encode(transactionData.getSignature())));
-					repository.getTransactionRepository().delete(transactionData);
-					deletedCount++;
-				}
+			for (Mempool.Entry mempoolEntry : Mempool.getInstance().getEntries(EnumSet.noneOf(TransactionType.class))) {
+				// Deadlines vary by transaction type, so can't stop at first unexpired entry
+				if (now < mempoolEntry.getDeadline())
+					continue;
+
+				TransactionData transactionData = repository.getTransactionRepository().fromSignature(mempoolEntry.getSignature());
+				if (transactionData == null || transactionData.getBlockHeight() != null)
+					continue;
+
+				LOGGER.debug(() -> String.format("Deleting expired, unconfirmed transaction %s", Base58.encode(transactionData.getSignature())));
+				repository.getTransactionRepository().delete(transactionData);
+				deletedCount++;
 			}
 			if (deletedCount > 0) {
 				LOGGER.info(String.format("Deleted %d expired, unconfirmed transaction%s", deletedCount, (deletedCount == 1 ? "" : "s")));
@@ -975,6 +996,11 @@ public class Controller extends Thread {
 		this.notifyGroupMembershipChange = true;
 	}
 
+	public void onNameChange() {
+		// As with group membership changes, defer notifying listeners until after block is saved
+		this.notifyNameChange = true;
+	}
+
 	// Callbacks for/from network
 
 	public void doNetworkBroadcast() {
@@ -990,7 +1016,7 @@ public class Controller extends Thread {
 
 		// Send our current height
 		BlockData latestBlockData = getChainTip();
-		network.broadcast(peer -> network.buildHeightMessage(peer, latestBlockData));
+		network.broadcast(network.buildHeightMessage(null, latestBlockData));
 
 		// Request unconfirmed transaction signatures, but only if we're up-to-date.
 		// If we're NOT up-to-date then priority is synchronizing first
@@ -1124,6 +1150,11 @@ public class Controller extends Thread {
 			this.notifyGroupMembershipChange = false;
 			ChatNotifier.getInstance().onGroupMembershipChange();
 		}
+
+		if (this.notifyNameChange) {
+			this.notifyNameChange = false;
+			ChatNotifier.getInstance().onNameChange();
+		}
 	}
 
 	public static class NewTransactionEvent implements Event {
@@ -1147,7 +1178,7 @@ public class Controller extends Thread {
 		this.callbackExecutor.execute(() -> {
 			// Notify all peers
 			Message newTransactionSignatureMessage = new TransactionSignaturesMessage(Arrays.asList(transactionData.getSignature()));
-			Network.getInstance().broadcast(broadcastPeer -> newTransactionSignatureMessage);
+			Network.getInstance().broadcast(newTransactionSignatureMessage);
 
 			// Notify listeners
 			EventBus.INSTANCE.notify(new NewTransactionEvent(transactionData));
@@ -1327,9 +1358,12 @@ public class Controller extends Thread {
 			// If we have no block data, we should check the archive in case it's there
 			if (blockData == null) {
 				if (Settings.getInstance().isArchiveEnabled()) {
-					byte[] bytes = BlockArchiveReader.getInstance().fetchSerializedBlockBytesForSignature(signature, true, repository);
-					if (bytes != null) {
-						CachedBlockMessage blockMessage = new CachedBlockMessage(bytes);
+					BlockArchiveReader blockArchiveReader = BlockArchiveReader.getInstance();
+					Integer height = blockArchiveReader.fetchHeightForSignature(signature, repository);
+					// Slice of memory-mapped archive file, so block bytes aren't copied before sending
+					ByteBuffer blockBuffer = height != null ? blockArchiveReader.fetchSerializedBlockBufferForHeight(height) : null;
+					if (blockBuffer != null) {
+						CachedBlockMessage blockMessage = new CachedBlockMessage(height, blockBuffer);
 						blockMessage.setId(message.getId());
 
 						// This call also causes the other needed data to be pulled in from repository
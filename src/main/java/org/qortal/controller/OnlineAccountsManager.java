@@ -7,6 +7,7 @@ import org.qortal.account.Account;
 import org.qortal.account.PrivateKeyAccount;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.block.BlockChain;
+import org.qortal.crypto.Crypto;
 import org.qortal.data.account.MintingAccountData;
 import org.qortal.data.account.RewardShareData;
 import org.qortal.data.network.OnlineAccountData;
@@ -17,9 +18,13 @@ import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
 import org.qortal.utils.NTP;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
 
 public class OnlineAccountsManager extends Thread {
@@ -58,13 +63,25 @@ public class OnlineAccountsManager extends Thread {
 
     private long onlineAccountsTasksTimestamp = Controller.startTime + ONLINE_ACCOUNTS_TASKS_INTERVAL; // ms
 
-    private final List<OnlineAccountData> onlineAccountsImportQueue = Collections.synchronizedList(new ArrayList<>());
+    /** Maximum number of queued online accounts to verify in one pass */
+    private static final int MAX_IMPORT_BATCH_SIZE = 10000;
 
+    private final BlockingQueue<OnlineAccountData> onlineAccountsImportQueue = new LinkedBlockingQueue<>();
+    /**
+     * Index of entries in <tt>onlineAccountsImportQueue</tt>, by online timestamp then public key, so we don't queue the same entry from every peer,
+     * nor another signature for an already queued account and timestamp. Modify only inside <tt>synchronized (this.onlineAccountsImportQueueIndex)</tt>
+     */
+    private final Map<Long, Set<ByteArray>> onlineAccountsImportQueueIndex = new HashMap<>();
 
-    /** Cache of current 'online accounts' */
-    List<OnlineAccountData> onlineAccounts = new ArrayList<>();
+
+    /** Cache of current 'online accounts', keyed by reward-share public key. Modify only inside <tt>synchronized (this.onlineAccounts)</tt> */
+    private final Map<ByteArray, OnlineAccountData> onlineAccounts = new ConcurrentHashMap<>();
+    /** Index of current 'online accounts', by online timestamp then signature. Kept in step with <tt>onlineAccounts</tt> */
+    private final Map<Long, Map<ByteArray, OnlineAccountData>> onlineAccountsByTimestamp = new ConcurrentHashMap<>();
     /** Cache of latest blocks' online accounts */
     Deque<List<OnlineAccountData>> latestBlocksOnlineAccounts = new ArrayDeque<>(MAX_BLOCKS_CACHED_ONLINE_ACCOUNTS);
+    /** Index of latest blocks' online accounts, by signature. Kept in step with <tt>latestBlocksOnlineAccounts</tt> */
+    private final Deque<Map<ByteArray, OnlineAccountData>> latestBlocksOnlineAccountsBySignature = new ArrayDeque<>(MAX_BLOCKS_CACHED_ONLINE_ACCOUNTS);
 
     public OnlineAccountsManager() {
 
@@ -127,27 +144,130 @@ public class OnlineAccountsManager extends Thread {
 
         LOGGER.debug("Processing online accounts import queue (size: {})", this.onlineAccountsImportQueue.size());
 
-        try (final Repository repository = RepositoryManager.getRepository()) {
+        final Long now = NTP.getTime();
+        if (now == null)
+            return;
+
+        // Drain in one go, rather than removing entries individually
+        List<OnlineAccountData> importBatch = new ArrayList<>();
+        this.onlineAccountsImportQueue.drainTo(importBatch, MAX_IMPORT_BATCH_SIZE);
+        synchronized (this.onlineAccountsImportQueueIndex) {
+            for (OnlineAccountData onlineAccountData : importBatch) {
+                Set<ByteArray> queuedPublicKeys = this.onlineAccountsImportQueueIndex.get(onlineAccountData.getTimestamp());
+                if (queuedPublicKeys == null)
+                    continue;
+
+                queuedPublicKeys.remove(ByteArray.wrap(onlineAccountData.getPublicKey()));
+                if (queuedPublicKeys.isEmpty())
+                    this.onlineAccountsImportQueueIndex.remove(onlineAccountData.getTimestamp());
+            }
+        }
+
+        // Group candidates by public key, discarding out-of-range timestamps and anything no newer than what we already have
+        Map<ByteArray, List<OnlineAccountData>> candidatesByPublicKey = new HashMap<>();
+        for (OnlineAccountData onlineAccountData : importBatch) {
+            if (Math.abs(onlineAccountData.getTimestamp() - now) > ONLINE_TIMESTAMP_MODULUS * 2) {
+                LOGGER.trace(() -> String.format("Rejecting online account %s with out of range timestamp %d", Base58.encode(onlineAccountData.getPublicKey()), onlineAccountData.getTimestamp()));
+                continue;
+            }
+
+            ByteArray publicKey = ByteArray.wrap(onlineAccountData.getPublicKey());
+
+            OnlineAccountData existingAccountData = this.onlineAccounts.get(publicKey);
+            if (existingAccountData != null && existingAccountData.getTimestamp() >= onlineAccountData.getTimestamp())
+                continue;
+
+            candidatesByPublicKey.computeIfAbsent(publicKey, k -> new ArrayList<>()).add(onlineAccountData);
+        }
+
+        if (candidatesByPublicKey.isEmpty()) {
+            LOGGER.debug("Finished processing online accounts import queue (nothing new)");
+            return;
+        }
+
+        // Verify signatures in parallel, only keeping newest valid entry for each public key
+        List<OnlineAccountData> verifiedAccounts = candidatesByPublicKey.values().parallelStream()
+                .map(OnlineAccountsManager::findNewestValidOnlineAccount)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-            List<OnlineAccountData> onlineAccountDataCopy = new ArrayList<>(this.onlineAccountsImportQueue);
-            for (OnlineAccountData onlineAccountData : onlineAccountDataCopy) {
-                if (isStopping) {
+        if (isStopping || verifiedAccounts.isEmpty())
+            return;
+
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            // Qortal: check online accounts are actually reward-shares, all in one query
+            List<byte[]> publicKeys = verifiedAccounts.stream().map(OnlineAccountData::getPublicKey).collect(Collectors.toList());
+            Map<ByteArray, RewardShareData> rewardSharesByPublicKey = new HashMap<>();
+            for (RewardShareData rewardShareData : repository.getAccountRepository().getRewardSharesByPublicKeys(publicKeys))
+                rewardSharesByPublicKey.put(ByteArray.wrap(rewardShareData.getRewardSharePublicKey()), rewardShareData);
+
+            // Minters often appear in more than one reward-share
+            Map<String, Boolean> canMintByMinter = new HashMap<>();
+
+            List<OnlineAccountData> acceptedAccounts = new ArrayList<>(verifiedAccounts.size());
+            for (OnlineAccountData onlineAccountData : verifiedAccounts) {
+                if (isStopping)
                     return;
+
+                RewardShareData rewardShareData = rewardSharesByPublicKey.get(ByteArray.wrap(onlineAccountData.getPublicKey()));
+                if (rewardShareData == null) {
+                    // Reward-share doesn't even exist - probably not a good sign
+                    LOGGER.trace(() -> String.format("Rejecting unknown online reward-share public key %s", Base58.encode(onlineAccountData.getPublicKey())));
+                    continue;
                 }
 
-                this.verifyAndAddAccount(repository, onlineAccountData);
+                Boolean canMint = canMintByMinter.get(rewardShareData.getMinter());
+                if (canMint == null) {
+                    canMint = new Account(repository, rewardShareData.getMinter()).canMint();
+                    canMintByMinter.put(rewardShareData.getMinter(), canMint);
+                }
+
+                if (!canMint) {
+                    // Minting-account component of reward-share can no longer mint - disregard
+                    LOGGER.trace(() -> String.format("Rejecting online reward-share with non-minting account %s", rewardShareData.getMinter()));
+                    continue;
+                }
 
-                // Remove from queue
-                onlineAccountsImportQueue.remove(onlineAccountData);
+                acceptedAccounts.add(onlineAccountData);
             }
 
-            LOGGER.debug("Finished processing online accounts import queue");
-            
+            int addedCount = 0;
+            synchronized (this.onlineAccounts) {
+                for (OnlineAccountData onlineAccountData : acceptedAccounts) {
+                    // Recheck as cache might have been updated (e.g. by our own accounts) while we were verifying
+                    OnlineAccountData existingAccountData = this.onlineAccounts.get(ByteArray.wrap(onlineAccountData.getPublicKey()));
+                    if (existingAccountData != null && existingAccountData.getTimestamp() >= onlineAccountData.getTimestamp())
+                        continue;
+
+                    this.addOnlineAccount(onlineAccountData);
+                    ++addedCount;
+                }
+            }
+
+            LOGGER.debug("Finished processing online accounts import queue (batch: {}, verified: {}, added: {})",
+                    importBatch.size(), verifiedAccounts.size(), addedCount);
+
         } catch (DataException e) {
             LOGGER.error(String.format("Repository issue while verifying online accounts"), e);
         }
     }
 
+    /** Returns newest entry with valid signature, or null if none are valid. Entries must all share the same public key. */
+    private static OnlineAccountData findNewestValidOnlineAccount(List<OnlineAccountData> candidates) {
+        if (candidates.size() > 1)
+            candidates.sort(Comparator.comparingLong(OnlineAccountData::getTimestamp).reversed());
+
+        for (OnlineAccountData onlineAccountData : candidates) {
+            byte[] data = Longs.toByteArray(onlineAccountData.getTimestamp());
+            if (Crypto.verify(onlineAccountData.getPublicKey(), onlineAccountData.getSignature(), data))
+                return onlineAccountData;
+
+            LOGGER.trace(() -> String.format("Rejecting invalid online account %s", Base58.encode(onlineAccountData.getPublicKey())));
+        }
+
+        return null;
+    }
+
 
     // Utilities
 
@@ -187,12 +307,10 @@ public class OnlineAccountsManager extends Thread {
         }
 
         synchronized (this.onlineAccounts) {
-            OnlineAccountData existingAccountData = this.onlineAccounts.stream().filter(account -> Arrays.equals(account.getPublicKey(), onlineAccountData.getPublicKey())).findFirst().orElse(null);
+            OnlineAccountData existingAccountData = this.onlineAccounts.get(ByteArray.wrap(onlineAccountData.getPublicKey()));
 
             if (existingAccountData != null) {
                 if (existingAccountData.getTimestamp() < onlineAccountData.getTimestamp()) {
-                    this.onlineAccounts.remove(existingAccountData);
-
                     LOGGER.trace(() -> String.format("Updated online account %s with timestamp %d (was %d)", otherAccount.getAddress(), onlineAccountData.getTimestamp(), existingAccountData.getTimestamp()));
                 } else {
                     LOGGER.trace(() -> String.format("Not updating existing online account %s", otherAccount.getAddress()));
@@ -203,10 +321,33 @@ public class OnlineAccountsManager extends Thread {
                 LOGGER.trace(() -> String.format("Added online account %s with timestamp %d", otherAccount.getAddress(), onlineAccountData.getTimestamp()));
             }
 
-            this.onlineAccounts.add(onlineAccountData);
+            this.addOnlineAccount(onlineAccountData);
         }
     }
 
+    /** Adds, or replaces existing entry with same public key, in online accounts cache and index. Must be inside <tt>synchronized (this.onlineAccounts)</tt> */
+    private void addOnlineAccount(OnlineAccountData onlineAccountData) {
+        OnlineAccountData previousAccountData = this.onlineAccounts.put(ByteArray.wrap(onlineAccountData.getPublicKey()), onlineAccountData);
+        if (previousAccountData != null)
+            this.removeFromTimestampIndex(previousAccountData);
+
+        this.onlineAccountsByTimestamp.computeIfAbsent(onlineAccountData.getTimestamp(), timestamp -> new ConcurrentHashMap<>())
+                .put(ByteArray.wrap(onlineAccountData.getSignature()), onlineAccountData);
+    }
+
+    /** Removes entry from online accounts cache and index. Must be inside <tt>synchronized (this.onlineAccounts)</tt> */
+    private void removeOnlineAccount(OnlineAccountData onlineAccountData) {
+        if (this.onlineAccounts.remove(ByteArray.wrap(onlineAccountData.getPublicKey()), onlineAccountData))
+            this.removeFromTimestampIndex(onlineAccountData);
+    }
+
+    private void removeFromTimestampIndex(OnlineAccountData onlineAccountData) {
+        this.onlineAccountsByTimestamp.computeIfPresent(onlineAccountData.getTimestamp(), (timestamp, accountsBySignature) -> {
+            accountsBySignature.remove(ByteArray.wrap(onlineAccountData.getSignature()), onlineAccountData);
+            return accountsBySignature.isEmpty() ? null : accountsBySignature;
+        });
+    }
+
     public void ensureTestingAccountsOnline(PrivateKeyAccount... onlineAccounts) {
         if (!BlockChain.getInstance().isTestChain()) {
             LOGGER.warn("Ignoring attempt to ensure test account is online for non-test chain!");
@@ -222,6 +363,7 @@ public class OnlineAccountsManager extends Thread {
 
         synchronized (this.onlineAccounts) {
             this.onlineAccounts.clear();
+            this.onlineAccountsByTimestamp.clear();
 
             for (PrivateKeyAccount onlineAccount : onlineAccounts) {
                 // Check mintingAccount is actually reward-share?
@@ -230,7 +372,7 @@ public class OnlineAccountsManager extends Thread {
                 byte[] publicKey = onlineAccount.getPublicKey();
 
                 OnlineAccountData ourOnlineAccountData = new OnlineAccountData(onlineAccountsTimestamp, signature, publicKey);
-                this.onlineAccounts.add(ourOnlineAccountData);
+                this.addOnlineAccount(ourOnlineAccountData);
             }
         }
     }
@@ -243,12 +385,9 @@ public class OnlineAccountsManager extends Thread {
         // Expire old entries
         final long cutoffThreshold = now - LAST_SEEN_EXPIRY_PERIOD;
         synchronized (this.onlineAccounts) {
-            Iterator<OnlineAccountData> iterator = this.onlineAccounts.iterator();
-            while (iterator.hasNext()) {
-                OnlineAccountData onlineAccountData = iterator.next();
-
+            for (OnlineAccountData onlineAccountData : this.onlineAccounts.values()) {
                 if (onlineAccountData.getTimestamp() < cutoffThreshold) {
-                    iterator.remove();
+                    this.removeOnlineAccount(onlineAccountData);
 
                     LOGGER.trace(() -> {
                         PublicKeyAccount otherAccount = new PublicKeyAccount(null, onlineAccountData.getPublicKey());
@@ -260,10 +399,7 @@ public class OnlineAccountsManager extends Thread {
 
         // Request data from other peers?
         if ((this.onlineAccountsTasksTimestamp % ONLINE_ACCOUNTS_BROADCAST_INTERVAL) < ONLINE_ACCOUNTS_TASKS_INTERVAL) {
-            List<OnlineAccountData> safeOnlineAccounts;
-            synchronized (this.onlineAccounts) {
-                safeOnlineAccounts = new ArrayList<>(this.onlineAccounts);
-            }
+            List<OnlineAccountData> safeOnlineAccounts = new ArrayList<>(this.onlineAccounts.values());
 
             Message messageV1 = new GetOnlineAccountsMessage(safeOnlineAccounts);
             Message messageV2 = new GetOnlineAccountsV2Message(safeOnlineAccounts);
@@ -335,22 +471,14 @@ public class OnlineAccountsManager extends Thread {
             // Our account is online
             OnlineAccountData ourOnlineAccountData = new OnlineAccountData(onlineAccountsTimestamp, signature, publicKey);
             synchronized (this.onlineAccounts) {
-                Iterator<OnlineAccountData> iterator = this.onlineAccounts.iterator();
-                while (iterator.hasNext()) {
-                    OnlineAccountData existingOnlineAccountData = iterator.next();
-
-                    if (Arrays.equals(existingOnlineAccountData.getPublicKey(), ourOnlineAccountData.getPublicKey())) {
-                        // If our online account is already present, with same timestamp, then move on to next mintingAccount
-                        if (existingOnlineAccountData.getTimestamp() == onlineAccountsTimestamp)
-                            continue MINTING_ACCOUNTS;
-
-                        // If our online account is already present, but with older timestamp, then remove it
-                        iterator.remove();
-                        break;
-                    }
-                }
+                OnlineAccountData existingOnlineAccountData = this.onlineAccounts.get(ByteArray.wrap(publicKey));
 
-                this.onlineAccounts.add(ourOnlineAccountData);
+                // If our online account is already present, with same timestamp, then move on to next mintingAccount
+                if (existingOnlineAccountData != null && existingOnlineAccountData.getTimestamp() == onlineAccountsTimestamp)
+                    continue MINTING_ACCOUNTS;
+
+                // If our online account is already present, but with older timestamp, then it is replaced
+                this.addOnlineAccount(ourOnlineAccountData);
             }
 
             LOGGER.trace(() -> String.format("Added our online account %s with timestamp %d", mintingAccount.getAddress(), onlineAccountsTimestamp));
@@ -379,8 +507,39 @@ public class OnlineAccountsManager extends Thread {
     public List<OnlineAccountData> getOnlineAccounts() {
         final long onlineTimestamp = toOnlineAccountTimestamp(NTP.getTime());
 
-        synchronized (this.onlineAccounts) {
-            return this.onlineAccounts.stream().filter(account -> account.getTimestamp() == onlineTimestamp).collect(Collectors.toList());
+        Map<ByteArray, OnlineAccountData> currentOnlineAccounts = this.onlineAccountsByTimestamp.get(onlineTimestamp);
+        if (currentOnlineAccounts == null)
+            return new ArrayList<>();
+
+        return new ArrayList<>(currentOnlineAccounts.values());
+    }
+
+    /**
+     * Returns whether online account, with matching timestamp, signature and public key, is in our cache
+     * of online accounts and so already has a verified signature.
+     * <p>
+     * Typically called by Block.areOnlineAccountsValid() to avoid Ed25519 verify.
+     */
+    public boolean isKnownOnlineAccount(OnlineAccountData onlineAccountData) {
+        Map<ByteArray, OnlineAccountData> accountsBySignature = this.onlineAccountsByTimestamp.get(onlineAccountData.getTimestamp());
+        if (accountsBySignature == null)
+            return false;
+
+        return onlineAccountData.equals(accountsBySignature.get(ByteArray.wrap(onlineAccountData.getSignature())));
+    }
+
+    /**
+     * Returns whether online account, with matching timestamp, signature and public key, is in latest block's online accounts.
+     * <p>
+     * Typically called by Block.areOnlineAccountsValid() to avoid Ed25519 verify.
+     */
+    public boolean isLatestBlocksOnlineAccount(OnlineAccountData onlineAccountData) {
+        synchronized (this.latestBlocksOnlineAccounts) {
+            Map<ByteArray, OnlineAccountData> accountsBySignature = this.latestBlocksOnlineAccountsBySignature.peekFirst();
+            if (accountsBySignature == null)
+                return false;
+
+            return onlineAccountData.equals(accountsBySignature.get(ByteArray.wrap(onlineAccountData.getSignature())));
         }
     }
 
@@ -395,12 +554,21 @@ public class OnlineAccountsManager extends Thread {
     /** Caches list of latest block's online accounts. Typically called by Block.process() */
     public void pushLatestBlocksOnlineAccounts(List<OnlineAccountData> latestBlocksOnlineAccounts) {
         synchronized (this.latestBlocksOnlineAccounts) {
-            if (this.latestBlocksOnlineAccounts.size() == MAX_BLOCKS_CACHED_ONLINE_ACCOUNTS)
+            if (this.latestBlocksOnlineAccounts.size() == MAX_BLOCKS_CACHED_ONLINE_ACCOUNTS) {
                 this.latestBlocksOnlineAccounts.pollLast();
+                this.latestBlocksOnlineAccountsBySignature.pollLast();
+            }
 
             this.latestBlocksOnlineAccounts.addFirst(latestBlocksOnlineAccounts == null
                     ? Collections.emptyList()
                     : Collections.unmodifiableList(latestBlocksOnlineAccounts));
+
+            Map<ByteArray, OnlineAccountData> accountsBySignature = new HashMap<>();
+            if (latestBlocksOnlineAccounts != null)
+                for (OnlineAccountData onlineAccountData : latestBlocksOnlineAccounts)
+                    accountsBySignature.put(ByteArray.wrap(onlineAccountData.getSignature()), onlineAccountData);
+
+            this.latestBlocksOnlineAccountsBySignature.addFirst(accountsBySignature);
         }
     }
 
@@ -408,6 +576,7 @@ public class OnlineAccountsManager extends Thread {
     public void popLatestBlocksOnlineAccounts() {
         synchronized (this.latestBlocksOnlineAccounts) {
             this.latestBlocksOnlineAccounts.pollFirst();
+            this.latestBlocksOnlineAccountsBySignature.pollFirst();
         }
     }
 
@@ -420,10 +589,7 @@ public class OnlineAccountsManager extends Thread {
         List<OnlineAccountData> excludeAccounts = getOnlineAccountsMessage.getOnlineAccounts();
 
         // Send online accounts info, excluding entries with matching timestamp & public key from excludeAccounts
-        List<OnlineAccountData> accountsToSend;
-        synchronized (this.onlineAccounts) {
-            accountsToSend = new ArrayList<>(this.onlineAccounts);
-        }
+        List<OnlineAccountData> accountsToSend = new ArrayList<>(this.onlineAccounts.values());
 
         Iterator<OnlineAccountData> iterator = accountsToSend.iterator();
 
@@ -467,10 +633,7 @@ public class OnlineAccountsManager extends Thread {
         List<OnlineAccountData> excludeAccounts = getOnlineAccountsMessage.getOnlineAccounts();
 
         // Send online accounts info, excluding entries with matching timestamp & public key from excludeAccounts
-        List<OnlineAccountData> accountsToSend;
-        synchronized (this.onlineAccounts) {
-            accountsToSend = new ArrayList<>(this.onlineAccounts);
-        }
+        List<OnlineAccountData> accountsToSend = new ArrayList<>(this.onlineAccounts.values());
 
         Iterator<OnlineAccountData> iterator = accountsToSend.iterator();
 
@@ -506,13 +669,16 @@ public class OnlineAccountsManager extends Thread {
         for (OnlineAccountData onlineAccountData : peersOnlineAccounts) {
 
             // Do we already know about this online account data?
-            if (onlineAccounts.contains(onlineAccountData)) {
+            if (onlineAccountData.equals(this.onlineAccounts.get(ByteArray.wrap(onlineAccountData.getPublicKey())))) {
                 continue;
             }
 
-            // Is it already in the import queue?
-            if (onlineAccountsImportQueue.contains(onlineAccountData)) {
-                continue;
+            // Is this account and timestamp already in the import queue, possibly with a different signature?
+            synchronized (this.onlineAccountsImportQueueIndex) {
+                Set<ByteArray> queuedPublicKeys = this.onlineAccountsImportQueueIndex.computeIfAbsent(onlineAccountData.getTimestamp(), k -> new HashSet<>());
+                if (!queuedPublicKeys.add(ByteArray.wrap(onlineAccountData.getPublicKey()))) {
+                    continue;
+                }
             }
 
             onlineAccountsImportQueue.add(onlineAccountData);
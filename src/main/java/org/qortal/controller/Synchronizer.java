@@ -26,9 +26,7 @@ import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
-import org.qortal.network.message.BlockMessage;
 import org.qortal.network.message.BlockSummariesMessage;
-import org.qortal.network.message.GetBlockMessage;
 import org.qortal.network.message.GetBlockSummariesMessage;
 import org.qortal.network.message.GetSignaturesV2Message;
 import org.qortal.network.message.Message;
@@ -84,6 +82,9 @@ public class Synchronizer extends Thread {
 	/** Temporary estimate of synchronization progress for SysTray use. */
 	private volatile int syncPercent = 0;
 
+	/** Block download in progress, if any, for reporting window and per-peer throughput */
+	private volatile BlockDownloadPipeline blockDownloadPipeline = null;
+
 	private static volatile boolean requestSync = false;
 	private boolean syncRequestPending = false;
 
@@ -188,6 +189,12 @@ public class Synchronizer extends Thread {
 		}
 	}
 
+	/** Returns stats for block download in progress, or null if not currently downloading blocks. */
+	public BlockDownloadPipeline.StatsSnapshot getBlockDownloadStats() {
+		BlockDownloadPipeline pipeline = this.blockDownloadPipeline;
+		return pipeline != null ? pipeline.getStatsSnapshot() : null;
+	}
+
 	public void requestSync() {
 		requestSync = true;
 	}
@@ -377,7 +384,7 @@ public class Synchronizer extends Thread {
 				inferiorChainSignatures.clear();
 
 				Network network = Network.getInstance();
-				network.broadcast(broadcastPeer -> network.buildHeightMessage(broadcastPeer, newChainTip));
+				network.broadcast(network.buildHeightMessage(null, newChainTip));
 
 				EventBus.INSTANCE.notify(new NewChainTipEvent(priorChainTip, newChainTip));
 			}
@@ -1030,6 +1037,7 @@ public class Synchronizer extends Thread {
 
 					return SynchronizationResult.OK;
 				} finally {
+					this.stopBlockDownload();
 					repository.discardChanges(); // Free repository locks, if any, also in case anything went wrong
 				}
 			} catch (DataException e) {
@@ -1242,29 +1250,30 @@ public class Synchronizer extends Thread {
 		// Keep a list of blocks received so far
 		List<Block> peerBlocks = new ArrayList<>();
 
-		// Calculate the total number of additional blocks this peer has beyond the common block
-		int additionalPeerBlocksAfterCommonBlock = peerHeight - commonBlockHeight;
-		// Subtract the number of signatures that we already have, as we don't need to request them again
-		int numberSignaturesRequired = additionalPeerBlocksAfterCommonBlock - peerBlockSignatures.size();
+		// Blocks are requested several at a time, possibly from several peers, but received in order
+		BlockDownloadPipeline pipeline = this.startBlockDownload(repository, peer, commonBlockSig, peerBlockSummaries);
+		// Signature of last block queued for download, i.e. where to request more signatures from
+		byte[] latestQueuedSignature = commonBlockSig;
 
 		int retryCount = 0;
 		while (height < peerHeight) {
 			if (Controller.isStopping())
 				return SynchronizationResult.SHUTTING_DOWN;
 
+			final int queuedHeight = height + pipeline.size();
 			// Ensure we don't request more than MAXIMUM_REQUEST_SIZE
-			int numberRequested = Math.min(numberSignaturesRequired, MAXIMUM_REQUEST_SIZE);
+			int numberRequested = Math.min(peerHeight - queuedHeight, MAXIMUM_REQUEST_SIZE);
 
-			// Do we need more signatures?
-			if (peerBlockSignatures.isEmpty() && numberRequested > 0) {
+			// Do we need more signatures? Fetch them while blocks are still in flight, to keep the window full
+			if (peerBlockSignatures.isEmpty() && numberRequested > 0 && pipeline.size() < pipeline.getWindowSize()) {
 				LOGGER.trace(String.format("Requesting %d signature%s after height %d, sig %.8s",
-						numberRequested, (numberRequested != 1 ? "s" : ""), height, Base58.encode(latestPeerSignature)));
+						numberRequested, (numberRequested != 1 ? "s" : ""), queuedHeight, Base58.encode(latestQueuedSignature)));
 
-				peerBlockSignatures = this.getBlockSignatures(peer, latestPeerSignature, numberRequested);
+				peerBlockSignatures = this.getBlockSignatures(peer, latestQueuedSignature, numberRequested);
 
 				if (peerBlockSignatures == null || peerBlockSignatures.isEmpty()) {
 					LOGGER.info(String.format("Peer %s failed to respond with more block signatures after height %d, sig %.8s", peer,
-							height, Base58.encode(latestPeerSignature)));
+							queuedHeight, Base58.encode(latestQueuedSignature)));
 
 					// Clear our cache of common block summaries for this peer, as they are likely to be invalid
 					CommonBlockData cachedCommonBlockData = peer.getCommonBlockData();
@@ -1297,11 +1306,10 @@ public class Synchronizer extends Thread {
                     return SynchronizationResult.NO_REPLY;
                 }
 
-				numberSignaturesRequired = peerHeight - height - peerBlockSignatures.size();
 				LOGGER.trace(String.format("Received %s signature%s", peerBlockSignatures.size(), (peerBlockSignatures.size() != 1 ? "s" : "")));
 			}
 
-			if (peerBlockSignatures.isEmpty()) {
+			if (peerBlockSignatures.isEmpty() && pipeline.isEmpty()) {
 				LOGGER.trace(String.format("No more signatures or blocks to request from peer %s", peer));
 				break;
 			}
@@ -1322,11 +1330,21 @@ public class Synchronizer extends Thread {
 				}
 			}
 
-			byte[] nextPeerSignature = peerBlockSignatures.get(0);
+			// Queue block downloads for newly received signatures
+			int nextQueuedHeight = queuedHeight;
+			for (byte[] peerBlockSignature : peerBlockSignatures)
+				pipeline.enqueue(++nextQueuedHeight, peerBlockSignature);
+
+			if (!peerBlockSignatures.isEmpty())
+				latestQueuedSignature = peerBlockSignatures.get(peerBlockSignatures.size() - 1);
+
+			peerBlockSignatures.clear();
+
+			byte[] nextPeerSignature = pipeline.peekNextSignature();
 			int nextHeight = height + 1;
 
 			LOGGER.trace(String.format("Fetching block %d, sig %.8s from %s", nextHeight, Base58.encode(nextPeerSignature), peer));
-			Block newBlock = this.fetchBlock(repository, peer, nextPeerSignature);
+			Block newBlock = pipeline.takeNext();
 
 			if (newBlock == null) {
 				LOGGER.info(String.format("Peer %s failed to respond with block for height %d, sig %.8s", peer,
@@ -1360,8 +1378,9 @@ public class Synchronizer extends Thread {
 
 				} else {
 					// Re-fetch signatures, in case the peer is now on a different fork
+					pipeline.cancel();
 					peerBlockSignatures.clear();
-					numberSignaturesRequired = peerHeight - height;
+					latestQueuedSignature = latestPeerSignature;
 
 					// Retry until retryCount reaches maxRetries
 					retryCount++;
@@ -1374,11 +1393,11 @@ public class Synchronizer extends Thread {
 			// Reset retryCount because the last request succeeded
 			retryCount = 0;
 
-			LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", nextHeight, Base58.encode(latestPeerSignature), peer));
+			LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", nextHeight, Base58.encode(nextPeerSignature), peer));
 
 			if (!newBlock.isSignatureValid()) {
 				LOGGER.info(String.format("Peer %s sent block with invalid signature for height %d, sig %.8s", peer,
-						nextHeight, Base58.encode(latestPeerSignature)));
+						nextHeight, Base58.encode(nextPeerSignature)));
 				return SynchronizationResult.INVALID_DATA;
 			}
 
@@ -1390,10 +1409,12 @@ public class Synchronizer extends Thread {
 
 			// Now that we've received this block, we can increase our height and move on to the next one
 			latestPeerSignature = nextPeerSignature;
-			peerBlockSignatures.remove(0);
 			++height;
 		}
 
+		// Don't leave any requests outstanding while we orphan and apply
+		this.stopBlockDownload();
+
 		// Unwind to common block (unless common block is our latest block)
 		int ourHeight = ourInitialHeight;
 		LOGGER.debug(String.format("Orphaning blocks back to common block height %d, sig %.8s. Our height: %d", commonBlockHeight, commonBlockSig58, ourHeight));
@@ -1473,34 +1494,50 @@ public class Synchronizer extends Thread {
 		// Convert any block summaries from above into signatures to request from peer
 		List<byte[]> peerBlockSignatures = peerBlockSummaries.stream().map(BlockSummaryData::getSignature).collect(Collectors.toList());
 
+		// Blocks are requested several at a time, possibly from several peers, but received and applied in order
+		BlockDownloadPipeline pipeline = this.startBlockDownload(repository, peer, commonBlockSig, peerBlockSummaries);
+		// Height and signature of last block queued for download, i.e. where to request more signatures from
+		int queuedHeight = ourHeight;
+		byte[] latestQueuedSignature = commonBlockSig;
+		final int lastBatchHeight = Math.min(peerHeight, maxBatchHeight);
+
 		while (ourHeight < peerHeight && ourHeight < maxBatchHeight) {
 			if (Controller.isStopping())
 				return SynchronizationResult.SHUTTING_DOWN;
 
-			// Do we need more signatures?
-			if (peerBlockSignatures.isEmpty()) {
-				int numberRequested = Math.min(maxBatchHeight - ourHeight, MAXIMUM_REQUEST_SIZE);
+			// Do we need more signatures? Fetch them while blocks are still in flight, to keep the window full
+			if (peerBlockSignatures.isEmpty() && queuedHeight < lastBatchHeight && pipeline.size() < pipeline.getWindowSize()) {
+				int numberRequested = Math.min(maxBatchHeight - queuedHeight, MAXIMUM_REQUEST_SIZE);
 
 				LOGGER.trace(String.format("Requesting %d signature%s after height %d, sig %.8s",
-						numberRequested, (numberRequested != 1 ? "s": ""), ourHeight, Base58.encode(latestPeerSignature)));
+						numberRequested, (numberRequested != 1 ? "s": ""), queuedHeight, Base58.encode(latestQueuedSignature)));
 
-				peerBlockSignatures = this.getBlockSignatures(peer, latestPeerSignature, numberRequested);
+				peerBlockSignatures = this.getBlockSignatures(peer, latestQueuedSignature, numberRequested);
 
 				if (peerBlockSignatures == null || peerBlockSignatures.isEmpty()) {
 					LOGGER.info(String.format("Peer %s failed to respond with more block signatures after height %d, sig %.8s", peer,
-							ourHeight, Base58.encode(latestPeerSignature)));
+							queuedHeight, Base58.encode(latestQueuedSignature)));
 					return SynchronizationResult.NO_REPLY;
 				}
 
 				LOGGER.trace(String.format("Received %s signature%s", peerBlockSignatures.size(), (peerBlockSignatures.size() != 1 ? "s" : "")));
 			}
 
-			latestPeerSignature = peerBlockSignatures.get(0);
-			peerBlockSignatures.remove(0);
+			// Queue block downloads, up to end of this batch
+			for (byte[] peerBlockSignature : peerBlockSignatures) {
+				if (queuedHeight >= lastBatchHeight)
+					break;
+
+				pipeline.enqueue(++queuedHeight, peerBlockSignature);
+				latestQueuedSignature = peerBlockSignature;
+			}
+			peerBlockSignatures.clear();
+
+			latestPeerSignature = pipeline.peekNextSignature();
 			++ourHeight;
 
 			LOGGER.trace(String.format("Fetching block %d, sig %.8s from %s", ourHeight, Base58.encode(latestPeerSignature), peer));
-			Block newBlock = this.fetchBlock(repository, peer, latestPeerSignature);
+			Block newBlock = pipeline.takeNext();
 			LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", ourHeight, Base58.encode(latestPeerSignature), peer));
 
 			if (newBlock == null) {
@@ -1575,16 +1612,44 @@ public class Synchronizer extends Thread {
 		return signaturesMessage.getSignatures();
 	}
 
-	private Block fetchBlock(Repository repository, Peer peer, byte[] signature) throws InterruptedException {
-		Message getBlockMessage = new GetBlockMessage(signature);
+	/**
+	 * Starts new block download from <tt>peer</tt>, also using other peers on the same chain, if allowed.
+	 */
+	private BlockDownloadPipeline startBlockDownload(Repository repository, Peer peer, byte[] commonBlockSignature, List<BlockSummaryData> peerBlockSummaries) {
+		List<Peer> downloadPeers = new ArrayList<>();
+		downloadPeers.add(peer);
 
-		Message message = peer.getResponse(getBlockMessage);
-		if (message == null || message.getType() != MessageType.BLOCK)
-			return null;
+		final int maxDownloadPeers = Settings.getInstance().getMaxSyncDownloadPeers();
 
-		BlockMessage blockMessage = (BlockMessage) message;
+		for (Peer otherPeer : Network.getInstance().getImmutableHandshakedPeers()) {
+			if (downloadPeers.size() >= maxDownloadPeers)
+				break;
+
+			if (otherPeer == peer)
+				continue;
+
+			// Other peer must be able to supply the blocks we're about to request from sync peer
+			if (BlockDownloadPipeline.isOnTargetChain(otherPeer, peer, commonBlockSignature, peerBlockSummaries))
+				downloadPeers.add(otherPeer);
+		}
+
+		BlockDownloadPipeline pipeline = new BlockDownloadPipeline(repository, downloadPeers, Settings.getInstance().getSyncBlockWindowSize());
+		this.blockDownloadPipeline = pipeline;
+
+		LOGGER.debug(() -> String.format("Downloading blocks from %d peer%s with window size %d", downloadPeers.size(),
+				(downloadPeers.size() != 1 ? "s" : ""), pipeline.getWindowSize()));
+
+		return pipeline;
+	}
+
+	/** Cancels any outstanding block download requests. */
+	private void stopBlockDownload() {
+		BlockDownloadPipeline pipeline = this.blockDownloadPipeline;
+		if (pipeline == null)
+			return;
 
-		return new Block(repository, blockMessage.getBlockData(), blockMessage.getTransactions(), blockMessage.getAtStates());
+		pipeline.cancel();
+		this.blockDownloadPipeline = null;
 	}
 
 	public void populateBlockSummariesMinterLevels(Repository repository, List<BlockSummaryData> blockSummaries) throws DataException {
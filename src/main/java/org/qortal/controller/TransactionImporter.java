@@ -15,10 +15,19 @@ import org.qortal.settings.Settings;
 import org.qortal.transaction.Transaction;
 import org.qortal.transform.TransformationException;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.DaemonThreadFactory;
 import org.qortal.utils.NTP;
 
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class TransactionImporter extends Thread {
@@ -30,6 +39,12 @@ public class TransactionImporter extends Thread {
 
     private static final int MAX_INCOMING_TRANSACTIONS = 5000;
 
+    /** Maximum number of transactions to signature-verify in one worker task */
+    private static final int SIGNATURE_VERIFICATION_BATCH_SIZE = 100;
+
+    /** Maximum number of transactions to import, under blockchain lock, before committing */
+    private static final int IMPORT_BATCH_SIZE = 100;
+
     /** Minimum time before considering an invalid unconfirmed transaction as "stale" */
     public static final long INVALID_TRANSACTION_STALE_TIMEOUT = 30 * 60 * 1000L; // ms
     /** Minimum frequency to re-request stale unconfirmed transactions from peers, to recheck validity */
@@ -42,9 +57,44 @@ public class TransactionImporter extends Thread {
     /** Map of incoming transaction that are in the import queue. Key is transaction data, value is whether signature has been validated. */
     private final Map<TransactionData, Boolean> incomingTransactions = Collections.synchronizedMap(new HashMap<>());
 
+    /** Worker pool for verifying incoming transaction signatures, off the blockchain lock. */
+    private final ExecutorService signatureVerificationExecutor = Executors.newFixedThreadPool(
+            Settings.getInstance().getTransactionSignatureVerificationThreadCount(), new DaemonThreadFactory("Transaction-SigVerify"));
+
     /** Map of recent invalid unconfirmed transactions. Key is base58 transaction signature, value is do-not-request expiry timestamp. */
     private final Map<String, Long> invalidUnconfirmedTransactions = Collections.synchronizedMap(new HashMap<>());
 
+    // Import stats
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong importedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong lockHoldCount = new AtomicLong();
+    private final AtomicLong totalLockHeldMillis = new AtomicLong();
+    private final AtomicLong maxLockHeldMillis = new AtomicLong();
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        /** Transactions waiting to be imported */
+        public int queueSize;
+        /** Committed import batches */
+        public long batches;
+        public long imported;
+        /** Transactions rejected as invalid or already existing */
+        public long rejected;
+        /** Transactions left in queue due to repository issue */
+        public long failed;
+        /** Number of times blockchain lock was held to import transactions */
+        public long lockHolds;
+        public long totalLockHeldMs;
+        public long maxLockHeldMs;
+        /** Imports per second of blockchain lock hold time */
+        public long importsPerSecond;
+
+        public StatsSnapshot() {
+        }
+    }
+
 
     public static synchronized TransactionImporter getInstance() {
         if (instance == null) {
@@ -74,6 +124,7 @@ public class TransactionImporter extends Thread {
 
     public void shutdown() {
         isStopping = true;
+        this.signatureVerificationExecutor.shutdownNow();
         this.interrupt();
     }
 
@@ -90,6 +141,17 @@ public class TransactionImporter extends Thread {
         incomingTransactions.keySet().removeIf(t -> Arrays.equals(t.getSignature(), signature));
     }
 
+    private void removeIncomingTransactions(List<TransactionData> transactions) {
+        if (transactions.isEmpty())
+            return;
+
+        Set<ByteArray> signatures = new HashSet<>();
+        for (TransactionData transactionData : transactions)
+            signatures.add(ByteArray.wrap(transactionData.getSignature()));
+
+        incomingTransactions.keySet().removeIf(t -> signatures.contains(ByteArray.wrap(t.getSignature())));
+    }
+
     private void processIncomingTransactionsQueue() {
         if (this.incomingTransactions.isEmpty()) {
             // Nothing to do?
@@ -108,58 +170,73 @@ public class TransactionImporter extends Thread {
             }
 
             List<Transaction> sigValidTransactions = new ArrayList<>();
+            List<TransactionData> unvalidatedTransactions = new ArrayList<>();
 
             boolean isLiteNode = Settings.getInstance().isLite();
 
-            // Signature validation round - does not require blockchain lock
             for (Map.Entry<TransactionData, Boolean> transactionEntry : incomingTransactionsCopy.entrySet()) {
+                TransactionData transactionData = transactionEntry.getKey();
+
+                // Only validate signature if we haven't already done so
+                Boolean isSigValid = transactionEntry.getValue();
+                if (Boolean.TRUE.equals(isSigValid)) {
+                    LOGGER.trace(() -> String.format("Transaction %s known to have valid signature", Base58.encode(transactionData.getSignature())));
+                    sigValidTransactions.add(Transaction.fromData(repository, transactionData));
+                    continue;
+                }
+
+                if (isLiteNode) {
+                    // Lite nodes can't easily validate transactions, so for now we will have to assume that everything is valid
+                    sigValidTransactions.add(Transaction.fromData(repository, transactionData));
+                    continue;
+                }
+
+                unvalidatedTransactions.add(transactionData);
+            }
+
+            // Signature validation round - does not require blockchain lock
+            Boolean[] sigValidResults = this.verifySignatures(unvalidatedTransactions);
+
+            for (int i = 0; i < unvalidatedTransactions.size(); ++i) {
                 // Quick exit?
                 if (isStopping) {
                     return;
                 }
 
-                TransactionData transactionData = transactionEntry.getKey();
-                Transaction transaction = Transaction.fromData(repository, transactionData);
+                TransactionData transactionData = unvalidatedTransactions.get(i);
+                Boolean isSigValid = sigValidResults[i];
 
-                // Only validate signature if we haven't already done so
-                Boolean isSigValid = transactionEntry.getValue();
-                if (!Boolean.TRUE.equals(isSigValid)) {
-                    if (isLiteNode) {
-                        // Lite nodes can't easily validate transactions, so for now we will have to assume that everything is valid
-                        sigValidTransactions.add(transaction);
-                        continue;
-                    }
-
-                    if (!transaction.isSignatureValid()) {
-                        String signature58 = Base58.encode(transactionData.getSignature());
+                if (isSigValid == null) {
+                    // Not checked this round (e.g. worker failure) so leave in queue for next round
+                    continue;
+                }
 
-                        LOGGER.trace("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
-                        removeIncomingTransaction(transactionData.getSignature());
+                if (!isSigValid) {
+                    String signature58 = Base58.encode(transactionData.getSignature());
 
-                        // Also add to invalidIncomingTransactions map
-                        Long now = NTP.getTime();
-                        if (now != null) {
-                            Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
-                            LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
-                            // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
-                            invalidUnconfirmedTransactions.put(signature58, expiry);
-                        }
+                    LOGGER.trace("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
+                    removeIncomingTransaction(transactionData.getSignature());
 
-                        continue;
-                    }
-                    else {
-                        // Count the number that were validated in this round, for logging purposes
-                        validatedCount++;
+                    // Also add to invalidIncomingTransactions map
+                    Long now = NTP.getTime();
+                    if (now != null) {
+                        Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
+                        LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
+                        // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
+                        invalidUnconfirmedTransactions.put(signature58, expiry);
                     }
 
-                    // Add mark signature as valid if transaction still exists in import queue
-                    incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
-                } else {
-                    LOGGER.trace(() -> String.format("Transaction %s known to have valid signature", Base58.encode(transactionData.getSignature())));
+                    continue;
                 }
 
+                // Count the number that were validated in this round, for logging purposes
+                validatedCount++;
+
+                // Add mark signature as valid if transaction still exists in import queue
+                incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
+
                 // Signature valid - add to shortlist
-                sigValidTransactions.add(transaction);
+                sigValidTransactions.add(Transaction.fromData(repository, transactionData));
             }
 
             if (unvalidatedCount > 0) {
@@ -191,73 +268,239 @@ public class TransactionImporter extends Thread {
 
             LOGGER.debug("Processing incoming transactions queue (size {})...", sigValidTransactions.size());
 
-            // Import transactions with valid signatures
+            final long lockAcquiredNanos = System.nanoTime();
+            int importedThisRound = 0;
+
+            // Import transactions with valid signatures, in batches
             try {
-                for (int i = 0; i < sigValidTransactions.size(); ++i) {
+                for (int batchStart = 0; batchStart < sigValidTransactions.size(); batchStart += IMPORT_BATCH_SIZE) {
                     if (isStopping) {
                         return;
                     }
 
                     if (Synchronizer.getInstance().isSyncRequestPending()) {
-                        LOGGER.debug("Breaking out of transaction processing with {} remaining, because a sync request is pending", sigValidTransactions.size() - i);
+                        LOGGER.debug("Breaking out of transaction processing with {} remaining, because a sync request is pending", sigValidTransactions.size() - batchStart);
                         return;
                     }
 
-                    Transaction transaction = sigValidTransactions.get(i);
-                    TransactionData transactionData = transaction.getTransactionData();
+                    int batchEnd = Math.min(batchStart + IMPORT_BATCH_SIZE, sigValidTransactions.size());
+                    importedThisRound += importTransactionBatch(repository, sigValidTransactions.subList(batchStart, batchEnd));
+                }
+            } finally {
+                LOGGER.debug("Finished processing incoming transactions queue");
 
-                    Transaction.ValidationResult validationResult = transaction.importAsUnconfirmed();
+                // Clear any repository-based locks before releasing blockchain lock, as in Transaction.importAsUnconfirmed()
+                repository.discardChanges();
 
-                    switch (validationResult) {
-                        case TRANSACTION_ALREADY_EXISTS: {
-                            LOGGER.trace(() -> String.format("Ignoring existing transaction %s", Base58.encode(transactionData.getSignature())));
-                            break;
-                        }
+                ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+                blockchainLock.unlock();
 
-                        case NO_BLOCKCHAIN_LOCK: {
-                            // Is this even possible considering we acquired blockchain lock above?
-                            LOGGER.trace(() -> String.format("Couldn't lock blockchain to import unconfirmed transaction %s", Base58.encode(transactionData.getSignature())));
-                            break;
-                        }
+                this.onLockReleased(System.nanoTime() - lockAcquiredNanos, importedThisRound);
+            }
+        } catch (DataException e) {
+            LOGGER.error("Repository issue while processing incoming transactions", e);
+        }
+    }
 
-                        case OK: {
-                            LOGGER.debug(() -> String.format("Imported %s transaction %s", transactionData.getType().name(), Base58.encode(transactionData.getSignature())));
-                            break;
-                        }
+    /**
+     * Imports <tt>batch</tt> of signature-valid transactions in one repository transaction, then commits.
+     * <p>
+     * Caller must hold blockchain lock. Each transaction is validated against those earlier in the batch,
+     * and rolled back individually if invalid, so one bad transaction doesn't affect the rest.
+     * Valid transactions are then saved again, after discarding validation's changes, and committed.
+     * Transactions that hit a repository issue are left in the import queue to try again next round.
+     *
+     * @return number of transactions imported
+     */
+    private int importTransactionBatch(Repository repository, List<Transaction> batch) throws DataException {
+        List<Transaction> validTransactions = new ArrayList<>();
+        List<TransactionData> rejectedTransactions = new ArrayList<>();
+
+        for (Transaction transaction : batch) {
+            TransactionData transactionData = transaction.getTransactionData();
+
+            Transaction.ValidationResult validationResult;
+            try {
+                validationResult = transaction.importAsUnconfirmedInBatch();
+            } catch (DataException e) {
+                LOGGER.debug(() -> String.format("Repository issue while importing transaction %s", Base58.encode(transactionData.getSignature())), e);
+                this.failedCount.incrementAndGet();
+                continue;
+            }
+
+            switch (validationResult) {
+                case TRANSACTION_ALREADY_EXISTS: {
+                    LOGGER.trace(() -> String.format("Ignoring existing transaction %s", Base58.encode(transactionData.getSignature())));
+                    rejectedTransactions.add(transactionData);
+                    break;
+                }
+
+                case OK: {
+                    validTransactions.add(transaction);
+                    break;
+                }
+
+                // All other invalid cases:
+                default: {
+                    final String signature58 = Base58.encode(transactionData.getSignature());
+                    LOGGER.trace(() -> String.format("Ignoring invalid (%s) %s transaction %s", validationResult.name(), transactionData.getType().name(), signature58));
 
-                        // All other invalid cases:
-                        default: {
-                            final String signature58 = Base58.encode(transactionData.getSignature());
-                            LOGGER.trace(() -> String.format("Ignoring invalid (%s) %s transaction %s", validationResult.name(), transactionData.getType().name(), signature58));
-
-                            Long now = NTP.getTime();
-                            if (now != null && now - transactionData.getTimestamp() > INVALID_TRANSACTION_STALE_TIMEOUT) {
-                                Long expiryLength = INVALID_TRANSACTION_RECHECK_INTERVAL;
-
-                                if (validationResult == Transaction.ValidationResult.TIMESTAMP_TOO_OLD) {
-                                    // Use shorter recheck interval for expired transactions
-                                    expiryLength = EXPIRED_TRANSACTION_RECHECK_INTERVAL;
-                                }
-
-                                Long expiry = now + expiryLength;
-                                LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
-                                // Invalid, unconfirmed transaction has become stale - add to invalidUnconfirmedTransactions so that we don't keep requesting it
-                                invalidUnconfirmedTransactions.put(signature58, expiry);
-                            }
+                    Long now = NTP.getTime();
+                    if (now != null && now - transactionData.getTimestamp() > INVALID_TRANSACTION_STALE_TIMEOUT) {
+                        Long expiryLength = INVALID_TRANSACTION_RECHECK_INTERVAL;
+
+                        if (validationResult == Transaction.ValidationResult.TIMESTAMP_TOO_OLD) {
+                            // Use shorter recheck interval for expired transactions
+                            expiryLength = EXPIRED_TRANSACTION_RECHECK_INTERVAL;
                         }
+
+                        Long expiry = now + expiryLength;
+                        LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
+                        // Invalid, unconfirmed transaction has become stale - add to invalidUnconfirmedTransactions so that we don't keep requesting it
+                        invalidUnconfirmedTransactions.put(signature58, expiry);
                     }
 
-                    // Transaction has been processed, even if only to reject it
-                    removeIncomingTransaction(transactionData.getSignature());
+                    rejectedTransactions.add(transactionData);
                 }
-            } finally {
-                LOGGER.debug("Finished processing incoming transactions queue");
-                ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
-                blockchainLock.unlock();
             }
-        } catch (DataException e) {
-            LOGGER.error("Repository issue while processing incoming transactions", e);
         }
+
+        // Rejected transactions have been processed, even if only to reject them
+        removeIncomingTransactions(rejectedTransactions);
+        this.rejectedCount.addAndGet(rejectedTransactions.size());
+
+        /*
+         * Validation reads take HSQLDB transactional table locks, which can cause deadlocks or
+         * "serialization failure" with other repository sessions if held while saving,
+         * so we call discardChanges() to release them, as in Transaction.importAsUnconfirmed().
+         *
+         * This also discards the tentative saves that let later transactions be validated against
+         * earlier ones in the batch, so valid transactions are saved again below without revalidating,
+         * which is also when each transaction's import hook is called.
+         * That's safe because we hold the blockchain lock, so no other thread can import or confirm
+         * transactions in between.
+         */
+        repository.discardChanges();
+
+        if (validTransactions.isEmpty())
+            return 0;
+
+        List<TransactionData> importedTransactions = new ArrayList<>();
+        for (Transaction transaction : validTransactions) {
+            TransactionData transactionData = transaction.getTransactionData();
+
+            try {
+                transaction.saveAsUnconfirmedInBatch();
+                importedTransactions.add(transactionData);
+            } catch (DataException e) {
+                LOGGER.debug(() -> String.format("Repository issue while saving transaction %s", Base58.encode(transactionData.getSignature())), e);
+                this.failedCount.incrementAndGet();
+            }
+        }
+
+        if (importedTransactions.isEmpty())
+            return 0;
+
+        // If commit fails, imported transactions remain in queue to try again next round
+        repository.saveChanges();
+
+        removeIncomingTransactions(importedTransactions);
+        this.importedCount.addAndGet(importedTransactions.size());
+        this.batchCount.incrementAndGet();
+
+        for (TransactionData transactionData : importedTransactions) {
+            LOGGER.debug(() -> String.format("Imported %s transaction %s", transactionData.getType().name(), Base58.encode(transactionData.getSignature())));
+
+            // Notify controller of new transaction
+            Controller.getInstance().onNewTransaction(transactionData);
+        }
+
+        return importedTransactions.size();
+    }
+
+    private void onLockReleased(long lockHeldNanos, int importedCount) {
+        long lockHeldMillis = TimeUnit.NANOSECONDS.toMillis(lockHeldNanos);
+
+        this.lockHoldCount.incrementAndGet();
+        this.totalLockHeldMillis.addAndGet(lockHeldMillis);
+        this.maxLockHeldMillis.accumulateAndGet(lockHeldMillis, Math::max);
+
+        LOGGER.debug("Imported {} transactions while holding blockchain lock for {} ms", importedCount, lockHeldMillis);
+    }
+
+    public StatsSnapshot getStatsSnapshot() {
+        StatsSnapshot snapshot = new StatsSnapshot();
+
+        snapshot.queueSize = this.incomingTransactions.size();
+        snapshot.batches = this.batchCount.get();
+        snapshot.imported = this.importedCount.get();
+        snapshot.rejected = this.rejectedCount.get();
+        snapshot.failed = this.failedCount.get();
+        snapshot.lockHolds = this.lockHoldCount.get();
+        snapshot.totalLockHeldMs = this.totalLockHeldMillis.get();
+        snapshot.maxLockHeldMs = this.maxLockHeldMillis.get();
+        snapshot.importsPerSecond = snapshot.totalLockHeldMs > 0 ? snapshot.imported * 1000 / snapshot.totalLockHeldMs : 0;
+
+        return snapshot;
+    }
+
+    /**
+     * Verifies signatures of <tt>transactions</tt> using signature-verification worker pool.
+     * <p>
+     * Transactions are split into batches, one per worker task. Each task uses its own repository session
+     * as some transaction types (e.g. CHAT) need repository access to check their proof-of-work nonce.
+     *
+     * @return signature validity, in same order as <tt>transactions</tt>, or <tt>null</tt> entries if not checked
+     */
+    private Boolean[] verifySignatures(List<TransactionData> transactions) {
+        final Boolean[] results = new Boolean[transactions.size()];
+
+        if (transactions.isEmpty()) {
+            return results;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int fromIndex = 0; fromIndex < transactions.size(); fromIndex += SIGNATURE_VERIFICATION_BATCH_SIZE) {
+            final int batchFromIndex = fromIndex;
+            final int batchToIndex = Math.min(fromIndex + SIGNATURE_VERIFICATION_BATCH_SIZE, transactions.size());
+
+            futures.add(this.signatureVerificationExecutor.submit(() -> {
+                final long batchStartTime = System.currentTimeMillis();
+
+                try (final Repository repository = RepositoryManager.getRepository()) {
+                    for (int i = batchFromIndex; i < batchToIndex && !isStopping; ++i) {
+                        Transaction transaction = Transaction.fromData(repository, transactions.get(i));
+                        results[i] = transaction.isSignatureValid();
+                    }
+                }
+
+                LOGGER.trace("Verified batch of {} transaction signatures in {}ms",
+                        batchToIndex - batchFromIndex, System.currentTimeMillis() - batchStartTime);
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Failed to verify batch of incoming transaction signatures", e.getCause());
+            } catch (InterruptedException e) {
+                // Shutdown situation - unchecked results are left as null
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        final long totalTime = System.currentTimeMillis() - startTime;
+        LOGGER.debug("Verified {} transaction signatures in {} batches in {}ms ({} per second, {} threads)",
+                transactions.size(), futures.size(), totalTime,
+                transactions.size() * 1000L / Math.max(totalTime, 1L),
+                Settings.getInstance().getTransactionSignatureVerificationThreadCount());
+
+        return results;
     }
 
     private void cleanupInvalidTransactionsList(Long now) {
@@ -0,0 +1,441 @@
+package org.qortal.controller.arbitrary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.network.Peer;
+import org.qortal.utils.Base58;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Schedules requests for missing QDN chunks across every peer that has advertised them, swarm-style.
+ * <p>
+ * Peers advertise which chunks of a resource they can supply via ARBITRARY_DATA_FILE_LIST responses.
+ * For each resource (i.e. signature), we track which peers hold which of our missing chunks,
+ * then hand out requests to the shared pool of request threads:
+ * <ul>
+ * <li>rarest chunks first, so chunks held by few peers are fetched while those peers are still around</li>
+ * <li>each chunk is only requested from one peer at a time</li>
+ * <li>each peer has at most <tt>maxRequestsPerPeer</tt> requests in flight</li>
+ * <li>untried peers first, so they get measured, then fastest peers</li>
+ * </ul>
+ * Peers that repeatedly fail, or whose throughput falls well behind the fastest peer for the same resource,
+ * are dropped from that resource's swarm, as long as another peer remains.
+ * <p>
+ * Thread-safe.
+ */
+public class ArbitraryDataChunkScheduler {
+
+    private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataChunkScheduler.class);
+
+    /** Maximum number of resources being downloaded at once */
+    private static final int MAX_SWARMS = 100;
+    /** Number of failed requests after which a peer is dropped from a swarm */
+    private static final int MAX_PEER_FAILURES = 3;
+    /** Number of chunks a peer must have delivered before its throughput is compared with other peers */
+    private static final int MIN_THROUGHPUT_SAMPLES = 3;
+
+    /** Request for a chunk, to be reported back via one of the <tt>onChunk...()</tt> methods once finished. */
+    public static class ChunkRequest {
+        private final byte[] signature;
+        private final String signature58;
+        private final byte[] hash;
+        private final String hash58;
+        private final Peer peer;
+        private final long startNanos;
+
+        private ChunkRequest(Swarm swarm, Chunk chunk, Peer peer) {
+            this.signature = swarm.signature;
+            this.signature58 = swarm.signature58;
+            this.hash = chunk.hash;
+            this.hash58 = chunk.hash58;
+            this.peer = peer;
+            this.startNanos = System.nanoTime();
+        }
+
+        public byte[] getSignature() {
+            return this.signature;
+        }
+
+        public String getSignature58() {
+            return this.signature58;
+        }
+
+        public byte[] getHash() {
+            return this.hash;
+        }
+
+        public String getHash58() {
+            return this.hash58;
+        }
+
+        public Peer getPeer() {
+            return this.peer;
+        }
+    }
+
+    private static class Chunk {
+        private final byte[] hash;
+        private final String hash58;
+        /** Peers that advertised this chunk */
+        private final Set<Peer> holders = new LinkedHashSet<>();
+        private boolean isInFlight;
+
+        private Chunk(byte[] hash, String hash58) {
+            this.hash = hash;
+            this.hash58 = hash58;
+        }
+    }
+
+    private static class PeerState {
+        private final Peer peer;
+        private int requestHops;
+        private long lastAdvertised;
+        private int inFlight;
+        private int failures;
+        private int chunksReceived;
+        private long bytesReceived;
+        private long nanosTaken;
+
+        private PeerState(Peer peer) {
+            this.peer = peer;
+        }
+
+        /** Returns bytes per second, or -1 if peer hasn't delivered enough chunks to tell. */
+        private double getThroughput() {
+            if (this.chunksReceived < MIN_THROUGHPUT_SAMPLES || this.nanosTaken <= 0)
+                return -1;
+
+            return this.bytesReceived * 1_000_000_000.0 / this.nanosTaken;
+        }
+    }
+
+    /** Untried peers first, then fastest, then fewest hops away, then least busy */
+    private static final Comparator<PeerState> PEER_PREFERENCE = Comparator
+            .comparing((PeerState peerState) -> peerState.getThroughput() >= 0)
+            .thenComparing(Comparator.comparingDouble(PeerState::getThroughput).reversed())
+            .thenComparingInt(peerState -> peerState.requestHops)
+            .thenComparingInt(peerState -> peerState.inFlight);
+
+    private static class Swarm {
+        private final byte[] signature;
+        private final String signature58;
+        /** Missing chunks, keyed by hash58, in order first advertised */
+        private final Map<String, Chunk> wantedChunks = new LinkedHashMap<>();
+        private final Map<Peer, PeerState> peers = new HashMap<>();
+        /** Peers dropped for being slow or unreliable, so not re-added if they advertise again */
+        private final Set<Peer> droppedPeers = new HashSet<>();
+
+        private Swarm(byte[] signature, String signature58) {
+            this.signature = signature;
+            this.signature58 = signature58;
+        }
+
+        private boolean hasChunksInFlight() {
+            return this.wantedChunks.values().stream().anyMatch(chunk -> chunk.isInFlight);
+        }
+    }
+
+    private final int maxRequestsPerPeer;
+    private final double minRelativeThroughput;
+    /** Whether chunk is already being fetched outside of this scheduler, e.g. for relaying */
+    private final Predicate<String> isHashBusy;
+
+    /** Swarms keyed by signature58 */
+    private final Map<String, Swarm> swarms = new LinkedHashMap<>();
+    /** Index of swarm to try first next time, so swarms take turns */
+    private int nextSwarmIndex = 0;
+
+    /**
+     * @param maxRequestsPerPeer maximum number of requests in flight to each peer, per resource
+     * @param minRelativeThroughput peers with throughput below this fraction of the fastest peer's are dropped
+     * @param isHashBusy whether a chunk, by hash58, is already being fetched by other means
+     */
+    public ArbitraryDataChunkScheduler(int maxRequestsPerPeer, double minRelativeThroughput, Predicate<String> isHashBusy) {
+        this.maxRequestsPerPeer = Math.max(1, maxRequestsPerPeer);
+        this.minRelativeThroughput = minRelativeThroughput;
+        this.isHashBusy = isHashBusy;
+    }
+
+    /**
+     * Records that <tt>peer</tt> can supply <tt>hashes</tt> of resource with <tt>signature</tt>.
+     * <p>
+     * Caller should only pass hashes of chunks that we don't already have.
+     */
+    public synchronized void onChunksAdvertised(byte[] signature, Peer peer, List<byte[]> hashes, int requestHops, long now) {
+        if (hashes.isEmpty())
+            return;
+
+        String signature58 = Base58.encode(signature);
+
+        Swarm swarm = this.swarms.get(signature58);
+        if (swarm == null) {
+            if (this.swarms.size() >= MAX_SWARMS)
+                return;
+
+            swarm = new Swarm(signature, signature58);
+            this.swarms.put(signature58, swarm);
+        }
+
+        if (swarm.droppedPeers.contains(peer))
+            return;
+
+        PeerState peerState = swarm.peers.computeIfAbsent(peer, PeerState::new);
+        peerState.requestHops = requestHops;
+        peerState.lastAdvertised = now;
+
+        for (byte[] hash : hashes) {
+            String hash58 = Base58.encode(hash);
+            swarm.wantedChunks.computeIfAbsent(hash58, k -> new Chunk(hash, hash58)).holders.add(peer);
+        }
+
+        this.notifyAll();
+    }
+
+    /**
+     * Returns next chunk to request, waiting up to <tt>timeout</tt> ms for one to become available,
+     * or null if there's nothing to request.
+     */
+    public synchronized ChunkRequest takeRequest(long timeout) throws InterruptedException {
+        ChunkRequest request = this.nextRequest();
+        if (request != null)
+            return request;
+
+        this.wait(timeout);
+
+        return this.nextRequest();
+    }
+
+    /** Returns next chunk to request, or null if there's nothing to request right now. */
+    public synchronized ChunkRequest nextRequest() {
+        if (this.swarms.isEmpty())
+            return null;
+
+        List<Swarm> swarmList = new ArrayList<>(this.swarms.values());
+        final int swarmCount = swarmList.size();
+        final int startIndex = this.nextSwarmIndex % swarmCount;
+
+        for (int offset = 0; offset < swarmCount; ++offset) {
+            int swarmIndex = (startIndex + offset) % swarmCount;
+
+            ChunkRequest request = this.nextRequest(swarmList.get(swarmIndex));
+            if (request == null)
+                continue;
+
+            // Next time, start with following swarm
+            this.nextSwarmIndex = swarmIndex + 1;
+            return request;
+        }
+
+        return null;
+    }
+
+    /**
+     * Records successful fetch of requested chunk, of <tt>size</tt> bytes.
+     *
+     * @return whether resource might now be complete, as no more chunks are wanted
+     */
+    public synchronized boolean onChunkReceived(ChunkRequest request, long size) {
+        final long nanos = System.nanoTime() - request.startNanos;
+
+        Swarm swarm = this.swarms.get(request.signature58);
+        if (swarm == null)
+            // Swarm expired in the meantime, so we can't tell
+            return true;
+
+        swarm.wantedChunks.remove(request.hash58);
+
+        PeerState peerState = swarm.peers.get(request.peer);
+        if (peerState != null) {
+            peerState.inFlight--;
+            peerState.failures = 0;
+            peerState.chunksReceived++;
+            peerState.bytesReceived += size;
+            peerState.nanosTaken += nanos;
+
+            this.dropIfSlow(swarm, peerState);
+        }
+
+        this.notifyAll();
+
+        return this.removeIfComplete(swarm);
+    }
+
+    /**
+     * Records failure to fetch requested chunk, so that it can be requested from a different peer.
+     */
+    public synchronized void onChunkFailed(ChunkRequest request) {
+        Swarm swarm = this.swarms.get(request.signature58);
+        if (swarm == null)
+            return;
+
+        Chunk chunk = swarm.wantedChunks.get(request.hash58);
+        if (chunk != null) {
+            chunk.isInFlight = false;
+            // Don't ask this peer for this chunk again
+            chunk.holders.remove(request.peer);
+        }
+
+        PeerState peerState = swarm.peers.get(request.peer);
+        if (peerState != null) {
+            peerState.inFlight--;
+
+            // Only drop if there's another peer to take over
+            if (++peerState.failures >= MAX_PEER_FAILURES && swarm.peers.size() >= 2)
+                this.dropPeer(swarm, peerState, String.format("%d consecutive failures", peerState.failures));
+        }
+
+        this.notifyAll();
+    }
+
+    /**
+     * Records that requested chunk was no longer needed, e.g. we already had it, without counting towards peer's stats.
+     *
+     * @return whether resource might now be complete, as no more chunks are wanted
+     */
+    public synchronized boolean onChunkNotNeeded(ChunkRequest request) {
+        Swarm swarm = this.swarms.get(request.signature58);
+        if (swarm == null)
+            return true;
+
+        swarm.wantedChunks.remove(request.hash58);
+
+        PeerState peerState = swarm.peers.get(request.peer);
+        if (peerState != null)
+            peerState.inFlight--;
+
+        this.notifyAll();
+
+        return this.removeIfComplete(swarm);
+    }
+
+    /**
+     * Forgets peers' advertisements made before <tt>minimumTimestamp</tt>,
+     * and swarms that have no peers left.
+     */
+    public synchronized void cleanup(long minimumTimestamp) {
+        Iterator<Swarm> swarmIterator = this.swarms.values().iterator();
+        while (swarmIterator.hasNext()) {
+            Swarm swarm = swarmIterator.next();
+
+            Iterator<PeerState> peerIterator = swarm.peers.values().iterator();
+            while (peerIterator.hasNext()) {
+                PeerState peerState = peerIterator.next();
+
+                if (peerState.lastAdvertised >= minimumTimestamp || peerState.inFlight > 0)
+                    continue;
+
+                peerIterator.remove();
+                for (Chunk chunk : swarm.wantedChunks.values())
+                    chunk.holders.remove(peerState.peer);
+            }
+
+            if (swarm.peers.isEmpty() && !swarm.hasChunksInFlight())
+                swarmIterator.remove();
+        }
+    }
+
+    public synchronized int getSwarmCount() {
+        return this.swarms.size();
+    }
+
+    /** Returns number of chunks still wanted for resource with <tt>signature</tt>, including those in flight. */
+    public synchronized int getWantedChunkCount(byte[] signature) {
+        Swarm swarm = this.swarms.get(Base58.encode(signature));
+        return swarm != null ? swarm.wantedChunks.size() : 0;
+    }
+
+    /** Returns number of peers, not dropped, that are supplying resource with <tt>signature</tt>. */
+    public synchronized int getPeerCount(byte[] signature) {
+        Swarm swarm = this.swarms.get(Base58.encode(signature));
+        return swarm != null ? swarm.peers.size() : 0;
+    }
+
+    private ChunkRequest nextRequest(Swarm swarm) {
+        Chunk rarestChunk = null;
+        PeerState rarestChunkPeer = null;
+
+        for (Chunk chunk : swarm.wantedChunks.values()) {
+            if (chunk.isInFlight || chunk.holders.isEmpty())
+                continue;
+
+            // Only interested in chunks rarer than what we already have
+            if (rarestChunk != null && chunk.holders.size() >= rarestChunk.holders.size())
+                continue;
+
+            PeerState peerState = this.choosePeer(swarm, chunk);
+            if (peerState == null)
+                continue;
+
+            if (this.isHashBusy.test(chunk.hash58))
+                continue;
+
+            rarestChunk = chunk;
+            rarestChunkPeer = peerState;
+
+            // Can't get any rarer
+            if (chunk.holders.size() == 1)
+                break;
+        }
+
+        if (rarestChunk == null)
+            return null;
+
+        rarestChunk.isInFlight = true;
+        rarestChunkPeer.inFlight++;
+
+        return new ChunkRequest(swarm, rarestChunk, rarestChunkPeer.peer);
+    }
+
+    /** Returns most preferred peer, holding <tt>chunk</tt>, that can take another request, or null. */
+    private PeerState choosePeer(Swarm swarm, Chunk chunk) {
+        PeerState bestPeerState = null;
+
+        for (Peer holder : chunk.holders) {
+            PeerState peerState = swarm.peers.get(holder);
+            if (peerState == null || peerState.inFlight >= this.maxRequestsPerPeer)
+                continue;
+
+            if (bestPeerState == null || PEER_PREFERENCE.compare(peerState, bestPeerState) < 0)
+                bestPeerState = peerState;
+        }
+
+        return bestPeerState;
+    }
+
+    private void dropIfSlow(Swarm swarm, PeerState peerState) {
+        double throughput = peerState.getThroughput();
+        if (throughput < 0)
+            return;
+
+        // Only drop if there's another peer to take over
+        if (swarm.peers.size() < 2)
+            return;
+
+        double bestThroughput = swarm.peers.values().stream().mapToDouble(PeerState::getThroughput).max().orElse(-1);
+        if (throughput >= bestThroughput * this.minRelativeThroughput)
+            return;
+
+        this.dropPeer(swarm, peerState, String.format("throughput %.0f B/s vs best %.0f B/s", throughput, bestThroughput));
+    }
+
+    private void dropPeer(Swarm swarm, PeerState peerState, String reason) {
+        LOGGER.debug("Dropping peer {} from swarm for signature {}: {}", peerState.peer, swarm.signature58, reason);
+
+        swarm.peers.remove(peerState.peer);
+        swarm.droppedPeers.add(peerState.peer);
+
+        for (Chunk chunk : swarm.wantedChunks.values())
+            chunk.holders.remove(peerState.peer);
+    }
+
+    private boolean removeIfComplete(Swarm swarm) {
+        if (!swarm.wantedChunks.isEmpty())
+            return false;
+
+        this.swarms.remove(swarm.signature58);
+        return true;
+    }
+
+}
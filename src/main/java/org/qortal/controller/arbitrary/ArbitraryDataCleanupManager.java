@@ -231,7 +231,7 @@ public class ArbitraryDataCleanupManager extends Thread {
 					// limit, to avoid data getting into a fetch/delete loop.
 					if (!storageManager.isStorageSpaceAvailable(DELETION_THRESHOLD)) {
 
-						// Rate limit, to avoid repeated calls to calculateDirectorySize()
+						// Rate limit, to give in-flight writes and deletions a chance to settle before deleting more
 						Thread.sleep(60000);
 						// Now delete some data at random
 						this.storageLimitReached(repository);
@@ -306,8 +306,8 @@ public class ArbitraryDataCleanupManager extends Thread {
 		// We think that the storage limit has been reached
 
 		// Now calculate the used/total storage again, as a safety precaution
-		Long now = NTP.getTime();
-		ArbitraryDataStorageManager.getInstance().calculateDirectorySize(now);
+		// Used storage comes from the storage ledger, so this doesn't need to walk the data directory
+		ArbitraryDataStorageManager.getInstance().updateStorageCapacity();
 		if (ArbitraryDataStorageManager.getInstance().isStorageSpaceAvailable(DELETION_THRESHOLD)) {
 			// We have space available, so don't delete anything
 			return;
@@ -328,21 +328,30 @@ public class ArbitraryDataCleanupManager extends Thread {
 	}
 
 	public void storageLimitReachedForName(Repository repository, String name) throws InterruptedException {
+		ArbitraryDataStorageManager storageManager = ArbitraryDataStorageManager.getInstance();
+
 		// We think that the storage limit has been reached for supplied name - but we should double check
-		if (ArbitraryDataStorageManager.getInstance().isStorageSpaceAvailableForName(repository, name, DELETION_THRESHOLD)) {
+		if (storageManager.isStorageSpaceAvailableForName(repository, name, DELETION_THRESHOLD)) {
 			// We have space available for this name, so don't delete anything
 			return;
 		}
 
+		// The storage ledger knows which directories hold data for this name,
+		// so we can pick from those instead of wandering the entire data directory
+		storageManager.resolveStorageLedgerSignatures(repository);
+		List<File> nameDirectories = storageManager.getStorageLedger().getDirectoriesForName(name);
+
 		// Delete a batch of random chunks associated with this name
 		// This reduces the chance of too many nodes deleting the same chunk
 		// when they reach their storage limit
 		Path dataPath = Paths.get(Settings.getInstance().getDataPath());
+		SecureRandom random = new SecureRandom();
 		for (int i=0; i<CHUNK_DELETION_BATCH_SIZE; i++) {
 			if (isStopping) {
 				return;
 			}
-			this.deleteRandomFile(repository, dataPath.toFile(), name);
+			File directory = nameDirectories.isEmpty() ? dataPath.toFile() : nameDirectories.get(random.nextInt(nameDirectories.size()));
+			this.deleteRandomFile(repository, directory, name);
 		}
 	}
 
@@ -420,8 +429,10 @@ public class ArbitraryDataCleanupManager extends Thread {
 				}
 
 				LOGGER.info("Deleting random file {} because we have reached max storage capacity...", randomItem.toString());
+				long size = randomItem.length();
 				boolean success = randomItem.delete();
 				if (success) {
+					ArbitraryDataStorageManager.getInstance().getStorageLedger().onFileDeleted(randomItem.toPath(), size);
 					try {
 						FilesystemUtils.safeDeleteEmptyParentDirectories(randomItem.toPath().getParent());
 					} catch (IOException e) {
@@ -551,6 +562,7 @@ public class ArbitraryDataCleanupManager extends Thread {
 		LOGGER.info("Deleting directory {} due to reason: {}", directory, reason);
 		try {
 			FilesystemUtils.safeDeleteDirectory(directory.toPath(), true);
+			ArbitraryDataStorageManager.getInstance().getStorageLedger().onDirectoryDeleted(directory.toPath());
 			return true;
 		} catch (IOException e) {
 			LOGGER.debug("Unable to delete directory: {}", directory);
@@ -6,7 +6,6 @@ import org.qortal.arbitrary.ArbitraryDataFile;
 import org.qortal.arbitrary.ArbitraryDataFileChunk;
 import org.qortal.controller.Controller;
 import org.qortal.data.arbitrary.ArbitraryDirectConnectionInfo;
-import org.qortal.data.arbitrary.ArbitraryFileListResponseInfo;
 import org.qortal.data.arbitrary.ArbitraryRelayInfo;
 import org.qortal.data.transaction.ArbitraryTransactionData;
 import org.qortal.data.transaction.TransactionData;
@@ -24,8 +23,7 @@ import org.qortal.utils.NTP;
 import org.qortal.utils.Triple;
 
 import java.util.*;
-
-import static org.qortal.controller.arbitrary.ArbitraryDataFileManager.MAX_FILE_HASH_RESPONSES;
+import java.util.stream.Collectors;
 
 public class ArbitraryDataFileListManager {
 
@@ -303,7 +301,7 @@ public class ArbitraryDataFileListManager {
         getArbitraryDataFileListMessage.setId(id);
 
         // Broadcast request
-        Network.getInstance().broadcast(peer -> getArbitraryDataFileListMessage);
+        Network.getInstance().broadcast(getArbitraryDataFileListMessage);
 
         // Poll to see if data has arrived
         final long singleWait = 100;
@@ -466,19 +464,16 @@ public class ArbitraryDataFileListManager {
             if (!isRelayRequest || !Settings.getInstance().isRelayModeEnabled()) {
                 Long now = NTP.getTime();
 
-                if (ArbitraryDataFileManager.getInstance().arbitraryDataFileHashResponses.size() < MAX_FILE_HASH_RESPONSES) {
-                    // Keep track of the hashes this peer reports to have access to
-                    for (byte[] hash : hashes) {
-                        String hash58 = Base58.encode(hash);
+                if (now != null) {
+                    // Keep track of the missing hashes this peer reports to have access to, so we can fetch them from every such peer
+                    List<byte[]> missingHashes = hashes.stream()
+                            .filter(hash -> !arbitraryDataFile.chunkExists(hash))
+                            .collect(Collectors.toList());
 
-                        // Treat null request hops as 100, so that they are able to be sorted (and put to the end of the list)
-                        int requestHops = arbitraryDataFileListMessage.getRequestHops() != null ? arbitraryDataFileListMessage.getRequestHops() : 100;
+                    // Treat null request hops as 100, so that these peers are least preferred
+                    int requestHops = arbitraryDataFileListMessage.getRequestHops() != null ? arbitraryDataFileListMessage.getRequestHops() : 100;
 
-                        ArbitraryFileListResponseInfo responseInfo = new ArbitraryFileListResponseInfo(hash58, signature58,
-                                peer, now, arbitraryDataFileListMessage.getRequestTime(), requestHops);
-
-                        ArbitraryDataFileManager.getInstance().arbitraryDataFileHashResponses.add(responseInfo);
-                    }
+                    ArbitraryDataFileManager.getInstance().getChunkScheduler().onChunksAdvertised(signature, peer, missingHashes, requestHops, now);
                 }
 
                 // Keep track of the source peer, for direct connections
@@ -6,7 +6,6 @@ import org.apache.logging.log4j.Logger;
 import org.qortal.arbitrary.ArbitraryDataFile;
 import org.qortal.controller.Controller;
 import org.qortal.data.arbitrary.ArbitraryDirectConnectionInfo;
-import org.qortal.data.arbitrary.ArbitraryFileListResponseInfo;
 import org.qortal.data.arbitrary.ArbitraryRelayInfo;
 import org.qortal.data.network.PeerData;
 import org.qortal.data.transaction.ArbitraryTransactionData;
@@ -46,9 +45,12 @@ public class ArbitraryDataFileManager extends Thread {
     public List<ArbitraryRelayInfo> arbitraryRelayMap = Collections.synchronizedList(new ArrayList<>());
 
     /**
-     * List to keep track of any arbitrary data file hash responses
+     * Schedules requests for chunks that peers have told us they can supply
      */
-    public final List<ArbitraryFileListResponseInfo> arbitraryDataFileHashResponses = Collections.synchronizedList(new ArrayList<>());
+    private final ArbitraryDataChunkScheduler chunkScheduler = new ArbitraryDataChunkScheduler(
+            Settings.getInstance().getMaxDataChunkRequestsPerPeer(),
+            Settings.getInstance().getMinRelativeDataChunkThroughput(),
+            hash58 -> arbitraryDataFileRequests.containsKey(hash58));
 
     /**
      * List to keep track of peers potentially available for direct connections, based on recent requests
@@ -63,9 +65,6 @@ public class ArbitraryDataFileManager extends Thread {
     private Map<String, Long> recentDataRequests = Collections.synchronizedMap(new HashMap<>());
 
 
-    public static int MAX_FILE_HASH_RESPONSES = 1000;
-
-
     private ArbitraryDataFileManager() {
     }
 
@@ -82,7 +81,7 @@ public class ArbitraryDataFileManager extends Thread {
 
         try {
             // Use a fixed thread pool to execute the arbitrary data file requests
-            int threadCount = 10;
+            int threadCount = Settings.getInstance().getDataChunkRequestThreadCount();
             ExecutorService arbitraryDataFileRequestExecutor = Executors.newFixedThreadPool(threadCount);
             for (int i = 0; i < threadCount; i++) {
                 arbitraryDataFileRequestExecutor.execute(new ArbitraryDataFileRequestThread());
@@ -102,6 +101,10 @@ public class ArbitraryDataFileManager extends Thread {
         this.interrupt();
     }
 
+    public ArbitraryDataChunkScheduler getChunkScheduler() {
+        return this.chunkScheduler;
+    }
+
 
     public void cleanupRequestCache(Long now) {
         if (now == null) {
@@ -112,7 +115,7 @@ public class ArbitraryDataFileManager extends Thread {
 
         final long relayMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_RELAY_TIMEOUT;
         arbitraryRelayMap.removeIf(entry -> entry == null || entry.getTimestamp() == null || entry.getTimestamp() < relayMinimumTimestamp);
-        arbitraryDataFileHashResponses.removeIf(entry -> entry.getTimestamp() < relayMinimumTimestamp);
+        chunkScheduler.cleanup(relayMinimumTimestamp);
 
         final long directConnectionInfoMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_DIRECT_CONNECTION_INFO_TIMEOUT;
         directConnectionInfo.removeIf(entry -> entry.getTimestamp() < directConnectionInfoMinimumTimestamp);
@@ -125,61 +128,59 @@ public class ArbitraryDataFileManager extends Thread {
 
     // Fetch data files by hash
 
-    public boolean fetchArbitraryDataFiles(Repository repository,
-                                           Peer peer,
-                                           byte[] signature,
-                                           ArbitraryTransactionData arbitraryTransactionData,
-                                           List<byte[]> hashes) throws DataException {
-
-        // Load data file(s)
-        ArbitraryDataFile arbitraryDataFile = ArbitraryDataFile.fromHash(arbitraryTransactionData.getData(), signature);
-        byte[] metadataHash = arbitraryTransactionData.getMetadataHash();
-        arbitraryDataFile.setMetadataHash(metadataHash);
-        boolean receivedAtLeastOneFile = false;
-
-        // Now fetch actual data from this peer
-        for (byte[] hash : hashes) {
-            if (isStopping) {
-                return false;
-            }
-            String hash58 = Base58.encode(hash);
-            if (!arbitraryDataFile.chunkExists(hash)) {
-                // Only request the file if we aren't already requesting it from someone else
-                if (!arbitraryDataFileRequests.containsKey(Base58.encode(hash))) {
-                    LOGGER.debug("Requesting data file {} from peer {}", hash58, peer);
-                    Long startTime = NTP.getTime();
-                    ArbitraryDataFileMessage receivedArbitraryDataFileMessage = fetchArbitraryDataFile(peer, null, signature, hash, null);
-                    Long endTime = NTP.getTime();
-                    if (receivedArbitraryDataFileMessage != null && receivedArbitraryDataFileMessage.getArbitraryDataFile() != null) {
-                        LOGGER.debug("Received data file {} from peer {}. Time taken: {} ms", receivedArbitraryDataFileMessage.getArbitraryDataFile().getHash58(), peer, (endTime-startTime));
-                        receivedAtLeastOneFile = true;
-
-                        // Remove this hash from arbitraryDataFileHashResponses now that we have received it
-                        arbitraryDataFileHashResponses.remove(hash58);
-                    }
-                    else {
-                        LOGGER.debug("Peer {} didn't respond with data file {} for signature {}. Time taken: {} ms", peer, Base58.encode(hash), Base58.encode(signature), (endTime-startTime));
-
-                        // Remove this hash from arbitraryDataFileHashResponses now that we have failed to receive it
-                        arbitraryDataFileHashResponses.remove(hash58);
+    /**
+     * Fetches chunk, as scheduled by {@link ArbitraryDataChunkScheduler}, reporting the outcome back to it.
+     */
+    public void fetchScheduledChunk(ArbitraryDataChunkScheduler.ChunkRequest request) {
+        Peer peer = request.getPeer();
+        String hash58 = request.getHash58();
+        boolean mightBeComplete = false;
+        boolean isReported = false;
 
-                        // Stop asking for files from this peer
-                        break;
-                    }
-                }
-                else {
-                    LOGGER.trace("Already requesting data file {} for signature {} from peer {}", arbitraryDataFile, Base58.encode(signature), peer);
-                }
+        try {
+            if (ArbitraryDataFile.fromHash(request.getHash(), request.getSignature()).exists()) {
+                // We obtained this chunk some other way in the meantime
+                mightBeComplete = chunkScheduler.onChunkNotNeeded(request);
+                isReported = true;
             }
             else {
-                // Remove this hash from arbitraryDataFileHashResponses because we have a local copy
-                arbitraryDataFileHashResponses.remove(hash58);
+                LOGGER.debug("Requesting data file {} from peer {}", hash58, peer);
+                Long startTime = NTP.getTime();
+                ArbitraryDataFileMessage receivedArbitraryDataFileMessage = fetchArbitraryDataFile(peer, null, request.getSignature(), request.getHash(), null);
+                Long endTime = NTP.getTime();
+
+                if (receivedArbitraryDataFileMessage == null || receivedArbitraryDataFileMessage.getArbitraryDataFile() == null) {
+                    LOGGER.debug("Peer {} didn't respond with data file {} for signature {}. Time taken: {} ms", peer, hash58, request.getSignature58(), (endTime-startTime));
+                    return;
+                }
+
+                ArbitraryDataFile receivedFile = receivedArbitraryDataFileMessage.getArbitraryDataFile();
+                LOGGER.debug("Received data file {} from peer {}. Time taken: {} ms", receivedFile.getHash58(), peer, (endTime-startTime));
+
+                mightBeComplete = chunkScheduler.onChunkReceived(request, receivedFile.size());
+                isReported = true;
             }
+        } catch (DataException e) {
+            LOGGER.debug("Unable to fetch data file {} from peer {}: {}", hash58, peer, e.getMessage());
+        } finally {
+            // Anything else, including unexpected exceptions, is a failure so scheduler can ask a different peer
+            if (!isReported)
+                chunkScheduler.onChunkFailed(request);
         }
 
-        if (receivedAtLeastOneFile) {
-            // Invalidate the hosted transactions cache as we are now hosting something new
-            ArbitraryDataStorageManager.getInstance().invalidateHostedTransactionsCache();
+        if (mightBeComplete)
+            this.onAllScheduledChunksReceived(request.getSignature());
+    }
+
+    private void onAllScheduledChunksReceived(byte[] signature) {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            ArbitraryTransactionData arbitraryTransactionData = ArbitraryTransactionUtils.fetchTransactionData(repository, signature);
+            if (arbitraryTransactionData == null) {
+                return;
+            }
+
+            ArbitraryDataFile arbitraryDataFile = ArbitraryDataFile.fromHash(arbitraryTransactionData.getData(), signature);
+            arbitraryDataFile.setMetadataHash(arbitraryTransactionData.getMetadataHash());
 
             // Check if we have all the files we need for this transaction
             if (arbitraryDataFile.allFilesExist()) {
@@ -188,9 +189,9 @@ public class ArbitraryDataFileManager extends Thread {
                 // data cache so that it is rebuilt the next time we serve it
                 ArbitraryDataManager.getInstance().invalidateCache(arbitraryTransactionData);
             }
+        } catch (DataException e) {
+            LOGGER.debug("Unable to check for complete data files: {}", e.getMessage());
         }
-
-        return receivedAtLeastOneFile;
     }
 
     private ArbitraryDataFileMessage fetchArbitraryDataFile(Peer peer, Peer requestingPeer, byte[] signature, byte[] hash, Message originalMessage) throws DataException {
@@ -0,0 +1,467 @@
+package org.qortal.controller.arbitrary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.arbitrary.misc.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Running totals of QDN data stored on disk, per signature, name and service.
+ * <p>
+ * Updated as files are written to, moved within, or deleted from the data directory,
+ * so that storage limits can be checked without walking the data directory.
+ * <p>
+ * Data is attributed to a signature by its path: <tt>data/xx/yy/signature58/hash58</tt>.
+ * Anything else (e.g. <tt>_misc</tt>, or a temp directory inside the data directory) only counts towards the total.
+ * <p>
+ * Names and services aren't known from paths, so are supplied later via {@link #setSignatureDetails(String, String, Service)}.
+ * <p>
+ * Changes that bypass the ledger are corrected by {@link #reconcile(int)}, which re-sizes
+ * a few top-level directories ("buckets") at a time.
+ */
+public class ArbitraryDataStorageLedger {
+
+    private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataStorageLedger.class);
+
+    private static class SignatureUsage {
+        private final String bucket;
+        private final Path directory;
+        private long size = 0L;
+
+        private boolean isResolved = false;
+        private String name;
+        private Service service;
+
+        private SignatureUsage(String bucket, Path directory) {
+            this.bucket = bucket;
+            this.directory = directory;
+        }
+    }
+
+    private final Path dataPath;
+    private final Path tempPath;
+
+    private final Map<String, SignatureUsage> usageBySignature = new HashMap<>();
+    private final Map<String, Set<String>> signaturesByBucket = new HashMap<>();
+    private final Map<String, Long> sizeByName = new HashMap<>();
+    private final Map<Service, Long> sizeByService = new HashMap<>();
+    /** Size of files that can't be attributed to a signature, by bucket */
+    private final Map<String, Long> unattributedSizeByBucket = new HashMap<>();
+    private long totalSize = 0L;
+
+    /** Signatures whose data has changed since last call to {@link #drainChangedSignatures()} */
+    private final Set<String> changedSignatures = new HashSet<>();
+
+    /** Incremented whenever a bucket changes, so reconciliation can detect changes made during its walk */
+    private final Map<String, Long> bucketModCounts = new HashMap<>();
+    /** Buckets to reconcile at next opportunity, as they were changed in ways we couldn't track */
+    private final Set<String> dirtyBuckets = new HashSet<>();
+    /** Remaining buckets in the current reconciliation cycle */
+    private final Deque<String> reconcileQueue = new ArrayDeque<>();
+    /** Whether the whole data directory has been walked at least once */
+    private volatile boolean isComplete = false;
+
+    public ArbitraryDataStorageLedger(Path dataPath, Path tempPath) {
+        this.dataPath = dataPath.toAbsolutePath().normalize();
+        this.tempPath = tempPath.toAbsolutePath().normalize();
+    }
+
+    // Events
+
+    public void onFileWritten(Path path, long previousSize, long newSize) {
+        this.adjustSize(path, newSize - previousSize);
+    }
+
+    public void onFileDeleted(Path path, long size) {
+        this.adjustSize(path, -size);
+    }
+
+    public void onFileMoved(Path source, Path dest, long size) {
+        this.adjustSize(source, -size);
+        this.adjustSize(dest, size);
+    }
+
+    public synchronized void onDirectoryDeleted(Path directory) {
+        Path relativePath = this.relativize(directory);
+        if (relativePath == null)
+            return;
+
+        String bucket = relativePath.getName(0).toString();
+        this.bumpModCount(bucket);
+
+        String signature58 = this.signatureFromDirectory(directory, relativePath);
+        if (signature58 != null) {
+            this.removeSignature(signature58);
+            return;
+        }
+
+        // Can't tell what was in there, so re-size bucket soon
+        this.dirtyBuckets.add(bucket);
+    }
+
+    private synchronized void adjustSize(Path path, long delta) {
+        if (delta == 0)
+            return;
+
+        Path relativePath = this.relativize(path);
+        // Files directly inside data directory aren't tracked
+        if (relativePath == null || relativePath.getNameCount() < 2)
+            return;
+
+        String bucket = relativePath.getName(0).toString();
+        this.bumpModCount(bucket);
+
+        String signature58 = this.signatureFromFile(path, relativePath);
+        if (signature58 == null) {
+            this.adjustUnattributedSize(bucket, delta);
+            return;
+        }
+
+        this.adjustSignatureSize(signature58, bucket, path.toAbsolutePath().normalize().getParent(), delta);
+    }
+
+    private void adjustUnattributedSize(String bucket, long delta) {
+        long previousSize = this.unattributedSizeByBucket.getOrDefault(bucket, 0L);
+        adjust(this.unattributedSizeByBucket, bucket, delta);
+        this.totalSize += this.unattributedSizeByBucket.getOrDefault(bucket, 0L) - previousSize;
+    }
+
+    private void adjustSignatureSize(String signature58, String bucket, Path directory, long delta) {
+        SignatureUsage usage = this.usageBySignature.get(signature58);
+        if (usage == null) {
+            usage = new SignatureUsage(bucket, directory);
+            this.usageBySignature.put(signature58, usage);
+            this.signaturesByBucket.computeIfAbsent(bucket, k -> new HashSet<>()).add(signature58);
+        }
+
+        usage.size += delta;
+        this.totalSize += delta;
+        this.changedSignatures.add(signature58);
+
+        if (usage.isResolved) {
+            adjust(this.sizeByName, usage.name, delta);
+            adjust(this.sizeByService, usage.service, delta);
+        }
+
+        if (usage.size <= 0)
+            this.removeSignature(signature58);
+    }
+
+    private void removeSignature(String signature58) {
+        SignatureUsage usage = this.usageBySignature.remove(signature58);
+        if (usage == null)
+            return;
+
+        this.changedSignatures.add(signature58);
+
+        Set<String> bucketSignatures = this.signaturesByBucket.get(usage.bucket);
+        if (bucketSignatures != null) {
+            bucketSignatures.remove(signature58);
+            if (bucketSignatures.isEmpty())
+                this.signaturesByBucket.remove(usage.bucket);
+        }
+
+        this.totalSize -= usage.size;
+
+        if (usage.isResolved) {
+            adjust(this.sizeByName, usage.name, -usage.size);
+            adjust(this.sizeByService, usage.service, -usage.size);
+        }
+    }
+
+    private void bumpModCount(String bucket) {
+        this.bucketModCounts.merge(bucket, 1L, Long::sum);
+    }
+
+    private static <K> void adjust(Map<K, Long> sizes, K key, long delta) {
+        if (key == null)
+            return;
+
+        long newSize = sizes.getOrDefault(key, 0L) + delta;
+        if (newSize <= 0)
+            sizes.remove(key);
+        else
+            sizes.put(key, newSize);
+    }
+
+    // Attribution
+
+    /** Returns path relative to data directory, or null if path isn't inside data directory. */
+    private Path relativize(Path path) {
+        if (path == null)
+            return null;
+
+        Path absolutePath = path.toAbsolutePath().normalize();
+        if (!absolutePath.startsWith(this.dataPath) || absolutePath.equals(this.dataPath))
+            return null;
+
+        return this.dataPath.relativize(absolutePath);
+    }
+
+    private boolean isSignatureBucket(Path absolutePath, String bucket) {
+        return !bucket.startsWith("_") && !absolutePath.startsWith(this.tempPath);
+    }
+
+    private String signatureFromFile(Path path, Path relativePath) {
+        if (relativePath.getNameCount() != 4)
+            return null;
+
+        String bucket = relativePath.getName(0).toString();
+        if (!this.isSignatureBucket(path.toAbsolutePath().normalize(), bucket))
+            return null;
+
+        return relativePath.getName(2).toString();
+    }
+
+    private String signatureFromDirectory(Path directory, Path relativePath) {
+        if (relativePath.getNameCount() != 3)
+            return null;
+
+        String bucket = relativePath.getName(0).toString();
+        if (!this.isSignatureBucket(directory.toAbsolutePath().normalize(), bucket))
+            return null;
+
+        return relativePath.getName(2).toString();
+    }
+
+    // Names and services
+
+    public synchronized List<String> getUnresolvedSignatures() {
+        List<String> signatures = new ArrayList<>();
+
+        for (Map.Entry<String, SignatureUsage> entry : this.usageBySignature.entrySet())
+            if (!entry.getValue().isResolved)
+                signatures.add(entry.getKey());
+
+        return signatures;
+    }
+
+    /** Attributes signature's data to name and service. Either can be null, e.g. if there is no matching transaction. */
+    public synchronized void setSignatureDetails(String signature58, String name, Service service) {
+        SignatureUsage usage = this.usageBySignature.get(signature58);
+        if (usage == null || usage.isResolved)
+            return;
+
+        usage.isResolved = true;
+        usage.name = name;
+        usage.service = service;
+
+        adjust(this.sizeByName, name, usage.size);
+        adjust(this.sizeByService, service, usage.size);
+    }
+
+    // Reconciliation
+
+    /**
+     * Re-sizes every bucket by walking the whole data directory.
+     * <p>
+     * Needed once at startup, as the ledger isn't persisted.
+     */
+    public void reconcileAll() {
+        Set<String> buckets;
+        try {
+            buckets = this.listBuckets();
+        } catch (IOException e) {
+            LOGGER.info("Unable to list data directory: {}", e.getMessage());
+            return;
+        }
+
+        for (String bucket : buckets)
+            this.reconcileBucket(bucket);
+
+        this.isComplete = true;
+    }
+
+    /**
+     * Re-sizes up to <tt>maxBuckets</tt> buckets, rotating through all of them over successive calls,
+     * plus any buckets holding data not attributed to a signature (e.g. temp files, which are mostly
+     * written without going through the ledger) or that have been marked dirty.
+     */
+    public void reconcile(int maxBuckets) {
+        Set<String> buckets = new LinkedHashSet<>();
+
+        synchronized (this) {
+            if (this.reconcileQueue.isEmpty()) {
+                try {
+                    this.reconcileQueue.addAll(this.listBuckets());
+                } catch (IOException e) {
+                    LOGGER.info("Unable to list data directory: {}", e.getMessage());
+                    return;
+                }
+            }
+
+            for (int i = 0; i < maxBuckets && !this.reconcileQueue.isEmpty(); ++i)
+                buckets.add(this.reconcileQueue.poll());
+
+            buckets.addAll(this.dirtyBuckets);
+            this.dirtyBuckets.clear();
+
+            buckets.addAll(this.unattributedSizeByBucket.keySet());
+        }
+
+        for (String bucket : buckets)
+            this.reconcileBucket(bucket);
+    }
+
+    /** Returns buckets on disk, plus any we know about that might have been deleted from disk. */
+    private Set<String> listBuckets() throws IOException {
+        Set<String> buckets = new TreeSet<>();
+
+        synchronized (this) {
+            buckets.addAll(this.signaturesByBucket.keySet());
+            buckets.addAll(this.unattributedSizeByBucket.keySet());
+        }
+
+        if (!Files.isDirectory(this.dataPath))
+            return buckets;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.dataPath, Files::isDirectory)) {
+            for (Path path : stream)
+                buckets.add(path.getFileName().toString());
+        }
+
+        return buckets;
+    }
+
+    /** Replaces bucket's totals with sizes from disk, unless bucket was modified during the walk. */
+    private boolean reconcileBucket(String bucket) {
+        long modCount;
+        synchronized (this) {
+            modCount = this.bucketModCounts.getOrDefault(bucket, 0L);
+        }
+
+        Map<String, Long> signatureSizes = new HashMap<>();
+        Map<String, Path> signatureDirectories = new HashMap<>();
+        long[] unattributedSize = new long[1];
+
+        Path bucketPath = this.dataPath.resolve(bucket);
+        if (Files.isDirectory(bucketPath)) {
+            try {
+                Files.walkFileTree(bucketPath, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (!attrs.isRegularFile())
+                            return FileVisitResult.CONTINUE;
+
+                        String signature58 = signatureFromFile(file, dataPath.relativize(file));
+                        if (signature58 != null) {
+                            signatureSizes.merge(signature58, attrs.size(), Long::sum);
+                            signatureDirectories.putIfAbsent(signature58, file.getParent());
+                        } else {
+                            unattributedSize[0] += attrs.size();
+                        }
+
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // Probably deleted during walk
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.debug("Unable to walk {}: {}", bucketPath, e.getMessage());
+                return false;
+            }
+        }
+
+        synchronized (this) {
+            if (this.bucketModCounts.getOrDefault(bucket, 0L) != modCount) {
+                // Changed during walk, so try again next cycle
+                this.dirtyBuckets.add(bucket);
+                return false;
+            }
+
+            Set<String> existingSignatures = this.signaturesByBucket.get(bucket);
+            if (existingSignatures != null)
+                for (String signature58 : new ArrayList<>(existingSignatures))
+                    if (!signatureSizes.containsKey(signature58))
+                        this.removeSignature(signature58);
+
+            for (Map.Entry<String, Long> entry : signatureSizes.entrySet()) {
+                String signature58 = entry.getKey();
+                long delta = entry.getValue() - this.getSizeForSignature(signature58);
+
+                if (delta != 0)
+                    this.adjustSignatureSize(signature58, bucket, signatureDirectories.get(signature58), delta);
+            }
+
+            long unattributedDelta = unattributedSize[0] - this.unattributedSizeByBucket.getOrDefault(bucket, 0L);
+            this.adjustUnattributedSize(bucket, unattributedDelta);
+        }
+
+        return true;
+    }
+
+    // Queries
+
+    public boolean isComplete() {
+        return this.isComplete;
+    }
+
+    public synchronized long getTotalSize() {
+        return this.totalSize;
+    }
+
+    public synchronized long getSizeForName(String name) {
+        return this.sizeByName.getOrDefault(name, 0L);
+    }
+
+    public synchronized long getSizeForService(Service service) {
+        return this.sizeByService.getOrDefault(service, 0L);
+    }
+
+    public synchronized long getSizeForSignature(String signature58) {
+        SignatureUsage usage = this.usageBySignature.get(signature58);
+        return usage != null ? usage.size : 0L;
+    }
+
+    /** Returns directories holding data attributed to <tt>name</tt>. */
+    public synchronized List<File> getDirectoriesForName(String name) {
+        List<File> directories = new ArrayList<>();
+
+        for (SignatureUsage usage : this.usageBySignature.values()) {
+            if (usage.isResolved && Objects.equals(usage.name, name))
+                directories.add(usage.directory.toFile());
+        }
+
+        return directories;
+    }
+
+    /** Returns directory holding data for signature, or null if we don't have any. */
+    public synchronized File getSignatureDirectory(String signature58) {
+        SignatureUsage usage = this.usageBySignature.get(signature58);
+        return usage != null ? usage.directory.toFile() : null;
+    }
+
+    /**
+     * Returns signatures that have had data added or removed since the last call, so that
+     * anything derived from what's stored (e.g. the hosted data index) can be brought up to date.
+     */
+    public synchronized List<String> drainChangedSignatures() {
+        List<String> signatures = new ArrayList<>(this.changedSignatures);
+        this.changedSignatures.clear();
+        return signatures;
+    }
+
+    /** Adds signatures back to those returned by {@link #drainChangedSignatures()}, e.g. if they couldn't be processed. */
+    public synchronized void markSignaturesChanged(Collection<String> signatures) {
+        this.changedSignatures.addAll(signatures);
+    }
+
+    /** Adds every signature we hold data for to those returned by {@link #drainChangedSignatures()}. */
+    public synchronized void markAllSignaturesChanged() {
+        this.changedSignatures.addAll(this.usageBySignature.keySet());
+    }
+
+    public synchronized int getSignatureCount() {
+        return this.usageBySignature.size();
+    }
+
+}
@@ -3,25 +3,25 @@ package org.qortal.controller.arbitrary;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.qortal.arbitrary.misc.Service;
 import org.qortal.data.transaction.ArbitraryTransactionData;
-import org.qortal.data.transaction.TransactionData;
 import org.qortal.list.ResourceListManager;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
-import org.qortal.transaction.Transaction;
 import org.qortal.utils.ArbitraryTransactionUtils;
 import org.qortal.utils.Base58;
 import org.qortal.utils.FilesystemUtils;
 import org.qortal.utils.NTP;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -41,16 +41,19 @@ public class ArbitraryDataStorageManager extends Thread {
     private static ArbitraryDataStorageManager instance;
     private volatile boolean isStopping = false;
 
+    private final ArbitraryDataStorageLedger storageLedger;
+
     private Long storageCapacity = null;
-    private long totalDirectorySize = 0L;
+    /** Size of temp directory, only if it's outside the data directory, as otherwise it's included in the ledger */
+    private long tempDirectorySize = 0L;
     private long lastDirectorySizeCheck = 0;
 
-    private List<ArbitraryTransactionData> hostedTransactions;
-
-    private String searchQuery;
-    private List<ArbitraryTransactionData> searchResultsTransactions;
+    /** Whether hosted data index has been checked for data that disappeared while we weren't running */
+    private volatile boolean isHostedDataIndexSynced = false;
 
     private static final long DIRECTORY_SIZE_CHECK_INTERVAL = 10 * 60 * 1000L; // 10 minutes
+    /** Number of top-level data directories to re-size per check, after the initial full walk */
+    private static final int RECONCILE_DIRECTORIES_PER_CHECK = 100;
 
     /** Treat storage as full at 90% usage, to reduce risk of going over the limit.
      * This is necessary because we don't calculate total storage values before every write.
@@ -63,6 +66,8 @@ public class ArbitraryDataStorageManager extends Thread {
     public static final double DELETION_THRESHOLD = 0.98f; // 98%
 
     public ArbitraryDataStorageManager() {
+        this.storageLedger = new ArbitraryDataStorageLedger(Paths.get(Settings.getInstance().getDataPath()),
+                Paths.get(Settings.getInstance().getTempDataPath()));
     }
 
     public static ArbitraryDataStorageManager getInstance() {
@@ -95,7 +100,8 @@ public class ArbitraryDataStorageManager extends Thread {
                     this.calculateDirectorySize(now);
                 }
 
-                Thread.sleep(59000);
+                // Keep hosted data index in step with data arriving or being deleted
+                this.updateHostedDataIndex();
             }
         } catch (InterruptedException e) {
             // Fall-through to exit thread...
@@ -271,115 +277,112 @@ public class ArbitraryDataStorageManager extends Thread {
     }
 
 
-    public List<ArbitraryTransactionData> loadAllHostedTransactions(Repository repository) {
-        
-        List<ArbitraryTransactionData> arbitraryTransactionDataList = new ArrayList<>();
+    // Hosted data
 
-        // Find all hosted paths
-        List<Path> allPaths = this.findAllHostedPaths();
+    public List<ArbitraryTransactionData> listAllHostedTransactions(Repository repository, String name, Service service,
+                                                                    Integer limit, Integer offset) throws DataException {
+        return repository.getArbitraryRepository().getHostedTransactions(name, service, null, limit, offset, false);
+    }
 
-        // Loop through each path and attempt to match it to a signature
-        for (Path path : allPaths) {
-            try {
-                String[] contents = path.toFile().list();
-                if (contents == null || contents.length == 0) {
-                    // Ignore empty directories
-                    continue;
-                }
+    /**
+     * Returns hosted transactions whose name or identifier contains <tt>query</tt>, newest first.
+     */
+    public List<ArbitraryTransactionData> searchHostedTransactions(Repository repository, String query, String name, Service service,
+                                                                   Integer limit, Integer offset) throws DataException {
+        return repository.getArbitraryRepository().getHostedTransactions(name, service, query, limit, offset, false);
+    }
 
-                String signature58 = path.getFileName().toString();
-                byte[] signature = Base58.decode(signature58);
-                TransactionData transactionData = repository.getTransactionRepository().fromSignature(signature);
-                if (transactionData == null || transactionData.getType() != Transaction.TransactionType.ARBITRARY) {
-                    continue;
-                }
-                ArbitraryTransactionData arbitraryTransactionData = (ArbitraryTransactionData) transactionData;
-
-                // Make sure to exclude metadata-only resources
-                if (arbitraryTransactionData.getMetadataHash() != null) {
-                    if (contents.length == 1) {
-                        String metadataHash58 = Base58.encode(arbitraryTransactionData.getMetadataHash());
-                        if (Objects.equals(metadataHash58, contents[0])) {
-                            // We only have the metadata file for this resource, not the actual data, so exclude it
-                            continue;
-                        }
-                    }
-                }
+    /**
+     * Brings the hosted data index up to date for any data that has arrived or been deleted,
+     * as reported by the storage ledger.
+     */
+    public void updateHostedDataIndex() {
+        // Ledger doesn't know what we're hosting until the data directory has been walked
+        if (!this.storageLedger.isComplete()) {
+            return;
+        }
 
-                // Found some data matching a transaction, so add it to the list
-                arbitraryTransactionDataList.add(arbitraryTransactionData);
+        List<String> changedSignatures = this.storageLedger.drainChangedSignatures();
+        if (this.isHostedDataIndexSynced && changedSignatures.isEmpty()) {
+            return;
+        }
 
-            } catch (DataException e) {
-                continue;
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            if (!this.isHostedDataIndexSynced) {
+                // Remove anything deleted while we weren't running
+                for (byte[] signature : repository.getArbitraryRepository().getHostedSignatures()) {
+                    if (this.storageLedger.getSizeForSignature(Base58.encode(signature)) == 0) {
+                        repository.getArbitraryRepository().deleteHostedSignature(signature);
+                    }
+                }
             }
-        }
 
-        // Sort by newest first
-        arbitraryTransactionDataList.sort(Comparator.comparingLong(ArbitraryTransactionData::getTimestamp).reversed());
+            for (String signature58 : changedSignatures) {
+                this.updateHostedDataIndex(repository, signature58);
+            }
 
-        return arbitraryTransactionDataList;
-    }
-    // Hosted data
+            repository.saveChanges();
+            this.isHostedDataIndexSynced = true;
 
-    public List<ArbitraryTransactionData> listAllHostedTransactions(Repository repository, Integer limit, Integer offset) {
-        // Load from cache if we can, to avoid disk reads
+        } catch (DataException e) {
+            LOGGER.error("Repository issue when updating hosted data index", e);
 
-        if (this.hostedTransactions != null) {
-            return ArbitraryTransactionUtils.limitOffsetTransactions(this.hostedTransactions, limit, offset);
+            // Try again next time
+            this.storageLedger.markSignaturesChanged(changedSignatures);
         }
-
-        this.hostedTransactions = this.loadAllHostedTransactions(repository);
-
-        return ArbitraryTransactionUtils.limitOffsetTransactions(this.hostedTransactions, limit, offset);
     }
-    
+
     /**
-     * searchHostedTransactions
-     * Allow to run a query against hosted data names and return matches if there are any
-     * @param repository
-     * @param query
-     * @param limit
-     * @param offset
-     * @return
+     * Rebuilds the hosted data index from the storage ledger at next update,
+     * e.g. after the repository has been replaced by a bootstrap or the index has been cleared.
      */
+    public void resetHostedDataIndex() {
+        this.isHostedDataIndexSynced = false;
+        this.storageLedger.markAllSignaturesChanged();
+    }
 
-    public List<ArbitraryTransactionData> searchHostedTransactions(Repository repository, String query, Integer limit, Integer offset) {
-        // Load from results cache if we can (results that exists for the same query), to avoid disk reads
-        if (this.searchResultsTransactions != null && this.searchQuery.equals(query.toLowerCase())) {
-            return ArbitraryTransactionUtils.limitOffsetTransactions(this.searchResultsTransactions, limit, offset);
+    private void updateHostedDataIndex(Repository repository, String signature58) throws DataException {
+        byte[] signature;
+        try {
+            signature = Base58.decode(signature58);
+        } catch (NumberFormatException e) {
+            // Not a signature directory
+            return;
+        }
+        if (signature == null) {
+            return;
         }
 
-        // Using cache if we can, to avoid disk reads
-        if (this.hostedTransactions == null) {
-            this.hostedTransactions = this.loadAllHostedTransactions(repository);
+        ArbitraryTransactionData transactionData = ArbitraryTransactionUtils.fetchTransactionData(repository, signature);
+        if (transactionData != null && this.isHostingData(transactionData, signature58)) {
+            repository.getArbitraryRepository().saveHostedSignature(signature);
+        } else {
+            repository.getArbitraryRepository().deleteHostedSignature(signature);
         }
+    }
 
-        this.searchQuery = query.toLowerCase(); //set the searchQuery so that it can be checked on the next call
+    private boolean isHostingData(ArbitraryTransactionData transactionData, String signature58) {
+        File directory = this.storageLedger.getSignatureDirectory(signature58);
+        if (directory == null) {
+            return false;
+        }
 
-        List<ArbitraryTransactionData> searchResultsList = new ArrayList<>();
+        String[] contents = directory.list();
+        if (contents == null || contents.length == 0) {
+            // Ignore empty directories
+            return false;
+        }
 
-        // Loop through cached hostedTransactions
-        for (ArbitraryTransactionData atd : this.hostedTransactions) {
-            try {
-               if (atd.getName() != null && atd.getName().toLowerCase().contains(this.searchQuery)) {
-                   searchResultsList.add(atd);
-               }
-               else if (atd.getIdentifier() != null && atd.getIdentifier().toLowerCase().contains(this.searchQuery)) {
-                   searchResultsList.add(atd);
-               }
-
-            } catch (Exception e) {
-                continue;
+        // Make sure to exclude metadata-only resources
+        if (transactionData.getMetadataHash() != null && contents.length == 1) {
+            String metadataHash58 = Base58.encode(transactionData.getMetadataHash());
+            if (Objects.equals(metadataHash58, contents[0])) {
+                // We only have the metadata file for this resource, not the actual data, so exclude it
+                return false;
             }
         }
 
-        // Sort by newest first
-        searchResultsList.sort(Comparator.comparingLong(ArbitraryTransactionData::getTimestamp).reversed());
-
-        // Update cache
-        this.searchResultsTransactions = searchResultsList;
-
-        return ArbitraryTransactionUtils.limitOffsetTransactions(this.searchResultsTransactions, limit, offset);
+        return true;
     }
 
     /**
@@ -410,8 +413,32 @@ public class ArbitraryDataStorageManager extends Thread {
         return allPaths;
     }
 
-    public void invalidateHostedTransactionsCache() {
-        this.hostedTransactions = null;
+    public ArbitraryDataStorageLedger getStorageLedger() {
+        return this.storageLedger;
+    }
+
+    /**
+     * Looks up names and services for data that arrived since the last call,
+     * so that it counts towards per-name and per-service totals in the storage ledger.
+     */
+    public void resolveStorageLedgerSignatures(Repository repository) {
+        for (String signature58 : this.storageLedger.getUnresolvedSignatures()) {
+            byte[] signature;
+            try {
+                signature = Base58.decode(signature58);
+            } catch (NumberFormatException e) {
+                // Not a signature directory, so can't belong to any name
+                this.storageLedger.setSignatureDetails(signature58, null, null);
+                continue;
+            }
+
+            // Data without a matching transaction still counts towards the total, just not towards any name
+            ArbitraryTransactionData transactionData = ArbitraryTransactionUtils.fetchTransactionData(repository, signature);
+            String name = transactionData != null ? transactionData.getName() : null;
+            Service service = transactionData != null ? transactionData.getService() : null;
+
+            this.storageLedger.setSignatureDetails(signature58, name, service);
+        }
     }
 
 
@@ -442,39 +469,51 @@ public class ArbitraryDataStorageManager extends Thread {
             return;
         }
 
-        long totalSize = 0;
-        long remainingCapacity = 0;
-
-        // Calculate remaining capacity
-        try {
-            remainingCapacity = this.getRemainingUsableStorageCapacity();
-        } catch (IOException e) {
-            LOGGER.info("Unable to calculate remaining storage capacity: {}", e.getMessage());
-            return;
-        }
-
-        // Calculate total size of data directory
-        LOGGER.trace("Calculating data directory size...");
-        Path dataDirectoryPath = Paths.get(Settings.getInstance().getDataPath());
-        if (dataDirectoryPath.toFile().exists()) {
-            totalSize += FileUtils.sizeOfDirectory(dataDirectoryPath.toFile());
+        // Correct the storage ledger for any changes it wasn't told about.
+        // The first time, we have to walk the entire data directory. After that, only a subset each time.
+        LOGGER.trace("Reconciling data directory size...");
+        if (!this.storageLedger.isComplete()) {
+            this.storageLedger.reconcileAll();
+        } else {
+            this.storageLedger.reconcile(RECONCILE_DIRECTORIES_PER_CHECK);
         }
 
         // Add total size of temp directory, if it's not already inside the data directory
+        Path dataDirectoryPath = Paths.get(Settings.getInstance().getDataPath());
         Path tempDirectoryPath = Paths.get(Settings.getInstance().getTempDataPath());
+        long tempDirectorySize = 0L;
         if (tempDirectoryPath.toFile().exists()) {
             if (!FilesystemUtils.isChild(tempDirectoryPath, dataDirectoryPath)) {
                 LOGGER.trace("Calculating temp directory size...");
-                totalSize += FileUtils.sizeOfDirectory(dataDirectoryPath.toFile());
+                tempDirectorySize = FileUtils.sizeOfDirectory(tempDirectoryPath.toFile());
             }
         }
+        this.tempDirectorySize = tempDirectorySize;
 
-        this.totalDirectorySize = totalSize;
         this.lastDirectorySizeCheck = now;
 
-        // It's essential that used space (this.totalDirectorySize) is included in the storage capacity
+        this.updateStorageCapacity();
+    }
+
+    /**
+     * Recalculates storage capacity using current usage from the storage ledger.
+     * Unlike calculateDirectorySize(), this doesn't touch the data directory, so can be called often.
+     */
+    public void updateStorageCapacity() {
+        long remainingCapacity = 0;
+
+        // Calculate remaining capacity
+        try {
+            remainingCapacity = this.getRemainingUsableStorageCapacity();
+        } catch (IOException e) {
+            LOGGER.info("Unable to calculate remaining storage capacity: {}", e.getMessage());
+            return;
+        }
+
+        // It's essential that used space is included in the storage capacity
         LOGGER.trace("Calculating total storage capacity...");
-        long storageCapacity = remainingCapacity + this.totalDirectorySize;
+        long totalDirectorySize = this.getTotalDirectorySize();
+        long storageCapacity = remainingCapacity + totalDirectorySize;
 
         // Make sure to limit the storage capacity if the user is overriding it in the settings
         if (Settings.getInstance().getMaxStorageCapacity() != null) {
@@ -482,7 +521,7 @@ public class ArbitraryDataStorageManager extends Thread {
         }
         this.storageCapacity = storageCapacity;
 
-        LOGGER.info("Total used: {} bytes, Total capacity: {} bytes", this.totalDirectorySize, this.storageCapacity);
+        LOGGER.info("Total used: {} bytes, Total capacity: {} bytes", totalDirectorySize, this.storageCapacity);
     }
 
     private long getRemainingUsableStorageCapacity() throws IOException {
@@ -496,7 +535,12 @@ public class ArbitraryDataStorageManager extends Thread {
     }
 
     public long getTotalDirectorySize() {
-        return this.totalDirectorySize;
+        // Ledger only covers data written since startup, until the data directory has been walked
+        if (!this.storageLedger.isComplete()) {
+            return 0L;
+        }
+
+        return this.storageLedger.getTotalSize() + this.tempDirectorySize;
     }
 
     public boolean isStorageSpaceAvailable(double threshold) {
@@ -505,7 +549,7 @@ public class ArbitraryDataStorageManager extends Thread {
         }
 
         long maxStorageCapacity = (long)((double)this.storageCapacity * threshold);
-        if (this.totalDirectorySize >= maxStorageCapacity) {
+        if (this.getTotalDirectorySize() >= maxStorageCapacity) {
             return false;
         }
         return true;
@@ -528,20 +572,11 @@ public class ArbitraryDataStorageManager extends Thread {
             return true;
         }
 
-        long totalSizeForName = 0;
         long maxStoragePerName = this.storageCapacityPerName(threshold);
 
-        // Fetch all hosted transactions
-        List<ArbitraryTransactionData> hostedTransactions = this.listAllHostedTransactions(repository, null, null);
-        for (ArbitraryTransactionData transactionData : hostedTransactions) {
-            String transactionName = transactionData.getName();
-            if (!Objects.equals(name, transactionName)) {
-                // Transaction relates to a different name
-                continue;
-            }
-
-            totalSizeForName += transactionData.getSize();
-        }
+        // Use size of data actually stored for this name, making sure any recent arrivals are included
+        this.resolveStorageLedgerSignatures(repository);
+        long totalSizeForName = this.storageLedger.getSizeForName(name);
 
         // Have we reached the limit for this name?
         if (totalSizeForName > maxStoragePerName) {
@@ -19,6 +19,7 @@ import org.qortal.data.at.ATData;
 import org.qortal.data.crosschain.CrossChainTradeData;
 import org.qortal.data.crosschain.TradeBotData;
 import org.qortal.data.network.TradePresenceData;
+import org.qortal.event.AsyncListener.OverflowPolicy;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
 import org.qortal.event.Listener;
@@ -114,7 +115,8 @@ public class TradeBot implements Listener {
 	private long nextTradePresenceBroadcastTimestamp = 0L;
 
 	private TradeBot() {
-		EventBus.INSTANCE.addListener(event -> TradeBot.getInstance().listen(event));
+		// Each new chain tip causes all trade-bot entries to be processed, so only latest is needed if trade-bot falls behind
+		EventBus.INSTANCE.addAsyncListener("TradeBot", event -> TradeBot.getInstance().listen(event), OverflowPolicy.COALESCE);
 	}
 
 	public static synchronized TradeBot getInstance() {
@@ -454,7 +456,7 @@ public class TradeBot implements Listener {
 			LOGGER.debug("Broadcasting {} new trade presences", safeTradePresences.size());
 
 			TradePresencesMessage tradePresencesMessage = new TradePresencesMessage(safeTradePresences);
-			Network.getInstance().broadcast(peer -> tradePresencesMessage);
+			Network.getInstance().broadcast(tradePresencesMessage);
 
 			return;
 		}
@@ -476,7 +478,7 @@ public class TradeBot implements Listener {
 		);
 
 		GetTradePresencesMessage getTradePresencesMessage = new GetTradePresencesMessage(safeTradePresences);
-		Network.getInstance().broadcast(peer -> getTradePresencesMessage);
+		Network.getInstance().broadcast(getTradePresencesMessage);
 	}
 
 	// Network message processing
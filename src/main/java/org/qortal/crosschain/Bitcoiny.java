@@ -19,9 +19,9 @@ import org.bitcoinj.core.TransactionOutput;
 import org.bitcoinj.core.UTXO;
 import org.bitcoinj.core.UTXOProvider;
 import org.bitcoinj.core.UTXOProviderException;
-import org.bitcoinj.crypto.ChildNumber;
 import org.bitcoinj.crypto.DeterministicHierarchy;
 import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.script.Script;
 import org.bitcoinj.script.Script.ScriptType;
 import org.bitcoinj.script.ScriptBuilder;
 import org.bitcoinj.wallet.DeterministicKeyChain;
@@ -33,7 +33,6 @@ import org.qortal.utils.Amounts;
 import org.qortal.utils.BitTwiddling;
 
 import com.google.common.hash.HashCode;
-import org.qortal.utils.NTP;
 
 /** Bitcoin-like (Bitcoin, Litecoin, etc.) support */
 public abstract class Bitcoiny implements ForeignBlockchain {
@@ -48,18 +47,23 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 
 	protected final NetworkParameters params;
 
-	/** Cache recent transactions to speed up subsequent lookups */
-	protected List<SimpleTransaction> transactionsCache;
-	protected Long transactionsCacheTimestamp;
-	protected String transactionsCacheXpub;
+	/** How often wallet transactions are refreshed for {@link #getWalletTransactions(String)} */
 	protected static long TRANSACTIONS_CACHE_TIMEOUT = 2 * 60 * 1000L; // 2 minutes
 
-	/** Keys that have been previously marked as fully spent,<br>
-	 * i.e. keys with transactions but with no unspent outputs. */
-	protected final Set<ECKey> spentKeys = Collections.synchronizedSet(new HashSet<>());
+	/** Maximum number of HD wallet indexes to keep in memory */
+	private static final int MAX_WALLET_INDEXES = 20;
+
+	/** Recently used HD wallet indexes, keyed by extended public key */
+	@SuppressWarnings("serial")
+	private final Map<String, BitcoinyWalletIndex> walletIndexes = new LinkedHashMap<>(MAX_WALLET_INDEXES + 1, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, BitcoinyWalletIndex> eldest) {
+			return this.size() > MAX_WALLET_INDEXES;
+		}
+	};
 
 	/** How many wallet keys to generate in each batch. */
-	private static final int WALLET_KEY_LOOKAHEAD_INCREMENT = 3;
+	static final int WALLET_KEY_LOOKAHEAD_INCREMENT = 3;
 
 	/** How many wallet keys to generate when using bitcoinj as the data provider.
 	 * We must use a higher value here since we are unable to request multiple batches of keys.
@@ -254,6 +258,44 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 		throw(e2);
 	}
 
+	/**
+	 * Returns transactions for each passed script, in same order.
+	 * <p>
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	public List<List<TransactionHash>> getAddressTransactions(List<byte[]> scriptPubKeys, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		int retries = 0;
+		ForeignBlockchainException e2 = null;
+		while (retries <= 3) {
+			try {
+				return this.blockchain.getAddressTransactions(scriptPubKeys, includeUnconfirmed);
+			} catch (ForeignBlockchainException e) {
+				e2 = e;
+				retries++;
+			}
+		}
+		throw(e2);
+	}
+
+	/**
+	 * Returns status hashes for each passed script, in same order, with null for scripts without history.
+	 * <p>
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	public List<String> getAddressStatuses(List<byte[]> scriptPubKeys) throws ForeignBlockchainException {
+		int retries = 0;
+		ForeignBlockchainException e2 = null;
+		while (retries <= 3) {
+			try {
+				return this.blockchain.getAddressStatuses(scriptPubKeys);
+			} catch (ForeignBlockchainException e) {
+				e2 = e;
+				retries++;
+			}
+		}
+		throw(e2);
+	}
+
 	/**
 	 * Returns list of transaction hashes pertaining to passed address.
 	 * <p>
@@ -301,6 +343,26 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 		throw(e2);
 	}
 
+	/**
+	 * Returns transaction info for each passed transaction hash, in same order.
+	 * <p>
+	 * @throws ForeignBlockchainException.NotFoundException if a transaction is unknown
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	public List<BitcoinyTransaction> getTransactions(List<String> txHashes) throws ForeignBlockchainException {
+		int retries = 0;
+		ForeignBlockchainException e2 = null;
+		while (retries <= 3) {
+			try {
+				return this.blockchain.getTransactions(txHashes);
+			} catch (ForeignBlockchainException e) {
+				e2 = e;
+				retries++;
+			}
+		}
+		throw(e2);
+	}
+
 	/**
 	 * Broadcasts raw transaction to network.
 	 * <p>
@@ -323,7 +385,7 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 		Context.propagate(bitcoinjContext);
 
 		Wallet wallet = Wallet.fromSpendingKeyB58(this.params, xprv58, DeterministicHierarchy.BIP32_STANDARDISATION_TIME_SECS);
-		wallet.setUTXOProvider(new WalletAwareUTXOProvider(this, wallet));
+		wallet.setUTXOProvider(new WalletAwareUTXOProvider(this, xprv58, wallet));
 
 		Address destination = Address.fromString(this.params, recipient);
 		SendRequest sendRequest = SendRequest.to(destination, Coin.valueOf(amount));
@@ -364,7 +426,7 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 		Context.propagate(bitcoinjContext);
 
 		Wallet wallet = walletFromDeterministicKey58(key58);
-		wallet.setUTXOProvider(new WalletAwareUTXOProvider(this, wallet));
+		wallet.setUTXOProvider(new WalletAwareUTXOProvider(this, key58, wallet));
 
 		Coin balance = wallet.getBalance();
 		if (balance == null)
@@ -384,91 +446,15 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 	}
 
 	public List<SimpleTransaction> getWalletTransactions(String key58) throws ForeignBlockchainException {
-		synchronized (this) {
-			// Serve from the cache if it's recent, and matches this xpub
-			if (Objects.equals(transactionsCacheXpub, key58)) {
-				if (transactionsCache != null && transactionsCacheTimestamp != null) {
-					Long now = NTP.getTime();
-					boolean isCacheStale = (now != null && now - transactionsCacheTimestamp >= TRANSACTIONS_CACHE_TIMEOUT);
-					if (!isCacheStale) {
-						return transactionsCache;
-					}
-				}
-			}
-
-			Context.propagate(bitcoinjContext);
-
-			Wallet wallet = walletFromDeterministicKey58(key58);
-			DeterministicKeyChain keyChain = wallet.getActiveKeyChain();
-
-			keyChain.setLookaheadSize(Bitcoiny.WALLET_KEY_LOOKAHEAD_INCREMENT);
-			keyChain.maybeLookAhead();
-
-			List<DeterministicKey> keys = new ArrayList<>(keyChain.getLeafKeys());
+		BitcoinyWalletIndex walletIndex = this.getWalletIndex(key58);
 
-			Set<BitcoinyTransaction> walletTransactions = new HashSet<>();
-			Set<String> keySet = new HashSet<>();
+		// Serve from index if it's recent
+		walletIndex.refresh(TRANSACTIONS_CACHE_TIMEOUT);
 
-			// Set the number of consecutive empty batches required before giving up
-			final int numberOfAdditionalBatchesToSearch = 7;
-
-			int unusedCounter = 0;
-			int ki = 0;
-			do {
-				boolean areAllKeysUnused = true;
-
-				for (; ki < keys.size(); ++ki) {
-					DeterministicKey dKey = keys.get(ki);
-
-					// Check for transactions
-					Address address = Address.fromKey(this.params, dKey, ScriptType.P2PKH);
-					keySet.add(address.toString());
-					byte[] script = ScriptBuilder.createOutputScript(address).getProgram();
-
-					// Ask for transaction history - if it's empty then key has never been used
-					List<TransactionHash> historicTransactionHashes = this.getAddressTransactions(script, false);
-
-					if (!historicTransactionHashes.isEmpty()) {
-						areAllKeysUnused = false;
-
-						for (TransactionHash transactionHash : historicTransactionHashes)
-							walletTransactions.add(this.getTransaction(transactionHash.txHash));
-					}
-				}
-
-				if (areAllKeysUnused) {
-					// No transactions
-					if (unusedCounter >= numberOfAdditionalBatchesToSearch) {
-						// ... and we've hit our search limit
-						break;
-					}
-					// We haven't hit our search limit yet so increment the counter and keep looking
-					unusedCounter++;
-				} else {
-					// Some keys in this batch were used, so reset the counter
-					unusedCounter = 0;
-				}
-
-				// Generate some more keys
-				keys.addAll(generateMoreKeys(keyChain));
-
-				// Process new keys
-			} while (true);
-
-			Comparator<SimpleTransaction> newestTimestampFirstComparator = Comparator.comparingInt(SimpleTransaction::getTimestamp).reversed();
-
-			// Update cache and return
-			transactionsCacheTimestamp = NTP.getTime();
-			transactionsCacheXpub = key58;
-			transactionsCache = walletTransactions.stream()
-					.map(t -> convertToSimpleTransaction(t, keySet))
-					.sorted(newestTimestampFirstComparator).collect(Collectors.toList());
-
-			return transactionsCache;
-		}
+		return walletIndex.getSimpleTransactions();
 	}
 
-	protected SimpleTransaction convertToSimpleTransaction(BitcoinyTransaction t, Set<String> keySet) {
+	protected SimpleTransaction convertToSimpleTransaction(BitcoinyTransaction t, Set<String> keySet, Map<String, BitcoinyTransaction> inputTransactions) {
 		long amount = 0;
 		long total = 0L;
 		long totalInputAmount = 0L;
@@ -481,7 +467,9 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 
 		for (BitcoinyTransaction.Input input : t.inputs) {
 			try {
-				BitcoinyTransaction t2 = getTransaction(input.outputTxHash);
+				BitcoinyTransaction t2 = inputTransactions.get(input.outputTxHash);
+				if (t2 == null)
+					t2 = getTransaction(input.outputTxHash);
 				List<String> senders = t2.outputs.get(input.outputVout).addresses;
 				long inputAmount = t2.outputs.get(input.outputVout).value;
 				totalInputAmount += inputAmount;
@@ -548,83 +536,35 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 	 * @throws ForeignBlockchainException if something went wrong
 	 */
 	public String getUnusedReceiveAddress(String key58) throws ForeignBlockchainException {
-		Context.propagate(bitcoinjContext);
-
-		Wallet wallet = walletFromDeterministicKey58(key58);
-		DeterministicKeyChain keyChain = wallet.getActiveKeyChain();
-
-		keyChain.setLookaheadSize(Bitcoiny.WALLET_KEY_LOOKAHEAD_INCREMENT);
-		keyChain.maybeLookAhead();
-
-		final int keyChainPathSize = keyChain.getAccountPath().size();
-		List<DeterministicKey> keys = new ArrayList<>(keyChain.getLeafKeys());
-
-		int ki = 0;
-		do {
-			for (; ki < keys.size(); ++ki) {
-				DeterministicKey dKey = keys.get(ki);
-				List<ChildNumber> dKeyPath = dKey.getPath();
+		BitcoinyWalletIndex walletIndex = this.getWalletIndex(key58);
+		walletIndex.refresh(0L);
 
-				// If keyChain is based on 'm', then make sure dKey is m/0/ki - i.e. a 'receive' address, not 'change' (m/1/ki)
-				if (dKeyPath.size() != keyChainPathSize + 2 || dKeyPath.get(dKeyPath.size() - 2) != ChildNumber.ZERO)
-					continue;
-
-				// Check unspent
-				Address address = Address.fromKey(this.params, dKey, ScriptType.P2PKH);
-				byte[] script = ScriptBuilder.createOutputScript(address).getProgram();
-
-				List<UnspentOutput> unspentOutputs = this.blockchain.getUnspentOutputs(script, false);
-
-				/*
-				 * If there are no unspent outputs then either:
-				 * a) all the outputs have been spent
-				 * b) address has never been used
-				 *
-				 * For case (a) we want to remember not to check this address (key) again.
-				 */
-
-				if (unspentOutputs.isEmpty()) {
-					// If this is a known key that has been spent before, then we can skip asking for transaction history
-					if (this.spentKeys.contains(dKey)) {
-						wallet.getActiveKeyChain().markKeyAsUsed(dKey);
-						continue;
-					}
-
-					// Ask for transaction history - if it's empty then key has never been used
-					List<TransactionHash> historicTransactionHashes = this.blockchain.getAddressTransactions(script, false);
-
-					if (!historicTransactionHashes.isEmpty()) {
-						// Fully spent key - case (a)
-						this.spentKeys.add(dKey);
-						wallet.getActiveKeyChain().markKeyAsUsed(dKey);
-						continue;
-					}
-
-					// Key never been used - case (b)
-					return address.toString();
-				}
+		return walletIndex.getUnusedReceiveAddress();
+	}
 
-				// Key has unspent outputs, hence used, so no good to us
-				this.spentKeys.remove(dKey);
-			}
+	/** Returns index of HD wallet with passed BIP32 key, creating or loading it if needed. */
+	protected BitcoinyWalletIndex getWalletIndex(String key58) {
+		Context.propagate(this.bitcoinjContext);
 
-			// Generate some more keys
-			keys.addAll(generateMoreKeys(keyChain));
+		String xpub58 = DeterministicKey.deserializeB58(null, key58, this.params).serializePubB58(this.params);
 
-			// Process new keys
-		} while (true);
+		synchronized (this.walletIndexes) {
+			return this.walletIndexes.computeIfAbsent(xpub58, k -> new BitcoinyWalletIndex(this, k));
+		}
 	}
 
 	// UTXOProvider support
 
 	static class WalletAwareUTXOProvider implements UTXOProvider {
 		private final Bitcoiny bitcoiny;
+		private final String key58;
 		private final Wallet wallet;
 
 		private final DeterministicKeyChain keyChain;
 
-		public WalletAwareUTXOProvider(Bitcoiny bitcoiny, Wallet wallet) {
+		public WalletAwareUTXOProvider(Bitcoiny bitcoiny, String key58, Wallet wallet) {
 			this.bitcoiny = bitcoiny;
+			this.key58 = key58;
 			this.wallet = wallet;
 			this.keyChain = this.wallet.getActiveKeyChain();
 
@@ -635,93 +575,81 @@ public abstract class Bitcoiny implements ForeignBlockchain {
 
 		@Override
 		public List<UTXO> getOpenTransactionOutputs(List<ECKey> keys) throws UTXOProviderException {
-			List<UTXO> allUnspentOutputs = new ArrayList<>();
-			final boolean coinbase = false;
-
-			int ki = 0;
-			do {
-				boolean areAllKeysUnspent = true;
-
-				for (; ki < keys.size(); ++ki) {
-					ECKey key = keys.get(ki);
+			BitcoinyWalletIndex walletIndex = this.bitcoiny.getWalletIndex(this.key58);
+			try {
+				walletIndex.refresh(0L);
+			} catch (ForeignBlockchainException e) {
+				throw new UTXOProviderException("Unable to refresh wallet index");
+			}
 
-					Address address = Address.fromKey(this.bitcoiny.params, key, ScriptType.P2PKH);
-					byte[] script = ScriptBuilder.createOutputScript(address).getProgram();
+			// Make sure wallet has keys for everything in index
+			keys = new ArrayList<>(keys);
+			while (this.keyChain.getLeafKeys().size() < walletIndex.getKeyCount())
+				keys.addAll(Bitcoiny.generateMoreKeys(this.keyChain));
 
-					List<UnspentOutput> unspentOutputs;
-					try {
-						unspentOutputs = this.bitcoiny.blockchain.getUnspentOutputs(script, false);
-					} catch (ForeignBlockchainException e) {
-						throw new UTXOProviderException(String.format("Unable to fetch unspent outputs for %s", address));
-					}
+			// Only keys that have been used can have unspent outputs
+			Set<String> usedAddresses = walletIndex.getUsedAddresses();
+			List<ECKey> usedKeys = new ArrayList<>();
+			List<byte[]> scripts = new ArrayList<>();
 
-					/*
-					 * If there are no unspent outputs then either:
-					 * a) all the outputs have been spent
-					 * b) address has never been used
-					 *
-					 * For case (a) we want to remember not to check this address (key) again.
-					 */
-
-					if (unspentOutputs.isEmpty()) {
-						// If this is a known key that has been spent before, then we can skip asking for transaction history
-						if (this.bitcoiny.spentKeys.contains(key)) {
-							this.wallet.getActiveKeyChain().markKeyAsUsed((DeterministicKey) key);
-							areAllKeysUnspent = false;
-							continue;
-						}
+			for (ECKey key : keys) {
+				Address address = Address.fromKey(this.bitcoiny.params, key, ScriptType.P2PKH);
+				if (!usedAddresses.contains(address.toString()))
+					continue;
 
-						// Ask for transaction history - if it's empty then key has never been used
-						List<TransactionHash> historicTransactionHashes;
-						try {
-							historicTransactionHashes = this.bitcoiny.blockchain.getAddressTransactions(script, false);
-						} catch (ForeignBlockchainException e) {
-							throw new UTXOProviderException(String.format("Unable to fetch transaction history for %s", address));
-						}
+				usedKeys.add(key);
+				scripts.add(ScriptBuilder.createOutputScript(address).getProgram());
+			}
 
-						if (!historicTransactionHashes.isEmpty()) {
-							// Fully spent key - case (a)
-							this.bitcoiny.spentKeys.add(key);
-							this.wallet.getActiveKeyChain().markKeyAsUsed((DeterministicKey) key);
-							areAllKeysUnspent = false;
-						} else {
-							// Key never been used - case (b)
-						}
+			List<List<UnspentOutput>> unspentOutputsByKey;
+			try {
+				unspentOutputsByKey = this.bitcoiny.blockchain.getUnspentOutputs(scripts, false);
+			} catch (ForeignBlockchainException e) {
+				throw new UTXOProviderException("Unable to fetch unspent outputs for wallet");
+			}
 
-						continue;
-					}
+			List<UTXO> allUnspentOutputs = new ArrayList<>();
+			final boolean coinbase = false;
 
-					// If we reach here, then there's definitely at least one unspent key
-					this.bitcoiny.spentKeys.remove(key);
+			for (int i = 0; i < usedKeys.size(); ++i) {
+				ECKey key = usedKeys.get(i);
+				List<UnspentOutput> unspentOutputs = unspentOutputsByKey.get(i);
 
-					for (UnspentOutput unspentOutput : unspentOutputs) {
-						List<TransactionOutput> transactionOutputs;
-						try {
-							transactionOutputs = this.bitcoiny.getOutputs(unspentOutput.hash);
-						} catch (ForeignBlockchainException e) {
-							throw new UTXOProviderException(String.format("Unable to fetch outputs for TX %s",
-									HashCode.fromBytes(unspentOutput.hash)));
-						}
+				if (unspentOutputs.isEmpty()) {
+					// Fully spent key
+					this.wallet.getActiveKeyChain().markKeyAsUsed((DeterministicKey) key);
+					continue;
+				}
 
-						TransactionOutput transactionOutput = transactionOutputs.get(unspentOutput.index);
+				for (UnspentOutput unspentOutput : unspentOutputs) {
+					Script scriptPubKey = this.getScriptPubKey(walletIndex, unspentOutput);
 
-						UTXO utxo = new UTXO(Sha256Hash.wrap(unspentOutput.hash), unspentOutput.index,
-								Coin.valueOf(unspentOutput.value), unspentOutput.height, coinbase,
-								transactionOutput.getScriptPubKey());
+					UTXO utxo = new UTXO(Sha256Hash.wrap(unspentOutput.hash), unspentOutput.index,
+							Coin.valueOf(unspentOutput.value), unspentOutput.height, coinbase,
+							scriptPubKey);
 
-						allUnspentOutputs.add(utxo);
-					}
+					allUnspentOutputs.add(utxo);
 				}
+			}
 
-				if (areAllKeysUnspent)
-					// No transactions for this batch of keys so assume we're done searching.
-					return allUnspentOutputs;
+			return allUnspentOutputs;
+		}
 
-				// Generate some more keys
-				keys.addAll(Bitcoiny.generateMoreKeys(this.keyChain));
+		/** Returns unspent output's script, from wallet index if possible. */
+		private Script getScriptPubKey(BitcoinyWalletIndex walletIndex, UnspentOutput unspentOutput) throws UTXOProviderException {
+			BitcoinyTransaction transaction = walletIndex.getTransaction(HashCode.fromBytes(unspentOutput.hash).toString());
+			if (transaction != null && unspentOutput.index < transaction.outputs.size())
+				return new Script(HashCode.fromString(transaction.outputs.get(unspentOutput.index).scriptPubKey).asBytes());
+
+			List<TransactionOutput> transactionOutputs;
+			try {
+				transactionOutputs = this.bitcoiny.getOutputs(unspentOutput.hash);
+			} catch (ForeignBlockchainException e) {
+				throw new UTXOProviderException(String.format("Unable to fetch outputs for TX %s",
+						HashCode.fromBytes(unspentOutput.hash)));
+			}
 
-				// Process new keys
-			} while (true);
+			return transactionOutputs.get(unspentOutput.index).getScriptPubKey();
 		}
 
 		@Override
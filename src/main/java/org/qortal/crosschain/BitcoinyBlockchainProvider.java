@@ -1,7 +1,13 @@
 package org.qortal.crosschain;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.qortal.crypto.Crypto;
+
+import com.google.common.hash.HashCode;
+
 public abstract class BitcoinyBlockchainProvider {
 
 	public static final boolean INCLUDE_UNCONFIRMED = true;
@@ -28,12 +34,65 @@ public abstract class BitcoinyBlockchainProvider {
 	/** Returns unpacked transaction given <tt>txHash</tt>. */
 	public abstract BitcoinyTransaction getTransaction(String txHash) throws ForeignBlockchainException;
 
+	/** Returns unpacked transactions given <tt>txHashes</tt>, in same order. Providers that can fetch several at once should override. */
+	public List<BitcoinyTransaction> getTransactions(List<String> txHashes) throws ForeignBlockchainException {
+		List<BitcoinyTransaction> transactions = new ArrayList<>(txHashes.size());
+		for (String txHash : txHashes)
+			transactions.add(this.getTransaction(txHash));
+
+		return transactions;
+	}
+
 	/** Returns list of transaction hashes (and heights) for address represented by <tt>scriptPubKey</tt>, optionally including unconfirmed transactions. */
 	public abstract List<TransactionHash> getAddressTransactions(byte[] scriptPubKey, boolean includeUnconfirmed) throws ForeignBlockchainException;
 
+	/** Returns lists of transaction hashes (and heights) for each address represented by <tt>scriptPubKeys</tt>, in same order. Providers that can fetch several at once should override. */
+	public List<List<TransactionHash>> getAddressTransactions(List<byte[]> scriptPubKeys, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		List<List<TransactionHash>> addressTransactions = new ArrayList<>(scriptPubKeys.size());
+		for (byte[] scriptPubKey : scriptPubKeys)
+			addressTransactions.add(this.getAddressTransactions(scriptPubKey, includeUnconfirmed));
+
+		return addressTransactions;
+	}
+
+	/**
+	 * Returns status hash for each address represented by <tt>scriptPubKeys</tt>, in same order, or null entries for addresses without history.
+	 * <p>
+	 * Status hash changes whenever address's history, including unconfirmed transactions, changes.
+	 * Default implementation derives status from history, as defined by ElectrumX protocol, but providers should override with something cheaper.
+	 */
+	public List<String> getAddressStatuses(List<byte[]> scriptPubKeys) throws ForeignBlockchainException {
+		List<String> statuses = new ArrayList<>(scriptPubKeys.size());
+
+		for (byte[] scriptPubKey : scriptPubKeys) {
+			List<TransactionHash> transactionHashes = this.getAddressTransactions(scriptPubKey, INCLUDE_UNCONFIRMED);
+			if (transactionHashes.isEmpty()) {
+				statuses.add(null);
+				continue;
+			}
+
+			StringBuilder statusBuilder = new StringBuilder();
+			for (TransactionHash transactionHash : transactionHashes)
+				statusBuilder.append(transactionHash.txHash).append(':').append(transactionHash.height).append(':');
+
+			statuses.add(HashCode.fromBytes(Crypto.digest(statusBuilder.toString().getBytes(StandardCharsets.UTF_8))).toString());
+		}
+
+		return statuses;
+	}
+
 	/** Returns list of unspent transaction outputs for address represented by <tt>scriptPubKey</tt>, optionally including unconfirmed transactions. */
 	public abstract List<UnspentOutput> getUnspentOutputs(byte[] scriptPubKey, boolean includeUnconfirmed) throws ForeignBlockchainException;
 
+	/** Returns lists of unspent transaction outputs for each address represented by <tt>scriptPubKeys</tt>, in same order. Providers that can fetch several at once should override. */
+	public List<List<UnspentOutput>> getUnspentOutputs(List<byte[]> scriptPubKeys, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		List<List<UnspentOutput>> unspentOutputs = new ArrayList<>(scriptPubKeys.size());
+		for (byte[] scriptPubKey : scriptPubKeys)
+			unspentOutputs.add(this.getUnspentOutputs(scriptPubKey, includeUnconfirmed));
+
+		return unspentOutputs;
+	}
+
 	/** Broadcasts raw, serialized, transaction bytes to network, returning success/failure. */
 	public abstract void broadcastTransaction(byte[] rawTransaction) throws ForeignBlockchainException;
 
@@ -0,0 +1,484 @@
+package org.qortal.crosschain;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Context;
+import org.bitcoinj.crypto.ChildNumber;
+import org.bitcoinj.crypto.DeterministicHierarchy;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.script.Script.ScriptType;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.wallet.DeterministicKeyChain;
+import org.bitcoinj.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.qortal.crypto.Crypto;
+import org.qortal.settings.Settings;
+import org.qortal.utils.NTP;
+
+import com.google.common.hash.HashCode;
+
+/**
+ * Index of an HD wallet's addresses and transactions, refreshed incrementally.
+ * <p>
+ * Each refresh asks for the status hash of every indexed address, i.e. used addresses plus a lookahead window of unused ones.
+ * Histories are only fetched for addresses whose status has changed, and transactions only if not already indexed.
+ * <p>
+ * If {@link Settings#getForeignWalletIndexPath()} is set then used addresses, with their statuses and histories,
+ * are saved to a file named after a hash of the extended public key, so restarts don't need full rescans.
+ */
+public class BitcoinyWalletIndex {
+
+	private static final Logger LOGGER = LogManager.getLogger(BitcoinyWalletIndex.class);
+
+	/** How many consecutive unused keys, after last used key, to check in each of receive and change chains. */
+	private static final int UNUSED_KEY_LOOKAHEAD = 8 * Bitcoiny.WALLET_KEY_LOOKAHEAD_INCREMENT;
+
+	/** Upper bound on keys derived when loading saved index, in case file is corrupt. */
+	private static final int MAX_LOADED_KEY_INDEX = 100_000;
+
+	private static final int RECEIVE_CHAIN = 0;
+	private static final int CHANGE_CHAIN = 1;
+
+	private static class AddressEntry {
+		private final String address;
+		private final byte[] script;
+		/** 0 for receive addresses, 1 for change addresses */
+		private final int chain;
+		private final int index;
+
+		private boolean isStatusKnown = false;
+		/** Status hash last returned by blockchain provider, or null if address has no history */
+		private String status;
+		/** Confirmed transactions involving address */
+		private List<TransactionHash> history = Collections.emptyList();
+
+		public AddressEntry(String address, byte[] script, int chain, int index) {
+			this.address = address;
+			this.script = script;
+			this.chain = chain;
+			this.index = index;
+		}
+
+		public boolean isUsed() {
+			return this.status != null;
+		}
+	}
+
+	private final Bitcoiny bitcoiny;
+	private final String xpub58;
+	private final DeterministicKeyChain keyChain;
+
+	/** Derived addresses, keyed by address */
+	private final Map<String, AddressEntry> entries = new LinkedHashMap<>();
+	/** Number of keys derived so far, indexed by chain */
+	private final int[] derivedKeyCounts = new int[2];
+	/** Confirmed wallet transactions, keyed by hash */
+	private final Map<String, BitcoinyTransaction> transactions = new HashMap<>();
+
+	/** Wallet transactions, newest first, or null if needing rebuild */
+	private List<SimpleTransaction> simpleTransactions;
+	private Long lastRefreshTimestamp;
+
+	public BitcoinyWalletIndex(Bitcoiny bitcoiny, String xpub58) {
+		this.bitcoiny = bitcoiny;
+		this.xpub58 = xpub58;
+
+		Context.propagate(bitcoiny.bitcoinjContext);
+
+		Wallet wallet = Wallet.fromWatchingKeyB58(bitcoiny.params, xpub58, DeterministicHierarchy.BIP32_STANDARDISATION_TIME_SECS);
+		this.keyChain = wallet.getActiveKeyChain();
+
+		this.keyChain.setLookaheadSize(Bitcoiny.WALLET_KEY_LOOKAHEAD_INCREMENT);
+		this.keyChain.maybeLookAhead();
+
+		this.addKeys(this.keyChain.getLeafKeys());
+
+		this.load();
+	}
+
+	public String getXpub58() {
+		return this.xpub58;
+	}
+
+	/**
+	 * Brings index up to date with blockchain, unless already refreshed within <tt>maxAge</tt> milliseconds.
+	 * <p>
+	 * @throws ForeignBlockchainException if blockchain provider could not be queried
+	 */
+	public synchronized void refresh(long maxAge) throws ForeignBlockchainException {
+		Long now = NTP.getTime();
+		if (maxAge > 0 && now != null && this.lastRefreshTimestamp != null && now - this.lastRefreshTimestamp < maxAge)
+			return;
+
+		Context.propagate(this.bitcoiny.bitcoinjContext);
+
+		boolean hasChanged = this.updateEntries(new ArrayList<>(this.entries.values()));
+
+		// Make sure enough unused keys, after last used key, have been checked
+		while (!this.hasEnoughLookahead()) {
+			List<AddressEntry> newEntries = this.addKeys(Bitcoiny.generateMoreKeys(this.keyChain));
+			hasChanged |= this.updateEntries(newEntries);
+		}
+
+		hasChanged |= this.updateTransactions();
+
+		if (hasChanged) {
+			this.simpleTransactions = null;
+			this.save();
+		}
+
+		this.lastRefreshTimestamp = NTP.getTime();
+	}
+
+	/** Returns wallet transactions, newest first, as of last refresh. */
+	public synchronized List<SimpleTransaction> getSimpleTransactions() {
+		if (this.simpleTransactions == null) {
+			Set<String> keySet = new HashSet<>(this.entries.keySet());
+			Map<String, BitcoinyTransaction> inputTransactions = this.getInputTransactions();
+
+			Comparator<SimpleTransaction> newestTimestampFirstComparator = Comparator.comparingInt(SimpleTransaction::getTimestamp).reversed();
+
+			this.simpleTransactions = this.transactions.values().stream()
+					.map(t -> this.bitcoiny.convertToSimpleTransaction(t, keySet, inputTransactions))
+					.sorted(newestTimestampFirstComparator)
+					.collect(Collectors.toList());
+		}
+
+		return this.simpleTransactions;
+	}
+
+	/** Returns lowest-index receive address without history, as of last refresh, or null if no such address indexed. */
+	public synchronized String getUnusedReceiveAddress() {
+		return this.entries.values().stream()
+				.filter(entry -> entry.chain == RECEIVE_CHAIN && !entry.isUsed())
+				.min(Comparator.comparingInt(entry -> entry.index))
+				.map(entry -> entry.address)
+				.orElse(null);
+	}
+
+	/** Returns addresses with history, as of last refresh. */
+	public synchronized Set<String> getUsedAddresses() {
+		return this.entries.values().stream()
+				.filter(AddressEntry::isUsed)
+				.map(entry -> entry.address)
+				.collect(Collectors.toSet());
+	}
+
+	/** Returns number of keys derived so far. */
+	public synchronized int getKeyCount() {
+		return this.entries.size();
+	}
+
+	/** Returns indexed wallet transaction, or null if not indexed. */
+	public synchronized BitcoinyTransaction getTransaction(String txHash) {
+		return this.transactions.get(txHash);
+	}
+
+	// Refresh support
+
+	private List<AddressEntry> addKeys(List<DeterministicKey> keys) {
+		List<AddressEntry> newEntries = new ArrayList<>();
+
+		for (DeterministicKey key : keys) {
+			Address address = Address.fromKey(this.bitcoiny.params, key, ScriptType.P2PKH);
+			String addressString = address.toString();
+
+			if (this.entries.containsKey(addressString))
+				continue;
+
+			List<ChildNumber> path = key.getPath();
+			AddressEntry entry = new AddressEntry(addressString, ScriptBuilder.createOutputScript(address).getProgram(),
+					path.get(path.size() - 2).num(), path.get(path.size() - 1).num());
+
+			this.entries.put(addressString, entry);
+			newEntries.add(entry);
+
+			if (entry.chain == RECEIVE_CHAIN || entry.chain == CHANGE_CHAIN)
+				this.derivedKeyCounts[entry.chain] = Math.max(this.derivedKeyCounts[entry.chain], entry.index + 1);
+		}
+
+		return newEntries;
+	}
+
+	/** Returns whether each chain has enough unchecked keys after its last used key. */
+	private boolean hasEnoughLookahead() {
+		Map<Integer, Integer> lastUsedIndexes = new HashMap<>();
+		Map<Integer, Integer> lastCheckedIndexes = new HashMap<>();
+
+		for (AddressEntry entry : this.entries.values()) {
+			if (entry.isUsed())
+				lastUsedIndexes.merge(entry.chain, entry.index, Math::max);
+
+			if (entry.isStatusKnown)
+				lastCheckedIndexes.merge(entry.chain, entry.index, Math::max);
+		}
+
+		// Both receive and change chains
+		for (int chain = 0; chain <= 1; ++chain) {
+			int lastUsedIndex = lastUsedIndexes.getOrDefault(chain, -1);
+			int lastCheckedIndex = lastCheckedIndexes.getOrDefault(chain, -1);
+
+			if (lastCheckedIndex - lastUsedIndex < UNUSED_KEY_LOOKAHEAD)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Updates statuses of passed entries, fetching histories of those whose status changed.
+	 * <p>
+	 * @return whether any history changed
+	 */
+	private boolean updateEntries(List<AddressEntry> entriesToCheck) throws ForeignBlockchainException {
+		if (entriesToCheck.isEmpty())
+			return false;
+
+		List<byte[]> scripts = entriesToCheck.stream().map(entry -> entry.script).collect(Collectors.toList());
+		List<String> statuses = this.bitcoiny.getAddressStatuses(scripts);
+
+		boolean hasChanged = false;
+		List<AddressEntry> changedEntries = new ArrayList<>();
+		List<String> changedStatuses = new ArrayList<>();
+
+		for (int i = 0; i < entriesToCheck.size(); ++i) {
+			AddressEntry entry = entriesToCheck.get(i);
+			String status = statuses.get(i);
+
+			if (entry.isStatusKnown && Objects.equals(entry.status, status))
+				continue;
+
+			if (status == null) {
+				// No history, so no need to ask
+				hasChanged |= !entry.history.isEmpty();
+
+				entry.isStatusKnown = true;
+				entry.status = null;
+				entry.history = Collections.emptyList();
+				continue;
+			}
+
+			changedEntries.add(entry);
+			changedStatuses.add(status);
+		}
+
+		if (changedEntries.isEmpty())
+			return hasChanged;
+
+		List<byte[]> changedScripts = changedEntries.stream().map(entry -> entry.script).collect(Collectors.toList());
+		List<List<TransactionHash>> histories = this.bitcoiny.getAddressTransactions(changedScripts, false);
+
+		for (int i = 0; i < changedEntries.size(); ++i) {
+			AddressEntry entry = changedEntries.get(i);
+
+			entry.isStatusKnown = true;
+			entry.status = changedStatuses.get(i);
+			entry.history = histories.get(i);
+		}
+
+		LOGGER.trace(() -> String.format("Fetched %d changed histories out of %d addresses", changedEntries.size(), entriesToCheck.size()));
+
+		return true;
+	}
+
+	/**
+	 * Fetches newly referenced transactions and drops those no longer referenced.
+	 * <p>
+	 * @return whether set of transactions changed
+	 */
+	private boolean updateTransactions() throws ForeignBlockchainException {
+		Set<String> txHashes = this.entries.values().stream()
+				.flatMap(entry -> entry.history.stream())
+				.map(transactionHash -> transactionHash.txHash)
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+
+		boolean hasChanged = this.transactions.keySet().retainAll(txHashes);
+
+		List<String> newTxHashes = txHashes.stream()
+				.filter(txHash -> !this.transactions.containsKey(txHash))
+				.collect(Collectors.toList());
+
+		if (newTxHashes.isEmpty())
+			return hasChanged;
+
+		List<BitcoinyTransaction> newTransactions = this.bitcoiny.getTransactions(newTxHashes);
+		for (int i = 0; i < newTxHashes.size(); ++i)
+			this.transactions.put(newTxHashes.get(i), newTransactions.get(i));
+
+		return true;
+	}
+
+	/**
+	 * Returns transactions whose outputs are spent by wallet transactions' inputs, keyed by hash.
+	 * <p>
+	 * Transactions that can't be fetched in bulk are omitted, for caller to fetch individually.
+	 */
+	private Map<String, BitcoinyTransaction> getInputTransactions() {
+		Map<String, BitcoinyTransaction> inputTransactions = new HashMap<>(this.transactions);
+
+		List<String> txHashes = this.transactions.values().stream()
+				.flatMap(t -> t.inputs.stream())
+				.map(input -> input.outputTxHash)
+				.filter(txHash -> txHash != null && !inputTransactions.containsKey(txHash))
+				.distinct()
+				.collect(Collectors.toList());
+
+		if (txHashes.isEmpty())
+			return inputTransactions;
+
+		try {
+			List<BitcoinyTransaction> fetchedTransactions = this.bitcoiny.getBlockchainProvider().getTransactions(txHashes);
+
+			for (int i = 0; i < txHashes.size(); ++i)
+				inputTransactions.put(txHashes.get(i), fetchedTransactions.get(i));
+		} catch (ForeignBlockchainException e) {
+			LOGGER.trace("Failed to retrieve input transactions in bulk: {}", e.getMessage());
+		}
+
+		return inputTransactions;
+	}
+
+	// Persistence
+
+	private Path getFilePath() {
+		String indexPath = Settings.getInstance().getForeignWalletIndexPath();
+		if (indexPath == null)
+			return null;
+
+		String xpubHash = HashCode.fromBytes(Crypto.digest(this.xpub58.getBytes(StandardCharsets.UTF_8))).toString();
+		String netId = this.bitcoiny.getBlockchainProvider().getNetId();
+
+		return Paths.get(indexPath, String.format("%s-%s.json", netId, xpubHash));
+	}
+
+	private void save() {
+		Path filePath = this.getFilePath();
+		if (filePath == null)
+			return;
+
+		// Unused addresses are cheap to rediscover
+		JSONArray addressesJson = new JSONArray();
+		for (AddressEntry entry : this.entries.values()) {
+			if (!entry.isUsed())
+				continue;
+
+			JSONArray historyJson = new JSONArray();
+			for (TransactionHash transactionHash : entry.history)
+				historyJson.put(new JSONObject()
+						.put("txHash", transactionHash.txHash)
+						.put("height", transactionHash.height));
+
+			addressesJson.put(new JSONObject()
+					.put("address", entry.address)
+					.put("chain", entry.chain)
+					.put("index", entry.index)
+					.put("status", entry.status)
+					.put("history", historyJson));
+		}
+
+		JSONObject indexJson = new JSONObject().put("addresses", addressesJson);
+
+		try {
+			Files.createDirectories(filePath.getParent());
+			Files.write(filePath, indexJson.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			LOGGER.warn(String.format("Unable to save wallet index to %s: %s", filePath, e.getMessage()));
+		}
+	}
+
+	private void load() {
+		Path filePath = this.getFilePath();
+		if (filePath == null || !Files.exists(filePath))
+			return;
+
+		// Only apply saved index once it has all been checked against our keys
+		Map<AddressEntry, String> loadedStatuses = new LinkedHashMap<>();
+		Map<AddressEntry, List<TransactionHash>> loadedHistories = new HashMap<>();
+
+		try {
+			JSONObject indexJson = new JSONObject(new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8));
+			JSONArray addressesJson = indexJson.getJSONArray("addresses");
+
+			for (int i = 0; i < addressesJson.length(); ++i) {
+				JSONObject addressJson = addressesJson.getJSONObject(i);
+
+				String address = addressJson.getString("address");
+				int chain = addressJson.getInt("chain");
+				int index = addressJson.getInt("index");
+				if ((chain != RECEIVE_CHAIN && chain != CHANGE_CHAIN) || index < 0 || index > MAX_LOADED_KEY_INDEX) {
+					LOGGER.warn(String.format("Discarding wallet index from %s: invalid key path %d/%d", filePath, chain, index));
+					return;
+				}
+
+				// Derive enough keys to include saved address
+				this.deriveKeys(index);
+
+				AddressEntry entry = this.entries.get(address);
+				if (entry == null || entry.chain != chain || entry.index != index) {
+					// Not one of ours, so rescan instead
+					LOGGER.warn(String.format("Discarding wallet index from %s: address %s not derived from wallet", filePath, address));
+					return;
+				}
+
+				JSONArray historyJson = addressJson.getJSONArray("history");
+				List<TransactionHash> history = new ArrayList<>(historyJson.length());
+				for (int h = 0; h < historyJson.length(); ++h) {
+					JSONObject transactionHashJson = historyJson.getJSONObject(h);
+					history.add(new TransactionHash(transactionHashJson.getInt("height"), transactionHashJson.getString("txHash")));
+				}
+
+				loadedStatuses.put(entry, addressJson.getString("status"));
+				loadedHistories.put(entry, history);
+			}
+		} catch (IOException | JSONException e) {
+			LOGGER.warn(String.format("Unable to load wallet index from %s: %s", filePath, e.getMessage()));
+			return;
+		}
+
+		for (Map.Entry<AddressEntry, String> loadedStatus : loadedStatuses.entrySet()) {
+			AddressEntry entry = loadedStatus.getKey();
+
+			entry.isStatusKnown = true;
+			entry.status = loadedStatus.getValue();
+			entry.history = loadedHistories.get(entry);
+		}
+	}
+
+	/** Derives keys, in both receive and change chains, up to and including <tt>index</tt>, in one step. */
+	private void deriveKeys(int index) {
+		if (this.derivedKeyCounts[RECEIVE_CHAIN] > index && this.derivedKeyCounts[CHANGE_CHAIN] > index)
+			return;
+
+		int existingLeafKeyCount = this.keyChain.getLeafKeys().size();
+
+		// Watching key chain has no issued keys, so lookahead size is number of keys per chain
+		this.keyChain.setLookaheadSize(Math.max(this.keyChain.getLookaheadSize(), index + 1));
+		this.keyChain.setLookaheadThreshold(0);
+		this.keyChain.maybeLookAhead();
+
+		List<DeterministicKey> allLeafKeys = this.keyChain.getLeafKeys();
+		this.addKeys(allLeafKeys.subList(existingLeafKeyCount, allLeafKeys.size()));
+	}
+
+}
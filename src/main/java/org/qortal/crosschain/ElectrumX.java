@@ -1,13 +1,23 @@
 package org.qortal.crosschain;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -23,7 +33,12 @@ import com.google.common.hash.HashCode;
 import com.google.common.primitives.Bytes;
 import org.qortal.utils.BitTwiddling;
 
-/** ElectrumX network support for querying Bitcoiny-related info like block headers, transaction outputs, etc. */
+/**
+ * ElectrumX network support for querying Bitcoiny-related info like block headers, transaction outputs, etc.
+ * <p>
+ * Requests are pipelined over connections to several servers, with responses matched to requests by JSON-RPC <tt>id</tt>,
+ * so concurrent callers don't wait for each other. Bulk queries are sent as JSON-RPC batches.
+ */
 public class ElectrumX extends BitcoinyBlockchainProvider {
 
 	private static final Logger LOGGER = LogManager.getLogger(ElectrumX.class);
@@ -41,6 +56,13 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	private static final int RESPONSE_TIME_READINGS = 5;
 	private static final long MAX_AVG_RESPONSE_TIME = 500L; // ms
 
+	/** Maximum number of simultaneous server connections, over which requests are spread */
+	private static final int MAX_CONNECTIONS = 3;
+	/** Maximum number of requests sent in one JSON-RPC batch */
+	private static final int MAX_BATCH_SIZE = 50;
+	private static final int CONNECT_TIMEOUT = 5000; // ms
+	private static final long RESPONSE_TIMEOUT = 30_000L; // ms
+
 	public static class Server {
 		String hostname;
 
@@ -56,14 +78,14 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			this.port = port;
 		}
 
-		public void addResponseTime(long responseTime) {
+		public synchronized void addResponseTime(long responseTime) {
 			while (this.responseTimes.size() > RESPONSE_TIME_READINGS) {
 				this.responseTimes.remove(0);
 			}
 			this.responseTimes.add(responseTime);
 		}
 
-		public long averageResponseTime() {
+		public synchronized long averageResponseTime() {
 			if (this.responseTimes.size() < RESPONSE_TIME_READINGS) {
 				// Not enough readings yet
 				return 0L;
@@ -100,8 +122,253 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			return String.format("%s:%s:%d", this.connectionType.name(), this.hostname, this.port);
 		}
 	}
+	/**
+	 * Connection to an ElectrumX server, over which requests are pipelined.
+	 * <p>
+	 * Responses are read by a dedicated thread and matched to requests by JSON-RPC <tt>id</tt>,
+	 * so they can arrive in any order.
+	 */
+	private static class Connection {
+		private final Server server;
+		private final Socket socket;
+		private final OutputStream outputStream;
+
+		private final AtomicLong nextId = new AtomicLong(1);
+		private final Map<Long, CompletableFuture<JSONObject>> pendingRequests = new ConcurrentHashMap<>();
+		/** IDs of pending requests that were sent as part of a batch, in case server rejects batches */
+		private final Set<Long> batchedRequestIds = ConcurrentHashMap.newKeySet();
+
+		private volatile boolean supportsBatches = true;
+		private volatile boolean isClosed = false;
+
+		public Connection(Server server) throws IOException {
+			this.server = server;
+
+			SocketAddress endpoint = new InetSocketAddress(server.hostname, server.port);
+
+			Socket socket = new Socket();
+			try {
+				socket.connect(endpoint, CONNECT_TIMEOUT);
+				socket.setTcpNoDelay(true);
+
+				if (server.connectionType == Server.ConnectionType.SSL) {
+					SSLSocketFactory factory = TrustlessSSLSocketFactory.getSocketFactory();
+					socket = factory.createSocket(socket, server.hostname, server.port, true);
+				}
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+
+			this.socket = socket;
+			this.outputStream = socket.getOutputStream();
+
+			Scanner scanner = new Scanner(socket.getInputStream(), StandardCharsets.UTF_8);
+			scanner.useDelimiter("\n");
+
+			Thread readerThread = new Thread(() -> this.readResponses(scanner), String.format("ElectrumX %s", server));
+			readerThread.setDaemon(true);
+			readerThread.start();
+		}
+
+		public boolean isClosed() {
+			return this.isClosed;
+		}
+
+		public int getPendingCount() {
+			return this.pendingRequests.size();
+		}
+
+		/**
+		 * Sends a request for each set of params, as one batch if there is more than one request and server supports batches.
+		 * <p>
+		 * @return futures for responses, in same order as <tt>paramsList</tt>
+		 * @throws IOException if unable to send, in which case connection is closed
+		 */
+		@SuppressWarnings("unchecked")
+		public SentRequests send(String method, List<Object[]> paramsList) throws IOException {
+			final boolean asBatch = paramsList.size() > 1 && this.supportsBatches;
+
+			List<JSONObject> requests = new ArrayList<>(paramsList.size());
+			List<Long> ids = new ArrayList<>(paramsList.size());
+			List<CompletableFuture<JSONObject>> futures = new ArrayList<>(paramsList.size());
+
+			for (Object[] params : paramsList) {
+				long id = this.nextId.getAndIncrement();
+
+				JSONObject requestJson = new JSONObject();
+				requestJson.put("id", id);
+				requestJson.put("method", method);
+				requestJson.put("jsonrpc", "2.0");
+
+				JSONArray requestParams = new JSONArray();
+				requestParams.addAll(Arrays.asList(params));
+				requestJson.put("params", requestParams);
+
+				requests.add(requestJson);
+
+				CompletableFuture<JSONObject> future = new CompletableFuture<>();
+				this.pendingRequests.put(id, future);
+				if (asBatch)
+					this.batchedRequestIds.add(id);
+
+				ids.add(id);
+				futures.add(future);
+			}
+
+			StringBuilder requestBuilder = new StringBuilder();
+			if (asBatch) {
+				JSONArray batchJson = new JSONArray();
+				batchJson.addAll(requests);
+				requestBuilder.append(batchJson.toJSONString()).append('\n');
+			} else {
+				// Pipelined individual requests
+				for (JSONObject requestJson : requests)
+					requestBuilder.append(requestJson.toJSONString()).append('\n');
+			}
+
+			String request = requestBuilder.toString();
+			LOGGER.trace(() -> String.format("Request to %s: %s", this.server, request));
+
+			try {
+				synchronized (this.outputStream) {
+					if (this.isClosed)
+						throw new IOException("Connection closed");
+
+					this.outputStream.write(request.getBytes(StandardCharsets.UTF_8));
+					this.outputStream.flush();
+				}
+			} catch (IOException e) {
+				this.close();
+				throw e;
+			}
+
+			return new SentRequests(this, ids, futures, asBatch);
+		}
+
+		/** Closes connection, failing any pending requests. */
+		public void close() {
+			this.isClosed = true;
+
+			try {
+				this.socket.close();
+			} catch (IOException e) {
+				// We did try...
+			}
+
+			for (Long id : this.pendingRequests.keySet())
+				this.failRequest(id, new IOException("Connection closed"));
+		}
+
+		private void readResponses(Scanner scanner) {
+			try {
+				while (!this.isClosed) {
+					final String response = scanner.next();
+					LOGGER.trace(() -> String.format("Response from %s: %s", this.server, response));
+
+					if (response.isEmpty())
+						continue;
+
+					Object responseObj = JSONValue.parse(response);
+
+					if (responseObj instanceof JSONArray) {
+						// Batch response
+						for (Object batchedResponseObj : (JSONArray) responseObj)
+							this.onResponse(batchedResponseObj);
+					} else {
+						this.onResponse(responseObj);
+					}
+				}
+			} catch (NoSuchElementException | IllegalStateException e) {
+				// Connection closed
+			} finally {
+				this.close();
+			}
+		}
+
+		private void onResponse(Object responseObj) {
+			if (!(responseObj instanceof JSONObject))
+				return;
+
+			JSONObject responseJson = (JSONObject) responseObj;
+
+			Object idObj = responseJson.get("id");
+			if (idObj instanceof Long) {
+				Long id = (Long) idObj;
+
+				this.batchedRequestIds.remove(id);
+				CompletableFuture<JSONObject> future = this.pendingRequests.remove(id);
+				if (future != null)
+					future.complete(responseJson);
+
+				return;
+			}
+
+			// Notifications, e.g. new block headers, have no id and can be ignored
+
+			// Error without id means server couldn't handle request, e.g. because it doesn't support batches
+			if (responseJson.get("error") != null && !this.batchedRequestIds.isEmpty()) {
+				LOGGER.debug(() -> String.format("Server %s rejected batched requests - sending requests individually", this.server));
+				this.supportsBatches = false;
+
+				for (Long id : this.batchedRequestIds)
+					this.failRequest(id, new IOException("Batch rejected"));
+			}
+		}
+
+		/** Stops waiting for response to request, e.g. after timeout, so late response is ignored. */
+		public void forgetRequest(Long id) {
+			this.batchedRequestIds.remove(id);
+			this.pendingRequests.remove(id);
+		}
+
+		private void failRequest(Long id, IOException e) {
+			this.batchedRequestIds.remove(id);
+
+			CompletableFuture<JSONObject> future = this.pendingRequests.remove(id);
+			if (future != null)
+				future.completeExceptionally(e);
+		}
+	}
+
+	/** Requests sent together over one connection. */
+	private static class SentRequests {
+		private final Connection connection;
+		private final List<Long> ids;
+		private final List<CompletableFuture<JSONObject>> futures;
+		/** Whether requests were sent as a JSON-RPC batch */
+		private final boolean asBatch;
+
+		public SentRequests(Connection connection, List<Long> ids, List<CompletableFuture<JSONObject>> futures, boolean asBatch) {
+			this.connection = connection;
+			this.ids = ids;
+			this.futures = futures;
+			this.asBatch = asBatch;
+		}
+	}
+
+	/** Outcome of one RPC request: either "result" object or error returned by server. */
+	private static class RpcResult {
+		private final Server server;
+		private final Object result;
+		private final ForeignBlockchainException.NetworkException exception;
+
+		public RpcResult(Server server, Object result, ForeignBlockchainException.NetworkException exception) {
+			this.server = server;
+			this.result = result;
+			this.exception = exception;
+		}
+
+		/** Returns "result" object, or throws error returned by server. */
+		public Object get() throws ForeignBlockchainException.NetworkException {
+			if (this.exception != null)
+				throw this.exception;
+
+			return this.result;
+		}
+	}
+
 	private Set<Server> servers = new HashSet<>();
-	private List<Server> remainingServers = new ArrayList<>();
 	private Set<Server> uselessServers = Collections.synchronizedSet(new HashSet<>());
 
 	private final String netId;
@@ -109,10 +376,8 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	private final Map<Server.ConnectionType, Integer> defaultPorts = new EnumMap<>(Server.ConnectionType.class);
 
 	private final Object serverLock = new Object();
-	private Server currentServer;
-	private Socket socket;
-	private Scanner scanner;
-	private int nextId = 1;
+	/** Open connections, guarded by serverLock */
+	private final List<Connection> connections = new ArrayList<>();
 
 	private static final int TX_CACHE_SIZE = 1000;
 	@SuppressWarnings("serial")
@@ -255,30 +520,59 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	 */
 	@Override
 	public List<UnspentOutput> getUnspentOutputs(byte[] script, boolean includeUnconfirmed) throws ForeignBlockchainException {
-		byte[] scriptHash = Crypto.digest(script);
-		Bytes.reverse(scriptHash);
+		Object unspentJson = this.rpc("blockchain.scripthash.listunspent", scriptHashHex(script));
 
-		Object unspentJson = this.rpc("blockchain.scripthash.listunspent", HashCode.fromBytes(scriptHash).toString());
-		if (!(unspentJson instanceof JSONArray))
-			throw new ForeignBlockchainException("Expected array output from ElectrumX blockchain.scripthash.listunspent RPC");
+		return parseUnspentOutputs(unspentJson, includeUnconfirmed);
+	}
 
-		List<UnspentOutput> unspentOutputs = new ArrayList<>();
-		for (Object rawUnspent : (JSONArray) unspentJson) {
-			JSONObject unspent = (JSONObject) rawUnspent;
+	/**
+	 * Returns lists of unspent outputs pertaining to each passed payment script, in same order.
+	 * <p>
+	 * Unspent outputs are requested in batches.
+	 * 
+	 * @throws ForeignBlockchainException if there was an error.
+	 */
+	@Override
+	public List<List<UnspentOutput>> getUnspentOutputs(List<byte[]> scripts, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		List<Object[]> paramsList = scripts.stream()
+				.map(script -> new Object[] { scriptHashHex(script) })
+				.collect(Collectors.toList());
 
-			int height = ((Long) unspent.get("height")).intValue();
-			// We only want unspent outputs from confirmed transactions (and definitely not mempool duplicates with height 0)
-			if (!includeUnconfirmed && height <= 0)
-				continue;
+		List<RpcResult> rpcResults = this.rpcBatch("blockchain.scripthash.listunspent", paramsList);
 
-			byte[] txHash = HashCode.fromString((String) unspent.get("tx_hash")).asBytes();
-			int outputIndex = ((Long) unspent.get("tx_pos")).intValue();
-			long value = (Long) unspent.get("value");
+		List<List<UnspentOutput>> unspentOutputs = new ArrayList<>(rpcResults.size());
+		for (RpcResult rpcResult : rpcResults)
+			unspentOutputs.add(parseUnspentOutputs(rpcResult.get(), includeUnconfirmed));
 
-			unspentOutputs.add(new UnspentOutput(txHash, outputIndex, height, value));
+		return unspentOutputs;
+	}
+
+	/**
+	 * Returns status hashes for each passed payment script, in same order, with null for scripts without history.
+	 * <p>
+	 * Statuses are requested in batches. As a side-effect, server will also notify us of changes, which we ignore.
+	 * 
+	 * @throws ForeignBlockchainException if there was an error.
+	 */
+	@Override
+	public List<String> getAddressStatuses(List<byte[]> scripts) throws ForeignBlockchainException {
+		List<Object[]> paramsList = scripts.stream()
+				.map(script -> new Object[] { scriptHashHex(script) })
+				.collect(Collectors.toList());
+
+		List<RpcResult> rpcResults = this.rpcBatch("blockchain.scripthash.subscribe", paramsList);
+
+		List<String> statuses = new ArrayList<>(rpcResults.size());
+		for (RpcResult rpcResult : rpcResults) {
+			Object statusObj = rpcResult.get();
+
+			if (statusObj != null && !(statusObj instanceof String))
+				throw new ForeignBlockchainException.NetworkException("Unexpected output from ElectrumX blockchain.scripthash.subscribe RPC");
+
+			statuses.add((String) statusObj);
 		}
 
-		return unspentOutputs;
+		return statuses;
 	}
 
 	/**
@@ -334,11 +628,14 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		if (transaction != null)
 			return transaction;
 
-		Object transactionObj = null;
+		RpcResult rpcResult;
+
+		while (true) {
+			rpcResult = this.rpcBatch("blockchain.transaction.get", Collections.singletonList(new Object[] { txHash, true })).get(0);
 
-		do {
 			try {
-				transactionObj = this.rpc("blockchain.transaction.get", txHash, true);
+				rpcResult.get();
+				break;
 			} catch (ForeignBlockchainException.NetworkException e) {
 				// DaemonError({'code': -5, 'message': 'No such mempool or blockchain transaction. Use gettransaction for wallet transactions.'})
 				if (Integer.valueOf(-5).equals(e.getDaemonErrorCode()))
@@ -357,8 +654,177 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 
 				throw e;
 			}
-		} while (transactionObj == null);
+		}
+
+		return this.parseTransaction(txHash, rpcResult.result, rpcResult.server);
+	}
+
+	/**
+	 * Returns transaction info for each passed transaction hash, in same order.
+	 * <p>
+	 * Transactions not already cached are requested in batches.
+	 * If some transactions can't be fetched, those that could are still cached.
+	 * 
+	 * @throws ForeignBlockchainException.NotFoundException if a transaction not found
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	@Override
+	public List<BitcoinyTransaction> getTransactions(List<String> txHashes) throws ForeignBlockchainException {
+		Map<String, BitcoinyTransaction> transactions = new HashMap<>();
+		Set<String> uncachedTxHashes = new LinkedHashSet<>();
+
+		for (String txHash : txHashes) {
+			BitcoinyTransaction transaction = transactionCache.get(txHash);
+			if (transaction != null)
+				transactions.put(txHash, transaction);
+			else
+				uncachedTxHashes.add(txHash);
+		}
+
+		if (!uncachedTxHashes.isEmpty()) {
+			List<String> requestedTxHashes = new ArrayList<>(uncachedTxHashes);
+			List<Object[]> paramsList = requestedTxHashes.stream()
+					.map(txHash -> new Object[] { txHash, true })
+					.collect(Collectors.toList());
+
+			List<RpcResult> rpcResults = this.rpcBatch("blockchain.transaction.get", paramsList);
+
+			ForeignBlockchainException firstException = null;
+
+			for (int i = 0; i < requestedTxHashes.size(); ++i) {
+				String txHash = requestedTxHashes.get(i);
+				RpcResult rpcResult = rpcResults.get(i);
+
+				try {
+					// Errors, e.g. not found or unsupported verbose transactions, are handled by single-transaction path
+					BitcoinyTransaction transaction = rpcResult.exception == null
+							? this.parseTransaction(txHash, rpcResult.result, rpcResult.server)
+							: this.getTransaction(txHash);
+
+					transactions.put(txHash, transaction);
+				} catch (ForeignBlockchainException e) {
+					if (firstException == null)
+						firstException = e;
+				}
+			}
+
+			if (firstException != null)
+				throw firstException;
+		}
+
+		return txHashes.stream().map(transactions::get).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns list of transactions, relating to passed payment script.
+	 * <p>
+	 * @return list of related transactions, or empty list if script unknown
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	@Override
+	public List<TransactionHash> getAddressTransactions(byte[] script, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		Object transactionsJson = this.rpc("blockchain.scripthash.get_history", scriptHashHex(script));
+
+		return parseAddressTransactions(transactionsJson, includeUnconfirmed);
+	}
+
+	/**
+	 * Returns lists of transactions, relating to each passed payment script, in same order.
+	 * <p>
+	 * Histories are requested in batches.
+	 * 
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	@Override
+	public List<List<TransactionHash>> getAddressTransactions(List<byte[]> scripts, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		List<Object[]> paramsList = scripts.stream()
+				.map(script -> new Object[] { scriptHashHex(script) })
+				.collect(Collectors.toList());
+
+		List<RpcResult> rpcResults = this.rpcBatch("blockchain.scripthash.get_history", paramsList);
+
+		List<List<TransactionHash>> addressTransactions = new ArrayList<>(rpcResults.size());
+		for (RpcResult rpcResult : rpcResults)
+			addressTransactions.add(parseAddressTransactions(rpcResult.get(), includeUnconfirmed));
+
+		return addressTransactions;
+	}
+
+	/**
+	 * Broadcasts raw transaction to network.
+	 * <p>
+	 * @throws ForeignBlockchainException if error occurs
+	 */
+	@Override
+	public void broadcastTransaction(byte[] transactionBytes) throws ForeignBlockchainException {
+		Object rawBroadcastResult = this.rpc("blockchain.transaction.broadcast", HashCode.fromBytes(transactionBytes).toString());
+
+		// We're expecting a simple string that is the transaction hash
+		if (!(rawBroadcastResult instanceof String))
+			throw new ForeignBlockchainException.NetworkException("Unexpected response from ElectrumX blockchain.transaction.broadcast RPC");
+	}
+
+	// Class-private utility methods
+
+	/** Returns ElectrumX-style script hash, i.e. reversed SHA256 digest as hex. */
+	private static String scriptHashHex(byte[] script) {
+		byte[] scriptHash = Crypto.digest(script);
+		Bytes.reverse(scriptHash);
+
+		return HashCode.fromBytes(scriptHash).toString();
+	}
+
+	private static List<UnspentOutput> parseUnspentOutputs(Object unspentJson, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		if (!(unspentJson instanceof JSONArray))
+			throw new ForeignBlockchainException("Expected array output from ElectrumX blockchain.scripthash.listunspent RPC");
+
+		List<UnspentOutput> unspentOutputs = new ArrayList<>();
+		for (Object rawUnspent : (JSONArray) unspentJson) {
+			JSONObject unspent = (JSONObject) rawUnspent;
+
+			int height = ((Long) unspent.get("height")).intValue();
+			// We only want unspent outputs from confirmed transactions (and definitely not mempool duplicates with height 0)
+			if (!includeUnconfirmed && height <= 0)
+				continue;
+
+			byte[] txHash = HashCode.fromString((String) unspent.get("tx_hash")).asBytes();
+			int outputIndex = ((Long) unspent.get("tx_pos")).intValue();
+			long value = (Long) unspent.get("value");
+
+			unspentOutputs.add(new UnspentOutput(txHash, outputIndex, height, value));
+		}
+
+		return unspentOutputs;
+	}
+
+	private static List<TransactionHash> parseAddressTransactions(Object transactionsJson, boolean includeUnconfirmed) throws ForeignBlockchainException {
+		if (!(transactionsJson instanceof JSONArray))
+			throw new ForeignBlockchainException.NetworkException("Expected array output from ElectrumX blockchain.scripthash.get_history RPC");
+
+		List<TransactionHash> transactionHashes = new ArrayList<>();
+
+		for (Object rawTransactionInfo : (JSONArray) transactionsJson) {
+			JSONObject transactionInfo = (JSONObject) rawTransactionInfo;
+
+			Long height = (Long) transactionInfo.get("height");
+			if (!includeUnconfirmed && (height == null || height == 0))
+				// We only want confirmed transactions
+				continue;
+
+			String txHash = (String) transactionInfo.get("tx_hash");
+
+			transactionHashes.add(new TransactionHash(height.intValue(), txHash));
+		}
+
+		return transactionHashes;
+	}
 
+	/**
+	 * Unpacks verbose transaction JSON from <tt>server</tt>, caching result.
+	 * <p>
+	 * @throws ForeignBlockchainException if JSON is unsuitable
+	 */
+	private BitcoinyTransaction parseTransaction(String txHash, Object transactionObj, Server server) throws ForeignBlockchainException {
 		if (!(transactionObj instanceof JSONObject))
 			throw new ForeignBlockchainException.NetworkException("Expected JSONObject as response from ElectrumX blockchain.transaction.get RPC");
 
@@ -425,9 +891,9 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 				// Update: it turns out that they were just using a different key - "address" instead of "addresses"
 				// The code below can remain in place, just in case a peer returns a missing address in the future
 				if (addresses == null || addresses.isEmpty()) {
-					if (this.currentServer != null) {
-						this.uselessServers.add(this.currentServer);
-						this.closeServer(this.currentServer);
+					if (server != null) {
+						this.uselessServers.add(server);
+						this.closeServer(server);
 					}
 					LOGGER.info("No output addresses returned for transaction {}", txHash);
 					throw new ForeignBlockchainException(String.format("No output addresses returned for transaction %s", txHash));
@@ -436,7 +902,7 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 				outputs.add(new BitcoinyTransaction.Output(scriptPubKey, value, addresses));
 			}
 
-			transaction = new BitcoinyTransaction(txHash, size, locktime, timestamp, inputs, outputs);
+			BitcoinyTransaction transaction = new BitcoinyTransaction(txHash, size, locktime, timestamp, inputs, outputs);
 
 			// Save into cache
 			transactionCache.put(txHash, transaction);
@@ -450,64 +916,15 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	}
 
 	/**
-	 * Returns list of transactions, relating to passed payment script.
-	 * <p>
-	 * @return list of related transactions, or empty list if script unknown
-	 * @throws ForeignBlockchainException if error occurs
-	 */
-	@Override
-	public List<TransactionHash> getAddressTransactions(byte[] script, boolean includeUnconfirmed) throws ForeignBlockchainException {
-		byte[] scriptHash = Crypto.digest(script);
-		Bytes.reverse(scriptHash);
-
-		Object transactionsJson = this.rpc("blockchain.scripthash.get_history", HashCode.fromBytes(scriptHash).toString());
-		if (!(transactionsJson instanceof JSONArray))
-			throw new ForeignBlockchainException.NetworkException("Expected array output from ElectrumX blockchain.scripthash.get_history RPC");
-
-		List<TransactionHash> transactionHashes = new ArrayList<>();
-
-		for (Object rawTransactionInfo : (JSONArray) transactionsJson) {
-			JSONObject transactionInfo = (JSONObject) rawTransactionInfo;
-
-			Long height = (Long) transactionInfo.get("height");
-			if (!includeUnconfirmed && (height == null || height == 0))
-				// We only want confirmed transactions
-				continue;
-
-			String txHash = (String) transactionInfo.get("tx_hash");
-
-			transactionHashes.add(new TransactionHash(height.intValue(), txHash));
-		}
-
-		return transactionHashes;
-	}
-
-	/**
-	 * Broadcasts raw transaction to network.
-	 * <p>
-	 * @throws ForeignBlockchainException if error occurs
-	 */
-	@Override
-	public void broadcastTransaction(byte[] transactionBytes) throws ForeignBlockchainException {
-		Object rawBroadcastResult = this.rpc("blockchain.transaction.broadcast", HashCode.fromBytes(transactionBytes).toString());
-
-		// We're expecting a simple string that is the transaction hash
-		if (!(rawBroadcastResult instanceof String))
-			throw new ForeignBlockchainException.NetworkException("Unexpected response from ElectrumX blockchain.transaction.broadcast RPC");
-	}
-
-	// Class-private utility methods
-
-	/**
-	 * Query current server for its list of peer servers, and return those we can parse.
+	 * Query connected server for its list of peer servers, and return those we can parse.
 	 * <p>
 	 * @throws ForeignBlockchainException
 	 * @throws ClassCastException to be handled by caller
 	 */
-	private Set<Server> serverPeersSubscribe() throws ForeignBlockchainException {
+	private Set<Server> serverPeersSubscribe(Connection connection) throws ForeignBlockchainException {
 		Set<Server> newServers = new HashSet<>();
 
-		Object peers = this.connectedRpc("server.peers.subscribe");
+		Object peers = this.connectedRpc(connection, "server.peers.subscribe");
 
 		for (Object rawPeer : (JSONArray) peers) {
 			JSONArray peer = (JSONArray) rawPeer;
@@ -567,215 +984,305 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	 * @throws ForeignBlockchainException if server returns error or something goes wrong
 	 */
 	private Object rpc(String method, Object...params) throws ForeignBlockchainException {
-		synchronized (this.serverLock) {
-			if (this.remainingServers.isEmpty())
-				this.remainingServers.addAll(this.servers);
-
-			while (haveConnection()) {
-				Object response = connectedRpc(method, params);
-
-				// If we have more servers and this one replied slowly, try another
-				if (!this.remainingServers.isEmpty()) {
-					long averageResponseTime = this.currentServer.averageResponseTime();
-					if (averageResponseTime > MAX_AVG_RESPONSE_TIME) {
-						LOGGER.info("Slow average response time {}ms from {} - trying another server...", averageResponseTime, this.currentServer.hostname);
-						this.closeServer();
-						break;
+		return this.rpcBatch(method, Collections.<Object[]>singletonList(params)).get(0).get();
+	}
+
+	/**
+	 * Performs RPC call for each set of params, spreading batches of requests over connections to several servers.
+	 * <p>
+	 * Requests that servers fail to answer are retried using other servers.
+	 * 
+	 * @return results in same order as <tt>paramsList</tt>, each either "result" object or error returned by server
+	 * @throws ForeignBlockchainException if no server could answer some requests
+	 */
+	private List<RpcResult> rpcBatch(String method, List<Object[]> paramsList) throws ForeignBlockchainException {
+		RpcResult[] rpcResults = new RpcResult[paramsList.size()];
+		Set<Server> excludedServers = new HashSet<>();
+		Set<Connection> usedConnections = new HashSet<>();
+
+		List<Integer> remainingIndexes = IntStream.range(0, paramsList.size()).boxed().collect(Collectors.toList());
+
+		while (!remainingIndexes.isEmpty()) {
+			List<Integer> failedIndexes = new ArrayList<>();
+			List<List<Integer>> sentIndexes = new ArrayList<>();
+			List<SentRequests> sentRequests = new ArrayList<>();
+
+			// Check we have a usable connection before queuing any requests, so none are left pending if we give up
+			Connection firstConnection = this.getConnection(excludedServers);
+			if (firstConnection == null) {
+				// Failed to perform RPC - maybe lack of servers?
+				LOGGER.info("Error: No connected Electrum servers when trying to make RPC call");
+				throw new ForeignBlockchainException.NetworkException(String.format("Failed to perform ElectrumX RPC %s", method));
+			}
+
+			// Send all batches before waiting for any responses
+			for (int from = 0; from < remainingIndexes.size(); from += MAX_BATCH_SIZE) {
+				List<Integer> indexes = remainingIndexes.subList(from, Math.min(from + MAX_BATCH_SIZE, remainingIndexes.size()));
+
+				Connection connection = from == 0 ? firstConnection : this.getConnection(excludedServers);
+				if (connection == null) {
+					// No server left for this batch - retry next round, which gives up if there are still none
+					failedIndexes.addAll(indexes);
+					continue;
+				}
+
+				List<Object[]> batchParams = indexes.stream().map(paramsList::get).collect(Collectors.toList());
+
+				final long startTime = System.currentTimeMillis();
+				try {
+					SentRequests sent = connection.send(method, batchParams);
+
+					// Keep track of response times, but only for individual requests
+					if (batchParams.size() == 1)
+						sent.futures.get(0).thenRun(() -> connection.server.addResponseTime(System.currentTimeMillis() - startTime));
+
+					sentIndexes.add(indexes);
+					sentRequests.add(sent);
+					usedConnections.add(connection);
+				} catch (IOException e) {
+					// Unable to send - try another server
+					excludedServers.add(connection.server);
+					failedIndexes.addAll(indexes);
+				}
+			}
+
+			final long deadline = System.currentTimeMillis() + RESPONSE_TIMEOUT;
+
+			for (int b = 0; b < sentRequests.size(); ++b) {
+				SentRequests sent = sentRequests.get(b);
+				List<Integer> indexes = sentIndexes.get(b);
+				boolean anyFailed = false;
+
+				for (int i = 0; i < indexes.size(); ++i) {
+					JSONObject responseJson = this.awaitResponse(sent, i, deadline);
+
+					RpcResult rpcResult = responseJson != null ? this.parseResponse(sent.connection.server, method, responseJson) : null;
+					if (rpcResult == null) {
+						failedIndexes.add(indexes.get(i));
+						anyFailed = true;
+						continue;
 					}
+
+					rpcResults[indexes.get(i)] = rpcResult;
 				}
 
-				if (response != null)
-					return response;
+				if (!anyFailed)
+					continue;
+
+				// If server merely rejected batch then retry requests individually, otherwise try another server
+				if (sent.asBatch && !sent.connection.supportsBatches && !sent.connection.isClosed())
+					continue;
 
-				// Didn't work, try another server...
-				this.closeServer();
+				excludedServers.add(sent.connection.server);
+				this.closeConnection(sent.connection);
 			}
 
-			// Failed to perform RPC - maybe lack of servers?
-			LOGGER.info("Error: No connected Electrum servers when trying to make RPC call");
-			throw new ForeignBlockchainException.NetworkException(String.format("Failed to perform ElectrumX RPC %s", method));
+			remainingIndexes = failedIndexes;
 		}
+
+		// If we have more servers and any used one replied slowly, try another next time
+		for (Connection connection : usedConnections) {
+			long averageResponseTime = connection.server.averageResponseTime();
+
+			if (averageResponseTime > MAX_AVG_RESPONSE_TIME && this.servers.size() > 1) {
+				LOGGER.info("Slow average response time {}ms from {} - trying another server...", averageResponseTime, connection.server.hostname);
+				this.closeConnection(connection);
+			}
+		}
+
+		return Arrays.asList(rpcResults);
 	}
 
-	/** Returns true if we have, or create, a connection to an ElectrumX server. */
-	private boolean haveConnection() throws ForeignBlockchainException {
-		if (this.currentServer != null)
-			return true;
+	/** Returns response to <tt>index</tt>-th sent request, or null if connection failed or deadline passed. */
+	private JSONObject awaitResponse(SentRequests sent, int index, long deadline) throws ForeignBlockchainException {
+		try {
+			return sent.futures.get(index).get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			return null;
+		} catch (TimeoutException e) {
+			// Don't keep timed-out request pending, otherwise connection looks busy forever
+			sent.connection.forgetRequest(sent.ids.get(index));
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ForeignBlockchainException.NetworkException("Interrupted while waiting for ElectrumX response");
+		}
+	}
 
-		while (!this.remainingServers.isEmpty()) {
-			Server server = this.remainingServers.remove(RANDOM.nextInt(this.remainingServers.size()));
-			LOGGER.trace(() -> String.format("Connecting to %s", server));
+	/**
+	 * Returns least busy connection to a server not in <tt>excludedServers</tt>,
+	 * connecting to another server if all connections are busy and there is room for another.
+	 * <p>
+	 * Servers that fail to connect are added to <tt>excludedServers</tt>.
+	 * 
+	 * @return connection, or null if no suitable servers
+	 */
+	private Connection getConnection(Set<Server> excludedServers) {
+		synchronized (this.serverLock) {
+			this.connections.removeIf(Connection::isClosed);
 
-			try {
-				SocketAddress endpoint = new InetSocketAddress(server.hostname, server.port);
-				int timeout = 5000; // ms
+			Connection bestConnection = this.connections.stream()
+					.filter(connection -> !excludedServers.contains(connection.server))
+					.min(Comparator.comparingInt(Connection::getPendingCount))
+					.orElse(null);
 
-				this.socket = new Socket();
-				this.socket.connect(endpoint, timeout);
-				this.socket.setTcpNoDelay(true);
+			if (bestConnection != null && (bestConnection.getPendingCount() == 0 || this.connections.size() >= MAX_CONNECTIONS))
+				return bestConnection;
 
-				if (server.connectionType == Server.ConnectionType.SSL) {
-					SSLSocketFactory factory = TrustlessSSLSocketFactory.getSocketFactory();
-					this.socket = factory.createSocket(this.socket, server.hostname, server.port, true);
-				}
+			Connection newConnection = this.connect(excludedServers);
+			if (newConnection == null)
+				return bestConnection;
 
-				this.scanner = new Scanner(this.socket.getInputStream());
-				this.scanner.useDelimiter("\n");
+			// Make room, if possible, by dropping an idle connection, e.g. to a server now excluded
+			if (this.connections.size() >= MAX_CONNECTIONS)
+				this.connections.stream()
+						.filter(connection -> connection.getPendingCount() == 0)
+						.findFirst()
+						.ifPresent(this::closeConnection);
 
-				// Check connection is suitable by asking for server features, including genesis block hash
-				JSONObject featuresJson = (JSONObject) this.connectedRpc("server.features");
+			this.connections.add(newConnection);
+			return newConnection;
+		}
+	}
 
-				if (featuresJson == null || Double.valueOf((String) featuresJson.get("protocol_min")) < MIN_PROTOCOL_VERSION)
-					continue;
+	/** Returns new connection to a suitable, randomly chosen, server that isn't already connected, or null if none. */
+	private Connection connect(Set<Server> excludedServers) {
+		Set<Server> connectedServers = this.connections.stream().map(connection -> connection.server).collect(Collectors.toSet());
 
-				if (this.expectedGenesisHash != null && !((String) featuresJson.get("genesis_hash")).equals(this.expectedGenesisHash))
-					continue;
+		List<Server> candidateServers = this.servers.stream()
+				.filter(server -> !excludedServers.contains(server) && !connectedServers.contains(server) && !this.uselessServers.contains(server))
+				.collect(Collectors.toList());
 
-				// Ask for more servers
-				Set<Server> moreServers = serverPeersSubscribe();
-				// Discard duplicate servers we already know
-				moreServers.removeAll(this.servers);
-				// Add to both lists
-				this.remainingServers.addAll(moreServers);
-				this.servers.addAll(moreServers);
+		while (!candidateServers.isEmpty()) {
+			Server server = candidateServers.remove(RANDOM.nextInt(candidateServers.size()));
+			LOGGER.trace(() -> String.format("Connecting to %s", server));
 
-				LOGGER.debug(() -> String.format("Connected to %s", server));
-				this.currentServer = server;
-				return true;
+			Connection connection = null;
+			try {
+				connection = new Connection(server);
+
+				// Check connection is suitable by asking for server features, including genesis block hash
+				JSONObject featuresJson = (JSONObject) this.connectedRpc(connection, "server.features");
+
+				if (featuresJson != null && Double.valueOf((String) featuresJson.get("protocol_min")) >= MIN_PROTOCOL_VERSION
+						&& (this.expectedGenesisHash == null || ((String) featuresJson.get("genesis_hash")).equals(this.expectedGenesisHash))) {
+					// Ask for more servers
+					Set<Server> moreServers = serverPeersSubscribe(connection);
+					// Discard duplicate servers we already know
+					moreServers.removeAll(this.servers);
+					this.servers.addAll(moreServers);
+
+					LOGGER.debug(() -> String.format("Connected to %s", server));
+					return connection;
+				}
 			} catch (IOException | ForeignBlockchainException | ClassCastException | NullPointerException e) {
 				// Didn't work, try another server...
-				closeServer();
 			}
+
+			if (connection != null)
+				connection.close();
+
+			excludedServers.add(server);
 		}
 
-		return false;
+		return null;
 	}
 
 	/**
-	 * Perform RPC using currently connected server.
+	 * Perform RPC using passed connection.
 	 * <p>
+	 * @param connection
 	 * @param method
 	 * @param params
 	 * @return response Object, or null if server fails to respond
 	 * @throws ForeignBlockchainException if server returns error
 	 */
-	@SuppressWarnings("unchecked")
-	private Object connectedRpc(String method, Object...params) throws ForeignBlockchainException {
-		JSONObject requestJson = new JSONObject();
-		requestJson.put("id", this.nextId++);
-		requestJson.put("method", method);
-		requestJson.put("jsonrpc", "2.0");
-
-		JSONArray requestParams = new JSONArray();
-		requestParams.addAll(Arrays.asList(params));
-		requestJson.put("params", requestParams);
-
-		String request = requestJson.toJSONString() + "\n";
-		LOGGER.trace(() -> String.format("Request: %s", request));
-
-		long startTime = System.currentTimeMillis();
-		final String response;
-
+	private Object connectedRpc(Connection connection, String method, Object...params) throws ForeignBlockchainException {
+		final JSONObject responseJson;
 		try {
-			this.socket.getOutputStream().write(request.getBytes());
-			response = scanner.next();
-		} catch (IOException | NoSuchElementException e) {
-			// Unable to send, or receive -- try another server?
+			SentRequests sent = connection.send(method, Collections.<Object[]>singletonList(params));
+			responseJson = this.awaitResponse(sent, 0, System.currentTimeMillis() + RESPONSE_TIMEOUT);
+		} catch (IOException e) {
+			// Unable to send
 			return null;
 		}
 
-		long endTime = System.currentTimeMillis();
-		long responseTime = endTime-startTime;
-
-		LOGGER.trace(() -> String.format("Response: %s", response));
-		LOGGER.trace(() -> String.format("Time taken: %dms", endTime-startTime));
-
-		if (response.isEmpty())
-			// Empty response - try another server?
+		if (responseJson == null)
 			return null;
 
-		Object responseObj = JSONValue.parse(response);
-		if (!(responseObj instanceof JSONObject))
-			// Unexpected response - try another server?
+		RpcResult rpcResult = this.parseResponse(connection.server, method, responseJson);
+		if (rpcResult == null)
 			return null;
 
-		// Keep track of response times
-		if (this.currentServer != null) {
-			this.currentServer.addResponseTime(responseTime);
+		return rpcResult.get();
+	}
+
+	/**
+	 * Extracts "result" object, or error, from JSON response.
+	 * <p>
+	 * @return result, or null if response is unsuitable and another server should be tried
+	 */
+	private RpcResult parseResponse(Server server, String method, JSONObject responseJson) {
+		Object errorObj = responseJson.get("error");
+		if (errorObj == null)
+			return new RpcResult(server, responseJson.get("result"), null);
+
+		if (errorObj instanceof String) {
+			LOGGER.debug(String.format("Unexpected error message from ElectrumX server %s for RPC method %s: %s", server, method, (String) errorObj));
+			// Try another server
+			return null;
 		}
 
-		JSONObject responseJson = (JSONObject) responseObj;
+		if (!(errorObj instanceof JSONObject)) {
+			LOGGER.debug(String.format("Unexpected error response from ElectrumX server %s for RPC method %s", server, method));
+			// Try another server
+			return null;
+		}
 
-		Object errorObj = responseJson.get("error");
-		if (errorObj != null) {
-			if (errorObj instanceof String) {
-				LOGGER.debug(String.format("Unexpected error message from ElectrumX server %s for RPC method %s: %s", this.currentServer, method, (String) errorObj));
-				// Try another server
-				return null;
-			}
+		JSONObject errorJson = (JSONObject) errorObj;
 
-			if (!(errorObj instanceof JSONObject)) {
-				LOGGER.debug(String.format("Unexpected error response from ElectrumX server %s for RPC method %s", this.currentServer, method));
-				// Try another server
-				return null;
-			}
+		Object messageObj = errorJson.get("message");
 
-			JSONObject errorJson = (JSONObject) errorObj;
+		if (!(messageObj instanceof String)) {
+			LOGGER.debug(String.format("Missing/invalid message in error response from ElectrumX server %s for RPC method %s", server, method));
+			// Try another server
+			return null;
+		}
 
-			Object messageObj = errorJson.get("message");
+		String message = (String) messageObj;
 
-			if (!(messageObj instanceof String)) {
-				LOGGER.debug(String.format("Missing/invalid message in error response from ElectrumX server %s for RPC method %s", this.currentServer, method));
-				// Try another server
-				return null;
+		// Some error 'messages' are actually wrapped upstream bitcoind errors:
+		// "message": "daemon error: DaemonError({'code': -5, 'message': 'No such mempool or blockchain transaction. Use gettransaction for wallet transactions.'})"
+		// We want to detect these and extract the upstream error code for caller's use
+		Matcher messageMatcher = DAEMON_ERROR_REGEX.matcher(message);
+		if (messageMatcher.find())
+			try {
+				int daemonErrorCode = Integer.parseInt(messageMatcher.group(1));
+				return new RpcResult(server, null, new ForeignBlockchainException.NetworkException(daemonErrorCode, message, server));
+			} catch (NumberFormatException e) {
+				// We couldn't parse the error code integer? Fall-through to generic exception...
 			}
 
-			String message = (String) messageObj;
-
-			// Some error 'messages' are actually wrapped upstream bitcoind errors:
-			// "message": "daemon error: DaemonError({'code': -5, 'message': 'No such mempool or blockchain transaction. Use gettransaction for wallet transactions.'})"
-			// We want to detect these and extract the upstream error code for caller's use
-			Matcher messageMatcher = DAEMON_ERROR_REGEX.matcher(message);
-			if (messageMatcher.find())
-				try {
-					int daemonErrorCode = Integer.parseInt(messageMatcher.group(1));
-					throw new ForeignBlockchainException.NetworkException(daemonErrorCode, message, this.currentServer);
-				} catch (NumberFormatException e) {
-					// We couldn't parse the error code integer? Fall-through to generic exception...
-				}
+		return new RpcResult(server, null, new ForeignBlockchainException.NetworkException(message, server));
+	}
 
-			throw new ForeignBlockchainException.NetworkException(message, this.currentServer);
+	/** Closes connection and stops using it. */
+	private void closeConnection(Connection connection) {
+		synchronized (this.serverLock) {
+			this.connections.remove(connection);
+			connection.close();
 		}
-
-		return responseJson.get("result");
 	}
 
 	/**
-	 * Closes connection to <tt>server</tt> if it is currently connected server.
+	 * Closes any connections to <tt>server</tt>.
 	 * @param server
 	 */
 	private void closeServer(Server server) {
 		synchronized (this.serverLock) {
-			if (this.currentServer == null || !this.currentServer.equals(server))
-				return;
-
-			if (this.socket != null && !this.socket.isClosed())
-				try {
-					this.socket.close();
-				} catch (IOException e) {
-					// We did try...
-				}
-
-			this.socket = null;
-			this.scanner = null;
-			this.currentServer = null;
-		}
-	}
-
-	/** Closes connection to currently connected server (if any). */
-	private void closeServer() {
-		synchronized (this.serverLock) {
-			this.closeServer(this.currentServer);
+			for (Connection connection : new ArrayList<>(this.connections))
+				if (connection.server.equals(server))
+					this.closeConnection(connection);
 		}
 	}
 
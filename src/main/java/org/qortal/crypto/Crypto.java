@@ -67,6 +67,31 @@ public abstract class Crypto {
 		}
 	}
 
+	/**
+	 * Returns 32-byte SHA-256 digest of message split across several buffers, as if concatenated.
+	 * <p>
+	 * Buffers' positions are advanced to their limits.
+	 * 
+	 * @param inputs
+	 *            buffers making up message, in order
+	 * @return byte[32] digest, or null if SHA-256 algorithm can't be accessed
+	 */
+	public static byte[] digest(ByteBuffer... inputs) {
+		if (inputs == null)
+			return null;
+
+		try {
+			// SHA2-256
+			MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+			for (ByteBuffer input : inputs)
+				sha256.update(input);
+
+			return sha256.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 message digest not available");
+		}
+	}
+
 	/**
 	 * Returns 32-byte digest of two rounds of SHA-256 on message passed in input.
 	 * 
@@ -0,0 +1,205 @@
+package org.qortal.event;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.utils.DaemonThreadFactory;
+
+/**
+ * Listener wrapper that queues events and passes them to wrapped listener on its own thread.
+ * <p>
+ * Events are passed to wrapped listener one at a time, in the order they were queued,
+ * so a slow listener only delays itself and not the thread calling {@link EventBus#notify(Event)}.
+ * <p>
+ * Queue is bounded. If a new event arrives when queue is full then {@link OverflowPolicy} decides what is discarded.
+ */
+public class AsyncListener implements Listener {
+
+	private static final Logger LOGGER = LogManager.getLogger(AsyncListener.class);
+
+	/** How long idle dispatch thread is kept before exiting */
+	private static final long IDLE_THREAD_TIMEOUT = 60 * 1000L; // ms
+
+	public enum OverflowPolicy {
+		/** Discard oldest queued event */
+		DROP_OLDEST,
+		/** Discard queued events of same class as new event, as new event supersedes them, otherwise discard oldest */
+		COALESCE;
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		public String name;
+		public OverflowPolicy overflowPolicy;
+		public int queueCapacity;
+		public int queueDepth;
+		public int maxQueueDepth;
+		public long eventsQueued;
+		public long eventsProcessed;
+		public long eventsDropped;
+		public long eventsCoalesced;
+		public long exceptions;
+		public long totalProcessingTime; // ms
+		public long maxProcessingTime; // ms
+
+		public StatsSnapshot() {
+		}
+	}
+
+	private final String name;
+	private final Listener listener;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+
+	private final Deque<Event> queue = new ArrayDeque<>();
+	/** Whether a dispatch task is running or scheduled, guarded by queue */
+	private boolean isDispatching = false;
+	private final ThreadPoolExecutor executor;
+
+	private int maxQueueDepth = 0;
+	private final AtomicLong eventsQueued = new AtomicLong();
+	private final AtomicLong eventsProcessed = new AtomicLong();
+	private final AtomicLong eventsDropped = new AtomicLong();
+	private final AtomicLong eventsCoalesced = new AtomicLong();
+	private final AtomicLong exceptions = new AtomicLong();
+	private final AtomicLong totalProcessingNanos = new AtomicLong();
+	private final AtomicLong maxProcessingNanos = new AtomicLong();
+
+	public AsyncListener(String name, Listener listener, int queueCapacity, OverflowPolicy overflowPolicy) {
+		if (queueCapacity < 1)
+			throw new IllegalArgumentException("Queue capacity must be at least 1");
+
+		this.name = name;
+		this.listener = listener;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+
+		this.executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), new DaemonThreadFactory("EventBus-" + name));
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/** Returns wrapped listener. */
+	public Listener getListener() {
+		return this.listener;
+	}
+
+	@Override
+	public void listen(Event event) {
+		synchronized (this.queue) {
+			if (this.executor.isShutdown())
+				return;
+
+			if (this.queue.size() >= this.queueCapacity)
+				this.makeRoomFor(event);
+
+			this.queue.addLast(event);
+			this.eventsQueued.incrementAndGet();
+			this.maxQueueDepth = Math.max(this.maxQueueDepth, this.queue.size());
+
+			if (this.isDispatching)
+				return;
+
+			this.isDispatching = true;
+			this.executor.execute(this::dispatch);
+		}
+	}
+
+	/** Stops dispatching. Queued events are discarded. */
+	public void shutdown() {
+		synchronized (this.queue) {
+			this.queue.clear();
+			this.executor.shutdownNow();
+		}
+	}
+
+	public StatsSnapshot getStatsSnapshot() {
+		StatsSnapshot snapshot = new StatsSnapshot();
+
+		snapshot.name = this.name;
+		snapshot.overflowPolicy = this.overflowPolicy;
+		snapshot.queueCapacity = this.queueCapacity;
+
+		synchronized (this.queue) {
+			snapshot.queueDepth = this.queue.size();
+			snapshot.maxQueueDepth = this.maxQueueDepth;
+		}
+
+		snapshot.eventsQueued = this.eventsQueued.get();
+		snapshot.eventsProcessed = this.eventsProcessed.get();
+		snapshot.eventsDropped = this.eventsDropped.get();
+		snapshot.eventsCoalesced = this.eventsCoalesced.get();
+		snapshot.exceptions = this.exceptions.get();
+		snapshot.totalProcessingTime = TimeUnit.NANOSECONDS.toMillis(this.totalProcessingNanos.get());
+		snapshot.maxProcessingTime = TimeUnit.NANOSECONDS.toMillis(this.maxProcessingNanos.get());
+
+		return snapshot;
+	}
+
+	/** Discards queued event(s) according to overflow policy. Called while holding queue lock. */
+	private void makeRoomFor(Event newEvent) {
+		if (this.overflowPolicy == OverflowPolicy.COALESCE) {
+			int coalescedCount = 0;
+
+			Iterator<Event> iterator = this.queue.iterator();
+			while (iterator.hasNext())
+				if (iterator.next().getClass() == newEvent.getClass()) {
+					iterator.remove();
+					++coalescedCount;
+				}
+
+			if (coalescedCount > 0) {
+				this.eventsCoalesced.addAndGet(coalescedCount);
+				return;
+			}
+		}
+
+		this.queue.pollFirst();
+		this.eventsDropped.incrementAndGet();
+	}
+
+	private void dispatch() {
+		while (true) {
+			Event event;
+
+			synchronized (this.queue) {
+				event = this.queue.pollFirst();
+
+				if (event == null) {
+					this.isDispatching = false;
+					return;
+				}
+			}
+
+			final long before = System.nanoTime();
+
+			try {
+				this.listener.listen(event);
+			} catch (Exception e) {
+				// We don't want one event to stop later events reaching listener
+				this.exceptions.incrementAndGet();
+				LOGGER.warn(() -> String.format("Caught %s from listener %s processing %s", e.getClass().getSimpleName(), this.name, event.getClass().getSimpleName()), e);
+			}
+
+			final long processingNanos = System.nanoTime() - before;
+			this.totalProcessingNanos.addAndGet(processingNanos);
+			this.maxProcessingNanos.accumulateAndGet(processingNanos, Math::max);
+			this.eventsProcessed.incrementAndGet();
+		}
+	}
+
+}
@@ -2,9 +2,12 @@ package org.qortal.event;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.qortal.event.AsyncListener.OverflowPolicy;
+import org.qortal.settings.Settings;
 
 public enum EventBus {
 	INSTANCE;
@@ -19,9 +22,51 @@ public enum EventBus {
 		}
 	}
 
+	/**
+	 * Adds listener that is notified on its own thread, via bounded queue, so it can't delay callers of {@link #notify(Event)}.
+	 * <p>
+	 * Listener still receives events in order, but might miss some if it falls too far behind,
+	 * depending on <tt>overflowPolicy</tt>.
+	 * <p>
+	 * If asynchronous dispatch is disabled in settings then listener is added as a synchronous listener.
+	 *
+	 * @param name used for dispatch thread name and stats
+	 */
+	public void addAsyncListener(String name, Listener newListener, OverflowPolicy overflowPolicy) {
+		Settings settings = Settings.getInstance();
+
+		if (!settings.isAsyncEventDispatchEnabled()) {
+			this.addListener(newListener);
+			return;
+		}
+
+		this.addListener(new AsyncListener(name, newListener, settings.getEventListenerQueueCapacity(), overflowPolicy));
+	}
+
+	/** Removes listener, whether added synchronously or asynchronously. */
 	public void removeListener(Listener listener) {
 		synchronized (LISTENERS) {
-			LISTENERS.remove(listener);
+			LISTENERS.removeIf(existingListener -> {
+				if (existingListener == listener)
+					return true;
+
+				if (existingListener instanceof AsyncListener && ((AsyncListener) existingListener).getListener() == listener) {
+					((AsyncListener) existingListener).shutdown();
+					return true;
+				}
+
+				return false;
+			});
+		}
+	}
+
+	/** Returns queue and timing stats for each asynchronous listener. */
+	public List<AsyncListener.StatsSnapshot> getStatsSnapshot() {
+		synchronized (LISTENERS) {
+			return LISTENERS.stream()
+					.filter(listener -> listener instanceof AsyncListener)
+					.map(listener -> ((AsyncListener) listener).getStatsSnapshot())
+					.collect(Collectors.toList());
 		}
 	}
 
@@ -46,6 +91,8 @@ public enum EventBus {
 	 * <li>New repository sessions are blocked pending completion of CHECKPOINT</li>
 	 * <li>Caller is blocked so never has a chance to close (SQL) transaction - hence deadlock</li>
 	 * </ul>
+	 * Asynchronous listeners merely have event queued, so they're not affected,
+	 * but listeners added via {@link #addListener(Listener)} still run on caller's thread.
 	 */
 	public void notify(Event event) {
 		List<Listener> clonedListeners;
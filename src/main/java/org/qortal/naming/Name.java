@@ -3,6 +3,7 @@ package org.qortal.naming;
 import org.qortal.account.Account;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.asset.Asset;
+import org.qortal.controller.Controller;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.naming.NameData;
 import org.qortal.data.transaction.BuyNameTransactionData;
@@ -62,10 +63,14 @@ public class Name {
 
 	public void register() throws DataException {
 		this.repository.getNameRepository().save(this.nameData);
+
+		Controller.getInstance().onNameChange();
 	}
 
 	public void unregister() throws DataException {
 		this.repository.getNameRepository().delete(this.nameData.getName());
+
+		Controller.getInstance().onNameChange();
 	}
 
 	public void update(UpdateNameTransactionData updateNameTransactionData) throws DataException {
@@ -92,6 +97,8 @@ public class Name {
 
 		// Save updated name data
 		this.repository.getNameRepository().save(this.nameData);
+
+		Controller.getInstance().onNameChange();
 	}
 
 	public void revert(UpdateNameTransactionData updateNameTransactionData) throws DataException {
@@ -116,6 +123,8 @@ public class Name {
 
 		this.repository.getNameRepository().save(this.nameData);
 
+		Controller.getInstance().onNameChange();
+
 		if (!updateNameTransactionData.getNewName().isEmpty())
 			// Name has changed, delete old entry
 			this.repository.getNameRepository().delete(updateNameTransactionData.getNewName());
@@ -226,6 +235,8 @@ public class Name {
 
 		// Save updated name data
 		this.repository.getNameRepository().save(this.nameData);
+
+		Controller.getInstance().onNameChange();
 	}
 
 	public void unbuy(BuyNameTransactionData buyNameTransactionData) throws DataException {
@@ -245,6 +256,8 @@ public class Name {
 		// Save updated name data
 		this.repository.getNameRepository().save(this.nameData);
 
+		Controller.getInstance().onNameChange();
+
 		// Revert buyer's balance
 		Account buyer = new PublicKeyAccount(this.repository, buyNameTransactionData.getBuyerPublicKey());
 		buyer.modifyAssetBalance(Asset.QORT, buyNameTransactionData.getAmount());
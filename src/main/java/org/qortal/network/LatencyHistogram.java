@@ -0,0 +1,155 @@
+package org.qortal.network;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, recorded in microseconds.
+ * <p>
+ * Buckets are log-linear, in the style of HdrHistogram: each power-of-two range is split into
+ * {@value #SUB_BUCKET_COUNT} equal sub-buckets, so reported percentiles are within 12.5% of actual values,
+ * using a fixed, small amount of memory regardless of how many values are recorded.
+ */
+public class LatencyHistogram {
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        public long count;
+        // All durations in microseconds
+        public long mean;
+        public long p50;
+        public long p90;
+        public long p99;
+        public long max;
+
+        public StatsSnapshot() {
+        }
+    }
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    /** Values up to 2^40 microseconds (~12 days) get their own bucket, larger values share last bucket */
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        this.recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0)
+            micros = 0;
+
+        this.counts.incrementAndGet(bucketIndex(micros));
+        this.totalCount.incrementAndGet();
+        this.totalMicros.addAndGet(micros);
+        this.maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return this.totalCount.get();
+    }
+
+    /**
+     * Returns approximate value, in microseconds, at or below which <tt>percentile</tt> percent of recorded values fall,
+     * or 0 if nothing recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshotCounts = this.snapshotCounts();
+        return percentile(snapshotCounts, sum(snapshotCounts), percentile);
+    }
+
+    public StatsSnapshot getStatsSnapshot() {
+        StatsSnapshot snapshot = new StatsSnapshot();
+
+        // Counts are read without a lock, so might be very slightly inconsistent with each other
+        long[] snapshotCounts = this.snapshotCounts();
+        long count = sum(snapshotCounts);
+
+        snapshot.count = count;
+
+        long totalCount = this.totalCount.get();
+        snapshot.mean = totalCount > 0 ? this.totalMicros.get() / totalCount : 0;
+        snapshot.p50 = percentile(snapshotCounts, count, 50.0);
+        snapshot.p90 = percentile(snapshotCounts, count, 90.0);
+        snapshot.p99 = percentile(snapshotCounts, count, 99.0);
+        snapshot.max = this.maxMicros.get();
+
+        return snapshot;
+    }
+
+    private long[] snapshotCounts() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+            snapshotCounts[i] = this.counts.get(i);
+
+        return snapshotCounts;
+    }
+
+    private static long sum(long[] snapshotCounts) {
+        long sum = 0;
+
+        for (long count : snapshotCounts)
+            sum += count;
+
+        return sum;
+    }
+
+    private long percentile(long[] snapshotCounts, long count, double percentile) {
+        if (count == 0)
+            return 0;
+
+        long threshold = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+
+        long runningCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            runningCount += snapshotCounts[i];
+
+            // Bucket's upper bound, but never more than largest actual value
+            if (runningCount >= threshold)
+                return Math.min(bucketUpperBound(i), this.maxMicros.get());
+        }
+
+        return this.maxMicros.get();
+    }
+
+    /* package */ static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE)
+            return BUCKET_COUNT - 1;
+
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /* package */ static long bucketUpperBound(int index) {
+        // Last bucket also holds all larger values
+        if (index == BUCKET_COUNT - 1)
+            return Long.MAX_VALUE;
+
+        int bucket = index / SUB_BUCKET_COUNT;
+        int subBucket = index % SUB_BUCKET_COUNT;
+
+        if (bucket == 0)
+            return subBucket;
+
+        int shift = bucket - 1;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+}
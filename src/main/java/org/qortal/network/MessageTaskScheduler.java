@@ -0,0 +1,244 @@
+package org.qortal.network;
+
+import org.qortal.network.message.MessageType;
+import org.qortal.utils.ExecuteProduceConsume.Task;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses which peer's pending message the network engine processes next.
+ * <p>
+ * Received messages are sorted by type into {@link Lane}s. Lanes share message processing using
+ * smooth weighted round-robin, so a backlog of bulky QDN or online-accounts messages can't hold up
+ * latency-sensitive messages, yet still progresses. Within a lane, peers take turns.
+ * <p>
+ * Bulk lane is also limited in how many message tasks it can have running at once,
+ * so that there are always network threads left for other lanes.
+ * <p>
+ * Apart from {@link #onTaskFinished(Lane)}, methods must only be called by network engine's producer,
+ * i.e. one thread at a time.
+ */
+public class MessageTaskScheduler {
+
+    public enum Lane {
+        /** Handshaking, keep-alive, chain tips and new transactions */
+        URGENT(8),
+        /** Block propagation, synchronization and anything not otherwise classified */
+        CHAIN(4),
+        /** Large or numerous transfers: QDN data, online accounts, serving blocks and lite-node data */
+        BULK(1);
+
+        public final int weight;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+
+        private static final Map<MessageType, Lane> LANES_BY_TYPE = new EnumMap<>(MessageType.class);
+        static {
+            for (MessageType type : MessageType.values())
+                LANES_BY_TYPE.put(type, classify(type));
+        }
+
+        public static Lane of(MessageType type) {
+            return LANES_BY_TYPE.get(type);
+        }
+
+        private static Lane classify(MessageType type) {
+            switch (type) {
+                case HELLO:
+                case GOODBYE:
+                case CHALLENGE:
+                case RESPONSE:
+                case HEIGHT_V2:
+                case PING:
+                case PONG:
+                case TRANSACTION:
+                case TRANSACTION_SIGNATURES:
+                case GET_TRANSACTION:
+                    return URGENT;
+
+                case GET_BLOCK:
+                case ONLINE_ACCOUNTS:
+                case GET_ONLINE_ACCOUNTS:
+                case ONLINE_ACCOUNTS_V2:
+                case GET_ONLINE_ACCOUNTS_V2:
+                case ARBITRARY_DATA:
+                case GET_ARBITRARY_DATA:
+                case ARBITRARY_DATA_FILE:
+                case GET_ARBITRARY_DATA_FILE:
+                case ARBITRARY_DATA_FILE_LIST:
+                case GET_ARBITRARY_DATA_FILE_LIST:
+                case ARBITRARY_SIGNATURES:
+                case ARBITRARY_METADATA:
+                case GET_ARBITRARY_METADATA:
+                case ACCOUNT:
+                case GET_ACCOUNT:
+                case ACCOUNT_BALANCE:
+                case GET_ACCOUNT_BALANCE:
+                case NAMES:
+                case GET_ACCOUNT_NAMES:
+                case GET_NAME:
+                case TRANSACTIONS:
+                case GET_ACCOUNT_TRANSACTIONS:
+                    return BULK;
+
+                default:
+                    return CHAIN;
+            }
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class LaneStats {
+        public Lane lane;
+        public int weight;
+        /** Received messages, across all peers, waiting to be processed */
+        public int pendingMessages;
+        public int activeTasks;
+        /** Maximum number of tasks allowed to run at once, or 0 for no limit */
+        public int maxActiveTasks;
+        public long tasksProduced;
+
+        public LaneStats() {
+        }
+    }
+
+    private static final Lane[] LANES = Lane.values();
+
+    /** Smooth weighted round-robin state */
+    private final int[] currentWeights = new int[LANES.length];
+    /** Index, into peer list, of next peer to try for each lane */
+    private final int[] nextPeerIndexes = new int[LANES.length];
+
+    private final int[] maxActiveTasks = new int[LANES.length];
+    private final AtomicInteger[] activeTasks = new AtomicInteger[LANES.length];
+    private final AtomicLong[] tasksProduced = new AtomicLong[LANES.length];
+
+    public MessageTaskScheduler(int maxNetworkThreads) {
+        for (int i = 0; i < LANES.length; ++i) {
+            this.activeTasks[i] = new AtomicInteger();
+            this.tasksProduced[i] = new AtomicLong();
+        }
+
+        // Leave at least half of network threads for other lanes
+        this.maxActiveTasks[Lane.BULK.ordinal()] = Math.max(1, maxNetworkThreads / 2);
+    }
+
+    /**
+     * Returns task to process next pending message, chosen by lane weight and taking turns between peers,
+     * or null if there are no messages that can be processed now.
+     */
+    public Task produceMessageTask(List<Peer> peers) {
+        if (peers.isEmpty())
+            return null;
+
+        boolean[] isEligible = new boolean[LANES.length];
+        boolean[] isExhausted = new boolean[LANES.length];
+
+        while (true) {
+            int totalWeight = 0;
+
+            for (int i = 0; i < LANES.length; ++i) {
+                isEligible[i] = !isExhausted[i] && this.isLaneEligible(LANES[i], peers);
+
+                if (isEligible[i])
+                    totalWeight += LANES[i].weight;
+                else
+                    // Idle lanes don't build up credit
+                    this.currentWeights[i] = 0;
+            }
+
+            if (totalWeight == 0)
+                return null;
+
+            int chosenIndex = -1;
+            for (int i = 0; i < LANES.length; ++i) {
+                if (!isEligible[i])
+                    continue;
+
+                this.currentWeights[i] += LANES[i].weight;
+
+                if (chosenIndex == -1 || this.currentWeights[i] > this.currentWeights[chosenIndex])
+                    chosenIndex = i;
+            }
+
+            this.currentWeights[chosenIndex] -= totalWeight;
+
+            Task task = this.produceLaneTask(LANES[chosenIndex], peers);
+            if (task != null)
+                return task;
+
+            // Lane's messages became unavailable, e.g. peer started handshaking, so choose again
+            isExhausted[chosenIndex] = true;
+        }
+    }
+
+    /** Called once a task produced by this scheduler has finished. Thread-safe. */
+    public void onTaskFinished(Lane lane) {
+        this.activeTasks[lane.ordinal()].decrementAndGet();
+    }
+
+    public List<LaneStats> getStatsSnapshot(List<Peer> peers) {
+        List<LaneStats> snapshot = new ArrayList<>();
+
+        for (Lane lane : LANES) {
+            LaneStats laneStats = new LaneStats();
+            laneStats.lane = lane;
+            laneStats.weight = lane.weight;
+            laneStats.activeTasks = this.activeTasks[lane.ordinal()].get();
+            laneStats.maxActiveTasks = this.maxActiveTasks[lane.ordinal()];
+            laneStats.tasksProduced = this.tasksProduced[lane.ordinal()].get();
+
+            for (Peer peer : peers)
+                laneStats.pendingMessages += peer.getPendingMessageCount(lane);
+
+            snapshot.add(laneStats);
+        }
+
+        return snapshot;
+    }
+
+    private boolean isLaneEligible(Lane lane, List<Peer> peers) {
+        int maxActive = this.maxActiveTasks[lane.ordinal()];
+        if (maxActive > 0 && this.activeTasks[lane.ordinal()].get() >= maxActive)
+            return false;
+
+        for (Peer peer : peers)
+            if (peer.hasMessageTask(lane))
+                return true;
+
+        return false;
+    }
+
+    private Task produceLaneTask(Lane lane, List<Peer> peers) {
+        final int peerCount = peers.size();
+        final int startIndex = this.nextPeerIndexes[lane.ordinal()] % peerCount;
+
+        for (int offset = 0; offset < peerCount; ++offset) {
+            int peerIndex = (startIndex + offset) % peerCount;
+
+            Task task = peers.get(peerIndex).getMessageTask(lane);
+            if (task == null)
+                continue;
+
+            // Next time, start with following peer
+            this.nextPeerIndexes[lane.ordinal()] = peerIndex + 1;
+
+            this.activeTasks[lane.ordinal()].incrementAndGet();
+            this.tasksProduced[lane.ordinal()].incrementAndGet();
+
+            return task;
+        }
+
+        return null;
+    }
+
+}
@@ -99,25 +99,19 @@ public class Network {
     private final int minOutboundPeers;
     private final int maxPeers;
 
+    private final PeerBufferPool peerBufferPool;
+    private final NetworkStats networkStats = new NetworkStats();
+    private final MessageTaskScheduler messageTaskScheduler;
+
     private long nextDisconnectionCheck = 0L;
 
     private final List<PeerData> allKnownPeers = new ArrayList<>();
 
     /**
-     * Maintain two lists for each subset of peers:
-     * - A synchronizedList, to be modified when peers are added/removed
-     * - An immutable List, which is rebuilt automatically to mirror the synchronized list, and is then served to consumers
-     * This allows for thread safety without having to synchronize every time a thread requests a peer list
+     * Connected, handshaked and outbound handshaked peers, served as immutable snapshots,
+     * with lock-free lookups by channel, address, public key and node ID.
      */
-    private final List<Peer> connectedPeers = Collections.synchronizedList(new ArrayList<>());
-    private List<Peer> immutableConnectedPeers = Collections.emptyList(); // always rebuilt from mutable, synced list above
-
-    private final List<Peer> handshakedPeers = Collections.synchronizedList(new ArrayList<>());
-    private List<Peer> immutableHandshakedPeers = Collections.emptyList(); // always rebuilt from mutable, synced list above
-
-    private final List<Peer> outboundHandshakedPeers = Collections.synchronizedList(new ArrayList<>());
-    private List<Peer> immutableOutboundHandshakedPeers = Collections.emptyList(); // always rebuilt from mutable, synced list above
-
+    private final PeerRegistry peerRegistry = new PeerRegistry();
 
     private final List<PeerAddress> selfPeers = new ArrayList<>();
 
@@ -143,6 +137,9 @@ public class Network {
         minOutboundPeers = Settings.getInstance().getMinOutboundPeers();
         maxPeers = Settings.getInstance().getMaxPeers();
 
+        peerBufferPool = new PeerBufferPool(maxMessageSize, maxPeers);
+        messageTaskScheduler = new MessageTaskScheduler(Settings.getInstance().getMaxNetworkThreadPoolSize());
+
         // We'll use a cached thread pool but with more aggressive timeout.
         ExecutorService networkExecutor = new ThreadPoolExecutor(1,
                 Settings.getInstance().getMaxNetworkThreadPoolSize(),
@@ -244,10 +241,41 @@ public class Network {
         return this.maxMessageSize;
     }
 
+    /**
+     * Shared pool of read buffers used by all peers.
+     */
+    protected PeerBufferPool getPeerBufferPool() {
+        return this.peerBufferPool;
+    }
+
     public StatsSnapshot getStatsSnapshot() {
         return this.networkEPC.getStatsSnapshot();
     }
 
+    public PeerBufferPool.StatsSnapshot getBufferPoolStatsSnapshot() {
+        return this.peerBufferPool.getStatsSnapshot();
+    }
+
+    /**
+     * Traffic, latency and message queueing instrumentation.
+     */
+    public NetworkStats getNetworkStats() {
+        return this.networkStats;
+    }
+
+    public NetworkStats.StatsSnapshot getNetworkStatsSnapshot() {
+        NetworkStats.StatsSnapshot snapshot = this.networkStats.getStatsSnapshot(this.getImmutableConnectedPeers());
+        snapshot.lanes = this.messageTaskScheduler.getStatsSnapshot(this.getImmutableConnectedPeers());
+        return snapshot;
+    }
+
+    /**
+     * Decides order in which peers' received messages are processed.
+     */
+    public MessageTaskScheduler getMessageTaskScheduler() {
+        return this.messageTaskScheduler;
+    }
+
     // Peer lists
 
     public List<PeerData> getAllKnownPeers() {
@@ -257,7 +285,7 @@ public class Network {
     }
 
     public List<Peer> getImmutableConnectedPeers() {
-        return this.immutableConnectedPeers;
+        return this.peerRegistry.getConnectedPeers();
     }
 
     public List<Peer> getImmutableConnectedDataPeers() {
@@ -273,16 +301,12 @@ public class Network {
     }
 
     public void addConnectedPeer(Peer peer) {
-        this.connectedPeers.add(peer); // thread safe thanks to synchronized list
-        this.immutableConnectedPeers = List.copyOf(this.connectedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
+        this.peerRegistry.addConnectedPeer(peer);
     }
 
     public void removeConnectedPeer(Peer peer) {
-        // Firstly remove from handshaked peers
-        this.removeHandshakedPeer(peer);
-
-        this.connectedPeers.remove(peer); // thread safe thanks to synchronized list
-        this.immutableConnectedPeers = List.copyOf(this.connectedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
+        // Also removes from handshaked peers
+        this.peerRegistry.removeConnectedPeer(peer);
     }
 
     public List<PeerAddress> getSelfPeers() {
@@ -317,15 +341,11 @@ public class Network {
             }
 
             // Check if we're already connected to and handshaked with this peer
-            Peer connectedPeer = this.getImmutableConnectedPeers().stream()
-                        .filter(p -> p.getPeerData().getAddress().equals(peerAddress))
-                        .findFirst()
-                        .orElse(null);
+            Peer connectedPeer = this.peerRegistry.getConnectedPeerWithAddress(peerAddress);
 
             boolean isConnected = (connectedPeer != null);
 
-            boolean isHandshaked = this.getImmutableHandshakedPeers().stream()
-                    .anyMatch(p -> p.getPeerData().getAddress().equals(peerAddress));
+            boolean isHandshaked = isConnected && this.getImmutableHandshakedPeers().contains(connectedPeer);
 
             if (isConnected && isHandshaked) {
                 // Already connected
@@ -370,60 +390,29 @@ public class Network {
      * Returns list of connected peers that have completed handshaking.
      */
     public List<Peer> getImmutableHandshakedPeers() {
-        return this.immutableHandshakedPeers;
+        return this.peerRegistry.getHandshakedPeers();
     }
 
     public void addHandshakedPeer(Peer peer) {
-        this.handshakedPeers.add(peer); // thread safe thanks to synchronized list
-        this.immutableHandshakedPeers = List.copyOf(this.handshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
-
-        // Also add to outbound handshaked peers cache
-        if (peer.isOutbound()) {
-            this.addOutboundHandshakedPeer(peer);
-        }
+        this.peerRegistry.addHandshakedPeer(peer);
     }
 
     public void removeHandshakedPeer(Peer peer) {
-        this.handshakedPeers.remove(peer); // thread safe thanks to synchronized list
-        this.immutableHandshakedPeers = List.copyOf(this.handshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
-
-        // Also remove from outbound handshaked peers cache
-        if (peer.isOutbound()) {
-            this.removeOutboundHandshakedPeer(peer);
-        }
+        this.peerRegistry.removeHandshakedPeer(peer);
     }
 
     /**
      * Returns list of peers we connected to that have completed handshaking.
      */
     public List<Peer> getImmutableOutboundHandshakedPeers() {
-        return this.immutableOutboundHandshakedPeers;
-    }
-
-    public void addOutboundHandshakedPeer(Peer peer) {
-        if (!peer.isOutbound()) {
-            return;
-        }
-        this.outboundHandshakedPeers.add(peer); // thread safe thanks to synchronized list
-        this.immutableOutboundHandshakedPeers = List.copyOf(this.outboundHandshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
-    }
-
-    public void removeOutboundHandshakedPeer(Peer peer) {
-        if (!peer.isOutbound()) {
-            return;
-        }
-        this.outboundHandshakedPeers.remove(peer); // thread safe thanks to synchronized list
-        this.immutableOutboundHandshakedPeers = List.copyOf(this.outboundHandshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
+        return this.peerRegistry.getOutboundHandshakedPeers();
     }
 
     /**
-     * Returns first peer that has completed handshaking and has matching public key.
+     * Returns peer that has completed handshaking and has matching public key.
      */
     public Peer getHandshakedPeerWithPublicKey(byte[] publicKey) {
-        return this.getImmutableConnectedPeers().stream()
-                .filter(peer -> peer.getHandshakeStatus() == Handshake.COMPLETED
-                        && Arrays.equals(peer.getPeersPublicKey(), publicKey))
-                .findFirst().orElse(null);
+        return this.peerRegistry.getHandshakedPeerWithPublicKey(publicKey);
     }
 
     // Peer list filters
@@ -436,10 +425,8 @@ public class Network {
         return this.selfPeers.stream().anyMatch(selfPeer -> selfPeer.equals(peerAddress));
     };
 
-    private final Predicate<PeerData> isConnectedPeer = peerData -> {
-        PeerAddress peerAddress = peerData.getAddress();
-        return this.getImmutableConnectedPeers().stream().anyMatch(peer -> peer.getPeerData().getAddress().equals(peerAddress));
-    };
+    private final Predicate<PeerData> isConnectedPeer = peerData ->
+            this.peerRegistry.getConnectedPeerWithAddress(peerData.getAddress()) != null;
 
     private final Predicate<PeerData> isResolvedAsConnectedPeer = peerData -> {
         try {
@@ -515,11 +502,7 @@ public class Network {
         }
 
         private Task maybeProducePeerMessageTask() {
-            return getImmutableConnectedPeers().stream()
-                    .map(Peer::getMessageTask)
-                    .filter(Objects::nonNull)
-                    .findFirst()
-                    .orElse(null);
+            return messageTaskScheduler.produceMessageTask(getImmutableConnectedPeers());
         }
 
         private Task maybeProducePeerPingTask(Long now) {
@@ -736,13 +719,7 @@ public class Network {
     }
 
     public Peer getPeerFromChannel(SocketChannel socketChannel) {
-        for (Peer peer : this.getImmutableConnectedPeers()) {
-            if (peer.getSocketChannel() == socketChannel) {
-                return peer;
-            }
-        }
-
-        return null;
+        return this.peerRegistry.getPeerFromChannel(socketChannel);
     }
 
     private void checkLongestConnection(Long now) {
@@ -1037,8 +1014,8 @@ public class Network {
         LOGGER.debug("[{}] Handshake completed with peer {} on {}", peer.getPeerConnectionId(), peer,
                 peer.getPeersVersionString());
 
-        // Are we already connected to this peer?
-        Peer existingPeer = getHandshakedPeerWithPublicKey(peer.getPeersPublicKey());
+        // Are we already connected to this peer? First peer to claim public key wins
+        Peer existingPeer = this.peerRegistry.claimPublicKey(peer);
         // NOTE: actual object reference compare, not Peer.equals()
         if (existingPeer != peer) {
             LOGGER.info("[{}] We already have a connection with peer {} - discarding",
@@ -1485,6 +1462,15 @@ public class Network {
         }
     }
 
+    /**
+     * Broadcasts the same message to all handshaked peers.
+     * <p>
+     * Message payload is serialized and checksummed once, then shared read-only by each peer's outbound framing.
+     */
+    public void broadcast(Message message) {
+        this.broadcast(peer -> message);
+    }
+
     public void broadcast(Function<Peer, Message> peerMessageBuilder) {
         for (Peer peer : getImmutableHandshakedPeers()) {
             if (this.isShuttingDown)
@@ -0,0 +1,211 @@
+package org.qortal.network;
+
+import org.qortal.network.message.MessageType;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Network instrumentation: traffic per message type and per peer, request/response latencies
+ * and how long received messages wait before, and take during, processing.
+ * <p>
+ * All counters and histograms are lock-free so recording is cheap enough for every message.
+ */
+public class NetworkStats {
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class MessageTypeStats {
+        public MessageType type;
+        public long messagesIn;
+        public long bytesIn;
+        public long messagesOut;
+        public long bytesOut;
+        /** Requests of this type that were abandoned without a response, e.g. due to timeout */
+        public long requestsWithoutResponse;
+        /** Time from sending request of this type to receiving response */
+        public LatencyHistogram.StatsSnapshot responseLatency;
+        /** Time spent processing received messages of this type */
+        public LatencyHistogram.StatsSnapshot processingTime;
+
+        public MessageTypeStats() {
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class PeerStats {
+        public String peer;
+        public long messagesIn;
+        public long bytesIn;
+        public long messagesOut;
+        public long bytesOut;
+        public long requestsWithoutResponse;
+        /** Received messages waiting to be processed */
+        public int pendingMessages;
+        public LatencyHistogram.StatsSnapshot responseLatency;
+
+        public PeerStats() {
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        /** Message types with any traffic, largest total bytes first */
+        public List<MessageTypeStats> messageTypes = new ArrayList<>();
+        /** Connected peers, slowest median response first */
+        public List<PeerStats> peers = new ArrayList<>();
+        /** Received messages, across all peers, waiting to be processed */
+        public int pendingMessages;
+        /** Time received messages waited before being processed */
+        public LatencyHistogram.StatsSnapshot pendingMessageWait;
+        /** Pending and active message tasks for each priority lane */
+        public List<MessageTaskScheduler.LaneStats> lanes;
+
+        public StatsSnapshot() {
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Summary {
+        public long bytesIn;
+        public long bytesOut;
+        public int pendingMessages;
+        public LatencyHistogram.StatsSnapshot pendingMessageWait;
+
+        public Summary() {
+        }
+    }
+
+    /** Per-peer counters, owned by Peer. */
+    public static class PeerCounters {
+        private final AtomicLong messagesIn = new AtomicLong();
+        private final AtomicLong bytesIn = new AtomicLong();
+        private final AtomicLong messagesOut = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+        private final AtomicLong requestsWithoutResponse = new AtomicLong();
+        private final LatencyHistogram responseLatency = new LatencyHistogram();
+    }
+
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+
+    private final AtomicLongArray messagesIn = new AtomicLongArray(MESSAGE_TYPES.length);
+    private final AtomicLongArray bytesIn = new AtomicLongArray(MESSAGE_TYPES.length);
+    private final AtomicLongArray messagesOut = new AtomicLongArray(MESSAGE_TYPES.length);
+    private final AtomicLongArray bytesOut = new AtomicLongArray(MESSAGE_TYPES.length);
+    private final AtomicLongArray requestsWithoutResponse = new AtomicLongArray(MESSAGE_TYPES.length);
+    private final LatencyHistogram[] responseLatencies = new LatencyHistogram[MESSAGE_TYPES.length];
+    private final LatencyHistogram[] processingTimes = new LatencyHistogram[MESSAGE_TYPES.length];
+
+    private final LatencyHistogram pendingMessageWait = new LatencyHistogram();
+
+    public NetworkStats() {
+        for (int i = 0; i < MESSAGE_TYPES.length; ++i) {
+            this.responseLatencies[i] = new LatencyHistogram();
+            this.processingTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    public void onMessageReceived(PeerCounters peerCounters, MessageType type, int length) {
+        this.messagesIn.incrementAndGet(type.ordinal());
+        this.bytesIn.addAndGet(type.ordinal(), length);
+
+        peerCounters.messagesIn.incrementAndGet();
+        peerCounters.bytesIn.addAndGet(length);
+    }
+
+    public void onMessageSent(PeerCounters peerCounters, MessageType type, int length) {
+        this.messagesOut.incrementAndGet(type.ordinal());
+        this.bytesOut.addAndGet(type.ordinal(), length);
+
+        peerCounters.messagesOut.incrementAndGet();
+        peerCounters.bytesOut.addAndGet(length);
+    }
+
+    /** Records response to request of type <tt>requestType</tt>, sent <tt>nanos</tt> ago. */
+    public void onResponse(PeerCounters peerCounters, MessageType requestType, long nanos) {
+        this.responseLatencies[requestType.ordinal()].recordNanos(nanos);
+        peerCounters.responseLatency.recordNanos(nanos);
+    }
+
+    public void onRequestWithoutResponse(PeerCounters peerCounters, MessageType requestType) {
+        this.requestsWithoutResponse.incrementAndGet(requestType.ordinal());
+        peerCounters.requestsWithoutResponse.incrementAndGet();
+    }
+
+    /** Records how long a received message waited before being picked up for processing. */
+    public void onPendingMessageDequeued(long waitNanos) {
+        this.pendingMessageWait.recordNanos(waitNanos);
+    }
+
+    public void onMessageProcessed(MessageType type, long nanos) {
+        this.processingTimes[type.ordinal()].recordNanos(nanos);
+    }
+
+    public StatsSnapshot getStatsSnapshot(List<Peer> peers) {
+        StatsSnapshot snapshot = new StatsSnapshot();
+
+        for (int i = 0; i < MESSAGE_TYPES.length; ++i) {
+            MessageTypeStats messageTypeStats = new MessageTypeStats();
+            messageTypeStats.type = MESSAGE_TYPES[i];
+            messageTypeStats.messagesIn = this.messagesIn.get(i);
+            messageTypeStats.bytesIn = this.bytesIn.get(i);
+            messageTypeStats.messagesOut = this.messagesOut.get(i);
+            messageTypeStats.bytesOut = this.bytesOut.get(i);
+            messageTypeStats.requestsWithoutResponse = this.requestsWithoutResponse.get(i);
+
+            if (messageTypeStats.messagesIn == 0 && messageTypeStats.messagesOut == 0)
+                continue;
+
+            messageTypeStats.responseLatency = this.responseLatencies[i].getStatsSnapshot();
+            messageTypeStats.processingTime = this.processingTimes[i].getStatsSnapshot();
+
+            snapshot.messageTypes.add(messageTypeStats);
+        }
+
+        snapshot.messageTypes.sort(Comparator.comparingLong((MessageTypeStats stats) -> stats.bytesIn + stats.bytesOut).reversed());
+
+        for (Peer peer : peers) {
+            PeerCounters peerCounters = peer.getNetworkCounters();
+
+            PeerStats peerStats = new PeerStats();
+            peerStats.peer = peer.toString();
+            peerStats.messagesIn = peerCounters.messagesIn.get();
+            peerStats.bytesIn = peerCounters.bytesIn.get();
+            peerStats.messagesOut = peerCounters.messagesOut.get();
+            peerStats.bytesOut = peerCounters.bytesOut.get();
+            peerStats.requestsWithoutResponse = peerCounters.requestsWithoutResponse.get();
+            peerStats.pendingMessages = peer.getPendingMessageCount();
+            peerStats.responseLatency = peerCounters.responseLatency.getStatsSnapshot();
+
+            snapshot.peers.add(peerStats);
+            snapshot.pendingMessages += peerStats.pendingMessages;
+        }
+
+        snapshot.peers.sort(Comparator.comparingLong((PeerStats stats) -> stats.responseLatency.p50).reversed());
+
+        snapshot.pendingMessageWait = this.pendingMessageWait.getStatsSnapshot();
+
+        return snapshot;
+    }
+
+    public Summary getSummary(List<Peer> peers) {
+        Summary summary = new Summary();
+
+        for (int i = 0; i < MESSAGE_TYPES.length; ++i) {
+            summary.bytesIn += this.bytesIn.get(i);
+            summary.bytesOut += this.bytesOut.get(i);
+        }
+
+        for (Peer peer : peers)
+            summary.pendingMessages += peer.getPendingMessageCount();
+
+        summary.pendingMessageWait = this.pendingMessageWait.getStatsSnapshot();
+
+        return summary;
+    }
+
+}
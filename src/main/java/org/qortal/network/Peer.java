@@ -12,6 +12,7 @@ import org.qortal.data.network.PeerData;
 import org.qortal.network.message.ChallengeMessage;
 import org.qortal.network.message.Message;
 import org.qortal.network.message.MessageException;
+import org.qortal.network.message.MessageType;
 import org.qortal.network.task.MessageTask;
 import org.qortal.network.task.PingTask;
 import org.qortal.settings.Settings;
@@ -73,10 +74,14 @@ public class Peer {
     private final Object byteBufferLock = new Object();
     private ByteBuffer byteBuffer;
     private Map<Integer, BlockingQueue<Message>> replyQueues;
-    private LinkedBlockingQueue<Message> pendingMessages;
+    /** When each request awaiting reply was sent, keyed by message ID */
+    private Map<Integer, RequestTiming> requestTimings;
+    /** Received messages waiting to be processed, one queue per lane, indexed by lane ordinal */
+    private LinkedBlockingQueue<PendingMessage>[] pendingMessages;
 
     private TransferQueue<Message> sendQueue;
-    private ByteBuffer outputBuffer;
+    private ByteBuffer[] outputBuffers;
+    private int outputMessageLength;
     private String outputMessageType;
     private int outputMessageId;
 
@@ -110,6 +115,26 @@ public class Peer {
     private boolean syncInProgress = false;
 
 
+    private final NetworkStats.PeerCounters networkCounters = new NetworkStats.PeerCounters();
+
+    private static class RequestTiming {
+        private final MessageType type;
+        private final long sentNanos = System.nanoTime();
+
+        private RequestTiming(MessageType type) {
+            this.type = type;
+        }
+    }
+
+    private static class PendingMessage {
+        private final Message message;
+        private final long queuedNanos = System.nanoTime();
+
+        private PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+
     /* Pending signature requests */
     private List<byte[]> pendingSignatureRequests = Collections.synchronizedList(new ArrayList<>());
 
@@ -408,15 +433,26 @@ public class Peer {
 
     // Processing
 
+    @SuppressWarnings("unchecked")
+    private static LinkedBlockingQueue<PendingMessage>[] newPendingMessageQueues() {
+        LinkedBlockingQueue<PendingMessage>[] queues = new LinkedBlockingQueue[MessageTaskScheduler.Lane.values().length];
+
+        for (int i = 0; i < queues.length; ++i)
+            queues[i] = new LinkedBlockingQueue<>();
+
+        return queues;
+    }
+
     private void sharedSetup() throws IOException {
         this.connectionTimestamp = NTP.getTime();
         this.socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
         this.socketChannel.configureBlocking(false);
         Network.getInstance().setInterestOps(this.socketChannel, SelectionKey.OP_READ);
-        this.byteBuffer = null; // Defer allocation to when we need it, to save memory. Sorry GC!
+        this.byteBuffer = null; // Defer borrowing from buffer pool to when we need it, to save memory
         this.sendQueue = new LinkedTransferQueue<>();
         this.replyQueues = new ConcurrentHashMap<>();
-        this.pendingMessages = new LinkedBlockingQueue<>();
+        this.requestTimings = new ConcurrentHashMap<>();
+        this.pendingMessages = newPendingMessageQueues();
 
         Random random = new SecureRandom();
         this.ourChallenge = new byte[ChallengeMessage.CHALLENGE_LENGTH];
@@ -467,14 +503,28 @@ public class Peer {
      */
     public void readChannel() throws IOException {
         synchronized (this.byteBufferLock) {
+            final PeerBufferPool bufferPool = Network.getInstance().getPeerBufferPool();
+
             while (true) {
                 if (!this.socketChannel.isOpen() || this.socketChannel.socket().isClosed()) {
                     return;
                 }
 
-                // Do we need to allocate byteBuffer?
+                // Do we need to borrow byteBuffer?
                 if (this.byteBuffer == null) {
-                    this.byteBuffer = ByteBuffer.allocate(Network.getInstance().getMaxMessageSize());
+                    this.byteBuffer = bufferPool.borrow();
+                } else if (!this.byteBuffer.hasRemaining()) {
+                    // Partially received message doesn't fit, so move it into a larger buffer
+                    ByteBuffer largerBuffer = bufferPool.borrowLarger(this.byteBuffer);
+                    if (largerBuffer == null) {
+                        this.disconnect("message too large for read buffer");
+                        return;
+                    }
+
+                    this.byteBuffer.flip();
+                    largerBuffer.put(this.byteBuffer);
+                    bufferPool.release(this.byteBuffer);
+                    this.byteBuffer = largerBuffer;
                 }
 
                 final int priorPosition = this.byteBuffer.position();
@@ -520,12 +570,11 @@ public class Peer {
                         // No complete message in buffer, no more bytes to read from socket
                         // even though there was room to read bytes
 
-                        /* DISABLED
-                        // If byteBuffer is empty then we can deallocate it, to save memory, albeit costing GC
-                        if (this.byteBuffer.remaining() == this.byteBuffer.capacity()) {
+                        // If byteBuffer is empty then we can hand it back to the pool, to save memory
+                        if (this.byteBuffer.position() == 0) {
+                            bufferPool.release(this.byteBuffer);
                             this.byteBuffer = null;
                         }
-                        */
 
                         return;
                     }
@@ -538,6 +587,10 @@ public class Peer {
                     LOGGER.trace("[{}] Received {} message with ID {} from peer {}", this.peerConnectionId,
                             message.getType().name(), message.getId(), this);
 
+                    // Buffer started at message so position is message length
+                    final NetworkStats networkStats = Network.getInstance().getNetworkStats();
+                    networkStats.onMessageReceived(this.networkCounters, message.getType(), readOnlyBuffer.position());
+
                     // Tidy up buffers:
                     this.byteBuffer.flip();
                     // Read-only, flipped buffer's position will be after end of message, so copy that
@@ -546,8 +599,18 @@ public class Peer {
                     // adjusting position accordingly, reset limit to capacity
                     this.byteBuffer.compact();
 
+                    // If we borrowed a larger buffer for a big message, hand it back once it's empty
+                    if (this.byteBuffer.position() == 0 && !bufferPool.isSmallest(this.byteBuffer)) {
+                        bufferPool.release(this.byteBuffer);
+                        this.byteBuffer = bufferPool.borrow();
+                    }
+
                     BlockingQueue<Message> queue = this.replyQueues.get(message.getId());
                     if (queue != null) {
+                        RequestTiming requestTiming = this.requestTimings.remove(message.getId());
+                        if (requestTiming != null)
+                            networkStats.onResponse(this.networkCounters, requestTiming.type, System.nanoTime() - requestTiming.sentNanos);
+
                         // Adding message to queue will unblock thread waiting for response
                         this.replyQueues.get(message.getId()).add(message);
                         // Consumed elsewhere
@@ -556,8 +619,9 @@ public class Peer {
 
                     // No thread waiting for message so we need to pass it up to network layer
 
-                    // Add message to pending queue
-                    if (!this.pendingMessages.offer(message)) {
+                    // Add message to pending queue for its lane
+                    MessageTaskScheduler.Lane lane = MessageTaskScheduler.Lane.of(message.getType());
+                    if (!this.pendingMessages[lane.ordinal()].offer(new PendingMessage(message))) {
                         LOGGER.info("[{}] No room to queue message from peer {} - discarding",
                                 this.peerConnectionId, this);
                         return;
@@ -579,8 +643,8 @@ public class Peer {
         // It is the responsibility of ChannelWriteTask's producer to produce only one call to writeChannel() at a time
 
         while (true) {
-            // If output byte buffer is null, fetch next message from queue (if any)
-            while (this.outputBuffer == null) {
+            // If output byte buffers are null, fetch next message from queue (if any)
+            while (this.outputBuffers == null) {
                 Message message;
 
                 try {
@@ -598,10 +662,16 @@ public class Peer {
                     return false;
 
                 try {
-                    this.outputBuffer = ByteBuffer.wrap(message.toBytes());
+                    // Header plus shared, read-only payload - no copying of message data
+                    this.outputBuffers = message.toByteBuffers();
+                    this.outputMessageLength = 0;
+                    for (ByteBuffer outputBuffer : this.outputBuffers)
+                        this.outputMessageLength += outputBuffer.remaining();
                     this.outputMessageType = message.getType().name();
                     this.outputMessageId = message.getId();
 
+                    Network.getInstance().getNetworkStats().onMessageSent(this.networkCounters, message.getType(), this.outputMessageLength);
+
                     LOGGER.trace("[{}] Sending {} message with ID {} to peer {}",
                             this.peerConnectionId, this.outputMessageType, this.outputMessageId, this);
                 } catch (MessageException e) {
@@ -611,27 +681,33 @@ public class Peer {
                 }
             }
 
-            // If output byte buffer is not null, send from that
-            int bytesWritten = this.socketChannel.write(outputBuffer);
+            // If output byte buffers are not null, send from those using gathering write
+            long bytesWritten = this.socketChannel.write(this.outputBuffers);
 
             LOGGER.trace("[{}] Sent {} bytes of {} message with ID {} to peer {} ({} total)", this.peerConnectionId,
-                    bytesWritten, this.outputMessageType, this.outputMessageId, this, outputBuffer.limit());
+                    bytesWritten, this.outputMessageType, this.outputMessageId, this, this.outputMessageLength);
 
             // If we've sent 0 bytes then socket buffer is full so we need to wait until it's empty again
             if (bytesWritten == 0) {
                 return true;
             }
 
-            // If we then exhaust the byte buffer, set it to null (otherwise loop and try to send more)
-            if (!this.outputBuffer.hasRemaining()) {
+            // If we then exhaust the byte buffers, set them to null (otherwise loop and try to send more)
+            if (!this.outputBuffers[this.outputBuffers.length - 1].hasRemaining()) {
                 this.outputMessageType = null;
                 this.outputMessageId = 0;
-                this.outputBuffer = null;
+                this.outputMessageLength = 0;
+                this.outputBuffers = null;
             }
         }
     }
 
-    protected Task getMessageTask() {
+    /** Returns whether {@link #getMessageTask(MessageTaskScheduler.Lane)} would currently produce a task. */
+    protected boolean hasMessageTask(MessageTaskScheduler.Lane lane) {
+        return !this.handshakeMessagePending && !this.pendingMessages[lane.ordinal()].isEmpty();
+    }
+
+    protected Task getMessageTask(MessageTaskScheduler.Lane lane) {
         /*
          * If we are still handshaking and there is a message yet to be processed then
          * don't produce another message task. This allows us to process handshake
@@ -641,12 +717,15 @@ public class Peer {
             return null;
         }
 
-        final Message nextMessage = this.pendingMessages.poll();
+        final PendingMessage pendingMessage = this.pendingMessages[lane.ordinal()].poll();
 
-        if (nextMessage == null) {
+        if (pendingMessage == null) {
             return null;
         }
 
+        final Message nextMessage = pendingMessage.message;
+        Network.getInstance().getNetworkStats().onPendingMessageDequeued(System.nanoTime() - pendingMessage.queuedNanos);
+
         LOGGER.trace("[{}] Produced {} message task from peer {}", this.peerConnectionId,
                 nextMessage.getType().name(), this);
 
@@ -655,7 +734,7 @@ public class Peer {
         }
 
         // Return a task to process message in queue
-        return new MessageTask(this, nextMessage);
+        return new MessageTask(this, nextMessage, lane);
     }
 
     /**
@@ -734,6 +813,35 @@ public class Peer {
      * @throws InterruptedException if interrupted while waiting
      */
     public Message getResponseWithTimeout(Message message, int timeout) throws InterruptedException {
+        BlockingQueue<Message> blockingQueue = this.sendRequestWithTimeout(message, timeout);
+        if (blockingQueue == null)
+            return null;
+
+        try {
+            return blockingQueue.poll(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            this.cancelRequest(message);
+        }
+    }
+
+    /**
+     * Send request to peer without waiting for response, using default RESPONSE_TIMEOUT for sending.
+     * <p>
+     * Message is assigned a random ID and sent. Response with matching ID, if any, will arrive on returned queue.
+     * This allows several requests to be in flight to the same peer at once.
+     * <p>
+     * Caller must call {@link #cancelRequest(Message)} once finished with the request,
+     * whether or not a response arrived.
+     *
+     * @param message message to send
+     * @return queue on which response will arrive, or <code>null</code> if message couldn't be sent
+     * @throws InterruptedException if interrupted while sending
+     */
+    public BlockingQueue<Message> sendRequest(Message message) throws InterruptedException {
+        return this.sendRequestWithTimeout(message, RESPONSE_TIMEOUT);
+    }
+
+    private BlockingQueue<Message> sendRequestWithTimeout(Message message, int timeout) throws InterruptedException {
         BlockingQueue<Message> blockingQueue = new ArrayBlockingQueue<>(1);
 
         // Assign random ID to this message
@@ -747,17 +855,31 @@ public class Peer {
         } while (this.replyQueues.putIfAbsent(id, blockingQueue) != null);
         message.setId(id);
 
+        this.requestTimings.put(id, new RequestTiming(message.getType()));
+
         // Try to send message
         if (!this.sendMessageWithTimeout(message, timeout)) {
             this.replyQueues.remove(id);
+            this.requestTimings.remove(id);
             return null;
         }
 
-        try {
-            return blockingQueue.poll(timeout, TimeUnit.MILLISECONDS);
-        } finally {
-            this.replyQueues.remove(id);
-        }
+        return blockingQueue;
+    }
+
+    /** Stops waiting for response to request previously sent via {@link #sendRequest(Message)}. */
+    public void cancelRequest(Message message) {
+        this.replyQueues.remove(message.getId());
+
+        // Still timing request means response never arrived
+        RequestTiming requestTiming = this.requestTimings.remove(message.getId());
+        if (requestTiming != null)
+            Network.getInstance().getNetworkStats().onRequestWithoutResponse(this.networkCounters, requestTiming.type);
+    }
+
+    /** Returns maximum time to wait for a message reply to arrive from peer. (ms) */
+    public static int getResponseTimeout() {
+        return RESPONSE_TIMEOUT;
     }
 
     protected void startPings() {
@@ -807,6 +929,14 @@ public class Peer {
                 LOGGER.debug("[{}] IOException while trying to close peer {}", this.peerConnectionId, this);
             }
         }
+
+        // Hand back read buffer, if any
+        synchronized (this.byteBufferLock) {
+            if (this.byteBuffer != null) {
+                Network.getInstance().getPeerBufferPool().release(this.byteBuffer);
+                this.byteBuffer = null;
+            }
+        }
     }
 
 
@@ -892,6 +1022,26 @@ public class Peer {
         return address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress();
     }
 
+    public NetworkStats.PeerCounters getNetworkCounters() {
+        return this.networkCounters;
+    }
+
+    /** Returns number of received messages waiting to be processed. */
+    public int getPendingMessageCount() {
+        int count = 0;
+
+        for (MessageTaskScheduler.Lane lane : MessageTaskScheduler.Lane.values())
+            count += this.getPendingMessageCount(lane);
+
+        return count;
+    }
+
+    /** Returns number of received messages, in <tt>lane</tt>, waiting to be processed. */
+    public int getPendingMessageCount(MessageTaskScheduler.Lane lane) {
+        LinkedBlockingQueue<PendingMessage>[] pendingMessages = this.pendingMessages;
+        return pendingMessages != null ? pendingMessages[lane.ordinal()].size() : 0;
+    }
+
     public UUID getPeerConnectionId() {
         return peerConnectionId;
     }
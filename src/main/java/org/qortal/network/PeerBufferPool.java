@@ -0,0 +1,173 @@
+package org.qortal.network;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared, size-classed pool of direct read buffers for peers.
+ * <p>
+ * Peers start with a buffer from the smallest size class and only borrow a larger one
+ * while a big message (e.g. BLOCK, ARBITRARY_DATA_FILE) is partially received.
+ * Buffers are handed back once they are empty, so idle peers hold no buffer at all.
+ */
+public class PeerBufferPool {
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        public int[] sizeClasses;
+        public int[] pooledBuffers;
+        public int[] borrowedBuffers;
+        public long borrowCount = 0;
+        public long returnCount = 0;
+        public long allocationCount = 0;
+        public long discardCount = 0;
+
+        public StatsSnapshot() {
+        }
+    }
+
+    private static final int SMALL_BUFFER_SIZE = 64 * 1024; // bytes
+    private static final int MEDIUM_BUFFER_SIZE = 1024 * 1024; // bytes
+
+    /** Maximum number of idle medium buffers retained for reuse */
+    private static final int MAX_POOLED_MEDIUM_BUFFERS = 16;
+    /** Maximum number of idle max-size buffers retained for reuse */
+    private static final int MAX_POOLED_LARGE_BUFFERS = 4;
+
+    private final int[] sizeClasses;
+    private final int[] maxPooled;
+    private final Queue<ByteBuffer>[] pools;
+    private final AtomicInteger[] pooledCounts;
+    private final AtomicInteger[] borrowedCounts;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong returnCount = new AtomicLong();
+    private final AtomicLong allocationCount = new AtomicLong();
+    private final AtomicLong discardCount = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public PeerBufferPool(int maxBufferSize, int maxPeers) {
+        if (maxBufferSize > MEDIUM_BUFFER_SIZE) {
+            this.sizeClasses = new int[] { SMALL_BUFFER_SIZE, MEDIUM_BUFFER_SIZE, maxBufferSize };
+            this.maxPooled = new int[] { maxPeers, MAX_POOLED_MEDIUM_BUFFERS, MAX_POOLED_LARGE_BUFFERS };
+        } else if (maxBufferSize > SMALL_BUFFER_SIZE) {
+            // Unusually small max message size, e.g. tests
+            this.sizeClasses = new int[] { SMALL_BUFFER_SIZE, maxBufferSize };
+            this.maxPooled = new int[] { maxPeers, MAX_POOLED_MEDIUM_BUFFERS };
+        } else {
+            this.sizeClasses = new int[] { maxBufferSize };
+            this.maxPooled = new int[] { maxPeers };
+        }
+
+        this.pools = new Queue[this.sizeClasses.length];
+        this.pooledCounts = new AtomicInteger[this.sizeClasses.length];
+        this.borrowedCounts = new AtomicInteger[this.sizeClasses.length];
+
+        for (int i = 0; i < this.sizeClasses.length; ++i) {
+            this.pools[i] = new ConcurrentLinkedQueue<>();
+            this.pooledCounts[i] = new AtomicInteger();
+            this.borrowedCounts[i] = new AtomicInteger();
+        }
+    }
+
+    /** Returns capacity of largest buffer this pool will hand out. */
+    public int getMaxBufferSize() {
+        return this.sizeClasses[this.sizeClasses.length - 1];
+    }
+
+    /** Borrows a cleared buffer from the smallest size class. */
+    public ByteBuffer borrow() {
+        return this.borrow(0);
+    }
+
+    /**
+     * Borrows a cleared buffer from the next size class larger than <tt>currentBuffer</tt>,
+     * or <tt>null</tt> if there is no larger size class.
+     */
+    public ByteBuffer borrowLarger(ByteBuffer currentBuffer) {
+        int sizeClass = this.getSizeClass(currentBuffer.capacity());
+        if (sizeClass < 0 || sizeClass + 1 >= this.sizeClasses.length)
+            return null;
+
+        return this.borrow(sizeClass + 1);
+    }
+
+    /** Returns <tt>true</tt> if <tt>buffer</tt> is from the smallest size class. */
+    public boolean isSmallest(ByteBuffer buffer) {
+        return buffer.capacity() == this.sizeClasses[0];
+    }
+
+    private ByteBuffer borrow(int sizeClass) {
+        this.borrowCount.incrementAndGet();
+        this.borrowedCounts[sizeClass].incrementAndGet();
+
+        ByteBuffer buffer = this.pools[sizeClass].poll();
+        if (buffer != null) {
+            this.pooledCounts[sizeClass].decrementAndGet();
+            return buffer;
+        }
+
+        this.allocationCount.incrementAndGet();
+        return ByteBuffer.allocateDirect(this.sizeClasses[sizeClass]);
+    }
+
+    /**
+     * Returns <tt>buffer</tt> to the pool. Caller must not use <tt>buffer</tt> afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null)
+            return;
+
+        int sizeClass = this.getSizeClass(buffer.capacity());
+        if (sizeClass < 0)
+            // Not one of ours
+            return;
+
+        this.returnCount.incrementAndGet();
+        this.borrowedCounts[sizeClass].decrementAndGet();
+
+        // Don't retain more idle buffers than configured - let GC reclaim the rest
+        if (this.pooledCounts[sizeClass].incrementAndGet() > this.maxPooled[sizeClass]) {
+            this.pooledCounts[sizeClass].decrementAndGet();
+            this.discardCount.incrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        this.pools[sizeClass].offer(buffer);
+    }
+
+    private int getSizeClass(int capacity) {
+        for (int i = 0; i < this.sizeClasses.length; ++i)
+            if (this.sizeClasses[i] == capacity)
+                return i;
+
+        return -1;
+    }
+
+    public StatsSnapshot getStatsSnapshot() {
+        StatsSnapshot snapshot = new StatsSnapshot();
+
+        snapshot.sizeClasses = this.sizeClasses.clone();
+        snapshot.pooledBuffers = new int[this.sizeClasses.length];
+        snapshot.borrowedBuffers = new int[this.sizeClasses.length];
+
+        for (int i = 0; i < this.sizeClasses.length; ++i) {
+            snapshot.pooledBuffers[i] = this.pooledCounts[i].get();
+            snapshot.borrowedBuffers[i] = this.borrowedCounts[i].get();
+        }
+
+        snapshot.borrowCount = this.borrowCount.get();
+        snapshot.returnCount = this.returnCount.get();
+        snapshot.allocationCount = this.allocationCount.get();
+        snapshot.discardCount = this.discardCount.get();
+
+        return snapshot;
+    }
+
+}
@@ -0,0 +1,163 @@
+package org.qortal.network;
+
+import org.qortal.utils.ByteArray;
+
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of connected peers, and the subsets that have completed handshaking.
+ * <p>
+ * Lookups by socket channel, address or public key use concurrent maps, so are O(1) and lock-free,
+ * as they happen on every channel read/write and many message-handling paths.
+ * There is no separate node ID index, as a peer's node ID is derived from its public key.
+ * <p>
+ * Peer lists are immutable, copy-on-write snapshots: rebuilt whenever a peer is added or removed,
+ * which is rare compared to how often they are iterated.
+ */
+public class PeerRegistry {
+
+    private final Object snapshotLock = new Object();
+
+    // Mutable lists, only accessed under snapshotLock, from which snapshots are rebuilt
+    private final List<Peer> connectedPeers = new ArrayList<>();
+    private final List<Peer> handshakedPeers = new ArrayList<>();
+    private final List<Peer> outboundHandshakedPeers = new ArrayList<>();
+
+    private volatile List<Peer> immutableConnectedPeers = Collections.emptyList();
+    private volatile List<Peer> immutableHandshakedPeers = Collections.emptyList();
+    private volatile List<Peer> immutableOutboundHandshakedPeers = Collections.emptyList();
+
+    private final Map<SocketChannel, Peer> peersByChannel = new ConcurrentHashMap<>();
+    /** Keyed by {@link #addressKey(PeerAddress)} as PeerAddress doesn't override equals/hashCode */
+    private final Map<String, Peer> peersByAddress = new ConcurrentHashMap<>();
+    /** Connected peers that have completed handshaking, first one wins */
+    private final Map<ByteArray, Peer> peersByPublicKey = new ConcurrentHashMap<>();
+
+    // Connected peers
+
+    public List<Peer> getConnectedPeers() {
+        return this.immutableConnectedPeers;
+    }
+
+    public void addConnectedPeer(Peer peer) {
+        synchronized (this.snapshotLock) {
+            this.connectedPeers.add(peer);
+            this.immutableConnectedPeers = List.copyOf(this.connectedPeers);
+
+            SocketChannel socketChannel = peer.getSocketChannel();
+            if (socketChannel != null)
+                this.peersByChannel.put(socketChannel, peer);
+
+            this.peersByAddress.putIfAbsent(addressKey(peer.getPeerData().getAddress()), peer);
+        }
+    }
+
+    /** Removes peer from connected peers, and also from handshaked peers. */
+    public void removeConnectedPeer(Peer peer) {
+        synchronized (this.snapshotLock) {
+            this.removeHandshakedPeer(peer);
+
+            if (!this.connectedPeers.remove(peer))
+                return;
+
+            this.immutableConnectedPeers = List.copyOf(this.connectedPeers);
+
+            SocketChannel socketChannel = peer.getSocketChannel();
+            if (socketChannel != null)
+                this.peersByChannel.remove(socketChannel, peer);
+
+            String addressKey = addressKey(peer.getPeerData().getAddress());
+            if (this.peersByAddress.remove(addressKey, peer))
+                // Another connection to same address might remain
+                for (Peer otherPeer : this.connectedPeers)
+                    if (addressKey(otherPeer.getPeerData().getAddress()).equals(addressKey)) {
+                        this.peersByAddress.put(addressKey, otherPeer);
+                        break;
+                    }
+        }
+    }
+
+    public Peer getPeerFromChannel(SocketChannel socketChannel) {
+        return this.peersByChannel.get(socketChannel);
+    }
+
+    /** Returns a connected peer with matching address, or null. */
+    public Peer getConnectedPeerWithAddress(PeerAddress peerAddress) {
+        return this.peersByAddress.get(addressKey(peerAddress));
+    }
+
+    // Handshaked peers
+
+    public List<Peer> getHandshakedPeers() {
+        return this.immutableHandshakedPeers;
+    }
+
+    public List<Peer> getOutboundHandshakedPeers() {
+        return this.immutableOutboundHandshakedPeers;
+    }
+
+    /**
+     * Claims peer's public key, now that <tt>peer</tt> has completed handshaking.
+     * <p>
+     * Returns previously handshaked peer with same public key, or <tt>peer</tt> if it is the first.
+     */
+    public Peer claimPublicKey(Peer peer) {
+        Peer existingPeer = this.peersByPublicKey.putIfAbsent(ByteArray.wrap(peer.getPeersPublicKey()), peer);
+        return existingPeer != null ? existingPeer : peer;
+    }
+
+    public void addHandshakedPeer(Peer peer) {
+        synchronized (this.snapshotLock) {
+            // Peer might have disconnected in the meantime
+            if (!this.connectedPeers.contains(peer)) {
+                this.releasePublicKey(peer);
+                return;
+            }
+
+            this.handshakedPeers.add(peer);
+            this.immutableHandshakedPeers = List.copyOf(this.handshakedPeers);
+
+            if (peer.isOutbound()) {
+                this.outboundHandshakedPeers.add(peer);
+                this.immutableOutboundHandshakedPeers = List.copyOf(this.outboundHandshakedPeers);
+            }
+        }
+    }
+
+    public void removeHandshakedPeer(Peer peer) {
+        synchronized (this.snapshotLock) {
+            this.releasePublicKey(peer);
+
+            if (!this.handshakedPeers.remove(peer))
+                return;
+
+            this.immutableHandshakedPeers = List.copyOf(this.handshakedPeers);
+
+            if (peer.isOutbound() && this.outboundHandshakedPeers.remove(peer))
+                this.immutableOutboundHandshakedPeers = List.copyOf(this.outboundHandshakedPeers);
+        }
+    }
+
+    /** Returns peer, that has completed handshaking, with matching public key, or null. */
+    public Peer getHandshakedPeerWithPublicKey(byte[] publicKey) {
+        return this.peersByPublicKey.get(ByteArray.wrap(publicKey));
+    }
+
+    private void releasePublicKey(Peer peer) {
+        byte[] publicKey = peer.getPeersPublicKey();
+        if (publicKey != null)
+            this.peersByPublicKey.remove(ByteArray.wrap(publicKey), peer);
+    }
+
+    /** Map key for address, compared as in {@link PeerAddress#equals(PeerAddress)}. */
+    private static String addressKey(PeerAddress peerAddress) {
+        return peerAddress.getHost().toLowerCase(Locale.ROOT) + ":" + peerAddress.getPort();
+    }
+
+}
@@ -1,14 +1,11 @@
 package org.qortal.network.message;
 
-import com.google.common.primitives.Ints;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.arbitrary.ArbitraryDataFile;
 import org.qortal.repository.DataException;
 import org.qortal.transform.Transformer;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
@@ -24,19 +21,16 @@ public class ArbitraryDataFileMessage extends Message {
 
 		byte[] data = arbitraryDataFile.getBytes();
 
-		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		// Exact-sized buffer avoids copying (potentially large) file data more than once
+		ByteBuffer bytes = ByteBuffer.allocate(signature.length + Transformer.INT_LENGTH + data.length);
 
-		try {
-			bytes.write(signature);
+		bytes.put(signature);
 
-			bytes.write(Ints.toByteArray(data.length));
+		bytes.putInt(data.length);
 
-			bytes.write(data);
-		} catch (IOException e) {
-			throw new AssertionError("IOException shouldn't occur with ByteArrayOutputStream");
-		}
+		bytes.put(data);
 
-		this.dataBytes = bytes.toByteArray();
+		this.dataBytes = bytes.array();
 		this.checksumBytes = Message.generateChecksum(this.dataBytes);
 	}
 
@@ -1,32 +1,26 @@
 package org.qortal.network.message;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.qortal.block.Block;
 import org.qortal.transform.TransformationException;
 import org.qortal.transform.block.BlockTransformer;
 
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
 
 // This is an OUTGOING-only Message which more readily lends itself to being cached
 public class CachedBlockMessage extends Message implements Cloneable {
 
+	/** Serialized block bytes not held in <tt>dataBytes</tt>, e.g. slice of memory-mapped archive file. Payload is height prefix then these. */
+	private ByteBuffer blockBuffer;
+	private byte[] heightBytes;
+
 	public CachedBlockMessage(Block block) throws TransformationException {
 		super(MessageType.BLOCK);
 
-		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-
-		try {
-			bytes.write(Ints.toByteArray(block.getBlockData().getHeight()));
-
-			bytes.write(BlockTransformer.toBytes(block));
-		} catch (IOException e) {
-			throw new AssertionError("IOException shouldn't occur with ByteArrayOutputStream");
-		}
-
-		this.dataBytes = bytes.toByteArray();
+		// Concatenate directly, copying block bytes only once
+		this.dataBytes = Bytes.concat(Ints.toByteArray(block.getBlockData().getHeight()), BlockTransformer.toBytes(block));
 		this.checksumBytes = Message.generateChecksum(this.dataBytes);
 	}
 
@@ -37,6 +31,38 @@ public class CachedBlockMessage extends Message implements Cloneable {
 		this.checksumBytes = Message.generateChecksum(this.dataBytes);
 	}
 
+	/** Builds message around already-serialized block bytes, without copying them. */
+	public CachedBlockMessage(int height, ByteBuffer blockBuffer) {
+		super(MessageType.BLOCK);
+
+		this.heightBytes = Ints.toByteArray(height);
+		this.blockBuffer = blockBuffer.asReadOnlyBuffer();
+		this.checksumBytes = Message.generateChecksum(ByteBuffer.wrap(this.heightBytes), this.blockBuffer.duplicate());
+	}
+
+	@Override
+	public void checkValidOutgoing() throws MessageException {
+		if (this.blockBuffer == null) {
+			super.checkValidOutgoing();
+			return;
+		}
+
+		if (this.checksumBytes == null)
+			throw new MessageException("Missing data checksum");
+	}
+
+	@Override
+	public ByteBuffer[] toByteBuffers() throws MessageException {
+		if (this.blockBuffer == null)
+			return super.toByteBuffers();
+
+		this.checkValidOutgoing();
+
+		// Duplicates so that clones, and repeated sends, have independent positions
+		return this.frame(this.heightBytes.length + this.blockBuffer.remaining(),
+				ByteBuffer.wrap(this.heightBytes).asReadOnlyBuffer(), this.blockBuffer.duplicate());
+	}
+
 	public static Message fromByteBuffer(int id, ByteBuffer byteBuffer) {
 		throw new UnsupportedOperationException("CachedBlockMessage is for outgoing messages only");
 	}
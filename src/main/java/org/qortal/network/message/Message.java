@@ -3,10 +3,6 @@ package org.qortal.network.message;
 import org.qortal.crypto.Crypto;
 import org.qortal.network.Network;
 
-import com.google.common.primitives.Ints;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -162,6 +158,10 @@ public abstract class Message {
 		return Arrays.copyOfRange(Crypto.digest(dataBuffer), 0, CHECKSUM_LENGTH);
 	}
 
+	protected static byte[] generateChecksum(ByteBuffer... dataBuffers) {
+		return Arrays.copyOfRange(Crypto.digest(dataBuffers), 0, CHECKSUM_LENGTH);
+	}
+
 	public void checkValidOutgoing() throws MessageException {
 		// We expect subclass to have initialized these
 		if (this.dataBytes == null)
@@ -170,44 +170,81 @@ public abstract class Message {
 			throw new MessageException("Missing data checksum");
 	}
 
-	public byte[] toBytes() throws MessageException {
+	/**
+	 * Returns outgoing message framed as a header buffer followed by a read-only view of the payload.
+	 * <p>
+	 * Suitable for gathering writes. Payload bytes are shared, not copied, so the same outgoing message
+	 * can be framed for many peers having only been serialized and checksummed once.
+	 *
+	 * @return buffers, each ready for reading, to be written in order
+	 * @throws MessageException if message is not valid for sending
+	 */
+	public ByteBuffer[] toByteBuffers() throws MessageException {
 		checkValidOutgoing();
 
+		if (this.dataBytes.length == 0)
+			return this.frame(0);
+
+		return this.frame(this.dataBytes.length, ByteBuffer.wrap(this.dataBytes).asReadOnlyBuffer());
+	}
+
+	/**
+	 * Returns header buffer, for payload of <tt>dataLength</tt> bytes, followed by <tt>payloadBuffers</tt>.
+	 * <p>
+	 * Subclasses whose payload doesn't live in {@code dataBytes} (e.g. slices of a memory-mapped file)
+	 * can override {@link #toByteBuffers()} and call this. {@code checksumBytes} must cover the whole payload.
+	 */
+	protected ByteBuffer[] frame(int dataLength, ByteBuffer... payloadBuffers) throws MessageException {
 		// We can calculate exact length
-		int messageLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
-		messageLength += this.hasId() ? ID_LENGTH : 0;
-		messageLength += DATA_SIZE_LENGTH + this.dataBytes.length > 0 ? CHECKSUM_LENGTH + this.dataBytes.length : 0;
+		int headerLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
+		headerLength += this.hasId() ? ID_LENGTH : 0;
+		headerLength += DATA_SIZE_LENGTH;
+		headerLength += dataLength > 0 ? CHECKSUM_LENGTH : 0;
+
+		int messageLength = headerLength + dataLength;
 
 		if (messageLength > MAX_DATA_SIZE)
 			throw new MessageException(String.format("About to send message with length %d larger than allowed %d", messageLength, MAX_DATA_SIZE));
 
-		try {
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream(messageLength);
+		ByteBuffer header = ByteBuffer.allocate(headerLength);
 
-			// Magic
-			bytes.write(Network.getInstance().getMessageMagic());
+		// Magic
+		header.put(Network.getInstance().getMessageMagic());
 
-			bytes.write(Ints.toByteArray(this.type.value));
+		header.putInt(this.type.value);
 
-			if (this.hasId()) {
-				bytes.write(1);
+		if (this.hasId()) {
+			header.put((byte) 1);
 
-				bytes.write(Ints.toByteArray(this.id));
-			} else {
-				bytes.write(0);
-			}
+			header.putInt(this.id);
+		} else {
+			header.put((byte) 0);
+		}
 
-			bytes.write(Ints.toByteArray(this.dataBytes.length));
+		header.putInt(dataLength);
 
-			if (this.dataBytes.length > 0) {
-				bytes.write(this.checksumBytes);
-				bytes.write(this.dataBytes);
-			}
+		if (dataLength > 0)
+			header.put(this.checksumBytes);
 
-			return bytes.toByteArray();
-		} catch (IOException e) {
-			throw new MessageException("Failed to serialize message", e);
-		}
+		ByteBuffer[] buffers = new ByteBuffer[1 + payloadBuffers.length];
+		buffers[0] = header.flip();
+		System.arraycopy(payloadBuffers, 0, buffers, 1, payloadBuffers.length);
+
+		return buffers;
+	}
+
+	public byte[] toBytes() throws MessageException {
+		ByteBuffer[] buffers = this.toByteBuffers();
+
+		int messageLength = 0;
+		for (ByteBuffer buffer : buffers)
+			messageLength += buffer.remaining();
+
+		ByteBuffer bytes = ByteBuffer.allocate(messageLength);
+		for (ByteBuffer buffer : buffers)
+			bytes.put(buffer);
+
+		return bytes.array();
 	}
 
 	public static <M extends Message> M cloneWithNewId(M message, int newId) {
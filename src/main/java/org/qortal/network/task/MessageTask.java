@@ -1,5 +1,6 @@
 package org.qortal.network.task;
 
+import org.qortal.network.MessageTaskScheduler;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.message.Message;
@@ -8,11 +9,13 @@ import org.qortal.utils.ExecuteProduceConsume.Task;
 public class MessageTask implements Task {
     private final Peer peer;
     private final Message nextMessage;
+    private final MessageTaskScheduler.Lane lane;
     private final String name;
 
-    public MessageTask(Peer peer, Message nextMessage) {
+    public MessageTask(Peer peer, Message nextMessage, MessageTaskScheduler.Lane lane) {
         this.peer = peer;
         this.nextMessage = nextMessage;
+        this.lane = lane;
         this.name = "MessageTask::" + peer + "::" + nextMessage.getType();
     }
 
@@ -23,6 +26,13 @@ public class MessageTask implements Task {
 
     @Override
     public void perform() throws InterruptedException {
-        Network.getInstance().onMessage(peer, nextMessage);
+        final long before = System.nanoTime();
+
+        try {
+            Network.getInstance().onMessage(peer, nextMessage);
+        } finally {
+            Network.getInstance().getNetworkStats().onMessageProcessed(nextMessage.getType(), System.nanoTime() - before);
+            Network.getInstance().getMessageTaskScheduler().onTaskFinished(this.lane);
+        }
     }
 }
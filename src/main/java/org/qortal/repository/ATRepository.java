@@ -2,6 +2,7 @@ package org.qortal.repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -25,6 +26,13 @@ public interface ATRepository {
 	/** Returns list of executable ATs, empty if none found */
 	public List<ATData> getAllExecutableATs() throws DataException;
 
+	/**
+	 * Returns list of executable ATs matching passed addresses, ordered by earliest creation date first, empty if none found.
+	 * <p>
+	 * Returned ATData lacks code bytes, which can be obtained via <tt>ATCodeCache</tt>.
+	 */
+	public List<ATData> getExecutableATs(Collection<String> atAddresses) throws DataException;
+
 	/** Returns list of ATs with matching code hash, optionally executable only. */
 	public List<ATData> getATsByFunctionality(byte[] codeHash, Boolean isExecutable, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
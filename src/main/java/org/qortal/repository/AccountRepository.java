@@ -185,6 +185,17 @@ public interface AccountRepository {
 	 */
 	public List<RewardShareData> getRewardSharesByIndexes(int[] indexes) throws DataException;
 
+	/**
+	 * Returns list of reward-share data for given reward-share public keys.
+	 * <p>
+	 * This is a one-shot, batch form of the above <tt>getRewardShare(byte[])</tt> call.
+	 * Unknown public keys are omitted from results, so returned list may be shorter than <tt>rewardSharePublicKeys</tt>.
+	 * 
+	 * @return list of reward-share data, in no particular order
+	 * @throws DataException
+	 */
+	public List<RewardShareData> getRewardSharesByPublicKeys(List<byte[]> rewardSharePublicKeys) throws DataException;
+
 	public boolean rewardShareExists(byte[] rewardSharePublicKey) throws DataException;
 
 	public void save(RewardShareData rewardShareData) throws DataException;
@@ -30,4 +30,18 @@ public interface ArbitraryRepository {
 
 	public List<ArbitraryResourceNameInfo> getArbitraryResourceCreatorNames(Service service, String identifier, boolean defaultResource, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
+
+	// Hosted data
+
+	/** Returns hosted transactions, newest first unless <tt>reverse</tt>, optionally filtered by name, service, and <tt>query</tt> matching name or identifier. */
+	public List<ArbitraryTransactionData> getHostedTransactions(String name, Service service, String query, Integer limit, Integer offset, Boolean reverse) throws DataException;
+
+	public List<byte[]> getHostedSignatures() throws DataException;
+
+	public void saveHostedSignature(byte[] signature) throws DataException;
+
+	public int deleteHostedSignature(byte[] signature) throws DataException;
+
+	public int deleteAllHostedSignatures() throws DataException;
+
 }
@@ -16,14 +16,181 @@ import static org.qortal.transform.Transformer.INT_LENGTH;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class BlockArchiveReader {
 
+    private static class ArchiveFile {
+        private final String filename;
+        private final int startHeight;
+        private final int endHeight;
+
+        private ArchiveFile(String filename, int startHeight, int endHeight) {
+            this.filename = filename;
+            this.startHeight = startHeight;
+            this.endHeight = endHeight;
+        }
+    }
+
+    /**
+     * Block read from the archive, holding only a slice of the memory-mapped archive file.
+     * <p>
+     * Deserialization is deferred until {@link #getBlockInfo()} is called.
+     */
+    public static class ArchivedBlock {
+        private final int height;
+        private final ByteBuffer serializedBlock;
+
+        private ArchivedBlock(int height, ByteBuffer serializedBlock) {
+            this.height = height;
+            this.serializedBlock = serializedBlock;
+        }
+
+        public int getHeight() {
+            return this.height;
+        }
+
+        /** Returns serialized block bytes, as a new read-only buffer each call, without copying. */
+        public ByteBuffer getSerializedBlock() {
+            return this.serializedBlock.duplicate();
+        }
+
+        /** Deserializes block, transactions and AT states. Result isn't retained. */
+        public Triple<BlockData, List<TransactionData>, List<ATStateData>> getBlockInfo() throws TransformationException {
+            Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = BlockTransformer.fromByteBuffer(this.getSerializedBlock());
+            if (blockInfo != null && blockInfo.getA() != null) {
+                // Block height is stored outside of the main serialized bytes, so it
+                // won't be set automatically.
+                blockInfo.getA().setHeight(this.height);
+            }
+            return blockInfo;
+        }
+    }
+
+    /** Mapping of an archive file, with file's modification time when mapped, so rewritten files can be detected. */
+    private static class MappedArchiveFile {
+        private final MappedByteBuffer buffer;
+        private final long lastModified;
+
+        private MappedArchiveFile(MappedByteBuffer buffer, long lastModified) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+
+        private boolean hasChanged(Path filePath) {
+            File file = filePath.toFile();
+            return !file.exists() || file.length() != this.buffer.capacity() || file.lastModified() != this.lastModified;
+        }
+    }
+
+    /** Walks block records in archive files sequentially, only consulting a file's block index when first entering it. */
+    private class RangeIterator implements Iterator<ArchivedBlock> {
+        private final int endHeight;
+        private int nextHeight;
+
+        private MappedByteBuffer mappedFile;
+        private int mappedFileEndHeight;
+        private int nextBlockOffset;
+
+        private ArchivedBlock nextBlock;
+        private boolean isFinished = false;
+
+        private RangeIterator(int startHeight, int endHeight) {
+            this.nextHeight = startHeight;
+            this.endHeight = endHeight;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.nextBlock == null && !this.isFinished) {
+                this.nextBlock = this.readNextBlock();
+                this.isFinished = this.nextBlock == null;
+            }
+
+            return this.nextBlock != null;
+        }
+
+        @Override
+        public ArchivedBlock next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            ArchivedBlock archivedBlock = this.nextBlock;
+            this.nextBlock = null;
+            return archivedBlock;
+        }
+
+        private ArchivedBlock readNextBlock() {
+            if (this.nextHeight > this.endHeight) {
+                return null;
+            }
+
+            if (!USE_MAPPED_FILES) {
+                ByteBuffer blockBuffer = fetchSerializedBlockBufferForHeight(this.nextHeight);
+                return blockBuffer != null ? new ArchivedBlock(this.nextHeight++, blockBuffer) : null;
+            }
+
+            if (this.mappedFile == null || this.nextHeight > this.mappedFileEndHeight) {
+                // Move on to file containing next height
+                ArchiveFile archiveFile = getArchiveFileForHeight(this.nextHeight);
+                if (archiveFile == null) {
+                    return null;
+                }
+
+                this.mappedFile = getMappedFile(archiveFile.filename);
+                if (this.mappedFile == null) {
+                    return null;
+                }
+
+                this.nextBlockOffset = getBlockOffset(this.mappedFile, archiveFile.filename, this.nextHeight);
+                if (this.nextBlockOffset < 0) {
+                    return null;
+                }
+
+                this.mappedFileEndHeight = archiveFile.endHeight;
+            }
+
+            ByteBuffer blockBuffer = sliceBlock(this.mappedFile, this.nextBlockOffset, this.nextHeight);
+            if (blockBuffer == null) {
+                return null;
+            }
+
+            // Next block record immediately follows this one
+            this.nextBlockOffset += 2 * INT_LENGTH + blockBuffer.remaining();
+
+            return new ArchivedBlock(this.nextHeight++, blockBuffer);
+        }
+    }
+
     private static BlockArchiveReader instance;
-    private Map<String, Triple<Integer, Integer, Integer>> fileListCache;
+    /** Archive files, keyed by start height, so the file containing a given height is a floor lookup */
+    private volatile NavigableMap<Integer, ArchiveFile> fileListCache;
+
+    /**
+     * Whether to memory-map archive files. Java can only release a mapping via GC, and until then Windows
+     * won't let the file be deleted or replaced, e.g. when pruning, so there blocks are read with positional reads instead.
+     */
+    private static final boolean USE_MAPPED_FILES = !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+    /** Maximum number of archive files kept memory-mapped. Files are ~100MiB, but pages are only resident while in use. */
+    private static final int MAX_MAPPED_FILES = 16;
+    /** Memory-mapped archive files, keyed by filename, least-recently used first. Access only inside <tt>synchronized (this.mappedFiles)</tt> */
+    private final LinkedHashMap<String, MappedArchiveFile> mappedFiles = new LinkedHashMap<>(MAX_MAPPED_FILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MappedArchiveFile> eldest) {
+            // Mapping is released by GC once any slices handed out are also unreachable
+            return this.size() > MAX_MAPPED_FILES;
+        }
+    };
+
+    /** version, start height, end height, block count, variable header length */
+    private static final int FIXED_HEADER_LENGTH = 5 * INT_LENGTH;
 
     private static final Logger LOGGER = LogManager.getLogger(BlockArchiveReader.class);
 
@@ -43,7 +210,7 @@ public class BlockArchiveReader {
         Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive").toAbsolutePath();
         File archiveDirFile = archivePath.toFile();
         String[] files = archiveDirFile.list();
-        Map<String, Triple<Integer, Integer, Integer>> map = new HashMap<>();
+        NavigableMap<Integer, ArchiveFile> map = new TreeMap<>();
 
         if (files != null) {
             for (String file : files) {
@@ -57,13 +224,12 @@ public class BlockArchiveReader {
                 }
                 // Remove the extension and split into two parts
                 String[] parts = filename.substring(0, filename.lastIndexOf('.')).split("-");
-                Integer startHeight = Integer.parseInt(parts[0]);
-                Integer endHeight = Integer.parseInt(parts[1]);
-                Integer range = endHeight - startHeight;
-                map.put(filename, new Triple(startHeight, endHeight, range));
+                int startHeight = Integer.parseInt(parts[0]);
+                int endHeight = Integer.parseInt(parts[1]);
+                map.put(startHeight, new ArchiveFile(filename, startHeight, endHeight));
             }
         }
-        this.fileListCache = Map.copyOf(map);
+        this.fileListCache = Collections.unmodifiableNavigableMap(map);
     }
 
     public Triple<BlockData, List<TransactionData>, List<ATStateData>> fetchBlockAtHeight(int height) {
@@ -71,24 +237,17 @@ public class BlockArchiveReader {
             this.fetchFileList();
         }
 
-        byte[] serializedBytes = this.fetchSerializedBlockBytesForHeight(height);
-        if (serializedBytes == null) {
+        // Deserialize straight from the mapping
+        ByteBuffer byteBuffer = this.fetchSerializedBlockBufferForHeight(height);
+        if (byteBuffer == null) {
             return null;
         }
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(serializedBytes);
-        Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = null;
         try {
-            blockInfo = BlockTransformer.fromByteBuffer(byteBuffer);
-            if (blockInfo != null && blockInfo.getA() != null) {
-                // Block height is stored outside of the main serialized bytes, so it
-                // won't be set automatically.
-                blockInfo.getA().setHeight(height);
-            }
+            return new ArchivedBlock(height, byteBuffer).getBlockInfo();
         } catch (TransformationException e) {
             return null;
         }
-        return blockInfo;
     }
 
     public Triple<BlockData, List<TransactionData>, List<ATStateData>> fetchBlockWithSignature(
@@ -110,16 +269,28 @@ public class BlockArchiveReader {
 
         List<Triple<BlockData, List<TransactionData>, List<ATStateData>>> blockInfoList = new ArrayList<>();
 
-        for (int height = startHeight; height <= endHeight; height++) {
-            Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = this.fetchBlockAtHeight(height);
-            if (blockInfo == null) {
+        Iterator<ArchivedBlock> archivedBlocks = this.iterateBlocksInRange(startHeight, endHeight);
+        while (archivedBlocks.hasNext()) {
+            try {
+                blockInfoList.add(archivedBlocks.next().getBlockInfo());
+            } catch (TransformationException e) {
                 return blockInfoList;
             }
-            blockInfoList.add(blockInfo);
         }
         return blockInfoList;
     }
 
+    /**
+     * Returns iterator over archived blocks from <tt>startHeight</tt> to <tt>endHeight</tt> inclusive.
+     * <p>
+     * Archive files are read sequentially and blocks are only deserialized on demand,
+     * so memory use doesn't grow with the size of the range.
+     * Iteration stops early at the first block missing from the archive.
+     */
+    public Iterator<ArchivedBlock> iterateBlocksInRange(int startHeight, int endHeight) {
+        return new RangeIterator(startHeight, endHeight);
+    }
+
     public Integer fetchHeightForSignature(byte[] signature, Repository repository) {
         // Lookup the height for the requested signature
         try {
@@ -144,29 +315,19 @@ public class BlockArchiveReader {
         }
     }
 
-    private String getFilenameForHeight(int height) {
-        if (this.fileListCache == null) {
+    private ArchiveFile getArchiveFileForHeight(int height) {
+        NavigableMap<Integer, ArchiveFile> fileList = this.fileListCache;
+        if (fileList == null) {
             this.fetchFileList();
+            fileList = this.fileListCache;
         }
 
-        Iterator it = this.fileListCache.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = (Map.Entry) it.next();
-            if (pair == null && pair.getKey() == null && pair.getValue() == null) {
-                continue;
-            }
-            Triple<Integer, Integer, Integer> heightInfo = (Triple<Integer, Integer, Integer>) pair.getValue();
-            Integer startHeight = heightInfo.getA();
-            Integer endHeight = heightInfo.getB();
-
-            if (height >= startHeight && height <= endHeight) {
-                // Found the correct file
-                String filename = (String) pair.getKey();
-                return filename;
-            }
+        Map.Entry<Integer, ArchiveFile> entry = fileList.floorEntry(height);
+        if (entry == null || height > entry.getValue().endHeight) {
+            return null;
         }
 
-        return null;
+        return entry.getValue();
     }
 
     public byte[] fetchSerializedBlockBytesForSignature(byte[] signature, boolean includeHeightPrefix, Repository repository) {
@@ -200,54 +361,95 @@ public class BlockArchiveReader {
     }
 
     public byte[] fetchSerializedBlockBytesForHeight(int height) {
-        String filename = this.getFilenameForHeight(height);
-        if (filename == null) {
+        ByteBuffer blockBuffer = this.fetchSerializedBlockBufferForHeight(height);
+        if (blockBuffer == null) {
+            return null;
+        }
+
+        byte[] blockBytes = new byte[blockBuffer.remaining()];
+        blockBuffer.get(blockBytes);
+        return blockBytes;
+    }
+
+    /**
+     * Returns serialized block bytes for given height, as a read-only slice of the memory-mapped archive file.
+     * <p>
+     * No bytes are copied, so the result is suitable for sending to peers as-is.
+     *
+     * @return buffer positioned at start of block bytes, or null if block isn't in the archive
+     */
+    public ByteBuffer fetchSerializedBlockBufferForHeight(int height) {
+        ArchiveFile archiveFile = this.getArchiveFileForHeight(height);
+        if (archiveFile == null) {
             // We don't have this block in the archive
-            // Invalidate the file list cache in case it is out of date
+            // Refresh the file list in case it is out of date
             this.invalidateFileListCache();
             return null;
         }
 
-        Path filePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive", filename).toAbsolutePath();
-        RandomAccessFile file = null;
+        String filename = archiveFile.filename;
+        if (!USE_MAPPED_FILES) {
+            return readBlock(filename, height);
+        }
+
+        MappedByteBuffer mappedFile = this.getMappedFile(filename);
+        if (mappedFile == null) {
+            return null;
+        }
+
+        int blockOffset = getBlockOffset(mappedFile, filename, height);
+        if (blockOffset < 0) {
+            return null;
+        }
+
+        return sliceBlock(mappedFile, blockOffset, height);
+    }
+
+    /** Returns offset of block record (height, length, bytes) for given height, using file's block index, or -1 if not found. */
+    private static int getBlockOffset(MappedByteBuffer mappedFile, String filename, int height) {
         try {
-            file = new RandomAccessFile(filePath.toString(), "r");
-            // Get info about this file (the "fixed length header")
-            final int version = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int startHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int endHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            file.readInt(); // Block count (unused) // Do not remove or comment out, as it is moving the file pointer
-            final int variableHeaderLength = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int fixedHeaderLength = (int)file.getFilePointer();
+            // Get info about this file (the "fixed length header") using absolute reads, as mapping is shared
+            final int version = mappedFile.getInt(0);
+            final int startHeight = mappedFile.getInt(INT_LENGTH);
+            final int endHeight = mappedFile.getInt(2 * INT_LENGTH);
+            // Block count (unused) at 3 * INT_LENGTH
+            final int variableHeaderLength = mappedFile.getInt(4 * INT_LENGTH);
             // End of fixed length header
 
             // Make sure the version is one we recognize
             if (version != 1) {
                 LOGGER.info("Error: unknown version in file {}: {}", filename, version);
-                return null;
+                return -1;
             }
 
             // Verify that the block is within the reported range
             if (height < startHeight || height > endHeight) {
                 LOGGER.info("Error: requested height {} but the range of file {} is {}-{}",
                         height, filename, startHeight, endHeight);
-                return null;
+                return -1;
             }
 
-            // Seek to the location of the block index in the variable length header
+            // Read the block index in the variable length header to obtain the location of this block in the data segment
             final int locationOfBlockIndexInVariableHeaderSegment = (height - startHeight) * INT_LENGTH;
-            file.seek(fixedHeaderLength + locationOfBlockIndexInVariableHeaderSegment);
+            int locationOfBlockInDataSegment = mappedFile.getInt(FIXED_HEADER_LENGTH + locationOfBlockIndexInVariableHeaderSegment);
 
-            // Read the value to obtain the index of this block in the data segment
-            int locationOfBlockInDataSegment = file.readInt();
+            // Skip data segment length to get to block data itself
+            int dataSegmentStartIndex = FIXED_HEADER_LENGTH + variableHeaderLength + INT_LENGTH;
+            return dataSegmentStartIndex + locationOfBlockInDataSegment;
 
-            // Now seek to the block data itself
-            int dataSegmentStartIndex = fixedHeaderLength + variableHeaderLength + INT_LENGTH; // Confirmed correct
-            file.seek(dataSegmentStartIndex + locationOfBlockInDataSegment);
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt file
+            LOGGER.info("Unable to read index for block {} from archive file {}: {}", height, filename, e.getMessage());
+            return -1;
+        }
+    }
 
+    /** Returns read-only slice of block bytes from block record at <tt>blockOffset</tt>, or null if record isn't for <tt>height</tt>. */
+    private static ByteBuffer sliceBlock(MappedByteBuffer mappedFile, int blockOffset, int height) {
+        try {
             // Read the block metadata
-            int blockHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            int blockLength = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
+            int blockHeight = mappedFile.getInt(blockOffset);
+            int blockLength = mappedFile.getInt(blockOffset + INT_LENGTH);
 
             // Ensure the block height matches the one requested
             if (blockHeight != height) {
@@ -255,33 +457,119 @@ public class BlockArchiveReader {
                 return null;
             }
 
-            // Now retrieve the block's serialized bytes
-            byte[] blockBytes = new byte[blockLength];
-            file.read(blockBytes);
+            // Slice out the block's serialized bytes
+            ByteBuffer blockBuffer = mappedFile.duplicate();
+            int blockBytesOffset = blockOffset + 2 * INT_LENGTH;
+            blockBuffer.limit(blockBytesOffset + blockLength);
+            blockBuffer.position(blockBytesOffset);
 
-            return blockBytes;
+            return blockBuffer.slice().asReadOnlyBuffer();
+
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            // Truncated or corrupt file
+            LOGGER.info("Unable to read block {} from archive: {}", height, e.getMessage());
+            return null;
+        }
+    }
+
+    private MappedByteBuffer getMappedFile(String filename) {
+        synchronized (this.mappedFiles) {
+            MappedArchiveFile mappedArchiveFile = this.mappedFiles.get(filename);
+            if (mappedArchiveFile != null) {
+                return mappedArchiveFile.buffer;
+            }
 
-        } catch (FileNotFoundException e) {
+            Path filePath = getArchiveFilePath(filename);
+            try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                long lastModified = filePath.toFile().lastModified();
+                // Mapping remains valid after channel is closed
+                MappedByteBuffer mappedFile = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+
+                this.mappedFiles.put(filename, new MappedArchiveFile(mappedFile, lastModified));
+                return mappedFile;
+            } catch (NoSuchFileException e) {
+                LOGGER.info("File {} not found: {}", filename, e.getMessage());
+                return null;
+            } catch (IOException e) {
+                LOGGER.info("Unable to map archive file {}: {}", filename, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /** Reads block bytes for given height without mapping archive file, so file isn't held open afterwards. */
+    private static ByteBuffer readBlock(String filename, int height) {
+        try (FileChannel fileChannel = FileChannel.open(getArchiveFilePath(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(fileChannel, 0, FIXED_HEADER_LENGTH);
+            final int version = header.getInt(0);
+            final int startHeight = header.getInt(INT_LENGTH);
+            final int endHeight = header.getInt(2 * INT_LENGTH);
+            final int variableHeaderLength = header.getInt(4 * INT_LENGTH);
+
+            if (version != 1 || height < startHeight || height > endHeight) {
+                LOGGER.info("Error: file {} (version {}, range {}-{}) can't contain block {}", filename, version, startHeight, endHeight, height);
+                return null;
+            }
+
+            final int locationOfBlockIndexInVariableHeaderSegment = (height - startHeight) * INT_LENGTH;
+            int locationOfBlockInDataSegment = readFully(fileChannel, FIXED_HEADER_LENGTH + locationOfBlockIndexInVariableHeaderSegment, INT_LENGTH).getInt(0);
+
+            long blockOffset = FIXED_HEADER_LENGTH + variableHeaderLength + INT_LENGTH + (long) locationOfBlockInDataSegment;
+            ByteBuffer blockMetadata = readFully(fileChannel, blockOffset, 2 * INT_LENGTH);
+            int blockHeight = blockMetadata.getInt(0);
+            int blockLength = blockMetadata.getInt(INT_LENGTH);
+
+            if (blockHeight != height) {
+                LOGGER.info("Error: height {} does not match requested: {}", blockHeight, height);
+                return null;
+            }
+
+            return readFully(fileChannel, blockOffset + 2 * INT_LENGTH, blockLength).asReadOnlyBuffer();
+
+        } catch (NoSuchFileException e) {
             LOGGER.info("File {} not found: {}", filename, e.getMessage());
             return null;
-        } catch (IOException e) {
-            LOGGER.info("Unable to read block {} from archive: {}", height, e.getMessage());
+        } catch (IOException | IllegalArgumentException e) {
+            // Truncated or corrupt file
+            LOGGER.info("Unable to read block {} from archive file {}: {}", height, filename, e.getMessage());
             return null;
         }
-        finally {
-            // Close the file
-            if (file != null) {
-                try {
-                    file.close();
-                } catch (IOException e) {
-                    // Failed to close, but no need to handle this
-                }
+    }
+
+    private static ByteBuffer readFully(FileChannel fileChannel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException(String.format("unexpected end of file at %d", position + buffer.position()));
             }
         }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static Path getArchiveFilePath(String filename) {
+        return Paths.get(Settings.getInstance().getRepositoryPath(), "archive", filename).toAbsolutePath();
     }
 
+    /**
+     * Re-reads the list of archive files, e.g. after a lookup miss or a new archive file being written.
+     * <p>
+     * Only mappings of files that have since been removed or rewritten are dropped, so others stay mapped.
+     */
     public void invalidateFileListCache() {
-        this.fileListCache = null;
+        this.fetchFileList();
+
+        Set<String> filenames = new HashSet<>();
+        for (ArchiveFile archiveFile : this.fileListCache.values()) {
+            filenames.add(archiveFile.filename);
+        }
+
+        synchronized (this.mappedFiles) {
+            this.mappedFiles.entrySet().removeIf(entry -> !filenames.contains(entry.getKey())
+                    || entry.getValue().hasChanged(getArchiveFilePath(entry.getKey())));
+        }
     }
 
 }
@@ -5,6 +5,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.block.BlockChain;
 import org.qortal.controller.Controller;
+import org.qortal.controller.arbitrary.ArbitraryDataStorageManager;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.account.MintingAccountData;
 import org.qortal.data.block.BlockData;
@@ -238,6 +239,10 @@ public class Bootstrap {
 
             repository.saveChanges();
 
+            LOGGER.info("Deleting hosted data index...");
+            repository.getArbitraryRepository().deleteAllHostedSignatures();
+            repository.saveChanges();
+
             LOGGER.info("Deleting peers list...");
             repository.getNetworkRepository().deleteAllPeers();
             repository.saveChanges();
@@ -302,6 +307,9 @@ public class Bootstrap {
                 LOGGER.info("Unable to re-import local data, but created bootstrap is still valid. {}", e);
             }
 
+            // Hosted data index was cleared, so rebuild it
+            ArbitraryDataStorageManager.getInstance().resetHostedDataIndex();
+
             LOGGER.info("Unlocking blockchain...");
             blockchainLock.unlock();
 
@@ -470,6 +478,9 @@ public class Bootstrap {
             Files.move(inputPath, outputPath);
 
             this.updateStatus("Starting repository from bootstrap...");
+
+            // Bootstrap doesn't know what we're hosting
+            ArbitraryDataStorageManager.getInstance().resetHostedDataIndex();
         }
         finally {
             RepositoryFactory repositoryFactory = new HSQLDBRepositoryFactory(Controller.getRepositoryUrl());
@@ -7,6 +7,7 @@ import org.qortal.repository.hsqldb.HSQLDBDatabaseArchiving;
 import org.qortal.repository.hsqldb.HSQLDBDatabasePruning;
 import org.qortal.repository.hsqldb.HSQLDBRepository;
 import org.qortal.settings.Settings;
+import org.qortal.transaction.Mempool;
 
 import java.sql.SQLException;
 import java.util.concurrent.TimeoutException;
@@ -25,6 +26,9 @@ public abstract class RepositoryManager {
 
 	public static void setRepositoryFactory(RepositoryFactory newRepositoryFactory) {
 		repositoryFactory = newRepositoryFactory;
+
+		// Mempool mirrors previous repository
+		Mempool.getInstance().invalidate();
 	}
 
 	public static boolean wasPristineAtOpen() throws DataException {
@@ -51,6 +55,8 @@ public abstract class RepositoryManager {
 	public static void closeRepositoryFactory() throws DataException {
 		repositoryFactory.close();
 		repositoryFactory = null;
+
+		Mempool.getInstance().invalidate();
 	}
 
 	public static void backup(boolean quick, String name, Long timeout) throws TimeoutException {
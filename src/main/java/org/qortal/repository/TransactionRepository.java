@@ -289,6 +289,13 @@ public interface TransactionRepository {
 	 */
 	public List<TransactionData> getUnconfirmedTransactions(EnumSet<TransactionType> excludedTxTypes) throws DataException;
 
+	/**
+	 * Returns number of unconfirmed transactions created by <tt>creatorPublicKey</tt>, excluding specified type(s).
+	 * 
+	 * @throws DataException
+	 */
+	public int countUnconfirmedTransactionsByCreator(byte[] creatorPublicKey, EnumSet<TransactionType> excludedTxTypes) throws DataException;
+
 	/**
 	 * Remove transaction from unconfirmed transactions pile.
 	 * 
@@ -3,6 +3,7 @@ package org.qortal.repository.hsqldb;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -98,59 +99,101 @@ public class HSQLDBATRepository implements ATRepository {
 
 	@Override
 	public List<ATData> getAllExecutableATs() throws DataException {
-		String sql = "SELECT AT_address, creator, created_when, version, asset_id, code_bytes, code_hash, "
+		String sql = "SELECT AT_address, creator, created_when, version, asset_id, code_hash, "
 				+ "is_sleeping, sleep_until_height, had_fatal_error, "
-				+ "is_frozen, frozen_balance, sleep_until_message_timestamp "
+				+ "is_frozen, frozen_balance, sleep_until_message_timestamp, code_bytes "
 				+ "FROM ATs "
 				+ "WHERE is_finished = false "
 				+ "ORDER BY created_when ASC";
 
-		List<ATData> executableATs = new ArrayList<>();
-
 		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
-			if (resultSet == null)
-				return executableATs;
-
-			boolean isFinished = false;
-
-			do {
-				String atAddress = resultSet.getString(1);
-				byte[] creatorPublicKey = resultSet.getBytes(2);
-				long created = resultSet.getLong(3);
-				int version = resultSet.getInt(4);
-				long assetId = resultSet.getLong(5);
-				byte[] codeBytes = resultSet.getBytes(6); // Actually BLOB
-				byte[] codeHash = resultSet.getBytes(7);
-				boolean isSleeping = resultSet.getBoolean(8);
+			return getExecutableATsFromResultSet(resultSet, true);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch executable ATs from repository", e);
+		}
+	}
 
-				Integer sleepUntilHeight = resultSet.getInt(9);
-				if (sleepUntilHeight == 0 && resultSet.wasNull())
-					sleepUntilHeight = null;
+	@Override
+	public List<ATData> getExecutableATs(Collection<String> atAddresses) throws DataException {
+		StringBuilder sql = new StringBuilder(512);
+		List<Object> bindParams = new ArrayList<>(atAddresses.size());
 
-				boolean hadFatalError = resultSet.getBoolean(10);
-				boolean isFrozen = resultSet.getBoolean(11);
+		// Code bytes omitted as executing ATs mostly share code, see ATCodeCache
+		sql.append("SELECT ATs.AT_address, creator, created_when, version, asset_id, code_hash, ")
+				.append("is_sleeping, sleep_until_height, had_fatal_error, ")
+				.append("is_frozen, frozen_balance, sleep_until_message_timestamp ")
+				.append("FROM ");
 
-				Long frozenBalance = resultSet.getLong(12);
-				if (frozenBalance == 0 && resultSet.wasNull())
-					frozenBalance = null;
+		// (VALUES (?), (?), ...) AS ATAddresses (AT_address)
+		sql.append("(VALUES ");
 
-				Long sleepUntilMessageTimestamp = resultSet.getLong(13);
-				if (sleepUntilMessageTimestamp == 0 && resultSet.wasNull())
-					sleepUntilMessageTimestamp = null;
+		boolean isFirst = true;
+		for (String atAddress : atAddresses) {
+			if (!isFirst)
+				sql.append(", ");
+			else
+				isFirst = false;
 
-				ATData atData = new ATData(atAddress, creatorPublicKey, created, version, assetId, codeBytes, codeHash,
-						isSleeping, sleepUntilHeight, isFinished, hadFatalError, isFrozen, frozenBalance,
-						sleepUntilMessageTimestamp);
+			sql.append("(CAST(? AS QortalAddress))");
+			bindParams.add(atAddress);
+		}
+		sql.append(") AS ATAddresses (AT_address) ");
 
-				executableATs.add(atData);
-			} while (resultSet.next());
+		sql.append("JOIN ATs ON ATs.AT_address = ATAddresses.AT_address ")
+				.append("WHERE is_finished = false ")
+				.append("ORDER BY created_when ASC");
 
-			return executableATs;
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray())) {
+			return getExecutableATsFromResultSet(resultSet, false);
 		} catch (SQLException e) {
 			throw new DataException("Unable to fetch executable ATs from repository", e);
 		}
 	}
 
+	private static List<ATData> getExecutableATsFromResultSet(ResultSet resultSet, boolean includesCodeBytes) throws SQLException {
+		List<ATData> executableATs = new ArrayList<>();
+
+		if (resultSet == null)
+			return executableATs;
+
+		boolean isFinished = false;
+
+		do {
+			String atAddress = resultSet.getString(1);
+			byte[] creatorPublicKey = resultSet.getBytes(2);
+			long created = resultSet.getLong(3);
+			int version = resultSet.getInt(4);
+			long assetId = resultSet.getLong(5);
+			byte[] codeHash = resultSet.getBytes(6);
+			boolean isSleeping = resultSet.getBoolean(7);
+
+			Integer sleepUntilHeight = resultSet.getInt(8);
+			if (sleepUntilHeight == 0 && resultSet.wasNull())
+				sleepUntilHeight = null;
+
+			boolean hadFatalError = resultSet.getBoolean(9);
+			boolean isFrozen = resultSet.getBoolean(10);
+
+			Long frozenBalance = resultSet.getLong(11);
+			if (frozenBalance == 0 && resultSet.wasNull())
+				frozenBalance = null;
+
+			Long sleepUntilMessageTimestamp = resultSet.getLong(12);
+			if (sleepUntilMessageTimestamp == 0 && resultSet.wasNull())
+				sleepUntilMessageTimestamp = null;
+
+			byte[] codeBytes = includesCodeBytes ? resultSet.getBytes(13) : null; // Actually BLOB
+
+			ATData atData = new ATData(atAddress, creatorPublicKey, created, version, assetId, codeBytes, codeHash,
+					isSleeping, sleepUntilHeight, isFinished, hadFatalError, isFrozen, frozenBalance,
+					sleepUntilMessageTimestamp);
+
+			executableATs.add(atData);
+		} while (resultSet.next());
+
+		return executableATs;
+	}
+
 	@Override
 	public List<ATData> getATsByFunctionality(byte[] codeHash, Boolean isExecutable, Integer limit, Integer offset, Boolean reverse) throws DataException {
 		StringBuilder sql = new StringBuilder(512);
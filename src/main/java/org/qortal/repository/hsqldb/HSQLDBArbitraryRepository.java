@@ -499,4 +499,153 @@ public class HSQLDBArbitraryRepository implements ArbitraryRepository {
 		}
 	}
 
+	// Hosted data
+
+	@Override
+	public List<ArbitraryTransactionData> getHostedTransactions(String name, Service service, String query,
+																Integer limit, Integer offset, Boolean reverse) throws DataException {
+		StringBuilder sql = new StringBuilder(1024);
+		List<Object> bindParams = new ArrayList<>();
+
+		sql.append("SELECT type, reference, signature, creator, created_when, fee, " +
+				"tx_group_id, block_height, approval_status, approval_height, " +
+				"version, nonce, service, size, is_data_raw, data, metadata_hash, " +
+				"name, identifier, update_method, secret, compression FROM HostedArbitraryData " +
+				"JOIN ArbitraryTransactions USING (signature) " +
+				"JOIN Transactions USING (signature) " +
+				"WHERE 1=1");
+
+		if (name != null) {
+			sql.append(" AND lower(name) = ?");
+			bindParams.add(name.toLowerCase());
+		}
+
+		if (service != null) {
+			sql.append(" AND service = ");
+			sql.append(service.value);
+		}
+
+		if (query != null) {
+			// Search anywhere in name or identifier
+			String queryWildcard = String.format("%%%s%%", query.toLowerCase());
+			sql.append(" AND (LCASE(name) LIKE ? OR LCASE(identifier) LIKE ?)");
+			bindParams.add(queryWildcard);
+			bindParams.add(queryWildcard);
+		}
+
+		// Newest first by default
+		sql.append(" ORDER BY created_when");
+		if (reverse == null || !reverse) {
+			sql.append(" DESC");
+		}
+
+		HSQLDBRepository.limitOffsetSql(sql, limit, offset);
+
+		List<ArbitraryTransactionData> arbitraryTransactionData = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray())) {
+			if (resultSet == null)
+				return arbitraryTransactionData;
+
+			do {
+				byte[] reference = resultSet.getBytes(2);
+				byte[] signature = resultSet.getBytes(3);
+				byte[] creatorPublicKey = resultSet.getBytes(4);
+				long timestamp = resultSet.getLong(5);
+
+				Long fee = resultSet.getLong(6);
+				if (fee == 0 && resultSet.wasNull())
+					fee = null;
+
+				int txGroupId = resultSet.getInt(7);
+
+				Integer blockHeight = resultSet.getInt(8);
+				if (blockHeight == 0 && resultSet.wasNull())
+					blockHeight = null;
+
+				ApprovalStatus approvalStatus = ApprovalStatus.valueOf(resultSet.getInt(9));
+				Integer approvalHeight = resultSet.getInt(10);
+				if (approvalHeight == 0 && resultSet.wasNull())
+					approvalHeight = null;
+
+				BaseTransactionData baseTransactionData = new BaseTransactionData(timestamp, txGroupId, reference, creatorPublicKey, fee, approvalStatus, blockHeight, approvalHeight, signature);
+
+				int version = resultSet.getInt(11);
+				int nonce = resultSet.getInt(12);
+				Service serviceResult = Service.valueOf(resultSet.getInt(13));
+				int size = resultSet.getInt(14);
+				boolean isDataRaw = resultSet.getBoolean(15); // NOT NULL, so no null to false
+				DataType dataType = isDataRaw ? DataType.RAW_DATA : DataType.DATA_HASH;
+				byte[] data = resultSet.getBytes(16);
+				byte[] metadataHash = resultSet.getBytes(17);
+				String nameResult = resultSet.getString(18);
+				String identifierResult = resultSet.getString(19);
+				Method method = Method.valueOf(resultSet.getInt(20));
+				byte[] secret = resultSet.getBytes(21);
+				Compression compression = Compression.valueOf(resultSet.getInt(22));
+
+				ArbitraryTransactionData transactionData = new ArbitraryTransactionData(baseTransactionData,
+						version, serviceResult, nonce, size, nameResult, identifierResult, method, secret,
+						compression, data, dataType, metadataHash, null);
+
+				arbitraryTransactionData.add(transactionData);
+			} while (resultSet.next());
+
+			return arbitraryTransactionData;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch hosted arbitrary transactions from repository", e);
+		}
+	}
+
+	@Override
+	public List<byte[]> getHostedSignatures() throws DataException {
+		String sql = "SELECT signature FROM HostedArbitraryData";
+
+		List<byte[]> signatures = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				return signatures;
+
+			do {
+				signatures.add(resultSet.getBytes(1));
+			} while (resultSet.next());
+
+			return signatures;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch hosted arbitrary data signatures from repository", e);
+		}
+	}
+
+	@Override
+	public void saveHostedSignature(byte[] signature) throws DataException {
+		HSQLDBSaver saveHelper = new HSQLDBSaver("HostedArbitraryData");
+
+		saveHelper.bind("signature", signature);
+
+		try {
+			saveHelper.execute(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save hosted arbitrary data signature into repository", e);
+		}
+	}
+
+	@Override
+	public int deleteHostedSignature(byte[] signature) throws DataException {
+		try {
+			return this.repository.delete("HostedArbitraryData", "signature = ?", signature);
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete hosted arbitrary data signature from repository", e);
+		}
+	}
+
+	@Override
+	public int deleteAllHostedSignatures() throws DataException {
+		try {
+			return this.repository.delete("HostedArbitraryData");
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete hosted arbitrary data signatures from repository", e);
+		}
+	}
+
 }
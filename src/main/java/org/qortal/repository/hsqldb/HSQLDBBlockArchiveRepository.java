@@ -10,12 +10,14 @@ import org.qortal.data.block.BlockSummaryData;
 import org.qortal.repository.BlockArchiveReader;
 import org.qortal.repository.BlockArchiveRepository;
 import org.qortal.repository.DataException;
+import org.qortal.transform.TransformationException;
 import org.qortal.utils.Triple;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 public class HSQLDBBlockArchiveRepository implements BlockArchiveRepository {
@@ -58,12 +60,14 @@ public class HSQLDBBlockArchiveRepository implements BlockArchiveRepository {
     public List<BlockData> fromRange(int startHeight, int endHeight) throws DataException {
         List<BlockData> blocks = new ArrayList<>();
 
-        for (int height = startHeight; height < endHeight; height++) {
-            BlockData blockData = this.fromHeight(height);
-            if (blockData == null) {
+        // endHeight is exclusive here
+        Iterator<BlockArchiveReader.ArchivedBlock> archivedBlocks = BlockArchiveReader.getInstance().iterateBlocksInRange(startHeight, endHeight - 1);
+        while (archivedBlocks.hasNext()) {
+            try {
+                blocks.add(archivedBlocks.next().getBlockInfo().getA());
+            } catch (TransformationException e) {
                 return blocks;
             }
-            blocks.add(blockData);
         }
         return blocks;
     }
@@ -964,6 +964,14 @@ public class HSQLDBDatabaseUpdates {
 					stmt.execute("DROP TABLE ArbitraryPeers");
 					break;
 
+				case 42:
+					// Index of ARBITRARY transactions whose data is hosted by this node, so that hosted data
+					// can be listed and searched without walking the data directory.
+					// Node-local, and rebuilt from the data directory at startup, so it's safe to lose.
+					stmt.execute("CREATE TABLE HostedArbitraryData (signature Signature, PRIMARY KEY (signature), "
+							+ "FOREIGN KEY (signature) REFERENCES ArbitraryTransactions (signature) ON DELETE CASCADE)");
+					break;
+
 				default:
 					// nothing to do
 					return false;
@@ -30,6 +30,7 @@ import org.qortal.gui.SysTray;
 import org.qortal.repository.*;
 import org.qortal.repository.hsqldb.transaction.HSQLDBTransactionRepository;
 import org.qortal.settings.Settings;
+import org.qortal.transaction.Mempool;
 
 public class HSQLDBRepository implements Repository {
 
@@ -42,6 +43,10 @@ public class HSQLDBRepository implements Repository {
 
 	protected Connection connection;
 	protected final Deque<Savepoint> savepoints = new ArrayDeque<>(3);
+	/** Uncommitted changes to unconfirmed transactions, applied to mempool on commit */
+	protected final List<Mempool.Change> pendingMempoolChanges = new ArrayList<>();
+	/** Size of pendingMempoolChanges when each savepoint was set */
+	protected final Deque<Integer> savepointMempoolChangeCounts = new ArrayDeque<>(3);
 	protected boolean debugState = false;
 	protected Long slowQueryThreshold = null;
 	protected List<String> sqlStatements;
@@ -188,6 +193,9 @@ public class HSQLDBRepository implements Repository {
 		try {
 			this.connection.commit();
 
+			if (!this.pendingMempoolChanges.isEmpty())
+				Mempool.getInstance().apply(this.pendingMempoolChanges);
+
 			if (this.slowQueryThreshold != null) {
 				long queryTime = System.currentTimeMillis() - beforeQuery;
 
@@ -198,9 +206,14 @@ public class HSQLDBRepository implements Repository {
 				}
 			}
 		} catch (SQLException e) {
+			// Unsure what was committed, so have mempool reload
+			if (!this.pendingMempoolChanges.isEmpty())
+				Mempool.getInstance().invalidate();
+
 			throw new DataException("commit error", e);
 		} finally {
 			this.savepoints.clear();
+			this.clearPendingMempoolChanges();
 
 			// Before clearing statements so we can log what led to assertion error
 			assertEmptyTransaction("transaction commit");
@@ -218,6 +231,7 @@ public class HSQLDBRepository implements Repository {
 			throw new DataException("rollback error", e);
 		} finally {
 			this.savepoints.clear();
+			this.clearPendingMempoolChanges();
 
 			// Before clearing statements so we can log what led to assertion error
 			assertEmptyTransaction("transaction rollback");
@@ -236,6 +250,7 @@ public class HSQLDBRepository implements Repository {
 
 			Savepoint savepoint = this.connection.setSavepoint();
 			this.savepoints.push(savepoint);
+			this.savepointMempoolChangeCounts.push(this.pendingMempoolChanges.size());
 
 			// Update query log with savepoint ID
 			if (this.sqlStatements != null)
@@ -252,6 +267,10 @@ public class HSQLDBRepository implements Repository {
 
 		Savepoint savepoint = this.savepoints.pop();
 
+		// Discard mempool changes made since savepoint
+		int mempoolChangeCount = this.savepointMempoolChangeCounts.pop();
+		this.pendingMempoolChanges.subList(mempoolChangeCount, this.pendingMempoolChanges.size()).clear();
+
 		try {
 			if (this.sqlStatements != null)
 				this.sqlStatements.add("ROLLBACK TO SAVEPOINT [" + savepoint.getSavepointId() + "]");
@@ -262,6 +281,41 @@ public class HSQLDBRepository implements Repository {
 		}
 	}
 
+	@Override
+	public void releaseSavepoint() throws DataException {
+		if (this.savepoints.isEmpty())
+			throw new DataException("no savepoint to release");
+
+		Savepoint savepoint = this.savepoints.pop();
+		this.savepointMempoolChangeCounts.pop();
+
+		try {
+			if (this.sqlStatements != null)
+				this.sqlStatements.add("RELEASE SAVEPOINT [" + savepoint.getSavepointId() + "]");
+
+			this.connection.releaseSavepoint(savepoint);
+		} catch (SQLException e) {
+			throw new DataException("savepoint release error", e);
+		}
+	}
+
+	// Mempool
+
+	/** Records change to unconfirmed transactions, to be applied to mempool if committed. */
+	public void onMempoolChange(Mempool.Change change) {
+		this.pendingMempoolChanges.add(change);
+	}
+
+	/** Returns changes to unconfirmed transactions made by this session but not yet committed. */
+	public List<Mempool.Change> getPendingMempoolChanges() {
+		return this.pendingMempoolChanges;
+	}
+
+	private void clearPendingMempoolChanges() {
+		this.pendingMempoolChanges.clear();
+		this.savepointMempoolChangeCounts.clear();
+	}
+
 	// Close / backup / rebuild / restore
 
 	@Override
@@ -279,6 +333,7 @@ public class HSQLDBRepository implements Repository {
 			this.preparedStatementCache.clear();
 			this.sqlStatements = null;
 			this.savepoints.clear();
+			this.clearPendingMempoolChanges();
 
 			// If a checkpoint has been requested, we could perform that now
 			this.maybeCheckpoint();
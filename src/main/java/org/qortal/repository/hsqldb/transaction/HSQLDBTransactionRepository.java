@@ -27,6 +27,7 @@ import org.qortal.repository.DataException;
 import org.qortal.repository.TransactionRepository;
 import org.qortal.repository.hsqldb.HSQLDBRepository;
 import org.qortal.repository.hsqldb.HSQLDBSaver;
+import org.qortal.transaction.Mempool;
 import org.qortal.transaction.Transaction.ApprovalStatus;
 import org.qortal.transaction.Transaction.TransactionType;
 import org.qortal.utils.Base58;
@@ -1191,6 +1192,10 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 
 	@Override
 	public List<byte[]> getUnconfirmedTransactionSignatures() throws DataException {
+		// Mempool only reflects committed changes
+		if (this.repository.getPendingMempoolChanges().isEmpty())
+			return Mempool.getInstance().getSignatures();
+
 		String sql = "SELECT signature FROM UnconfirmedTransactions ORDER by created_when DESC, signature DESC";
 
 		List<byte[]> signatures = new ArrayList<>();
@@ -1354,6 +1359,32 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 		}
 	}
 
+	@Override
+	public int countUnconfirmedTransactionsByCreator(byte[] creatorPublicKey, EnumSet<TransactionType> excludedTxTypes) throws DataException {
+		// Mempool only reflects committed changes
+		if (this.repository.getPendingMempoolChanges().isEmpty())
+			return Mempool.getInstance().countByCreator(creatorPublicKey, excludedTxTypes);
+
+		StringBuilder sql = new StringBuilder(256);
+		sql.append("SELECT COUNT(*) FROM UnconfirmedTransactions ");
+		sql.append("JOIN Transactions USING (signature) ");
+		sql.append("WHERE creator = ?");
+
+		for (TransactionType txType : excludedTxTypes) {
+			sql.append(" AND type != ");
+			sql.append(txType.value);
+		}
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), creatorPublicKey)) {
+			if (resultSet == null)
+				return 0;
+
+			return resultSet.getInt(1);
+		} catch (SQLException e) {
+			throw new DataException("Unable to count unconfirmed transactions from repository", e);
+		}
+	}
+
 	@Override
 	public void confirmTransaction(byte[] signature) throws DataException {
 		try {
@@ -1361,6 +1392,8 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to remove transaction from unconfirmed transactions repository", e);
 		}
+
+		this.repository.onMempoolChange(Mempool.Change.removed(signature));
 	}
 
 	@Override
@@ -1400,6 +1433,8 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to add transaction to unconfirmed transactions repository", e);
 		}
+
+		this.repository.onMempoolChange(Mempool.Change.added(transactionData));
 	}
 
 	@Override
@@ -1453,6 +1488,8 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 			throw new DataException("Unable to remove transaction from unconfirmed transactions repository", e);
 		}
 
+		this.repository.onMempoolChange(Mempool.Change.removed(transactionData.getSignature()));
+
 		// If transaction subclass has a "delete" method - call that now
 		TransactionType type = transactionData.getType();
 		if (subclassInfos[type.value].deleteMethod != null) {
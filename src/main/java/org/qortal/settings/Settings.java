@@ -110,6 +110,14 @@ public class Settings {
 	private int maxUnconfirmedPerAccount = 25;
 	/** Max milliseconds into future for accepting new, unconfirmed transactions */
 	private int maxTransactionTimestampFuture = 24 * 60 * 60 * 1000; // milliseconds
+	/** Number of threads used to verify signatures of incoming unconfirmed transactions */
+	private int transactionSignatureVerificationThreadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	/** Whether event listeners such as websockets and trade-bot are notified on their own threads, rather than caller's */
+	private boolean asyncEventDispatchEnabled = true;
+	/** Maximum number of events queued for each asynchronous event listener */
+	private int eventListenerQueueCapacity = 1000;
+	/** Whether minted blocks are assembled by validating each candidate transaction once, highest fee-per-byte first */
+	private boolean incrementalBlockAssemblyEnabled = true;
 	/** Whether we check, fetch and install auto-updates */
 	private boolean autoUpdateEnabled = true;
 	/** How long between repository backups (ms), or 0 if disabled. */
@@ -201,6 +209,12 @@ public class Settings {
 	private int networkPoWComputePoolSize = 2;
 	/** Maximum number of retry attempts if a peer fails to respond with the requested data */
 	private int maxRetries = 2;
+	/** Maximum number of GET_BLOCK requests kept in flight while synchronizing */
+	private int syncBlockWindowSize = 16;
+	/** Maximum number of peers, sharing the same common block, to spread block requests across while synchronizing */
+	private int maxSyncDownloadPeers = 3;
+	/** Number of threads used to check downloaded blocks' signatures, outside the blockchain lock, while synchronizing */
+	private int syncPreValidationThreadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
 	/** Minimum peer version number required in order to sync with them */
 	private String minPeerVersion = "3.1.0";
@@ -224,6 +238,8 @@ public class Settings {
 	private int maxBlocksPerRequest = 100;
 	/** Maximum number of blocks this node will serve in a single response */
 	private int maxBlocksPerResponse = 200;
+	/** Whether to verify blocks' online accounts signatures in parallel */
+	private boolean parallelOnlineAccountsVerificationEnabled = true;
 
 	// Which blockchains this node is running
 	private String blockchainConfig = null; // use default from resources
@@ -235,6 +251,8 @@ public class Settings {
 	// Also crosschain-related:
 	/** Whether to show SysTray pop-up notifications when trade-bot entries change state */
 	private boolean tradebotSystrayEnabled = false;
+	/** Where to save foreign HD wallet indexes, so wallets don't need full rescans after restart, or null to keep them in memory only */
+	private String foreignWalletIndexPath = null;
 
 	// Repository related
 	/** Queries that take longer than this are logged. (milliseconds) */
@@ -306,6 +324,13 @@ public class Settings {
 	/** Whether to make connections directly with peers that have the required data */
 	private boolean directDataRetrievalEnabled = true;
 
+	/** Number of threads used to request data chunks, shared by all peers */
+	private int dataChunkRequestThreadCount = 10;
+	/** Maximum number of data chunk requests in flight to each peer, per resource */
+	private int maxDataChunkRequestsPerPeer = 4;
+	/** Peers supplying data chunks slower than this fraction of the fastest peer, for the same resource, are dropped */
+	private double minRelativeDataChunkThroughput = 0.2;
+
 	/** Expiry time (ms) for (unencrypted) built/cached data */
 	private Long builtDataExpiryInterval = 30 * 24 * 60 * 60 * 1000L; // 30 days
 
@@ -617,6 +642,22 @@ public class Settings {
 		return this.maxTransactionTimestampFuture;
 	}
 
+	public int getTransactionSignatureVerificationThreadCount() {
+		return this.transactionSignatureVerificationThreadCount;
+	}
+
+	public boolean isAsyncEventDispatchEnabled() {
+		return this.asyncEventDispatchEnabled;
+	}
+
+	public int getEventListenerQueueCapacity() {
+		return this.eventListenerQueueCapacity;
+	}
+
+	public boolean isIncrementalBlockAssemblyEnabled() {
+		return this.incrementalBlockAssemblyEnabled;
+	}
+
 	public int getBlockCacheSize() {
 		return this.blockCacheSize;
 	}
@@ -670,6 +711,12 @@ public class Settings {
 
 	public int getMaxRetries() { return this.maxRetries; }
 
+	public int getSyncBlockWindowSize() { return this.syncBlockWindowSize; }
+
+	public int getMaxSyncDownloadPeers() { return this.maxSyncDownloadPeers; }
+
+	public int getSyncPreValidationThreadCount() { return this.syncPreValidationThreadCount; }
+
 	public String getMinPeerVersion() { return this.minPeerVersion; }
 
 	public boolean getAllowConnectionsWithOlderPeerVersions() { return this.allowConnectionsWithOlderPeerVersions; }
@@ -710,6 +757,10 @@ public class Settings {
 		return this.tradebotSystrayEnabled;
 	}
 
+	public String getForeignWalletIndexPath() {
+		return this.foreignWalletIndexPath;
+	}
+
 	public Long getSlowQueryThreshold() {
 		return this.slowQueryThreshold;
 	}
@@ -738,6 +789,10 @@ public class Settings {
 		return this.fastSyncEnabledWhenResolvingFork;
 	}
 
+	public boolean isParallelOnlineAccountsVerificationEnabled() {
+		return this.parallelOnlineAccountsVerificationEnabled;
+	}
+
 	public int getMaxBlocksPerRequest() { return this.maxBlocksPerRequest; }
 
 	public int getMaxBlocksPerResponse() { return this.maxBlocksPerResponse; }
@@ -900,6 +955,18 @@ public class Settings {
 		return this.directDataRetrievalEnabled;
 	}
 
+	public int getDataChunkRequestThreadCount() {
+		return this.dataChunkRequestThreadCount;
+	}
+
+	public int getMaxDataChunkRequestsPerPeer() {
+		return this.maxDataChunkRequestsPerPeer;
+	}
+
+	public double getMinRelativeDataChunkThroughput() {
+		return this.minRelativeDataChunkThroughput;
+	}
+
 	public boolean isOriginalCopyIndicatorFileEnabled() {
 		return this.originalCopyIndicatorFileEnabled;
 	}
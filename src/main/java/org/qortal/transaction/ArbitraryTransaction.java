@@ -165,6 +165,11 @@ public class ArbitraryTransaction extends Transaction {
 				arbitraryTransactionData.getFee());
 	}
 
+	@Override
+	public boolean hasPlainSignature() {
+		return false;
+	}
+
 	@Override
 	public boolean isSignatureValid() {
 		byte[] signature = this.transactionData.getSignature();
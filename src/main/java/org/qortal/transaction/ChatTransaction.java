@@ -180,6 +180,11 @@ public class ChatTransaction extends Transaction {
 		return ValidationResult.OK;
 	}
 
+	@Override
+	public boolean hasPlainSignature() {
+		return false;
+	}
+
 	@Override
 	public boolean isSignatureValid() {
 		byte[] signature = this.transactionData.getSignature();
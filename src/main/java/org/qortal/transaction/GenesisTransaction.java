@@ -82,6 +82,11 @@ public class GenesisTransaction extends Transaction {
 	 * 
 	 * @return boolean
 	 */
+	@Override
+	public boolean hasPlainSignature() {
+		return false;
+	}
+
 	@Override
 	public boolean isSignatureValid() {
 		return Arrays.equals(this.transactionData.getSignature(), this.calcSignature());
@@ -0,0 +1,417 @@
+package org.qortal.transaction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.transaction.Transaction.TransactionType;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.transaction.TransactionTransformer;
+import org.qortal.utils.ByteArray;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of unconfirmed transactions, mirroring the repository's <tt>UnconfirmedTransactions</tt> table.
+ * <p>
+ * Entries are indexed by signature, creator, type, timestamp and fee-per-byte, so mempool queries
+ * don't need to load and filter every unconfirmed transaction from the repository.
+ * Only summary information is held, not {@link TransactionData}, as transaction data objects are mutable.
+ * <p>
+ * Repository sessions collect changes to unconfirmed transactions and {@link #apply(List)} them only once committed,
+ * so the mempool never reflects uncommitted, or rolled-back, changes.
+ * <p>
+ * Mempool is loaded from the repository on first use, and reloaded after {@link #invalidate()},
+ * e.g. when repository is replaced.
+ */
+public class Mempool {
+
+	private static final Logger LOGGER = LogManager.getLogger(Mempool.class);
+
+	private static Mempool instance;
+
+	public static class Entry {
+		private final byte[] signature;
+		private final byte[] creatorPublicKey;
+		private final TransactionType type;
+		private final long timestamp;
+		private final long fee;
+		private final int dataLength;
+		/** Expiry timestamp, which some transaction types (e.g. PRESENCE) shorten */
+		private final long deadline;
+
+		/** Cached result of validity check, only applicable while chain tip is unchanged */
+		private volatile Validity validity;
+
+		private Entry(TransactionData transactionData) {
+			this.signature = transactionData.getSignature();
+			this.creatorPublicKey = transactionData.getCreatorPublicKey();
+			this.type = transactionData.getType();
+			this.timestamp = transactionData.getTimestamp();
+			this.fee = transactionData.getFee();
+
+			int dataLength;
+			try {
+				dataLength = TransactionTransformer.getDataLength(transactionData);
+			} catch (TransformationException e) {
+				dataLength = 0;
+			}
+			this.dataLength = dataLength;
+
+			long deadline;
+			try {
+				deadline = Transaction.fromData(null, transactionData).getDeadline();
+			} catch (IllegalStateException e) {
+				deadline = Transaction.getDeadline(transactionData);
+			}
+			this.deadline = deadline;
+		}
+
+		public byte[] getSignature() {
+			return this.signature;
+		}
+
+		public byte[] getCreatorPublicKey() {
+			return this.creatorPublicKey;
+		}
+
+		public TransactionType getType() {
+			return this.type;
+		}
+
+		public long getTimestamp() {
+			return this.timestamp;
+		}
+
+		public long getFee() {
+			return this.fee;
+		}
+
+		public long getDeadline() {
+			return this.deadline;
+		}
+
+		public int getDataLength() {
+			return this.dataLength;
+		}
+
+		/** Returns fee, in 1e-8 QORT, per byte of serialized transaction. */
+		public long getFeePerByte() {
+			return this.dataLength > 0 ? this.fee / this.dataLength : this.fee;
+		}
+
+		/** Returns cached validity, if checked at chain tip with <tt>tipSignature</tt>, or null otherwise. */
+		public Boolean getValidity(byte[] tipSignature) {
+			Validity validity = this.validity;
+			if (validity == null || !Arrays.equals(validity.tipSignature, tipSignature))
+				return null;
+
+			return validity.isValid;
+		}
+
+		public void setValidity(byte[] tipSignature, boolean isValid) {
+			this.validity = new Validity(tipSignature, isValid);
+		}
+	}
+
+	private static class Validity {
+		private final byte[] tipSignature;
+		private final boolean isValid;
+
+		private Validity(byte[] tipSignature, boolean isValid) {
+			this.tipSignature = tipSignature;
+			this.isValid = isValid;
+		}
+	}
+
+	/** Change to unconfirmed transactions, collected by repository session until commit. */
+	public static class Change {
+		private final byte[] signature;
+		/** Entry to add, or null if removing */
+		private final Entry entry;
+
+		private Change(byte[] signature, Entry entry) {
+			this.signature = signature;
+			this.entry = entry;
+		}
+
+		public static Change added(TransactionData transactionData) {
+			return new Change(transactionData.getSignature(), new Entry(transactionData));
+		}
+
+		public static Change removed(byte[] signature) {
+			return new Change(signature, null);
+		}
+
+		public byte[] getSignature() {
+			return this.signature;
+		}
+
+		public boolean isAddition() {
+			return this.entry != null;
+		}
+
+		/** Returns creator's public key if adding, or null if removing. */
+		public byte[] getCreatorPublicKey() {
+			return this.entry != null ? this.entry.creatorPublicKey : null;
+		}
+
+		/** Returns transaction type if adding, or null if removing. */
+		public TransactionType getType() {
+			return this.entry != null ? this.entry.type : null;
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		public boolean isLoaded;
+		public int size;
+		public long totalDataLength;
+		public Map<TransactionType, Integer> sizeByType = new EnumMap<>(TransactionType.class);
+		public long minFeePerByte;
+		public long maxFeePerByte;
+		/** Transactions added since startup, not counting those loaded from repository */
+		public long added;
+		/** Transactions removed, by confirmation or deletion, since startup */
+		public long removed;
+		public long reloads;
+
+		public StatsSnapshot() {
+		}
+	}
+
+	/** Same order as {@link Transaction#getDataComparator()}, for non-AT transactions */
+	private static final Comparator<Entry> TIMESTAMP_COMPARATOR = (e1, e2) -> {
+		int result = Long.compare(e1.timestamp, e2.timestamp);
+
+		if (result == 0)
+			result = new BigInteger(e1.signature).compareTo(new BigInteger(e2.signature));
+
+		return result;
+	};
+
+	/** Highest fee-per-byte first */
+	private static final Comparator<Entry> FEE_PER_BYTE_COMPARATOR = Comparator.comparingLong(Entry::getFeePerByte).reversed()
+			.thenComparing(TIMESTAMP_COMPARATOR);
+
+	private final Map<ByteArray, Entry> entriesBySignature = new ConcurrentHashMap<>();
+	private final NavigableSet<Entry> entriesByTimestamp = new ConcurrentSkipListSet<>(TIMESTAMP_COMPARATOR);
+	private final NavigableSet<Entry> entriesByFeePerByte = new ConcurrentSkipListSet<>(FEE_PER_BYTE_COMPARATOR);
+	private final Map<ByteArray, Set<Entry>> entriesByCreator = new ConcurrentHashMap<>();
+	private final Map<TransactionType, Set<Entry>> entriesByType = new ConcurrentHashMap<>();
+
+	/** Only modified while synchronized on this */
+	private volatile boolean isLoaded = false;
+
+	private final AtomicLong addedCount = new AtomicLong();
+	private final AtomicLong removedCount = new AtomicLong();
+	private final AtomicLong reloadCount = new AtomicLong();
+
+	private Mempool() {
+	}
+
+	public static synchronized Mempool getInstance() {
+		if (instance == null)
+			instance = new Mempool();
+
+		return instance;
+	}
+
+	// Synchronization with repository
+
+	/** Discards mempool contents, to be reloaded from repository on next use. */
+	public synchronized void invalidate() {
+		this.isLoaded = false;
+		this.clear();
+	}
+
+	/** Applies committed changes to unconfirmed transactions. */
+	public synchronized void apply(List<Change> changes) {
+		// If not loaded then changes will be picked up when we do load
+		if (!this.isLoaded)
+			return;
+
+		for (Change change : changes) {
+			if (change.isAddition()) {
+				if (this.add(change.entry))
+					this.addedCount.incrementAndGet();
+			} else {
+				if (this.remove(change.signature))
+					this.removedCount.incrementAndGet();
+			}
+		}
+	}
+
+	private void ensureLoaded() throws DataException {
+		if (this.isLoaded)
+			return;
+
+		synchronized (this) {
+			if (this.isLoaded)
+				return;
+
+			// Use separate repository session so we only see committed transactions.
+			// Any changes committed while we're loading are applied after we release lock.
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				this.clear();
+
+				for (TransactionData transactionData : repository.getTransactionRepository().getUnconfirmedTransactions())
+					this.add(new Entry(transactionData));
+			}
+
+			this.isLoaded = true;
+			this.reloadCount.incrementAndGet();
+
+			LOGGER.debug("Loaded {} unconfirmed transactions into mempool", this.entriesBySignature.size());
+		}
+	}
+
+	private boolean add(Entry entry) {
+		if (this.entriesBySignature.putIfAbsent(ByteArray.wrap(entry.signature), entry) != null)
+			return false;
+
+		this.entriesByTimestamp.add(entry);
+		this.entriesByFeePerByte.add(entry);
+		this.entriesByCreator.computeIfAbsent(ByteArray.wrap(entry.creatorPublicKey), k -> ConcurrentHashMap.newKeySet()).add(entry);
+		this.entriesByType.computeIfAbsent(entry.type, k -> ConcurrentHashMap.newKeySet()).add(entry);
+
+		return true;
+	}
+
+	private boolean remove(byte[] signature) {
+		Entry entry = this.entriesBySignature.remove(ByteArray.wrap(signature));
+		if (entry == null)
+			return false;
+
+		this.entriesByTimestamp.remove(entry);
+		this.entriesByFeePerByte.remove(entry);
+
+		this.entriesByCreator.computeIfPresent(ByteArray.wrap(entry.creatorPublicKey), (k, entries) -> {
+			entries.remove(entry);
+			return entries.isEmpty() ? null : entries;
+		});
+
+		this.entriesByType.computeIfPresent(entry.type, (k, entries) -> {
+			entries.remove(entry);
+			return entries.isEmpty() ? null : entries;
+		});
+
+		return true;
+	}
+
+	private void clear() {
+		this.entriesBySignature.clear();
+		this.entriesByTimestamp.clear();
+		this.entriesByFeePerByte.clear();
+		this.entriesByCreator.clear();
+		this.entriesByType.clear();
+	}
+
+	// Queries
+
+	public int getSize() throws DataException {
+		this.ensureLoaded();
+
+		return this.entriesBySignature.size();
+	}
+
+	public boolean contains(byte[] signature) throws DataException {
+		this.ensureLoaded();
+
+		return this.entriesBySignature.containsKey(ByteArray.wrap(signature));
+	}
+
+	/** Returns number of unconfirmed transactions by creator, excluding <tt>excludedTxTypes</tt>. */
+	public int countByCreator(byte[] creatorPublicKey, EnumSet<TransactionType> excludedTxTypes) throws DataException {
+		this.ensureLoaded();
+
+		Set<Entry> entries = this.entriesByCreator.get(ByteArray.wrap(creatorPublicKey));
+		if (entries == null)
+			return 0;
+
+		int count = 0;
+		for (Entry entry : entries)
+			if (!excludedTxTypes.contains(entry.type))
+				++count;
+
+		return count;
+	}
+
+	/** Returns unconfirmed transactions, oldest first, excluding <tt>excludedTxTypes</tt>. */
+	public List<Entry> getEntries(EnumSet<TransactionType> excludedTxTypes) throws DataException {
+		this.ensureLoaded();
+
+		List<Entry> entries = new ArrayList<>(this.entriesBySignature.size());
+
+		for (Entry entry : this.entriesByTimestamp)
+			if (!excludedTxTypes.contains(entry.type))
+				entries.add(entry);
+
+		return entries;
+	}
+
+	/** Returns unconfirmed transactions of type <tt>txType</tt>, oldest first. */
+	public List<Entry> getEntriesByType(TransactionType txType) throws DataException {
+		this.ensureLoaded();
+
+		Set<Entry> entries = this.entriesByType.get(txType);
+		if (entries == null)
+			return Collections.emptyList();
+
+		List<Entry> sortedEntries = new ArrayList<>(entries);
+		sortedEntries.sort(TIMESTAMP_COMPARATOR);
+		return sortedEntries;
+	}
+
+	/** Returns unconfirmed transactions, highest fee-per-byte first. */
+	public List<Entry> getEntriesByFeePerByte() throws DataException {
+		this.ensureLoaded();
+
+		return new ArrayList<>(this.entriesByFeePerByte);
+	}
+
+	/** Returns signatures of all unconfirmed transactions, newest first. */
+	public List<byte[]> getSignatures() throws DataException {
+		this.ensureLoaded();
+
+		List<byte[]> signatures = new ArrayList<>(this.entriesBySignature.size());
+
+		for (Entry entry : this.entriesByTimestamp.descendingSet())
+			signatures.add(entry.signature);
+
+		return signatures;
+	}
+
+	public StatsSnapshot getStatsSnapshot() {
+		StatsSnapshot snapshot = new StatsSnapshot();
+
+		snapshot.isLoaded = this.isLoaded;
+		snapshot.added = this.addedCount.get();
+		snapshot.removed = this.removedCount.get();
+		snapshot.reloads = this.reloadCount.get();
+
+		for (Entry entry : this.entriesBySignature.values()) {
+			snapshot.size++;
+			snapshot.totalDataLength += entry.dataLength;
+			snapshot.sizeByType.merge(entry.type, 1, Integer::sum);
+		}
+
+		try {
+			snapshot.maxFeePerByte = this.entriesByFeePerByte.first().getFeePerByte();
+			snapshot.minFeePerByte = this.entriesByFeePerByte.last().getFeePerByte();
+		} catch (NoSuchElementException e) {
+			// Empty mempool
+		}
+
+		return snapshot;
+	}
+
+}
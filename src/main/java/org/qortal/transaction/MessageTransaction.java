@@ -198,6 +198,11 @@ public class MessageTransaction extends Transaction {
 				this.messageTransactionData.getFee(), true);
 	}
 
+	@Override
+	public boolean hasPlainSignature() {
+		return false;
+	}
+
 	@Override
 	public boolean isSignatureValid() {
 		byte[] signature = this.transactionData.getSignature();
@@ -208,6 +208,11 @@ public class PresenceTransaction extends Transaction {
 		return ValidationResult.AT_UNKNOWN;
 	}
 
+	@Override
+	public boolean hasPlainSignature() {
+		return false;
+	}
+
 	@Override
 	public boolean isSignatureValid() {
 		return false;
@@ -9,7 +9,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -518,6 +517,16 @@ public abstract class Transaction {
 		}
 	}
 
+	/**
+	 * Returns whether {@link #isSignatureValid()} only verifies creator's signature,
+	 * without further checks (e.g. proof-of-work nonce) or repository access.
+	 * <p>
+	 * Subclasses that override {@link #isSignatureValid()} should override this too.
+	 */
+	public boolean hasPlainSignature() {
+		return true;
+	}
+
 	/**
 	 * Returns whether transaction can be added to unconfirmed transactions.
 	 * 
@@ -620,41 +629,62 @@ public abstract class Transaction {
 	}
 
 	private int countUnconfirmedByCreator(PublicKeyAccount creator) throws DataException {
-		List<TransactionData> unconfirmedTransactions = repository.getTransactionRepository().getUnconfirmedTransactions();
-
 		// We exclude CHAT transactions as they never get included into blocks and
 		// have spam/DoS prevention by requiring proof of work
-		Predicate<TransactionData> hasSameCreatorButNotChat = transactionData -> {
-			if (transactionData.getType() == TransactionType.CHAT)
-				return false;
-
-			return Arrays.equals(creator.getPublicKey(), transactionData.getCreatorPublicKey());
-		};
-
-		return (int) unconfirmedTransactions.stream().filter(hasSameCreatorButNotChat).count();
+		return repository.getTransactionRepository().countUnconfirmedTransactionsByCreator(creator.getPublicKey(), EnumSet.of(TransactionType.CHAT));
 	}
 
 	/**
 	 * Returns sorted, unconfirmed transactions, excluding invalid.
+	 * <p>
+	 * Uses {@link Mempool}, so only includes committed transactions.
+	 * Validity is cached in mempool while the chain tip is unchanged, so only new transactions,
+	 * or all transactions after a new block, need a full validity check.
 	 * 
 	 * @return sorted, unconfirmed transactions
 	 * @throws DataException
 	 */
 	public static List<TransactionData> getUnconfirmedTransactions(Repository repository) throws DataException {
 		BlockData latestBlockData = repository.getBlockRepository().getLastBlock();
+		final byte[] tipSignature = latestBlockData.getSignature();
 
 		EnumSet<TransactionType> excludedTxTypes = EnumSet.of(TransactionType.CHAT, TransactionType.PRESENCE);
-		List<TransactionData> unconfirmedTransactions = repository.getTransactionRepository().getUnconfirmedTransactions(excludedTxTypes);
+		// Already in same order as getDataComparator()
+		List<Mempool.Entry> mempoolEntries = Mempool.getInstance().getEntries(excludedTxTypes);
 
-		unconfirmedTransactions.sort(getDataComparator());
+		List<TransactionData> unconfirmedTransactions = new ArrayList<>(mempoolEntries.size());
+
+		for (Mempool.Entry mempoolEntry : mempoolEntries) {
+			Boolean isStillValid = mempoolEntry.getValidity(tipSignature);
+
+			if (Boolean.FALSE.equals(isStillValid))
+				continue;
+
+			TransactionData transactionData = repository.getTransactionRepository().fromSignature(mempoolEntry.getSignature());
+			// Deleted, or confirmed, since we took mempool snapshot?
+			if (transactionData == null || transactionData.getBlockHeight() != null)
+				continue;
 
-		Iterator<TransactionData> unconfirmedTransactionsIterator = unconfirmedTransactions.iterator();
-		while (unconfirmedTransactionsIterator.hasNext()) {
-			TransactionData transactionData = unconfirmedTransactionsIterator.next();
 			Transaction transaction = Transaction.fromData(repository, transactionData);
 
-			if (transaction.isStillValidUnconfirmed(latestBlockData.getTimestamp()) != ValidationResult.OK)
-				unconfirmedTransactionsIterator.remove();
+			if (Boolean.TRUE.equals(isStillValid)) {
+				// Only time-dependent checks need repeating
+				final Long now = NTP.getTime();
+				if (now == null || now >= transaction.getDeadline())
+					continue;
+
+				unconfirmedTransactions.add(transactionData);
+				continue;
+			}
+
+			ValidationResult validationResult = transaction.isStillValidUnconfirmed(latestBlockData.getTimestamp());
+
+			// Don't cache results that depend on clock being synced
+			if (validationResult != ValidationResult.CLOCK_NOT_SYNCED)
+				mempoolEntry.setValidity(tipSignature, validationResult == ValidationResult.OK);
+
+			if (validationResult == ValidationResult.OK)
+				unconfirmedTransactions.add(transactionData);
 		}
 
 		return unconfirmedTransactions;
@@ -820,16 +850,7 @@ public abstract class Transaction {
 		blockchainLock.lock();
 
 		try {
-			// Check transaction doesn't already exist
-			if (repository.getTransactionRepository().exists(transactionData.getSignature()))
-				return ValidationResult.TRANSACTION_ALREADY_EXISTS;
-
-			// Fix up approval status
-			this.setInitialApprovalStatus();
-
-			this.preProcess();
-
-			ValidationResult validationResult = this.isValidUnconfirmed();
+			ValidationResult validationResult = this.isValidImport();
 			if (validationResult != ValidationResult.OK)
 				return validationResult;
 
@@ -843,10 +864,7 @@ public abstract class Transaction {
 			 */
 			repository.discardChanges();
 
-			repository.getTransactionRepository().save(transactionData);
-			repository.getTransactionRepository().unconfirmTransaction(transactionData);
-
-			this.onImportAsUnconfirmed();
+			this.saveAsUnconfirmed();
 
 			repository.saveChanges();
 
@@ -876,6 +894,98 @@ public abstract class Transaction {
 		}
 	}
 
+	/**
+	 * Import into our repository as a new, unconfirmed transaction, as one of a batch.
+	 * <p>
+	 * Like {@link #importAsUnconfirmed()} but caller must already hold blockchain lock.
+	 * Transaction is only saved tentatively, without calling {@link #onImportAsUnconfirmed()},
+	 * so later transactions in the batch can be validated against it.
+	 * <p>
+	 * Caller is then responsible for discarding the batch's changes, to release repository locks taken during validation,
+	 * saving each transaction that returned OK using {@link #saveAsUnconfirmedInBatch()}, committing the batch
+	 * using {@link Repository#saveChanges()} and then calling {@link Controller#onNewTransaction(TransactionData)}
+	 * for each saved transaction.
+	 * <p>
+	 * Each transaction is imported under its own repository savepoint, so an invalid transaction,
+	 * or one that throws DataException, is rolled back without affecting the rest of the batch.
+	 * Later transactions in the batch are validated against earlier ones.
+	 *
+	 * @throws DataException
+	 */
+	public ValidationResult importAsUnconfirmedInBatch() throws DataException {
+		repository.setSavepoint();
+		boolean keepChanges = false;
+
+		try {
+			ValidationResult validationResult = this.isValidImport();
+			if (validationResult != ValidationResult.OK)
+				return validationResult;
+
+			// Hook is only called once transaction is saved for real, as it might have side-effects outside repository
+			this.saveUnconfirmedData();
+			keepChanges = true;
+
+			return ValidationResult.OK;
+		} finally {
+			if (keepChanges)
+				repository.releaseSavepoint();
+			else
+				repository.rollbackToSavepoint();
+		}
+	}
+
+	/**
+	 * Saves transaction, already validated by {@link #importAsUnconfirmedInBatch()}, as unconfirmed, as one of a batch,
+	 * calling {@link #onImportAsUnconfirmed()}.
+	 * <p>
+	 * For use after caller has discarded batch's validation-phase changes, to release repository locks,
+	 * so caller must still hold blockchain lock. As with {@link #importAsUnconfirmedInBatch()}, caller is responsible for committing.
+	 * <p>
+	 * Saved under its own repository savepoint, so a DataException doesn't affect the rest of the batch.
+	 *
+	 * @throws DataException
+	 */
+	public void saveAsUnconfirmedInBatch() throws DataException {
+		repository.setSavepoint();
+		boolean keepChanges = false;
+
+		try {
+			this.saveAsUnconfirmed();
+			keepChanges = true;
+		} finally {
+			if (keepChanges)
+				repository.releaseSavepoint();
+			else
+				repository.rollbackToSavepoint();
+		}
+	}
+
+	/** Returns whether transaction is new and valid to import as unconfirmed. */
+	private ValidationResult isValidImport() throws DataException {
+		// Check transaction doesn't already exist
+		if (repository.getTransactionRepository().exists(transactionData.getSignature()))
+			return ValidationResult.TRANSACTION_ALREADY_EXISTS;
+
+		// Fix up approval status
+		this.setInitialApprovalStatus();
+
+		this.preProcess();
+
+		return this.isValidUnconfirmed();
+	}
+
+	private void saveAsUnconfirmed() throws DataException {
+		this.saveUnconfirmedData();
+
+		this.onImportAsUnconfirmed();
+	}
+
+	/** Saves transaction as unconfirmed, without calling {@link #onImportAsUnconfirmed()}. */
+	private void saveUnconfirmedData() throws DataException {
+		repository.getTransactionRepository().save(transactionData);
+		repository.getTransactionRepository().unconfirmTransaction(transactionData);
+	}
+
 	/**
 	 * Callback for when a transaction is imported as unconfirmed.
 	 * <p>
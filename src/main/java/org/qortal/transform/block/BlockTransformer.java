@@ -373,6 +373,11 @@ public class BlockTransformer extends Transformer {
 	}
 
 	public static byte[] getBytesForTransactionsSignature(Block block) throws TransformationException {
+		return getBytesForTransactionsSignature(block, true);
+	}
+
+	/** As above, but <tt>verifyTransactionSignatures</tt> can be false if caller has already verified each transaction's signature. */
+	public static byte[] getBytesForTransactionsSignature(Block block, boolean verifyTransactionSignatures) throws TransformationException {
 		try {
 			List<Transaction> transactions = block.getTransactions();
 
@@ -385,7 +390,7 @@ public class BlockTransformer extends Transformer {
 				if (transaction.getTransactionData().getType() == TransactionType.AT)
 					continue;
 
-				if (!transaction.isSignatureValid())
+				if (verifyTransactionSignatures && !transaction.isSignatureValid())
 					throw new TransformationException("Transaction signature invalid when building block's transactions signature");
 
 				bytes.write(transaction.getTransactionData().getSignature());
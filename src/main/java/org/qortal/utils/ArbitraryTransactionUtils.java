@@ -6,6 +6,7 @@ import org.apache.logging.log4j.Logger;
 import org.qortal.arbitrary.ArbitraryDataFile;
 import org.qortal.arbitrary.ArbitraryDataFileChunk;
 import org.qortal.arbitrary.misc.Service;
+import org.qortal.controller.arbitrary.ArbitraryDataStorageManager;
 import org.qortal.data.transaction.ArbitraryTransactionData;
 import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.DataException;
@@ -326,7 +327,9 @@ public class ArbitraryTransactionUtils {
                         // Ensure parent directories exist, then copy the file
                         LOGGER.info("Relocating chunk from {} to {}...", oldPath, newPath);
                         Files.createDirectories(newPath.getParent());
+                        long size = Files.size(oldPath);
                         Files.move(oldPath, newPath, REPLACE_EXISTING);
+                        ArbitraryDataStorageManager.getInstance().getStorageLedger().onFileMoved(oldPath, newPath, size);
                         filesRelocatedCount++;
 
                         // Delete empty parent directories
@@ -344,7 +347,9 @@ public class ArbitraryTransactionUtils {
                 // Ensure parent directories exist, then copy the file
                 LOGGER.info("Relocating complete file from {} to {}...", oldPath, newPath);
                 Files.createDirectories(newPath.getParent());
+                long size = Files.size(oldPath);
                 Files.move(oldPath, newPath, REPLACE_EXISTING);
+                ArbitraryDataStorageManager.getInstance().getStorageLedger().onFileMoved(oldPath, newPath, size);
                 filesRelocatedCount++;
 
                 // Delete empty parent directories
@@ -361,7 +366,9 @@ public class ArbitraryTransactionUtils {
                 // Ensure parent directories exist, then copy the file
                 LOGGER.info("Relocating metadata file from {} to {}...", oldPath, newPath);
                 Files.createDirectories(newPath.getParent());
+                long size = Files.size(oldPath);
                 Files.move(oldPath, newPath, REPLACE_EXISTING);
+                ArbitraryDataStorageManager.getInstance().getStorageLedger().onFileMoved(oldPath, newPath, size);
                 filesRelocatedCount++;
 
                 // Delete empty parent directories
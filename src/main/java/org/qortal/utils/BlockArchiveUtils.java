@@ -6,7 +6,9 @@ import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.BlockArchiveReader;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
+import org.qortal.transform.TransformationException;
 
+import java.util.Iterator;
 import java.util.List;
 
 public class BlockArchiveUtils {
@@ -31,33 +33,30 @@ public class BlockArchiveUtils {
      */
     public static void importFromArchive(int startHeight, int endHeight, Repository repository) throws DataException {
         repository.discardChanges();
-        final int requestedRange = endHeight+1-startHeight;
 
-        List<Triple<BlockData, List<TransactionData>, List<ATStateData>>> blockInfoList =
-                BlockArchiveReader.getInstance().fetchBlocksFromRange(startHeight, endHeight);
+        // Stream blocks from the archive, so memory use doesn't depend on the size of the range.
+        // Nothing is committed until all requested blocks have been imported.
+        Iterator<BlockArchiveReader.ArchivedBlock> archivedBlocks =
+                BlockArchiveReader.getInstance().iterateBlocksInRange(startHeight, endHeight);
 
         // Ensure that we have received all of the requested blocks
-        if (blockInfoList == null || blockInfoList.isEmpty()) {
+        if (!archivedBlocks.hasNext()) {
             throw new IllegalStateException("No blocks found when importing from archive");
         }
-        if (blockInfoList.size() != requestedRange) {
-            throw new IllegalStateException("Non matching block count when importing from archive");
-        }
-        Triple<BlockData, List<TransactionData>, List<ATStateData>> firstBlock = blockInfoList.get(0);
-        if (firstBlock == null || firstBlock.getA().getHeight() != startHeight) {
-            throw new IllegalStateException("Non matching first block when importing from archive");
-        }
-        if (blockInfoList.size() > 0) {
-            Triple<BlockData, List<TransactionData>, List<ATStateData>> lastBlock =
-                    blockInfoList.get(blockInfoList.size() - 1);
-            if (lastBlock == null || lastBlock.getA().getHeight() != endHeight) {
-                throw new IllegalStateException("Non matching last block when importing from archive");
+
+        int expectedHeight = startHeight;
+        while (archivedBlocks.hasNext()) {
+            BlockArchiveReader.ArchivedBlock archivedBlock = archivedBlocks.next();
+            if (archivedBlock.getHeight() != expectedHeight) {
+                repository.discardChanges();
+                throw new IllegalStateException(expectedHeight == startHeight
+                        ? "Non matching first block when importing from archive"
+                        : "Non matching block count when importing from archive");
             }
-        }
 
-        // Everything seems okay, so go ahead with the import
-        for (Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo : blockInfoList) {
             try {
+                Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = archivedBlock.getBlockInfo();
+
                 // Save block
                 repository.getBlockRepository().save(blockInfo.getA());
 
@@ -67,11 +66,19 @@ public class BlockArchiveUtils {
                     repository.getATRepository().save(atStateData);
                 }
 
-            } catch (DataException e) {
+            } catch (DataException | TransformationException e) {
                 repository.discardChanges();
                 throw new IllegalStateException("Unable to import blocks from archive");
             }
+
+            ++expectedHeight;
         }
+
+        if (expectedHeight - 1 != endHeight) {
+            repository.discardChanges();
+            throw new IllegalStateException("Non matching last block when importing from archive");
+        }
+
         repository.saveChanges();
     }
 
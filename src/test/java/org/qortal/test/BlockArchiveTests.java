@@ -5,6 +5,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
 import org.qortal.controller.BlockMinter;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.block.BlockData;
@@ -20,16 +21,19 @@ import org.qortal.test.common.Common;
 import org.qortal.transaction.DeployAtTransaction;
 import org.qortal.transaction.Transaction;
 import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformer;
 import org.qortal.utils.BlockArchiveUtils;
 import org.qortal.utils.NTP;
 import org.qortal.utils.Triple;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -153,6 +157,112 @@ public class BlockArchiveTests extends Common {
 		}
 	}
 
+	@Test
+	public void testSerializedBlockBuffer() throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+
+			// Mint some blocks so that we are able to archive them later
+			for (int i = 0; i < 100; i++) {
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+			}
+
+			// 90 blocks are trimmed (this specifies the first untrimmed height)
+			repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(91);
+			repository.getATRepository().setAtTrimHeight(91);
+
+			// Write blocks 2-90 to the archive
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, BlockArchiveWriter.getMaxArchiveHeight(repository), repository);
+			writer.setShouldEnforceFileSizeTarget(false); // To avoid the need to pre-calculate file sizes
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+
+			BlockArchiveReader reader = BlockArchiveReader.getInstance();
+
+			for (int height = 2; height <= 90; height++) {
+				// Mapped slice should match serialized block from the repository, and the copying variant
+				BlockData blockData = repository.getBlockRepository().fromHeight(height);
+				byte[] expectedBytes = BlockTransformer.toBytes(new Block(repository, blockData));
+
+				ByteBuffer blockBuffer = reader.fetchSerializedBlockBufferForHeight(height);
+				assertNotNull(blockBuffer);
+				assertTrue(blockBuffer.isReadOnly());
+
+				byte[] bufferBytes = new byte[blockBuffer.remaining()];
+				blockBuffer.get(bufferBytes);
+				assertArrayEquals(expectedBytes, bufferBytes);
+
+				assertArrayEquals(expectedBytes, reader.fetchSerializedBlockBytesForHeight(height));
+			}
+
+			// Heights outside the archive
+			assertNull(reader.fetchSerializedBlockBufferForHeight(1));
+			assertNull(reader.fetchSerializedBlockBufferForHeight(91));
+		}
+	}
+
+	@Test
+	public void testIterateBlocksInRange() throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+
+			// Mint some blocks so that we are able to archive them later
+			for (int i = 0; i < 100; i++) {
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+			}
+
+			// 90 blocks are trimmed (this specifies the first untrimmed height)
+			repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(91);
+			repository.getATRepository().setAtTrimHeight(91);
+
+			// Write blocks 2-50 and 51-90 into separate archive files
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, 50, repository);
+			writer.setShouldEnforceFileSizeTarget(false); // To avoid the need to pre-calculate file sizes
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+
+			writer = new BlockArchiveWriter(51, 90, repository);
+			writer.setShouldEnforceFileSizeTarget(false);
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+
+			BlockArchiveReader reader = BlockArchiveReader.getInstance();
+
+			// Iterate across the file boundary
+			Iterator<BlockArchiveReader.ArchivedBlock> archivedBlocks = reader.iterateBlocksInRange(40, 60);
+			int expectedHeight = 40;
+			while (archivedBlocks.hasNext()) {
+				BlockArchiveReader.ArchivedBlock archivedBlock = archivedBlocks.next();
+				assertEquals(expectedHeight, archivedBlock.getHeight());
+
+				// Raw bytes, without deserializing
+				assertArrayEquals(reader.fetchSerializedBlockBytesForHeight(expectedHeight), toBytes(archivedBlock.getSerializedBlock()));
+
+				// Lazily deserialized block
+				BlockData archivedBlockData = archivedBlock.getBlockInfo().getA();
+				BlockData repositoryBlockData = repository.getBlockRepository().fromHeight(expectedHeight);
+				assertEquals(expectedHeight, archivedBlockData.getHeight().intValue());
+				assertArrayEquals(repositoryBlockData.getSignature(), archivedBlockData.getSignature());
+
+				++expectedHeight;
+			}
+			assertEquals(61, expectedHeight);
+
+			// Iteration stops at end of archive
+			archivedBlocks = reader.iterateBlocksInRange(85, 100);
+			int count = 0;
+			while (archivedBlocks.hasNext()) {
+				archivedBlocks.next();
+				++count;
+			}
+			assertEquals(90 - 85 + 1, count);
+
+			// Range list form should match
+			assertEquals(90 - 2 + 1, reader.fetchBlocksFromRange(2, 90).size());
+		}
+	}
+
+	private static byte[] toBytes(ByteBuffer byteBuffer) {
+		byte[] bytes = new byte[byteBuffer.remaining()];
+		byteBuffer.get(bytes);
+		return bytes;
+	}
+
 	@Test
 	public void testArchivedAtStates() throws DataException, InterruptedException, TransformationException, IOException {
 		try (final Repository repository = RepositoryManager.getRepository()) {
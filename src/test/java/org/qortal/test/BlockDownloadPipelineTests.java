@@ -0,0 +1,250 @@
+package org.qortal.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.block.Block;
+import org.qortal.controller.BlockDownloadPipeline;
+import org.qortal.data.block.BlockSummaryData;
+import org.qortal.data.block.CommonBlockData;
+import org.qortal.data.network.PeerChainTipData;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.network.message.BlockMessage;
+import org.qortal.network.message.GetBlockMessage;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.MessageException;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.Transformer;
+import org.qortal.transform.block.BlockTransformer;
+import org.qortal.utils.ByteArray;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BlockDownloadPipelineTests extends Common {
+
+	private static final int BLOCK_COUNT = 6;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testBlocksReturnedInOrder() throws DataException, TransformationException, MessageException, InterruptedException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<Block> blocks = mintBlocks(repository);
+			Map<ByteArray, Message> blockMessages = toBlockMessages(blocks);
+
+			// Slower peer's responses arrive after later blocks from faster peer
+			TestPeer fastPeer = new TestPeer("node1.example.com:12392", blockMessages, 0L);
+			TestPeer slowPeer = new TestPeer("node2.example.com:12392", blockMessages, 200L);
+
+			BlockDownloadPipeline pipeline = new BlockDownloadPipeline(repository, List.of(fastPeer, slowPeer), 4);
+			assertEquals(4, pipeline.getWindowSize());
+
+			for (Block block : blocks)
+				pipeline.enqueue(block.getBlockData().getHeight(), block.getSignature());
+
+			// Window is spread over both peers
+			assertEquals(2, fastPeer.requestCount);
+			assertEquals(2, slowPeer.requestCount);
+
+			for (Block block : blocks) {
+				assertArrayEquals(block.getSignature(), pipeline.peekNextSignature());
+
+				Block receivedBlock = pipeline.takeNext();
+				assertNotNull(receivedBlock);
+				assertArrayEquals(block.getSignature(), receivedBlock.getSignature());
+			}
+
+			assertTrue(pipeline.isEmpty());
+			assertNull(pipeline.takeNext());
+
+			BlockDownloadPipeline.StatsSnapshot stats = pipeline.getStatsSnapshot();
+			assertEquals(BLOCK_COUNT, stats.peers.stream().mapToInt(peerStats -> peerStats.blocksReceived).sum());
+			assertTrue(stats.peers.stream().allMatch(peerStats -> peerStats.blocksReceived > 0 && peerStats.failures == 0));
+		}
+	}
+
+	@Test
+	public void testFailover() throws DataException, TransformationException, MessageException, InterruptedException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<Block> blocks = mintBlocks(repository);
+			Map<ByteArray, Message> blockMessages = toBlockMessages(blocks);
+
+			// Peer on another fork replies with wrong block
+			Message wrongBlockMessage = blockMessages.get(ByteArray.wrap(blocks.get(0).getSignature()));
+			Map<ByteArray, Message> wrongBlockMessages = new HashMap<>();
+			for (Block block : blocks)
+				wrongBlockMessages.put(ByteArray.wrap(block.getSignature()), wrongBlockMessage);
+
+			TestPeer forkedPeer = new TestPeer("node1.example.com:12392", wrongBlockMessages, 0L);
+			TestPeer goodPeer = new TestPeer("node2.example.com:12392", blockMessages, 0L);
+
+			BlockDownloadPipeline pipeline = new BlockDownloadPipeline(repository, List.of(forkedPeer, goodPeer), 4);
+
+			// Skip first block, so forked peer's reply is never right
+			List<Block> wantedBlocks = blocks.subList(1, blocks.size());
+			for (Block block : wantedBlocks)
+				pipeline.enqueue(block.getBlockData().getHeight(), block.getSignature());
+
+			for (Block block : wantedBlocks) {
+				Block receivedBlock = pipeline.takeNext();
+				assertNotNull(receivedBlock);
+				assertArrayEquals(block.getSignature(), receivedBlock.getSignature());
+			}
+
+			// Forked peer was abandoned, so good peer supplied everything
+			BlockDownloadPipeline.StatsSnapshot stats = pipeline.getStatsSnapshot();
+			assertTrue(stats.peers.get(0).failures > 0);
+			assertEquals(0, stats.peers.get(0).blocksReceived);
+			assertEquals(wantedBlocks.size(), stats.peers.get(1).blocksReceived);
+		}
+	}
+
+	@Test
+	public void testNoUsablePeers() throws DataException, TransformationException, MessageException, InterruptedException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<Block> blocks = mintBlocks(repository);
+			Message wrongBlockMessage = toBlockMessages(blocks).get(ByteArray.wrap(blocks.get(0).getSignature()));
+
+			Map<ByteArray, Message> wrongBlockMessages = new HashMap<>();
+			for (Block block : blocks)
+				wrongBlockMessages.put(ByteArray.wrap(block.getSignature()), wrongBlockMessage);
+
+			TestPeer forkedPeer = new TestPeer("node1.example.com:12392", wrongBlockMessages, 0L);
+			BlockDownloadPipeline pipeline = new BlockDownloadPipeline(repository, List.of(forkedPeer), 4);
+
+			Block block = blocks.get(1);
+			pipeline.enqueue(block.getBlockData().getHeight(), block.getSignature());
+
+			// No other peer to try, so pipeline gives up and empties
+			assertNull(pipeline.takeNext());
+			assertTrue(pipeline.isEmpty());
+		}
+	}
+
+	@Test
+	public void testIsOnTargetChain() {
+		byte[] commonBlockSignature = signature(0);
+		List<BlockSummaryData> targetSummaries = List.of(summary(1, 1), summary(2, 2), summary(3, 3));
+
+		TestPeer syncPeer = new TestPeer("node1.example.com:12392", Map.of(), 0L);
+		syncPeer.setChainTipData(chainTip(3, 3));
+
+		// Same chain tip
+		TestPeer otherPeer = new TestPeer("node2.example.com:12392", Map.of(), 0L);
+		otherPeer.setChainTipData(chainTip(3, 3));
+		assertTrue(BlockDownloadPipeline.isOnTargetChain(otherPeer, syncPeer, commonBlockSignature, targetSummaries));
+
+		// Different chain tip and merely same common block isn't enough
+		otherPeer.setChainTipData(chainTip(4, 4));
+		otherPeer.setCommonBlockData(new CommonBlockData(summary(0, 0), otherPeer.getChainTipData()));
+		assertFalse(BlockDownloadPipeline.isOnTargetChain(otherPeer, syncPeer, commonBlockSignature, targetSummaries));
+
+		// Same common block, and summaries that extend target chain
+		otherPeer.getCommonBlockData().setBlockSummariesAfterCommonBlock(List.of(summary(1, 1), summary(2, 2), summary(3, 3), summary(4, 4)));
+		assertTrue(BlockDownloadPipeline.isOnTargetChain(otherPeer, syncPeer, commonBlockSignature, targetSummaries));
+
+		// Fewer, but matching, summaries
+		otherPeer.getCommonBlockData().setBlockSummariesAfterCommonBlock(List.of(summary(1, 1), summary(2, 2)));
+		assertTrue(BlockDownloadPipeline.isOnTargetChain(otherPeer, syncPeer, commonBlockSignature, targetSummaries));
+
+		// Same common block, but different fork
+		otherPeer.getCommonBlockData().setBlockSummariesAfterCommonBlock(List.of(summary(1, 1), summary(2, 102), summary(3, 103)));
+		assertFalse(BlockDownloadPipeline.isOnTargetChain(otherPeer, syncPeer, commonBlockSignature, targetSummaries));
+
+		// Different common block
+		otherPeer.setCommonBlockData(new CommonBlockData(summary(1, 1), otherPeer.getChainTipData()));
+		otherPeer.getCommonBlockData().setBlockSummariesAfterCommonBlock(List.of(summary(2, 2), summary(3, 3)));
+		assertFalse(BlockDownloadPipeline.isOnTargetChain(otherPeer, syncPeer, commonBlockSignature, targetSummaries));
+	}
+
+	private static List<Block> mintBlocks(Repository repository) throws DataException {
+		List<Block> blocks = new ArrayList<>();
+		for (int i = 0; i < BLOCK_COUNT; ++i)
+			blocks.add(BlockUtils.mintBlock(repository));
+
+		return blocks;
+	}
+
+	private static Map<ByteArray, Message> toBlockMessages(List<Block> blocks) throws TransformationException, MessageException {
+		Map<ByteArray, Message> blockMessages = new HashMap<>();
+
+		for (Block block : blocks) {
+			byte[] blockBytes = BlockTransformer.toBytes(block);
+
+			ByteBuffer byteBuffer = ByteBuffer.allocate(Transformer.INT_LENGTH + blockBytes.length);
+			byteBuffer.putInt(block.getBlockData().getHeight());
+			byteBuffer.put(blockBytes);
+			byteBuffer.flip();
+
+			blockMessages.put(ByteArray.wrap(block.getSignature()), BlockMessage.fromByteBuffer(0, byteBuffer));
+		}
+
+		return blockMessages;
+	}
+
+	private static byte[] signature(int seed) {
+		byte[] signature = new byte[BlockTransformer.BLOCK_SIGNATURE_LENGTH];
+		signature[0] = (byte) seed;
+		return signature;
+	}
+
+	private static BlockSummaryData summary(int height, int seed) {
+		return new BlockSummaryData(height, signature(seed), new byte[32], 0);
+	}
+
+	private static PeerChainTipData chainTip(int height, int seed) {
+		return new PeerChainTipData(height, signature(seed), 0L, new byte[32]);
+	}
+
+	/** Peer that replies to GET_BLOCK requests from a fixed set of responses, optionally after a delay */
+	private static class TestPeer extends Peer {
+		private final Map<ByteArray, Message> blockMessages;
+		private final long responseDelay;
+		private int requestCount = 0;
+
+		TestPeer(String address, Map<ByteArray, Message> blockMessages, long responseDelay) {
+			super(new PeerData(PeerAddress.fromString(address)));
+
+			this.blockMessages = blockMessages;
+			this.responseDelay = responseDelay;
+		}
+
+		@Override
+		public BlockingQueue<Message> sendRequest(Message message) {
+			this.requestCount++;
+
+			BlockingQueue<Message> replyQueue = new ArrayBlockingQueue<>(1);
+
+			Message reply = this.blockMessages.get(ByteArray.wrap(((GetBlockMessage) message).getSignature()));
+			if (reply != null)
+				CompletableFuture.runAsync(() -> replyQueue.offer(reply), CompletableFuture.delayedExecutor(this.responseDelay, TimeUnit.MILLISECONDS));
+
+			return replyQueue;
+		}
+
+		@Override
+		public void cancelRequest(Message message) {
+			// Nothing to clean up
+		}
+	}
+
+}
@@ -83,6 +83,37 @@ public class BlockTests extends Common {
 		}
 	}
 
+	@Test
+	public void testPreValidateTransactionSignatures() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+
+			TransactionData paymentData = TransactionUtils.randomTransaction(repository, alice, TransactionType.PAYMENT, true);
+			TransactionUtils.signAndMint(repository, paymentData, alice);
+
+			BlockData blockData = repository.getBlockRepository().getLastBlock();
+
+			// Pre-validation needs transactions already loaded, as with blocks received from peers
+			Block block = new Block(repository, blockData);
+			block.getTransactions();
+			assertTrue(block.preValidate(repository));
+			assertTrue(block.isSignatureValid());
+
+			// Tamper with a transaction so its own signature no longer verifies
+			Block tamperedBlock = new Block(repository, blockData);
+			TransactionData tamperedData = tamperedBlock.getTransactions().stream()
+					.map(Transaction::getTransactionData)
+					.filter(transactionData -> transactionData.getType() == TransactionType.PAYMENT)
+					.findFirst()
+					.orElseThrow();
+			tamperedData.setFee(tamperedData.getFee() + 1);
+
+			assertFalse(tamperedBlock.preValidate(repository));
+			// Failed checks aren't skipped later
+			assertFalse(tamperedBlock.isSignatureValid());
+		}
+	}
+
 	@Test
 	@Ignore(value = "Doesn't work, to be fixed later")
 	public void testBlockSerialization() throws DataException, TransformationException {
@@ -0,0 +1,168 @@
+package org.qortal.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.qortal.event.AsyncListener;
+import org.qortal.event.AsyncListener.OverflowPolicy;
+import org.qortal.event.Event;
+
+public class EventBusTests {
+
+	static class NumberedEvent implements Event {
+		final int number;
+
+		NumberedEvent(int number) {
+			this.number = number;
+		}
+	}
+
+	static class StatusEvent extends NumberedEvent {
+		StatusEvent(int number) {
+			super(number);
+		}
+	}
+
+	/** Records events, but only once released, so events can back up in queue. */
+	static class BlockingRecorder {
+		final CountDownLatch released = new CountDownLatch(1);
+		final CountDownLatch firstEventReceived = new CountDownLatch(1);
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+		void listen(Event event) {
+			firstEventReceived.countDown();
+
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			received.add(((NumberedEvent) event).number);
+		}
+	}
+
+	private static void awaitProcessed(AsyncListener listener, long expectedCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+
+		while (listener.getStatsSnapshot().eventsProcessed < expectedCount) {
+			if (System.currentTimeMillis() > deadline)
+				fail("Timed out waiting for events to be processed");
+
+			Thread.sleep(10L);
+		}
+	}
+
+	@Test
+	public void testOrderPreserved() throws InterruptedException {
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		AsyncListener listener = new AsyncListener("test", event -> received.add(((NumberedEvent) event).number), 1000, OverflowPolicy.DROP_OLDEST);
+
+		for (int i = 0; i < 500; ++i)
+			listener.listen(new NumberedEvent(i));
+
+		awaitProcessed(listener, 500);
+
+		for (int i = 0; i < 500; ++i)
+			assertEquals(i, received.get(i).intValue());
+
+		listener.shutdown();
+	}
+
+	@Test
+	public void testSlowListenerDoesNotBlockCaller() throws InterruptedException {
+		BlockingRecorder recorder = new BlockingRecorder();
+		AsyncListener listener = new AsyncListener("test", recorder::listen, 10, OverflowPolicy.DROP_OLDEST);
+
+		long before = System.currentTimeMillis();
+		for (int i = 0; i < 5; ++i)
+			listener.listen(new NumberedEvent(i));
+
+		assertTrue(recorder.firstEventReceived.await(5, TimeUnit.SECONDS));
+		assertTrue("notify should return without waiting for listener", System.currentTimeMillis() - before < 1000L);
+		assertTrue(recorder.received.isEmpty());
+
+		recorder.released.countDown();
+		awaitProcessed(listener, 5);
+
+		assertEquals(List.of(0, 1, 2, 3, 4), recorder.received);
+		listener.shutdown();
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		BlockingRecorder recorder = new BlockingRecorder();
+		AsyncListener listener = new AsyncListener("test", recorder::listen, 3, OverflowPolicy.DROP_OLDEST);
+
+		// First event is taken off queue by blocked listener
+		listener.listen(new NumberedEvent(0));
+		assertTrue(recorder.firstEventReceived.await(5, TimeUnit.SECONDS));
+
+		for (int i = 1; i <= 5; ++i)
+			listener.listen(new NumberedEvent(i));
+
+		AsyncListener.StatsSnapshot stats = listener.getStatsSnapshot();
+		assertEquals(3, stats.queueDepth);
+		assertEquals(2, stats.eventsDropped);
+
+		recorder.released.countDown();
+		awaitProcessed(listener, 4);
+
+		assertEquals(List.of(0, 3, 4, 5), recorder.received);
+		listener.shutdown();
+	}
+
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		BlockingRecorder recorder = new BlockingRecorder();
+		AsyncListener listener = new AsyncListener("test", recorder::listen, 3, OverflowPolicy.COALESCE);
+
+		listener.listen(new NumberedEvent(0));
+		assertTrue(recorder.firstEventReceived.await(5, TimeUnit.SECONDS));
+
+		listener.listen(new StatusEvent(1));
+		listener.listen(new NumberedEvent(2));
+		listener.listen(new StatusEvent(3));
+		// Queue full, so newer status supersedes queued statuses
+		listener.listen(new StatusEvent(4));
+
+		AsyncListener.StatsSnapshot stats = listener.getStatsSnapshot();
+		assertEquals(2, stats.queueDepth);
+		assertEquals(2, stats.eventsCoalesced);
+		assertEquals(0, stats.eventsDropped);
+
+		recorder.released.countDown();
+		awaitProcessed(listener, 3);
+
+		assertEquals(List.of(0, 2, 4), recorder.received);
+		listener.shutdown();
+	}
+
+	@Test
+	public void testListenerExceptionDoesNotStopDispatch() throws InterruptedException {
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		AsyncListener listener = new AsyncListener("test", event -> {
+			int number = ((NumberedEvent) event).number;
+			if (number == 1)
+				throw new IllegalStateException("test");
+
+			received.add(number);
+		}, 10, OverflowPolicy.DROP_OLDEST);
+
+		for (int i = 0; i < 3; ++i)
+			listener.listen(new NumberedEvent(i));
+
+		awaitProcessed(listener, 3);
+
+		assertEquals(List.of(0, 2), received);
+		assertEquals(1, listener.getStatsSnapshot().exceptions);
+		listener.shutdown();
+	}
+
+}
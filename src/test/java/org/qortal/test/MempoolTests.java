@@ -0,0 +1,115 @@
+package org.qortal.test;
+
+import static org.junit.Assert.*;
+
+import java.util.EnumSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.data.transaction.PaymentTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.transaction.Mempool;
+import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Transaction.TransactionType;
+
+public class MempoolTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testImportAndConfirm() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			Mempool mempool = Mempool.getInstance();
+			assertEquals(0, mempool.getSize());
+
+			TransactionData transactionData = new PaymentTransactionData(TestTransaction.generateBase(alice), bob.getAddress(), 1_00000000L);
+			TransactionUtils.signAndImportValid(repository, transactionData, alice);
+
+			assertTrue(mempool.contains(transactionData.getSignature()));
+			assertEquals(1, mempool.countByCreator(alice.getPublicKey(), EnumSet.of(TransactionType.CHAT)));
+			assertEquals(0, mempool.countByCreator(bob.getPublicKey(), EnumSet.of(TransactionType.CHAT)));
+			assertEquals(1, mempool.getEntriesByType(TransactionType.PAYMENT).size());
+
+			assertEquals(1, Transaction.getUnconfirmedTransactions(repository).size());
+
+			// Confirmed transactions leave mempool
+			BlockUtils.mintBlock(repository);
+			assertFalse(mempool.contains(transactionData.getSignature()));
+			assertEquals(0, mempool.countByCreator(alice.getPublicKey(), EnumSet.of(TransactionType.CHAT)));
+
+			// Orphaned transactions return to mempool
+			BlockUtils.orphanLastBlock(repository);
+			assertTrue(mempool.contains(transactionData.getSignature()));
+
+			TransactionUtils.deleteUnconfirmedTransactions(repository);
+			assertEquals(0, mempool.getSize());
+		}
+	}
+
+	@Test
+	public void testUncommittedChanges() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			Mempool mempool = Mempool.getInstance();
+
+			TransactionData transactionData = new PaymentTransactionData(TestTransaction.generateBase(alice), bob.getAddress(), 1_00000000L);
+			Transaction transaction = Transaction.fromData(repository, transactionData);
+			transaction.sign(alice);
+
+			// Uncommitted transactions aren't in mempool, but are counted by same repository session
+			repository.setSavepoint();
+			assertEquals(Transaction.ValidationResult.OK, transaction.importAsUnconfirmedInBatch());
+			assertFalse(mempool.contains(transactionData.getSignature()));
+			assertEquals(1, repository.getTransactionRepository().countUnconfirmedTransactionsByCreator(alice.getPublicKey(), EnumSet.of(TransactionType.CHAT)));
+
+			// Rolled-back transactions never reach mempool
+			repository.rollbackToSavepoint();
+			repository.saveChanges();
+			assertFalse(mempool.contains(transactionData.getSignature()));
+			assertEquals(0, repository.getTransactionRepository().countUnconfirmedTransactionsByCreator(alice.getPublicKey(), EnumSet.of(TransactionType.CHAT)));
+		}
+	}
+
+	@Test
+	public void testReload() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			TransactionData transactionData = new PaymentTransactionData(TestTransaction.generateBase(alice), bob.getAddress(), 1_00000000L);
+			TransactionUtils.signAndImportValid(repository, transactionData, alice);
+
+			Mempool mempool = Mempool.getInstance();
+			mempool.invalidate();
+
+			// Reloaded from repository
+			assertTrue(mempool.contains(transactionData.getSignature()));
+			assertEquals(1, mempool.getSize());
+
+			TransactionUtils.deleteUnconfirmedTransactions(repository);
+		}
+	}
+
+}
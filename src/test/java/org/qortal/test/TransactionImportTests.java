@@ -0,0 +1,150 @@
+package org.qortal.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.data.transaction.PaymentTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.transaction.PaymentTransaction;
+import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Transaction.ValidationResult;
+
+public class TransactionImportTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testBatchImport() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+			PrivateKeyAccount chloe = Common.getTestAccount(repository, "chloe");
+
+			Transaction alicePayment = signedPayment(repository, alice, bob, 1_00000000L);
+			Transaction bobPayment = signedPayment(repository, bob, chloe, 1_00000000L);
+			Transaction invalidPayment = signedPayment(repository, chloe, alice, -1L);
+			Transaction duplicatePayment = Transaction.fromData(repository, alicePayment.getTransactionData());
+
+			assertEquals(ValidationResult.OK, alicePayment.importAsUnconfirmedInBatch());
+			assertFalse(ValidationResult.OK == invalidPayment.importAsUnconfirmedInBatch());
+			assertEquals(ValidationResult.OK, bobPayment.importAsUnconfirmedInBatch());
+			// Validated against earlier, uncommitted, transactions in same batch
+			assertEquals(ValidationResult.TRANSACTION_ALREADY_EXISTS, duplicatePayment.importAsUnconfirmedInBatch());
+
+			repository.saveChanges();
+
+			List<TransactionData> unconfirmedTransactions = repository.getTransactionRepository().getUnconfirmedTransactions();
+			assertEquals(2, unconfirmedTransactions.size());
+
+			assertTrue(repository.getTransactionRepository().exists(alicePayment.getTransactionData().getSignature()));
+			assertTrue(repository.getTransactionRepository().exists(bobPayment.getTransactionData().getSignature()));
+			assertFalse(repository.getTransactionRepository().exists(invalidPayment.getTransactionData().getSignature()));
+		}
+	}
+
+	@Test
+	public void testBatchDiscarded() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			Transaction alicePayment = signedPayment(repository, alice, bob, 1_00000000L);
+			assertEquals(ValidationResult.OK, alicePayment.importAsUnconfirmedInBatch());
+
+			// Batch not committed, e.g. due to repository issue
+			repository.discardChanges();
+
+			assertTrue(repository.getTransactionRepository().getUnconfirmedTransactions().isEmpty());
+		}
+	}
+
+	@Test
+	public void testBatchSavedAfterDiscard() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+			PrivateKeyAccount chloe = Common.getTestAccount(repository, "chloe");
+
+			Transaction alicePayment = signedPayment(repository, alice, bob, 1_00000000L);
+			Transaction bobPayment = signedPayment(repository, bob, chloe, 1_00000000L);
+
+			// Validation phase
+			assertEquals(ValidationResult.OK, alicePayment.importAsUnconfirmedInBatch());
+			assertEquals(ValidationResult.OK, bobPayment.importAsUnconfirmedInBatch());
+
+			// Release validation's locks, as TransactionImporter does, then save again and commit
+			repository.discardChanges();
+			assertTrue(repository.getTransactionRepository().getUnconfirmedTransactions().isEmpty());
+
+			alicePayment.saveAsUnconfirmedInBatch();
+			bobPayment.saveAsUnconfirmedInBatch();
+			repository.saveChanges();
+
+			assertEquals(2, repository.getTransactionRepository().getUnconfirmedTransactions().size());
+		}
+	}
+
+	@Test
+	public void testImportHookCalledOnce() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			TransactionData transactionData = new PaymentTransactionData(TestTransaction.generateBase(alice), bob.getAddress(), 1_00000000L);
+			HookCountingPayment alicePayment = new HookCountingPayment(repository, transactionData);
+			alicePayment.sign(alice);
+
+			// Validation phase saves tentatively, without hook, as changes are about to be discarded
+			assertEquals(ValidationResult.OK, alicePayment.importAsUnconfirmedInBatch());
+			assertEquals(0, alicePayment.hookCount);
+
+			repository.discardChanges();
+
+			alicePayment.saveAsUnconfirmedInBatch();
+			repository.saveChanges();
+			assertEquals(1, alicePayment.hookCount);
+		}
+	}
+
+	/** Payment that counts calls to its import hook */
+	private static class HookCountingPayment extends PaymentTransaction {
+		private int hookCount = 0;
+
+		HookCountingPayment(Repository repository, TransactionData transactionData) {
+			super(repository, transactionData);
+		}
+
+		@Override
+		protected void onImportAsUnconfirmed() {
+			this.hookCount++;
+		}
+	}
+
+	private static Transaction signedPayment(Repository repository, PrivateKeyAccount sender, PrivateKeyAccount recipient, long amount) throws DataException {
+		TransactionData transactionData = new PaymentTransactionData(TestTransaction.generateBase(sender), recipient.getAddress(), amount);
+
+		Transaction transaction = Transaction.fromData(repository, transactionData);
+		transaction.sign(sender);
+
+		return transaction;
+	}
+
+}
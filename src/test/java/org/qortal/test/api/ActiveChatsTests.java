@@ -0,0 +1,127 @@
+package org.qortal.test.api;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.api.websocket.ActiveChatsTracker;
+import org.qortal.data.chat.ActiveChats;
+import org.qortal.data.chat.ActiveChats.DirectChat;
+import org.qortal.data.chat.ActiveChats.GroupChat;
+import org.qortal.data.naming.NameData;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.ChatTransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TestAccount;
+
+public class ActiveChatsTests extends Common {
+
+	private static final int DEV_GROUP_ID = 1;
+
+	private final Random random = new Random();
+	private String address;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testIncrementalMatchesRepository() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TestAccount alice = Common.getTestAccount(repository, "alice");
+			TestAccount bob = Common.getTestAccount(repository, "bob");
+			TestAccount chloe = Common.getTestAccount(repository, "chloe");
+
+			ActiveChatsTracker.NameLookup nameLookup = address -> {
+				List<NameData> names = repository.getNameRepository().getNamesByOwner(address);
+				return names.isEmpty() ? null : names.get(0).getName();
+			};
+
+			this.address = alice.getAddress();
+
+			ActiveChatsTracker.AddressState state = new ActiveChatsTracker.AddressState(this.address);
+			state.load(repository.getChatRepository().getActiveChats(this.address));
+
+			long timestamp = System.currentTimeMillis();
+
+			// Direct messages involving alice
+			assertTrue(saveAndApply(repository, state, nameLookup, buildChat(alice, bob.getAddress(), 0, timestamp += 1000)));
+			assertTrue(saveAndApply(repository, state, nameLookup, buildChat(bob, alice.getAddress(), 0, timestamp += 1000)));
+
+			// Direct message not involving alice
+			assertFalse(saveAndApply(repository, state, nameLookup, buildChat(chloe, bob.getAddress(), 0, timestamp += 1000)));
+
+			// Group-less, recipient-less message
+			assertTrue(saveAndApply(repository, state, nameLookup, buildChat(chloe, null, 0, timestamp += 1000)));
+
+			// Alice is member of dev group
+			assertTrue(saveAndApply(repository, state, nameLookup, buildChat(bob, null, DEV_GROUP_ID, timestamp += 1000)));
+
+			// Direct message with txGroupId counts towards both group and direct chats
+			assertTrue(saveAndApply(repository, state, nameLookup, buildChat(chloe, alice.getAddress(), DEV_GROUP_ID, timestamp += 1000)));
+
+			// Older message doesn't replace latest
+			assertFalse(saveAndApply(repository, state, nameLookup, buildChat(bob, alice.getAddress(), 0, timestamp - 60_000L)));
+		}
+	}
+
+	private boolean saveAndApply(Repository repository, ActiveChatsTracker.AddressState state, ActiveChatsTracker.NameLookup nameLookup,
+			ChatTransactionData chatTransactionData) throws DataException {
+		repository.getTransactionRepository().save(chatTransactionData);
+
+		boolean hasChanged = state.apply(chatTransactionData, nameLookup);
+
+		ActiveChats expectedActiveChats = repository.getChatRepository().getActiveChats(this.address);
+		assertActiveChatsEqual(expectedActiveChats, state.getActiveChats());
+
+		return hasChanged;
+	}
+
+	private ChatTransactionData buildChat(TestAccount sender, String recipient, int txGroupId, long timestamp) {
+		byte[] reference = new byte[64];
+		this.random.nextBytes(reference);
+
+		byte[] signature = new byte[64];
+		this.random.nextBytes(signature);
+
+		BaseTransactionData baseTransactionData = new BaseTransactionData(timestamp, txGroupId, reference, sender.getPublicKey(), 0L, signature);
+		return new ChatTransactionData(baseTransactionData, sender.getAddress(), 0, recipient, "hello".getBytes(), true, false);
+	}
+
+	private static void assertActiveChatsEqual(ActiveChats expected, ActiveChats actual) {
+		Map<Integer, GroupChat> expectedGroups = expected.getGroups().stream().collect(Collectors.toMap(GroupChat::getGroupId, Function.identity()));
+		Map<Integer, GroupChat> actualGroups = actual.getGroups().stream().collect(Collectors.toMap(GroupChat::getGroupId, Function.identity()));
+		assertEquals(expectedGroups.keySet(), actualGroups.keySet());
+
+		for (GroupChat expectedGroup : expectedGroups.values()) {
+			GroupChat actualGroup = actualGroups.get(expectedGroup.getGroupId());
+			assertEquals(expectedGroup.getGroupName(), actualGroup.getGroupName());
+			assertEquals(expectedGroup.getTimestamp(), actualGroup.getTimestamp());
+			assertEquals(expectedGroup.getSender(), actualGroup.getSender());
+			assertEquals(expectedGroup.getSenderName(), actualGroup.getSenderName());
+		}
+
+		Map<String, DirectChat> expectedDirect = expected.getDirect().stream().collect(Collectors.toMap(DirectChat::getAddress, Function.identity()));
+		Map<String, DirectChat> actualDirect = actual.getDirect().stream().collect(Collectors.toMap(DirectChat::getAddress, Function.identity()));
+		assertEquals(expectedDirect.keySet(), actualDirect.keySet());
+
+		for (DirectChat expectedChat : expectedDirect.values()) {
+			DirectChat actualChat = actualDirect.get(expectedChat.getAddress());
+			assertEquals(expectedChat.getName(), actualChat.getName());
+			assertEquals(expectedChat.getTimestamp(), actualChat.getTimestamp());
+			assertEquals(expectedChat.getSender(), actualChat.getSender());
+			assertEquals(expectedChat.getSenderName(), actualChat.getSenderName());
+		}
+	}
+
+}
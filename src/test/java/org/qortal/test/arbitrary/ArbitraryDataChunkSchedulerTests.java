@@ -0,0 +1,221 @@
+package org.qortal.test.arbitrary;
+
+import org.junit.Test;
+import org.qortal.controller.arbitrary.ArbitraryDataChunkScheduler;
+import org.qortal.controller.arbitrary.ArbitraryDataChunkScheduler.ChunkRequest;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataChunkSchedulerTests {
+
+    private static final byte[] SIGNATURE = new byte[] { 1, 2, 3, 4 };
+
+    @Test
+    public void testRarestFirst() {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(4, 0.2, hash58 -> false);
+
+        Peer peer1 = newPeer("node1.example.com:12392");
+        Peer peer2 = newPeer("node2.example.com:12392");
+
+        byte[] commonHash = hash(1);
+        byte[] rareHash = hash(2);
+
+        scheduler.onChunksAdvertised(SIGNATURE, peer1, List.of(commonHash, rareHash), 0, 1000L);
+        scheduler.onChunksAdvertised(SIGNATURE, peer2, List.of(commonHash), 0, 1000L);
+
+        ChunkRequest request = scheduler.nextRequest();
+        assertNotNull(request);
+        assertArrayEquals(rareHash, request.getHash());
+        assertSame(peer1, request.getPeer());
+
+        // Same chunk isn't requested twice at once
+        request = scheduler.nextRequest();
+        assertNotNull(request);
+        assertArrayEquals(commonHash, request.getHash());
+
+        assertNull(scheduler.nextRequest());
+    }
+
+    @Test
+    public void testRequestsSpreadAcrossPeers() {
+        final int maxRequestsPerPeer = 2;
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(maxRequestsPerPeer, 0.2, hash58 -> false);
+
+        Peer peer1 = newPeer("node1.example.com:12392");
+        Peer peer2 = newPeer("node2.example.com:12392");
+
+        List<byte[]> hashes = hashes(10);
+        scheduler.onChunksAdvertised(SIGNATURE, peer1, hashes, 0, 1000L);
+        scheduler.onChunksAdvertised(SIGNATURE, peer2, hashes, 0, 1000L);
+
+        Map<Peer, Integer> requestCounts = new HashMap<>();
+        ChunkRequest request;
+        while ((request = scheduler.nextRequest()) != null)
+            requestCounts.merge(request.getPeer(), 1, Integer::sum);
+
+        // Limited by in-flight requests per peer
+        assertEquals(Integer.valueOf(maxRequestsPerPeer), requestCounts.get(peer1));
+        assertEquals(Integer.valueOf(maxRequestsPerPeer), requestCounts.get(peer2));
+    }
+
+    @Test
+    public void testCompletion() {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(4, 0.2, hash58 -> false);
+
+        Peer peer = newPeer("node1.example.com:12392");
+        scheduler.onChunksAdvertised(SIGNATURE, peer, hashes(2), 0, 1000L);
+
+        ChunkRequest request1 = scheduler.nextRequest();
+        ChunkRequest request2 = scheduler.nextRequest();
+
+        assertFalse(scheduler.onChunkReceived(request1, 1000L));
+        assertTrue(scheduler.onChunkReceived(request2, 1000L));
+
+        assertEquals(0, scheduler.getSwarmCount());
+    }
+
+    @Test
+    public void testFailedChunkRetriedElsewhere() {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(1, 0.2, hash58 -> false);
+
+        Peer peer1 = newPeer("node1.example.com:12392");
+        Peer peer2 = newPeer("node2.example.com:12392");
+
+        byte[] hash = hash(1);
+        scheduler.onChunksAdvertised(SIGNATURE, peer1, List.of(hash), 0, 1000L);
+        scheduler.onChunksAdvertised(SIGNATURE, peer2, List.of(hash), 5, 1000L);
+
+        // Fewer hops preferred
+        ChunkRequest request = scheduler.nextRequest();
+        assertSame(peer1, request.getPeer());
+
+        scheduler.onChunkFailed(request);
+
+        request = scheduler.nextRequest();
+        assertSame(peer2, request.getPeer());
+        assertArrayEquals(hash, request.getHash());
+    }
+
+    @Test
+    public void testFailingPeerDropped() {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(1, 0.2, hash58 -> false);
+
+        Peer failingPeer = newPeer("node1.example.com:12392");
+        Peer otherPeer = newPeer("node2.example.com:12392");
+
+        List<byte[]> hashes = hashes(10);
+        scheduler.onChunksAdvertised(SIGNATURE, failingPeer, hashes, 0, 1000L);
+        scheduler.onChunksAdvertised(SIGNATURE, otherPeer, hashes, 5, 1000L);
+
+        int failures = 0;
+        while (failures < 3) {
+            ChunkRequest request = scheduler.nextRequest();
+            assertNotNull(request);
+
+            if (request.getPeer() == failingPeer) {
+                scheduler.onChunkFailed(request);
+                ++failures;
+            } else {
+                scheduler.onChunkReceived(request, 1000L);
+            }
+        }
+
+        // Another peer can take over, so failing peer is dropped
+        assertEquals(1, scheduler.getPeerCount(SIGNATURE));
+        assertSame(otherPeer, scheduler.nextRequest().getPeer());
+    }
+
+    @Test
+    public void testSoleFailingPeerKept() {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(1, 0.2, hash58 -> false);
+
+        Peer peer = newPeer("node1.example.com:12392");
+        scheduler.onChunksAdvertised(SIGNATURE, peer, hashes(10), 0, 1000L);
+
+        for (int i = 0; i < 5; ++i) {
+            ChunkRequest request = scheduler.nextRequest();
+            assertSame(peer, request.getPeer());
+            scheduler.onChunkFailed(request);
+        }
+
+        // No other peer to take over, so keep trying remaining chunks with this one
+        assertEquals(1, scheduler.getPeerCount(SIGNATURE));
+        assertSame(peer, scheduler.nextRequest().getPeer());
+    }
+
+    @Test
+    public void testSlowPeerDropped() throws InterruptedException {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(1, 0.2, hash58 -> false);
+
+        Peer fastPeer = newPeer("node1.example.com:12392");
+        Peer slowPeer = newPeer("node2.example.com:12392");
+
+        List<byte[]> hashes = hashes(20);
+        scheduler.onChunksAdvertised(SIGNATURE, fastPeer, hashes, 0, 1000L);
+        scheduler.onChunksAdvertised(SIGNATURE, slowPeer, hashes, 0, 1000L);
+        assertEquals(2, scheduler.getPeerCount(SIGNATURE));
+
+        for (int i = 0; i < 3; ++i) {
+            ChunkRequest fastRequest = scheduler.nextRequest();
+            ChunkRequest slowRequest = scheduler.nextRequest();
+            assertNotSame(fastRequest.getPeer(), slowRequest.getPeer());
+
+            if (fastRequest.getPeer() != fastPeer) {
+                ChunkRequest swap = fastRequest;
+                fastRequest = slowRequest;
+                slowRequest = swap;
+            }
+
+            scheduler.onChunkReceived(fastRequest, 1_000_000L);
+            Thread.sleep(5L);
+            scheduler.onChunkReceived(slowRequest, 1_000L);
+        }
+
+        assertEquals(1, scheduler.getPeerCount(SIGNATURE));
+
+        // Dropped peer isn't re-added if it advertises again
+        scheduler.onChunksAdvertised(SIGNATURE, slowPeer, hashes, 0, 2000L);
+        assertEquals(1, scheduler.getPeerCount(SIGNATURE));
+
+        ChunkRequest request = scheduler.nextRequest();
+        assertSame(fastPeer, request.getPeer());
+    }
+
+    @Test
+    public void testCleanup() {
+        ArbitraryDataChunkScheduler scheduler = new ArbitraryDataChunkScheduler(4, 0.2, hash58 -> false);
+
+        Peer peer = newPeer("node1.example.com:12392");
+        scheduler.onChunksAdvertised(SIGNATURE, peer, hashes(2), 0, 1000L);
+
+        scheduler.cleanup(500L);
+        assertEquals(1, scheduler.getSwarmCount());
+
+        scheduler.cleanup(1500L);
+        assertEquals(0, scheduler.getSwarmCount());
+    }
+
+    private static byte[] hash(int i) {
+        byte[] hash = new byte[32];
+        hash[0] = (byte) i;
+        return hash;
+    }
+
+    private static List<byte[]> hashes(int count) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 1; i <= count; ++i)
+            hashes.add(hash(i));
+
+        return hashes;
+    }
+
+    private static Peer newPeer(String address) {
+        return new Peer(new PeerData(PeerAddress.fromString(address)));
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.qortal.test.arbitrary;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.arbitrary.misc.Service;
+import org.qortal.controller.arbitrary.ArbitraryDataStorageLedger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataStorageLedgerTests {
+
+    private static final String SIGNATURE_1 = "5AbCdEfGhJkLmNpQrStUvWxYz";
+    private static final String SIGNATURE_2 = "7ZyXwVuTsRqPnMkJhGfEdCbAa";
+
+    private Path dataPath;
+    private Path tempPath;
+
+    @Before
+    public void beforeTest() throws IOException {
+        this.dataPath = Files.createTempDirectory("qortal-ledger-test");
+        this.tempPath = this.dataPath.resolve("_temp");
+    }
+
+    @After
+    public void afterTest() throws IOException {
+        FileUtils.deleteDirectory(this.dataPath.toFile());
+    }
+
+    @Test
+    public void testWriteAndDelete() {
+        ArbitraryDataStorageLedger ledger = new ArbitraryDataStorageLedger(this.dataPath, this.tempPath);
+
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_1, "hash1"), 0L, 100L);
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_1, "hash2"), 0L, 50L);
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_2, "hash3"), 0L, 10L);
+
+        assertEquals(160L, ledger.getTotalSize());
+        assertEquals(150L, ledger.getSizeForSignature(SIGNATURE_1));
+        assertEquals(2, ledger.getSignatureCount());
+
+        // Names aren't known until resolved
+        assertEquals(0L, ledger.getSizeForName("alice"));
+        assertEquals(2, ledger.getUnresolvedSignatures().size());
+
+        ledger.setSignatureDetails(SIGNATURE_1, "alice", Service.WEBSITE);
+        ledger.setSignatureDetails(SIGNATURE_2, "bob", Service.WEBSITE);
+        assertEquals(150L, ledger.getSizeForName("alice"));
+        assertEquals(10L, ledger.getSizeForName("bob"));
+        assertEquals(160L, ledger.getSizeForService(Service.WEBSITE));
+        assertTrue(ledger.getUnresolvedSignatures().isEmpty());
+
+        ledger.onFileDeleted(this.chunkPath(SIGNATURE_1, "hash1"), 100L);
+        assertEquals(50L, ledger.getSizeForName("alice"));
+        assertEquals(60L, ledger.getTotalSize());
+
+        // Deleting the last file removes the signature entirely
+        ledger.onFileDeleted(this.chunkPath(SIGNATURE_2, "hash3"), 10L);
+        assertEquals(0L, ledger.getSizeForName("bob"));
+        assertEquals(1, ledger.getSignatureCount());
+    }
+
+    @Test
+    public void testUnattributedFiles() {
+        ArbitraryDataStorageLedger ledger = new ArbitraryDataStorageLedger(this.dataPath, this.tempPath);
+
+        ledger.onFileWritten(this.dataPath.resolve("_misc").resolve("ab").resolve("cd").resolve("hash1"), 0L, 40L);
+        assertEquals(40L, ledger.getTotalSize());
+        assertEquals(0, ledger.getSignatureCount());
+
+        // Relocating from _misc attributes file to signature
+        ledger.onFileMoved(this.dataPath.resolve("_misc").resolve("ab").resolve("cd").resolve("hash1"), this.chunkPath(SIGNATURE_1, "hash1"), 40L);
+        assertEquals(40L, ledger.getTotalSize());
+        assertEquals(40L, ledger.getSizeForSignature(SIGNATURE_1));
+
+        // Files outside data directory are ignored
+        ledger.onFileWritten(this.dataPath.getParent().resolve("elsewhere"), 0L, 1000L);
+        assertEquals(40L, ledger.getTotalSize());
+    }
+
+    @Test
+    public void testDirectoryDeleted() {
+        ArbitraryDataStorageLedger ledger = new ArbitraryDataStorageLedger(this.dataPath, this.tempPath);
+
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_1, "hash1"), 0L, 100L);
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_2, "hash2"), 0L, 10L);
+        ledger.setSignatureDetails(SIGNATURE_1, "alice", Service.WEBSITE);
+
+        ledger.onDirectoryDeleted(this.chunkPath(SIGNATURE_1, "hash1").getParent());
+        assertEquals(10L, ledger.getTotalSize());
+        assertEquals(0L, ledger.getSizeForName("alice"));
+        assertEquals(0L, ledger.getSizeForService(Service.WEBSITE));
+    }
+
+    @Test
+    public void testReconcile() throws IOException {
+        ArbitraryDataStorageLedger ledger = new ArbitraryDataStorageLedger(this.dataPath, this.tempPath);
+
+        // Data already on disk at startup
+        this.writeFile(this.chunkPath(SIGNATURE_1, "hash1"), 100);
+        this.writeFile(this.chunkPath(SIGNATURE_2, "hash2"), 10);
+        this.writeFile(this.tempPath.resolve("reader").resolve("file"), 5);
+
+        assertFalse(ledger.isComplete());
+        ledger.reconcileAll();
+        assertTrue(ledger.isComplete());
+
+        assertEquals(115L, ledger.getTotalSize());
+        assertEquals(100L, ledger.getSizeForSignature(SIGNATURE_1));
+        assertEquals(10L, ledger.getSizeForSignature(SIGNATURE_2));
+
+        // Changes behind the ledger's back are picked up by later reconciliation
+        Files.delete(this.chunkPath(SIGNATURE_2, "hash2"));
+        this.writeFile(this.tempPath.resolve("reader").resolve("file2"), 20);
+
+        ledger.reconcile(100);
+        assertEquals(125L, ledger.getTotalSize());
+        assertEquals(0L, ledger.getSizeForSignature(SIGNATURE_2));
+        assertEquals(1, ledger.getSignatureCount());
+    }
+
+    @Test
+    public void testGetDirectoriesForName() {
+        ArbitraryDataStorageLedger ledger = new ArbitraryDataStorageLedger(this.dataPath, this.tempPath);
+
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_1, "hash1"), 0L, 100L);
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_2, "hash2"), 0L, 10L);
+        ledger.setSignatureDetails(SIGNATURE_1, "alice", Service.WEBSITE);
+        ledger.setSignatureDetails(SIGNATURE_2, "bob", Service.WEBSITE);
+
+        List<File> directories = ledger.getDirectoriesForName("alice");
+        assertEquals(1, directories.size());
+        assertEquals(this.chunkPath(SIGNATURE_1, "hash1").getParent().toFile().getAbsoluteFile(), directories.get(0).getAbsoluteFile());
+    }
+
+    @Test
+    public void testChangedSignatures() {
+        ArbitraryDataStorageLedger ledger = new ArbitraryDataStorageLedger(this.dataPath, this.tempPath);
+
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_1, "hash1"), 0L, 100L);
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_1, "hash2"), 0L, 100L);
+        assertEquals(List.of(SIGNATURE_1), ledger.drainChangedSignatures());
+        assertTrue(ledger.drainChangedSignatures().isEmpty());
+
+        ledger.onFileDeleted(this.chunkPath(SIGNATURE_1, "hash1"), 100L);
+        assertEquals(List.of(SIGNATURE_1), ledger.drainChangedSignatures());
+
+        ledger.onFileWritten(this.dataPath.resolve("_misc").resolve("ab").resolve("cd").resolve("hash3"), 0L, 40L);
+        assertTrue(ledger.drainChangedSignatures().isEmpty());
+
+        // e.g. hosted data index needs rebuilding
+        ledger.onFileWritten(this.chunkPath(SIGNATURE_2, "hash4"), 0L, 10L);
+        ledger.drainChangedSignatures();
+        ledger.markAllSignaturesChanged();
+        assertEquals(Set.of(SIGNATURE_1, SIGNATURE_2), new HashSet<>(ledger.drainChangedSignatures()));
+    }
+
+    private Path chunkPath(String signature58, String hash58) {
+        return this.dataPath.resolve(signature58.substring(0, 2).toLowerCase())
+                .resolve(signature58.substring(2, 4).toLowerCase())
+                .resolve(signature58)
+                .resolve(hash58);
+    }
+
+    private void writeFile(Path path, int size) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[size]);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.qortal.test.arbitrary;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.arbitrary.ArbitraryDataFile;
+import org.qortal.arbitrary.misc.Service;
+import org.qortal.controller.arbitrary.ArbitraryDataManager;
+import org.qortal.controller.arbitrary.ArbitraryDataStorageManager;
+import org.qortal.data.transaction.ArbitraryTransactionData;
+import org.qortal.data.transaction.RegisterNameTransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.ArbitraryUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.transaction.RegisterNameTransaction;
+import org.qortal.utils.Base58;
+import org.qortal.utils.NTP;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryHostedDataTests extends Common {
+
+    @Before
+    public void beforeTest() throws DataException, IllegalAccessException {
+        Common.useDefaultSettings();
+        this.deleteDataDirectories();
+
+        // Set difficulty to 1 to speed up the tests
+        FieldUtils.writeField(ArbitraryDataManager.getInstance(), "powDifficulty", 1, true);
+    }
+
+    @After
+    public void afterTest() throws DataException {
+        this.deleteDataDirectories();
+        ArbitraryDataStorageManager.getInstance().shutdown();
+    }
+
+    @Test
+    public void testHostedDataIndex() throws DataException, IOException, InterruptedException, IllegalAccessException {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            ArbitraryDataStorageManager storageManager = ArbitraryDataStorageManager.getInstance();
+            String identifier = null; // Not used for this test
+            Service service = Service.ARBITRARY_DATA;
+            int chunkSize = 100;
+            int dataLength = 900; // Actual data length will be longer due to encryption
+
+            // Alice hosts some data
+            PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+            String aliceName = "alice";
+            RegisterNameTransactionData transactionData = new RegisterNameTransactionData(TestTransaction.generateBase(alice), aliceName, "");
+            transactionData.setFee(new RegisterNameTransaction(null, null).getUnitFee(transactionData.getTimestamp()));
+            TransactionUtils.signAndMint(repository, transactionData, alice);
+            Path alicePath = ArbitraryUtils.generateRandomDataPath(dataLength);
+            ArbitraryDataFile aliceArbitraryDataFile = ArbitraryUtils.createAndMintTxn(repository, Base58.encode(alice.getPublicKey()), alicePath, aliceName, identifier, ArbitraryTransactionData.Method.PUT, service, alice, chunkSize);
+
+            // Index isn't updated until data directory has been walked
+            storageManager.updateHostedDataIndex();
+            assertTrue(storageManager.listAllHostedTransactions(repository, null, null, null, null).isEmpty());
+
+            storageManager.calculateDirectorySize(NTP.getTime());
+            storageManager.updateHostedDataIndex();
+
+            List<ArbitraryTransactionData> hostedTransactions = storageManager.listAllHostedTransactions(repository, null, null, null, null);
+            assertEquals(1, hostedTransactions.size());
+            assertArrayEquals(aliceArbitraryDataFile.getSignature(), hostedTransactions.get(0).getSignature());
+
+            // Filtering
+            assertEquals(1, storageManager.listAllHostedTransactions(repository, aliceName, service, null, null).size());
+            assertTrue(storageManager.listAllHostedTransactions(repository, "bob", null, null, null).isEmpty());
+            assertTrue(storageManager.listAllHostedTransactions(repository, null, Service.WEBSITE, null, null).isEmpty());
+
+            // Searching
+            assertEquals(1, storageManager.searchHostedTransactions(repository, "LIC", null, null, null, null).size());
+            assertTrue(storageManager.searchHostedTransactions(repository, "bob", null, null, null, null).isEmpty());
+
+            // Paging
+            assertTrue(storageManager.listAllHostedTransactions(repository, null, null, 10, 1).isEmpty());
+
+            // Deleting the data removes it from the index
+            aliceArbitraryDataFile.deleteAll();
+            storageManager.updateHostedDataIndex();
+            assertTrue(storageManager.listAllHostedTransactions(repository, null, null, null, null).isEmpty());
+        }
+    }
+
+    private void deleteDataDirectories() {
+        // Delete data directory if exists
+        Path dataPath = Paths.get(Settings.getInstance().getDataPath());
+        try {
+            FileUtils.deleteDirectory(dataPath.toFile());
+        } catch (IOException e) {
+
+        }
+
+        // Delete temp data directory if exists
+        Path tempDataPath = Paths.get(Settings.getInstance().getTempDataPath());
+        try {
+            FileUtils.deleteDirectory(tempDataPath.toFile());
+        } catch (IOException e) {
+
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package org.qortal.test.at;
 import static org.junit.Assert.*;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.List;
 
 import org.ciyam.at.CompilationException;
@@ -12,6 +13,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.qortal.account.PrivateKeyAccount;
 import org.qortal.asset.Asset;
+import org.qortal.at.ATCodeCache;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.transaction.BaseTransactionData;
@@ -57,6 +59,34 @@ public class AtRepositoryTests extends Common {
 		}
 	}
 
+	@Test
+	public void testGetExecutableATsWithCodeCache() throws DataException {
+		byte[] creationBytes = AtUtils.buildSimpleAT();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			long fundingAmount = 1_00000000L;
+			DeployAtTransaction deployAtTransaction = AtUtils.doDeployAT(repository, deployer, creationBytes, fundingAmount);
+			String atAddress = deployAtTransaction.getATAccount().getAddress();
+
+			ATData fullAtData = repository.getATRepository().fromATAddress(atAddress);
+
+			List<ATData> executableATs = repository.getATRepository().getExecutableATs(Collections.singletonList(atAddress));
+			assertEquals(1, executableATs.size());
+
+			// Code isn't loaded, but should be available via cache
+			ATData atData = executableATs.get(0);
+			assertNull(atData.getCodeBytes());
+			assertArrayEquals(fullAtData.getCodeHash(), atData.getCodeHash());
+			assertArrayEquals(fullAtData.getCodeBytes(), ATCodeCache.getInstance().getCodeBytes(repository, atData));
+
+			// AT should still run using cached code
+			BlockUtils.mintBlock(repository);
+			assertEquals(3, repository.getATRepository().getLatestATState(atAddress).getHeight().intValue());
+		}
+	}
+
 	@Test
 	public void testGetATStateAtHeightWithoutData() throws DataException {
 		byte[] creationBytes = AtUtils.buildSimpleAT();
@@ -17,8 +17,10 @@ import org.junit.Test;
 import org.qortal.account.Account;
 import org.qortal.account.PrivateKeyAccount;
 import org.qortal.asset.Asset;
+import org.qortal.at.ExecutableATRegistry;
 import org.qortal.at.QortalFunctionCode;
 import org.qortal.block.Block;
+import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.transaction.BaseTransactionData;
@@ -129,6 +131,33 @@ public class SleepUntilMessageTests extends Common {
 		assertTimestamp(repository, atAddress, transaction);
 	}
 
+	@Test
+	public void testExecutableATRegistry() throws DataException {
+		// Mint block to allow AT to initialize and call SLEEP_UNTIL_MESSAGE
+		BlockUtils.mintBlock(repository);
+
+		// AT is asleep so shouldn't be loaded for next block
+		assertFalse(isExecutable(repository, atAddress));
+
+		// Send message to AT
+		transaction = sendMessage(repository, deployer, messageData, atAddress);
+		BlockUtils.mintBlock(repository);
+
+		// Message should wake AT for next block
+		assertTrue(isExecutable(repository, atAddress));
+
+		// Same result when rebuilt from repository
+		ExecutableATRegistry.getInstance().invalidate();
+		assertTrue(isExecutable(repository, atAddress));
+
+		// Orphaning block containing message should leave AT asleep again
+		BlockUtils.orphanLastBlock(repository);
+		assertFalse(isExecutable(repository, atAddress));
+
+		ExecutableATRegistry.getInstance().invalidate();
+		assertFalse(isExecutable(repository, atAddress));
+	}
+
 	private static byte[] buildSleepUntilMessageAT() {
 		// Labels for data segment addresses
 		int addrCounter = 0;
@@ -269,6 +298,15 @@ public class SleepUntilMessageTests extends Common {
 		return messageTransaction;
 	}
 
+	private boolean isExecutable(Repository repository, String atAddress) throws DataException {
+		BlockData latestBlockData = repository.getBlockRepository().getLastBlock();
+
+		List<ATData> executableATs = ExecutableATRegistry.getInstance().getExecutableATs(repository,
+				latestBlockData.getSignature(), latestBlockData.getHeight() + 1);
+
+		return executableATs.stream().anyMatch(atData -> atData.getATAddress().equals(atAddress));
+	}
+
 	private void assertTimestamp(Repository repository, String atAddress, Transaction transaction) throws DataException {
 		int height = transaction.getHeight();
 		byte[] transactionSignature = transaction.getTransactionData().getSignature();
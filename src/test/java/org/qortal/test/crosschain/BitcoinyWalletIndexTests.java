@@ -0,0 +1,227 @@
+package org.qortal.test.crosschain;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.Script.ScriptType;
+import org.bitcoinj.script.ScriptBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.crosschain.Bitcoiny;
+import org.qortal.crosschain.BitcoinyBlockchainProvider;
+import org.qortal.crosschain.BitcoinyTransaction;
+import org.qortal.crosschain.ForeignBlockchainException;
+import org.qortal.crosschain.SimpleTransaction;
+import org.qortal.crosschain.TransactionHash;
+import org.qortal.crosschain.UnspentOutput;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+
+import com.google.common.hash.HashCode;
+
+public class BitcoinyWalletIndexTests extends Common {
+
+	private static final NetworkParameters PARAMS = TestNet3Params.get();
+
+	/** In-memory blockchain, counting requests for histories and transactions. */
+	private static class FakeBlockchainProvider extends BitcoinyBlockchainProvider {
+		private final Map<String, List<TransactionHash>> histories = new HashMap<>();
+		private final Map<String, BitcoinyTransaction> transactions = new HashMap<>();
+
+		private int historyRequests = 0;
+		private int transactionRequests = 0;
+
+		public void addTransaction(BitcoinyTransaction transaction) {
+			this.transactions.put(transaction.txHash, transaction);
+		}
+
+		public void addHistory(String address, TransactionHash transactionHash) {
+			this.histories.computeIfAbsent(scriptHex(address), k -> new ArrayList<>()).add(transactionHash);
+		}
+
+		@Override
+		public String getNetId() {
+			return "Bitcoin-FAKE";
+		}
+
+		@Override
+		public int getCurrentHeight() {
+			return 1000;
+		}
+
+		@Override
+		public List<byte[]> getRawBlockHeaders(int startHeight, int count) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public long getConfirmedBalance(byte[] scriptPubKey) {
+			return 0;
+		}
+
+		@Override
+		public byte[] getRawTransaction(String txHash) throws ForeignBlockchainException {
+			throw new ForeignBlockchainException.NotFoundException(txHash);
+		}
+
+		@Override
+		public byte[] getRawTransaction(byte[] txHash) throws ForeignBlockchainException {
+			throw new ForeignBlockchainException.NotFoundException(HashCode.fromBytes(txHash).toString());
+		}
+
+		@Override
+		public BitcoinyTransaction getTransaction(String txHash) throws ForeignBlockchainException {
+			++this.transactionRequests;
+
+			BitcoinyTransaction transaction = this.transactions.get(txHash);
+			if (transaction == null)
+				throw new ForeignBlockchainException.NotFoundException(txHash);
+
+			return transaction;
+		}
+
+		@Override
+		public List<TransactionHash> getAddressTransactions(byte[] scriptPubKey, boolean includeUnconfirmed) {
+			// Default status implementation asks for unconfirmed too, so only count history requests made by wallet index
+			if (!includeUnconfirmed)
+				++this.historyRequests;
+
+			return new ArrayList<>(this.histories.getOrDefault(HashCode.fromBytes(scriptPubKey).toString(), Collections.emptyList()));
+		}
+
+		@Override
+		public List<UnspentOutput> getUnspentOutputs(byte[] scriptPubKey, boolean includeUnconfirmed) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void broadcastTransaction(byte[] rawTransaction) {
+		}
+	}
+
+	private FakeBlockchainProvider provider;
+	private Bitcoiny bitcoiny;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+
+		this.provider = new FakeBlockchainProvider();
+		this.bitcoiny = new Bitcoiny(this.provider, new Context(PARAMS), "BTC") {
+			@Override
+			public long getP2shFee(Long timestamp) {
+				return 0;
+			}
+		};
+	}
+
+	private static String scriptHex(String address) {
+		return HashCode.fromBytes(ScriptBuilder.createOutputScript(Address.fromString(PARAMS, address)).getProgram()).toString();
+	}
+
+	private static String getXprv58() {
+		byte[] seed = new byte[32];
+		for (int i = 0; i < seed.length; ++i)
+			seed[i] = (byte) i;
+
+		DeterministicKey masterKey = HDKeyDerivation.createMasterPrivateKey(seed);
+		return masterKey.serializePrivB58(PARAMS);
+	}
+
+	/** Adds confirmed transaction paying <tt>amount</tt> to <tt>address</tt>, funded from outside wallet. */
+	private void fund(String address, String txHash, long amount) {
+		String externalTxHash = txHash.replace('a', 'e');
+		String externalAddress = Address.fromKey(PARAMS, new ECKey(), ScriptType.P2PKH).toString();
+
+		this.provider.addTransaction(new BitcoinyTransaction(externalTxHash, 200, 0, 1600000000,
+				Collections.emptyList(),
+				List.of(new BitcoinyTransaction.Output(scriptHex(externalAddress), amount + 1000, List.of(externalAddress)))));
+
+		this.provider.addTransaction(new BitcoinyTransaction(txHash, 200, 0, 1600000600,
+				List.of(new BitcoinyTransaction.Input("", 0xffffffff, externalTxHash, 0)),
+				List.of(new BitcoinyTransaction.Output(scriptHex(address), amount, List.of(address)))));
+
+		this.provider.addHistory(address, new TransactionHash(100, txHash));
+	}
+
+	@Test
+	public void testUnusedReceiveAddress() throws ForeignBlockchainException {
+		String xprv58 = getXprv58();
+
+		String firstAddress = this.bitcoiny.getUnusedReceiveAddress(xprv58);
+		assertNotNull(firstAddress);
+		assertEquals("Unused addresses shouldn't need history", 0, this.provider.historyRequests);
+
+		// Same address until used
+		assertEquals(firstAddress, this.bitcoiny.getUnusedReceiveAddress(xprv58));
+
+		fund(firstAddress, "aa01", 10_000_000L);
+
+		String secondAddress = this.bitcoiny.getUnusedReceiveAddress(xprv58);
+		assertNotNull(secondAddress);
+		assertNotEquals(firstAddress, secondAddress);
+		assertEquals("Only changed address's history should be fetched", 1, this.provider.historyRequests);
+
+		// Nothing changed, so no more histories needed
+		assertEquals(secondAddress, this.bitcoiny.getUnusedReceiveAddress(xprv58));
+		assertEquals(1, this.provider.historyRequests);
+	}
+
+	@Test
+	public void testWalletTransactions() throws ForeignBlockchainException {
+		String xprv58 = getXprv58();
+
+		assertTrue(this.bitcoiny.getWalletTransactions(xprv58).isEmpty());
+
+		String receiveAddress = this.bitcoiny.getUnusedReceiveAddress(xprv58);
+		fund(receiveAddress, "aa02", 25_000_000L);
+
+		// Wallet transactions are served from recently refreshed index, so refresh via another call first
+		this.bitcoiny.getUnusedReceiveAddress(xprv58);
+
+		List<SimpleTransaction> transactions = this.bitcoiny.getWalletTransactions(xprv58);
+		assertEquals(1, transactions.size());
+		assertEquals("aa02", transactions.get(0).getTxHash());
+		assertEquals(25_000_000L, transactions.get(0).getTotalAmount());
+		assertEquals(1000L, transactions.get(0).getFeeAmount());
+
+		// Both wallet transaction and its input transaction fetched only once
+		int transactionRequests = this.provider.transactionRequests;
+		assertEquals(2, transactionRequests);
+
+		this.bitcoiny.getUnusedReceiveAddress(xprv58);
+		this.bitcoiny.getWalletTransactions(xprv58);
+		assertEquals(transactionRequests, this.provider.transactionRequests);
+	}
+
+	@Test
+	public void testSharedIndexForPublicKey() throws ForeignBlockchainException {
+		String xprv58 = getXprv58();
+
+		Context.propagate(this.bitcoiny.getBitcoinjContext());
+		String xpub58 = DeterministicKey.deserializeB58(null, xprv58, PARAMS).serializePubB58(PARAMS);
+
+		String firstAddress = this.bitcoiny.getUnusedReceiveAddress(xprv58);
+		fund(firstAddress, "aa03", 5_000_000L);
+
+		String secondAddress = this.bitcoiny.getUnusedReceiveAddress(xprv58);
+		assertEquals(1, this.provider.historyRequests);
+
+		// Same wallet, via public key, so index is shared
+		assertEquals(secondAddress, this.bitcoiny.getUnusedReceiveAddress(xpub58));
+		assertEquals(1, this.provider.historyRequests);
+	}
+
+}
@@ -0,0 +1,444 @@
+package org.qortal.test.crosschain;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Test;
+import org.qortal.crosschain.BitcoinyTransaction;
+import org.qortal.crosschain.ElectrumX;
+import org.qortal.crosschain.ElectrumX.Server.ConnectionType;
+import org.qortal.crosschain.ForeignBlockchainException;
+import org.qortal.crosschain.TransactionHash;
+import org.qortal.crypto.Crypto;
+
+import com.google.common.hash.HashCode;
+import com.google.common.primitives.Bytes;
+
+/** Tests ElectrumX request pipelining and batching against local fake servers. */
+public class ElectrumXBatchTests {
+
+	private static final String GENESIS_HASH = "000000000933ea01ad0ee984209779baaec3ced90fa3f408719526f8d77f4943";
+	private static final int CURRENT_HEIGHT = 1234567;
+
+	private static final Map<ElectrumX.Server.ConnectionType, Integer> DEFAULT_ELECTRUMX_PORTS = new EnumMap<>(ElectrumX.Server.ConnectionType.class);
+	static {
+		DEFAULT_ELECTRUMX_PORTS.put(ConnectionType.TCP, 50001);
+		DEFAULT_ELECTRUMX_PORTS.put(ConnectionType.SSL, 50002);
+	}
+
+	/**
+	 * Minimal ElectrumX server, answering batches in reverse order and sending unsolicited notifications,
+	 * so that clients must match responses by id.
+	 */
+	private static class FakeElectrumXServer implements Runnable {
+		private final ServerSocket serverSocket;
+		private final boolean rejectBatches;
+		private final long responseDelay;
+
+		private final Map<String, JSONArray> histories = new HashMap<>();
+		private final Map<String, JSONObject> transactions = new HashMap<>();
+
+		private final AtomicInteger batchesReceived = new AtomicInteger();
+		private final AtomicInteger historyRequestsReceived = new AtomicInteger();
+
+		public FakeElectrumXServer(boolean rejectBatches, long responseDelay) throws IOException {
+			this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			this.rejectBatches = rejectBatches;
+			this.responseDelay = responseDelay;
+
+			Thread acceptThread = new Thread(this, "Fake ElectrumX");
+			acceptThread.setDaemon(true);
+			acceptThread.start();
+		}
+
+		public ElectrumX.Server getServer() {
+			return new ElectrumX.Server("127.0.0.1", ConnectionType.TCP, this.serverSocket.getLocalPort());
+		}
+
+		@SuppressWarnings("unchecked")
+		public void addHistory(byte[] script, String txHash, int height) {
+			JSONObject entry = new JSONObject();
+			entry.put("tx_hash", txHash);
+			entry.put("height", (long) height);
+
+			this.histories.computeIfAbsent(scriptHashHex(script), k -> new JSONArray()).add(entry);
+		}
+
+		@SuppressWarnings("unchecked")
+		public void addTransaction(String txHash) {
+			JSONObject scriptPubKey = new JSONObject();
+			scriptPubKey.put("hex", "76a914" + txHash + "88ac");
+			scriptPubKey.put("address", "address-" + txHash);
+
+			JSONObject output = new JSONObject();
+			output.put("scriptPubKey", scriptPubKey);
+			output.put("value", 0.001);
+
+			JSONArray outputs = new JSONArray();
+			outputs.add(output);
+
+			JSONObject transaction = new JSONObject();
+			transaction.put("size", 200L);
+			transaction.put("locktime", 0L);
+			transaction.put("time", 1600000000L);
+			transaction.put("vin", new JSONArray());
+			transaction.put("vout", outputs);
+
+			this.transactions.put(txHash, transaction);
+		}
+
+		public void close() throws IOException {
+			this.serverSocket.close();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Socket socket = this.serverSocket.accept();
+
+					Thread connectionThread = new Thread(() -> this.handleConnection(socket), "Fake ElectrumX connection");
+					connectionThread.setDaemon(true);
+					connectionThread.start();
+				}
+			} catch (IOException e) {
+				// Server closed
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void handleConnection(Socket socket) {
+			try (Socket s = socket) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				OutputStream outputStream = s.getOutputStream();
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+					Object requestObj = JSONValue.parse(line);
+
+					StringBuilder reply = new StringBuilder();
+
+					if (requestObj instanceof JSONArray) {
+						this.batchesReceived.incrementAndGet();
+
+						if (this.rejectBatches) {
+							JSONObject error = new JSONObject();
+							error.put("code", -32600L);
+							error.put("message", "batch requests are not supported");
+
+							JSONObject response = new JSONObject();
+							response.put("jsonrpc", "2.0");
+							response.put("error", error);
+							response.put("id", null);
+
+							reply.append(response.toJSONString()).append('\n');
+						} else {
+							JSONArray responses = new JSONArray();
+							for (Object batchedRequestObj : (JSONArray) requestObj)
+								responses.add(this.respond((JSONObject) batchedRequestObj));
+
+							Collections.reverse(responses);
+
+							reply.append(notification().toJSONString()).append('\n');
+							reply.append(responses.toJSONString()).append('\n');
+						}
+					} else {
+						reply.append(this.respond((JSONObject) requestObj).toJSONString()).append('\n');
+					}
+
+					if (this.responseDelay > 0)
+						Thread.sleep(this.responseDelay);
+
+					outputStream.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+					outputStream.flush();
+				}
+			} catch (IOException | InterruptedException e) {
+				// Connection closed
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private JSONObject respond(JSONObject request) {
+			String method = (String) request.get("method");
+			JSONArray params = (JSONArray) request.get("params");
+
+			JSONObject response = new JSONObject();
+			response.put("jsonrpc", "2.0");
+			response.put("id", request.get("id"));
+
+			switch (method) {
+				case "server.features": {
+					JSONObject features = new JSONObject();
+					features.put("protocol_min", "1.4");
+					features.put("genesis_hash", GENESIS_HASH);
+					response.put("result", features);
+					break;
+				}
+
+				case "server.peers.subscribe":
+					response.put("result", new JSONArray());
+					break;
+
+				case "blockchain.headers.subscribe": {
+					JSONObject header = new JSONObject();
+					header.put("height", (long) CURRENT_HEIGHT);
+					header.put("hex", "00");
+					response.put("result", header);
+					break;
+				}
+
+				case "blockchain.scripthash.get_history":
+					this.historyRequestsReceived.incrementAndGet();
+					response.put("result", this.histories.getOrDefault((String) params.get(0), new JSONArray()));
+					break;
+
+				case "blockchain.transaction.get": {
+					JSONObject transaction = this.transactions.get((String) params.get(0));
+
+					if (transaction != null) {
+						response.put("result", transaction);
+					} else {
+						JSONObject error = new JSONObject();
+						error.put("code", 2L);
+						error.put("message", "daemon error: DaemonError({'code': -5, 'message': 'No such mempool or blockchain transaction. Use gettransaction for wallet transactions.'})");
+						response.put("error", error);
+					}
+					break;
+				}
+
+				default: {
+					JSONObject error = new JSONObject();
+					error.put("code", -32601L);
+					error.put("message", "unknown method " + method);
+					response.put("error", error);
+					break;
+				}
+			}
+
+			return response;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static JSONObject notification() {
+			JSONObject header = new JSONObject();
+			header.put("height", (long) CURRENT_HEIGHT);
+			header.put("hex", "00");
+
+			JSONArray params = new JSONArray();
+			params.add(header);
+
+			JSONObject notification = new JSONObject();
+			notification.put("jsonrpc", "2.0");
+			notification.put("method", "blockchain.headers.subscribe");
+			notification.put("params", params);
+
+			return notification;
+		}
+	}
+
+	private final List<FakeElectrumXServer> fakeServers = new ArrayList<>();
+
+	@After
+	public void afterTest() throws IOException {
+		for (FakeElectrumXServer fakeServer : this.fakeServers)
+			fakeServer.close();
+	}
+
+	private FakeElectrumXServer newFakeServer(boolean rejectBatches, long responseDelay) throws IOException {
+		FakeElectrumXServer fakeServer = new FakeElectrumXServer(rejectBatches, responseDelay);
+		this.fakeServers.add(fakeServer);
+		return fakeServer;
+	}
+
+	private ElectrumX getInstance() {
+		List<ElectrumX.Server> servers = new ArrayList<>();
+		for (FakeElectrumXServer fakeServer : this.fakeServers)
+			servers.add(fakeServer.getServer());
+
+		return new ElectrumX("Bitcoin-FAKE", GENESIS_HASH, servers, DEFAULT_ELECTRUMX_PORTS);
+	}
+
+	private static byte[] script(int i) {
+		return new byte[] { 0x76, (byte) 0xa9, (byte) (i >> 8), (byte) i };
+	}
+
+	private static String txHash(int i) {
+		return String.format("%064x", i);
+	}
+
+	private static String scriptHashHex(byte[] script) {
+		byte[] scriptHash = Crypto.digest(script);
+		Bytes.reverse(scriptHash);
+
+		return HashCode.fromBytes(scriptHash).toString();
+	}
+
+	/** Adds history for even-numbered scripts to each fake server. */
+	private List<byte[]> populateHistories(int scriptCount) {
+		List<byte[]> scripts = new ArrayList<>();
+
+		for (int i = 0; i < scriptCount; ++i) {
+			scripts.add(script(i));
+
+			if (i % 2 == 0)
+				for (FakeElectrumXServer fakeServer : this.fakeServers)
+					fakeServer.addHistory(script(i), txHash(i), 1000 + i);
+		}
+
+		return scripts;
+	}
+
+	private static void assertHistories(List<List<TransactionHash>> histories, int scriptCount) {
+		assertEquals(scriptCount, histories.size());
+
+		for (int i = 0; i < scriptCount; ++i) {
+			List<TransactionHash> history = histories.get(i);
+
+			if (i % 2 != 0) {
+				assertTrue(history.isEmpty());
+				continue;
+			}
+
+			assertEquals(1, history.size());
+			assertEquals(txHash(i), history.get(0).txHash);
+			assertEquals(1000 + i, history.get(0).height);
+		}
+	}
+
+	@Test
+	public void testBatchedAddressTransactions() throws IOException, ForeignBlockchainException {
+		FakeElectrumXServer fakeServer = newFakeServer(false, 0L);
+		final int scriptCount = 120;
+		List<byte[]> scripts = populateHistories(scriptCount);
+
+		ElectrumX electrumX = getInstance();
+
+		assertHistories(electrumX.getAddressTransactions(scripts, false), scriptCount);
+
+		// Histories should have been requested in batches, not individually
+		assertTrue(fakeServer.batchesReceived.get() >= 2);
+		assertEquals(scriptCount, fakeServer.historyRequestsReceived.get());
+	}
+
+	@Test
+	public void testBatchedTransactions() throws IOException, ForeignBlockchainException {
+		FakeElectrumXServer fakeServer = newFakeServer(false, 0L);
+
+		List<String> txHashes = new ArrayList<>();
+		for (int i = 0; i < 80; ++i) {
+			fakeServer.addTransaction(txHash(i));
+			txHashes.add(txHash(i));
+		}
+		// Duplicates are allowed
+		txHashes.add(txHash(3));
+
+		ElectrumX electrumX = getInstance();
+
+		List<BitcoinyTransaction> transactions = electrumX.getTransactions(txHashes);
+
+		assertEquals(txHashes.size(), transactions.size());
+		for (int i = 0; i < txHashes.size(); ++i) {
+			BitcoinyTransaction transaction = transactions.get(i);
+
+			assertEquals(txHashes.get(i), transaction.txHash);
+			assertEquals(100000L, transaction.outputs.get(0).value);
+			assertEquals("address-" + txHashes.get(i), transaction.outputs.get(0).addresses.get(0));
+		}
+
+		assertTrue(fakeServer.batchesReceived.get() >= 2);
+
+		// Unknown transaction
+		try {
+			electrumX.getTransactions(List.of(txHash(1), txHash(999)));
+			fail("Unknown transaction should not be found");
+		} catch (ForeignBlockchainException.NotFoundException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testPipelinedConcurrentRequests() throws Exception {
+		newFakeServer(false, 5L);
+		final int scriptCount = 20;
+		List<byte[]> scripts = populateHistories(scriptCount);
+
+		ElectrumX electrumX = getInstance();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+
+			for (int t = 0; t < 8; ++t)
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < scriptCount; ++i) {
+						assertEquals(CURRENT_HEIGHT, electrumX.getCurrentHeight());
+
+						List<TransactionHash> history = electrumX.getAddressTransactions(scripts.get(i), false);
+						assertEquals(i % 2 == 0 ? 1 : 0, history.size());
+					}
+
+					return null;
+				}));
+
+			// Rethrows any assertion failures
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testBatchesRejected() throws IOException, ForeignBlockchainException {
+		FakeElectrumXServer fakeServer = newFakeServer(true, 0L);
+		final int scriptCount = 60;
+		List<byte[]> scripts = populateHistories(scriptCount);
+
+		ElectrumX electrumX = getInstance();
+
+		// Requests should be resent individually
+		assertHistories(electrumX.getAddressTransactions(scripts, false), scriptCount);
+
+		assertTrue(fakeServer.batchesReceived.get() >= 1);
+		assertEquals(scriptCount, fakeServer.historyRequestsReceived.get());
+	}
+
+	@Test
+	public void testLoadSpreadOverServers() throws IOException, ForeignBlockchainException {
+		FakeElectrumXServer fakeServer1 = newFakeServer(false, 100L);
+		FakeElectrumXServer fakeServer2 = newFakeServer(false, 100L);
+		final int scriptCount = 200;
+		List<byte[]> scripts = populateHistories(scriptCount);
+
+		ElectrumX electrumX = getInstance();
+
+		assertHistories(electrumX.getAddressTransactions(scripts, false), scriptCount);
+
+		assertTrue(fakeServer1.historyRequestsReceived.get() > 0);
+		assertTrue(fakeServer2.historyRequestsReceived.get() > 0);
+		assertEquals(scriptCount, fakeServer1.historyRequestsReceived.get() + fakeServer2.historyRequestsReceived.get());
+	}
+
+}
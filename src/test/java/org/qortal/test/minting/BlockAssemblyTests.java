@@ -0,0 +1,126 @@
+package org.qortal.test.minting;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
+import org.qortal.controller.BlockMinter;
+import org.qortal.controller.OnlineAccountsManager;
+import org.qortal.data.transaction.PaymentTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.transaction.Transaction;
+import org.qortal.utils.Base58;
+
+public class BlockAssemblyTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testOrderByFeePerByte() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			TransactionData aliceFirst = payment(alice, bob, 1L);
+			TransactionData aliceSecond = payment(alice, bob, 100L);
+			TransactionData bobOnly = payment(bob, alice, 10L);
+
+			List<TransactionData> ordered = BlockMinter.orderByFeePerByte(Arrays.asList(aliceFirst, aliceSecond, bobOnly));
+
+			// Bob's has higher fee than Alice's first, and Alice's second can't come before Alice's first
+			assertEquals(Arrays.asList(bobOnly, aliceFirst, aliceSecond), ordered);
+		}
+	}
+
+	@Test
+	public void testIncrementalAssembly() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+			PrivateKeyAccount chloe = Common.getTestAccount(repository, "chloe");
+
+			TransactionData alicePayment = payment(alice, bob, 1L);
+			TransactionData bobPayment = payment(bob, chloe, 10L);
+			TransactionData chloePayment = payment(chloe, alice, 5L);
+
+			TransactionUtils.signAndImportValid(repository, alicePayment, alice);
+			TransactionUtils.signAndImportValid(repository, bobPayment, bob);
+			TransactionUtils.signAndImportValid(repository, chloePayment, chloe);
+
+			BlockUtils.mintBlock(repository);
+
+			assertTrue(repository.getTransactionRepository().getUnconfirmedTransactions().isEmpty());
+
+			for (TransactionData transactionData : Arrays.asList(alicePayment, bobPayment, chloePayment))
+				assertTrue(repository.getTransactionRepository().isConfirmed(transactionData.getSignature()));
+		}
+	}
+
+	@Test
+	public void testInvalidCandidateSkipped() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+			PrivateKeyAccount chloe = Common.getTestAccount(repository, "chloe");
+
+			TransactionData alicePayment = sign(repository, payment(alice, bob, 1L), alice);
+			// Same reference as Alice's first payment, so double-spend once that is processed
+			TransactionData aliceDoubleSpend = sign(repository, payment(alice, chloe, 1L), alice);
+			TransactionData bobPayment = sign(repository, payment(bob, chloe, 1L), bob);
+
+			PrivateKeyAccount mintingAccount = Common.getTestAccount(repository, "alice-reward-share");
+			OnlineAccountsManager.getInstance().ensureTestingAccountsOnline(mintingAccount);
+			Block newBlock = Block.mint(repository, repository.getBlockRepository().getLastBlock(), mintingAccount);
+			assertNotNull(newBlock);
+
+			int skippedCount = newBlock.addValidTransactions(Arrays.asList(alicePayment, aliceDoubleSpend, bobPayment));
+			assertEquals(1, skippedCount);
+
+			// Block keeps its transactions sorted, so compare regardless of order
+			Set<String> includedSignatures = newBlock.getTransactions().stream()
+					.map(transaction -> Base58.encode(transaction.getTransactionData().getSignature()))
+					.collect(Collectors.toSet());
+			assertEquals(Set.of(Base58.encode(alicePayment.getSignature()), Base58.encode(bobPayment.getSignature())), includedSignatures);
+
+			// Remaining transactions still form a valid block
+			newBlock.sign();
+			assertEquals(Block.ValidationResult.OK, newBlock.isValid());
+		}
+	}
+
+	private static TransactionData sign(Repository repository, TransactionData transactionData, PrivateKeyAccount signingAccount) throws DataException {
+		Transaction transaction = Transaction.fromData(repository, transactionData);
+		transaction.sign(signingAccount);
+		return transactionData;
+	}
+
+	private static TransactionData payment(PrivateKeyAccount sender, PrivateKeyAccount recipient, long feeMultiplier) throws DataException {
+		TransactionData transactionData = new PaymentTransactionData(TestTransaction.generateBase(sender), recipient.getAddress(), 1_00000000L);
+		transactionData.setFee(transactionData.getFee() * feeMultiplier);
+		return transactionData;
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.qortal.test.network;
+
+import org.junit.Test;
+import org.qortal.network.LatencyHistogram;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        LatencyHistogram.StatsSnapshot snapshot = histogram.getStatsSnapshot();
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.p50);
+        assertEquals(0, snapshot.p99);
+        assertEquals(0, snapshot.max);
+    }
+
+    @Test
+    public void testSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long micros = 0; micros < 8; ++micros)
+            histogram.recordMicros(micros);
+
+        assertEquals(3, histogram.getPercentile(50.0));
+        assertEquals(7, histogram.getPercentile(100.0));
+    }
+
+    @Test
+    public void testPercentileAccuracy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // 1ms to 1000ms, uniformly
+        for (long millis = 1; millis <= 1000; ++millis)
+            histogram.recordMicros(millis * 1000L);
+
+        LatencyHistogram.StatsSnapshot snapshot = histogram.getStatsSnapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(500_500L, snapshot.mean);
+        assertEquals(1_000_000L, snapshot.max);
+
+        assertWithin(500_000L, snapshot.p50);
+        assertWithin(900_000L, snapshot.p90);
+        assertWithin(990_000L, snapshot.p99);
+    }
+
+    @Test
+    public void testHugeValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.recordMicros(Long.MAX_VALUE / 2);
+        histogram.recordMicros(10);
+
+        assertEquals(10, histogram.getPercentile(50.0));
+        assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(100.0));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                Random random = new Random();
+                for (int i = 0; i < 10_000; ++i)
+                    histogram.recordNanos(random.nextInt(1_000_000_000));
+            });
+            threads[t].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40_000L, histogram.getStatsSnapshot().count);
+    }
+
+    /** Percentiles are bucket upper bounds, so should be no less than, and within 12.5% of, expected value. */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(String.format("expected %d, actual %d", expected, actual),
+                actual >= expected && actual <= expected + expected / 8);
+    }
+
+}
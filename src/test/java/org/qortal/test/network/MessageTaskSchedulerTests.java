@@ -0,0 +1,201 @@
+package org.qortal.test.network;
+
+import org.junit.Test;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.MessageTaskScheduler;
+import org.qortal.network.MessageTaskScheduler.Lane;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.network.message.MessageType;
+import org.qortal.utils.ExecuteProduceConsume.Task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTaskSchedulerTests {
+
+    @Test
+    public void testEveryTypeHasLane() {
+        for (MessageType type : MessageType.values())
+            assertNotNull(type.name(), Lane.of(type));
+    }
+
+    @Test
+    public void testLaneClassification() {
+        assertEquals(Lane.URGENT, Lane.of(MessageType.HELLO));
+        assertEquals(Lane.URGENT, Lane.of(MessageType.PING));
+        assertEquals(Lane.URGENT, Lane.of(MessageType.TRANSACTION_SIGNATURES));
+
+        assertEquals(Lane.CHAIN, Lane.of(MessageType.BLOCK_SUMMARIES));
+        assertEquals(Lane.CHAIN, Lane.of(MessageType.GET_SIGNATURES_V2));
+
+        assertEquals(Lane.BULK, Lane.of(MessageType.GET_ARBITRARY_DATA_FILE));
+        assertEquals(Lane.BULK, Lane.of(MessageType.ONLINE_ACCOUNTS_V2));
+        assertEquals(Lane.BULK, Lane.of(MessageType.GET_BLOCK));
+    }
+
+    @Test
+    public void testWeightsFavourUrgent() {
+        assertTrue(Lane.URGENT.weight > Lane.CHAIN.weight);
+        assertTrue(Lane.CHAIN.weight > Lane.BULK.weight);
+    }
+
+    @Test
+    public void testWeightedRoundRobin() {
+        MessageTaskScheduler scheduler = new MessageTaskScheduler(100);
+        TestPeer peer = new TestPeer("node1.example.com:12392");
+        for (Lane lane : Lane.values())
+            peer.addMessages(lane, 100);
+
+        List<Peer> peers = List.of(peer);
+
+        // Two full rounds of total weight
+        int totalWeight = Arrays.stream(Lane.values()).mapToInt(lane -> lane.weight).sum();
+        Map<Lane, Integer> counts = new EnumMap<>(Lane.class);
+        List<Lane> firstRound = new ArrayList<>();
+
+        for (int i = 0; i < 2 * totalWeight; ++i) {
+            TestTask task = (TestTask) scheduler.produceMessageTask(peers);
+            assertNotNull(task);
+
+            counts.merge(task.lane, 1, Integer::sum);
+            if (i < totalWeight)
+                firstRound.add(task.lane);
+
+            scheduler.onTaskFinished(task.lane);
+        }
+
+        for (Lane lane : Lane.values())
+            assertEquals(lane.name(), 2 * lane.weight, (int) counts.get(lane));
+
+        // Smooth: heaviest lane goes first, and is never picked more than twice in a row
+        assertEquals(Lane.URGENT, firstRound.get(0));
+        for (int i = 2; i < firstRound.size(); ++i)
+            assertTrue(firstRound.get(i) != Lane.URGENT || firstRound.get(i - 1) != Lane.URGENT || firstRound.get(i - 2) != Lane.URGENT);
+    }
+
+    @Test
+    public void testPeersTakeTurnsWithinLane() {
+        MessageTaskScheduler scheduler = new MessageTaskScheduler(100);
+        TestPeer peer1 = new TestPeer("node1.example.com:12392");
+        TestPeer peer2 = new TestPeer("node2.example.com:12392");
+        TestPeer peer3 = new TestPeer("node3.example.com:12392");
+
+        peer1.addMessages(Lane.CHAIN, 2);
+        peer3.addMessages(Lane.CHAIN, 3);
+
+        List<Peer> peers = List.of(peer1, peer2, peer3);
+
+        // Peer without messages is skipped, others alternate until exhausted
+        List<Peer> expectedOrder = List.of(peer1, peer3, peer1, peer3, peer3);
+        for (Peer expectedPeer : expectedOrder) {
+            TestTask task = (TestTask) scheduler.produceMessageTask(peers);
+            assertNotNull(task);
+            assertEquals(Lane.CHAIN, task.lane);
+            assertEquals(expectedPeer, task.peer);
+            scheduler.onTaskFinished(task.lane);
+        }
+
+        assertNull(scheduler.produceMessageTask(peers));
+
+        // Newly arriving messages resume rotation from next peer
+        peer2.addMessages(Lane.CHAIN, 1);
+        peer3.addMessages(Lane.CHAIN, 1);
+        assertEquals(peer2, ((TestTask) scheduler.produceMessageTask(peers)).peer);
+        assertEquals(peer3, ((TestTask) scheduler.produceMessageTask(peers)).peer);
+    }
+
+    @Test
+    public void testBulkLaneCap() {
+        // Bulk lane limited to half of network threads
+        MessageTaskScheduler scheduler = new MessageTaskScheduler(4);
+        TestPeer peer = new TestPeer("node1.example.com:12392");
+        peer.addMessages(Lane.BULK, 10);
+
+        List<Peer> peers = List.of(peer);
+
+        assertEquals(Lane.BULK, ((TestTask) scheduler.produceMessageTask(peers)).lane);
+        assertEquals(Lane.BULK, ((TestTask) scheduler.produceMessageTask(peers)).lane);
+
+        // At cap, so bulk lane is starved...
+        assertNull(scheduler.produceMessageTask(peers));
+
+        // ...but other lanes still progress
+        peer.addMessages(Lane.URGENT, 1);
+        assertEquals(Lane.URGENT, ((TestTask) scheduler.produceMessageTask(peers)).lane);
+        assertNull(scheduler.produceMessageTask(peers));
+
+        // Bulk lane resumes once a bulk task finishes
+        scheduler.onTaskFinished(Lane.BULK);
+        assertEquals(Lane.BULK, ((TestTask) scheduler.produceMessageTask(peers)).lane);
+        assertNull(scheduler.produceMessageTask(peers));
+
+        MessageTaskScheduler.LaneStats bulkStats = scheduler.getStatsSnapshot(peers).get(Lane.BULK.ordinal());
+        assertEquals(2, bulkStats.activeTasks);
+        assertEquals(2, bulkStats.maxActiveTasks);
+        assertEquals(3L, bulkStats.tasksProduced);
+        assertEquals(7, bulkStats.pendingMessages);
+    }
+
+    private static class TestTask implements Task {
+        private final Peer peer;
+        private final Lane lane;
+
+        TestTask(Peer peer, Lane lane) {
+            this.peer = peer;
+            this.lane = lane;
+        }
+
+        @Override
+        public String getName() {
+            return String.format("%s message from %s", this.lane, this.peer);
+        }
+
+        @Override
+        public void perform() {
+        }
+    }
+
+    /** Peer with fake pending messages, one queue per lane */
+    private static class TestPeer extends Peer {
+        private final Map<Lane, Deque<TestTask>> pendingTasks = new EnumMap<>(Lane.class);
+
+        TestPeer(String address) {
+            super(new PeerData(PeerAddress.fromString(address)));
+
+            for (Lane lane : Lane.values())
+                this.pendingTasks.put(lane, new ArrayDeque<>());
+        }
+
+        void addMessages(Lane lane, int count) {
+            for (int i = 0; i < count; ++i)
+                this.pendingTasks.get(lane).add(new TestTask(this, lane));
+        }
+
+        @Override
+        protected boolean hasMessageTask(Lane lane) {
+            return !this.pendingTasks.get(lane).isEmpty();
+        }
+
+        @Override
+        protected Task getMessageTask(Lane lane) {
+            return this.pendingTasks.get(lane).poll();
+        }
+
+        @Override
+        public int getPendingMessageCount(Lane lane) {
+            return this.pendingTasks.get(lane).size();
+        }
+    }
+
+}
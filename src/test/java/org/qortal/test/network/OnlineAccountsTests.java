@@ -2,7 +2,11 @@ package org.qortal.test.network;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
+import com.google.common.primitives.Longs;
 import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.block.Block;
+import org.qortal.controller.OnlineAccountsManager;
 import org.qortal.data.network.OnlineAccountData;
 import org.qortal.network.message.*;
 import org.qortal.transform.Transformer;
@@ -14,6 +18,7 @@ import java.util.List;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class OnlineAccountsTests {
@@ -86,6 +91,45 @@ public class OnlineAccountsTests {
                 messageBytes.length));
     }
 
+    @Test
+    public void testParallelSignatureVerification() {
+        List<OnlineAccountData> onlineAccounts = generateSignedOnlineAccounts(500);
+
+        boolean serialResult = Block.areOnlineAccountsSignaturesValid(onlineAccounts, false);
+        boolean parallelResult = Block.areOnlineAccountsSignaturesValid(onlineAccounts, true);
+        assertTrue("serial verification failed", serialResult);
+        assertEquals("parallel verification differs from serial", serialResult, parallelResult);
+
+        // Corrupt a signature at a random position
+        int badIndex = RANDOM.nextInt(onlineAccounts.size());
+        OnlineAccountData goodAccount = onlineAccounts.get(badIndex);
+        byte[] badSignature = goodAccount.getSignature().clone();
+        badSignature[0] ^= 0x01;
+        onlineAccounts.set(badIndex, new OnlineAccountData(goodAccount.getTimestamp(), badSignature, goodAccount.getPublicKey()));
+
+        serialResult = Block.areOnlineAccountsSignaturesValid(onlineAccounts, false);
+        parallelResult = Block.areOnlineAccountsSignaturesValid(onlineAccounts, true);
+        assertFalse("serial verification passed with bad signature", serialResult);
+        assertEquals("parallel verification differs from serial", serialResult, parallelResult);
+    }
+
+    private List<OnlineAccountData> generateSignedOnlineAccounts(int numAccounts) {
+        List<OnlineAccountData> onlineAccounts = new ArrayList<>();
+
+        long timestamp = OnlineAccountsManager.toOnlineAccountTimestamp(System.currentTimeMillis());
+        byte[] timestampBytes = Longs.toByteArray(timestamp);
+
+        for (int a = 0; a < numAccounts; ++a) {
+            byte[] privateKey = new byte[Transformer.PRIVATE_KEY_LENGTH];
+            RANDOM.nextBytes(privateKey);
+            PrivateKeyAccount account = new PrivateKeyAccount(null, privateKey);
+
+            onlineAccounts.add(new OnlineAccountData(timestamp, account.sign(timestampBytes), account.getPublicKey()));
+        }
+
+        return onlineAccounts;
+    }
+
     private List<OnlineAccountData> generateOnlineAccounts(boolean withSignatures) {
         List<OnlineAccountData> onlineAccounts = new ArrayList<>();
 
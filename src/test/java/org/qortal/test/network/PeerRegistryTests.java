@@ -0,0 +1,83 @@
+package org.qortal.test.network;
+
+import org.junit.Test;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.network.PeerRegistry;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PeerRegistryTests {
+
+    @Test
+    public void testConnectedPeers() {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        Peer peer1 = newPeer("node1.example.com:12392");
+        Peer peer2 = newPeer("node2.example.com:12392");
+
+        peerRegistry.addConnectedPeer(peer1);
+        List<Peer> snapshot = peerRegistry.getConnectedPeers();
+        peerRegistry.addConnectedPeer(peer2);
+
+        // Earlier snapshot is unaffected
+        assertEquals(1, snapshot.size());
+        assertEquals(2, peerRegistry.getConnectedPeers().size());
+
+        // Address lookup ignores case of host
+        assertSame(peer2, peerRegistry.getConnectedPeerWithAddress(PeerAddress.fromString("NODE2.example.com:12392")));
+        assertNull(peerRegistry.getConnectedPeerWithAddress(PeerAddress.fromString("node2.example.com:12393")));
+
+        peerRegistry.removeConnectedPeer(peer2);
+        assertNull(peerRegistry.getConnectedPeerWithAddress(PeerAddress.fromString("node2.example.com:12392")));
+        assertEquals(List.of(peer1), peerRegistry.getConnectedPeers());
+    }
+
+    @Test
+    public void testDuplicateAddress() {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        Peer peer1 = newPeer("node1.example.com:12392");
+        Peer peer2 = newPeer("node1.example.com:12392");
+
+        peerRegistry.addConnectedPeer(peer1);
+        peerRegistry.addConnectedPeer(peer2);
+
+        PeerAddress peerAddress = PeerAddress.fromString("node1.example.com:12392");
+        assertSame(peer1, peerRegistry.getConnectedPeerWithAddress(peerAddress));
+
+        // Remaining connection should still be found
+        peerRegistry.removeConnectedPeer(peer1);
+        assertSame(peer2, peerRegistry.getConnectedPeerWithAddress(peerAddress));
+    }
+
+    @Test
+    public void testHandshakedPeers() {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        Peer peer = newPeer("node1.example.com:12392");
+
+        // Not connected, so shouldn't be added
+        peerRegistry.addHandshakedPeer(peer);
+        assertTrue(peerRegistry.getHandshakedPeers().isEmpty());
+
+        peerRegistry.addConnectedPeer(peer);
+        peerRegistry.addHandshakedPeer(peer);
+        assertEquals(List.of(peer), peerRegistry.getHandshakedPeers());
+        // Peers constructed from PeerData are outbound
+        assertEquals(List.of(peer), peerRegistry.getOutboundHandshakedPeers());
+
+        // Removing connected peer also removes handshaked peer
+        peerRegistry.removeConnectedPeer(peer);
+        assertTrue(peerRegistry.getHandshakedPeers().isEmpty());
+        assertTrue(peerRegistry.getOutboundHandshakedPeers().isEmpty());
+    }
+
+    private static Peer newPeer(String address) {
+        return new Peer(new PeerData(PeerAddress.fromString(address)));
+    }
+
+}